@@ -5,33 +5,38 @@ import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Date;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import org.xml.sax.SAXException;
 
 import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
 import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.http.HttpClientHandler;
 import ca.uwaterloo.swag.mavencrawler.pojo.Archetype;
 import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
 import ca.uwaterloo.swag.mavencrawler.pojo.Repository;
 import ca.uwaterloo.swag.mavencrawler.xml.ArchetypeCatalogHandler;
 import ca.uwaterloo.swag.mavencrawler.xml.MavenMetadataHandler;
+import ca.uwaterloo.swag.mavencrawler.xml.SAXParserPool;
 
 public class ArchetypeCrawler {
 	
 	private Logger logger;
 	private MongoDBHandler mongoHandler;
+	private HttpClientHandler httpClientHandler;
 
 	public ArchetypeCrawler(Logger logger, MongoDBHandler handler) {
+		this(logger, handler, HttpClientHandler.newInstance(logger));
+	}
+
+	public ArchetypeCrawler(Logger logger, MongoDBHandler handler, HttpClientHandler httpClientHandler) {
 		super();
 		this.logger = logger;
 		this.mongoHandler = handler;
+		this.httpClientHandler = httpClientHandler;
 	}
 
 	public Logger getLogger() {
@@ -46,12 +51,20 @@ public class ArchetypeCrawler {
 	public void setMongoHandler(MongoDBHandler mongoHandler) {
 		this.mongoHandler = mongoHandler;
 	}
+	public HttpClientHandler getHttpClientHandler() {
+		return httpClientHandler;
+	}
+	public void setHttpClientHandler(HttpClientHandler httpClientHandler) {
+		this.httpClientHandler = httpClientHandler;
+	}
 
 	public void crawlCatalogFromMavenRoot(String mavenRootURL) {
 		
 		try {
 			URL url = new URL(mavenRootURL + "/archetype-catalog.xml");
-			crawlMavenArchetypeXMLInputStream(url.openStream(), mavenRootURL);
+			try (InputStream stream = httpClientHandler.openStream(url)) {
+				crawlMavenArchetypeXMLInputStream(stream, mavenRootURL);
+			}
 		} 
 		catch (MalformedURLException e) {
 			LoggerHelper.logError(logger, e, "Bad URL: " + mavenRootURL);
@@ -63,11 +76,10 @@ public class ArchetypeCrawler {
 	protected void crawlMavenArchetypeXMLInputStream(InputStream stream, String repositoryURL) {
 
 		try {
-			SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
 			ArchetypeCatalogHandler archetypeHandler = new ArchetypeCatalogHandler();
 
 			LoggerHelper.log(logger, Level.INFO, "Parsing archetype-catalog.xml...");
-			parser.parse(stream, archetypeHandler);
+			SAXParserPool.parse(stream, archetypeHandler);
 			LoggerHelper.log(logger, Level.INFO, "Parsed " + archetypeHandler.getArchetypes().size() + " archetypes.");
 
 			// Set repository URL to default, if null
@@ -85,21 +97,18 @@ public class ArchetypeCrawler {
 	}
 
 	public void updateArchetypes() {
-		List<Archetype> arquetypes = Archetype.findAllFromMongo(mongoHandler.getMongoDatabase());
-		
-		for (Archetype archetype : arquetypes) {
-			updateMetadataForArchetype(archetype);
-		}
+		Archetype.iterateAllInMongo(mongoHandler.getMongoDatabase(), this::updateMetadataForArchetype);
 	}
 
 	private void updateMetadataForArchetype(Archetype archetype) {
 		
 		try {
 			MavenMetadataHandler metadataHandler = new MavenMetadataHandler();
-			SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
 			
 			LoggerHelper.log(logger, Level.INFO, "Parsing maven-metadata.xml...");
-			parser.parse(archetype.getMetadataURL().openStream(), metadataHandler);
+			try (InputStream stream = httpClientHandler.openStream(archetype.getMetadataURL())) {
+				SAXParserPool.parse(stream, metadataHandler);
+			}
 			LoggerHelper.log(logger, Level.INFO, "Parsed " + metadataHandler.getMetadata() + ".");
 			
 			metadataHandler.getMetadata().setRepository(archetype.getRepository());
@@ -0,0 +1,138 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+
+/**
+ * Keeps one copy of each downloaded file, named by its SHA-1 digest under
+ * "ab/cd/abcd...". Files in the download folder are hard links to the stored copy,
+ * so the same artifact downloaded from several repositories takes disk space once.
+ * When hard links are not supported, files are copied instead.
+ */
+public class ContentStore {
+
+	public static final String DEFAULT_FOLDER = ".cas";
+	private static final String LINK_EXTENSION = ".link";
+
+	private final File root;
+	private final Logger logger;
+
+	public ContentStore(File root, Logger logger) {
+		super();
+		this.root = root;
+		this.logger = logger;
+	}
+
+	public File getRoot() {
+		return root;
+	}
+
+	/**
+	 * @param sha1 lower case hex digest
+	 * @return location of the stored copy, whether it exists or not
+	 */
+	public File fileFor(String sha1) {
+		return new File(new File(new File(root, sha1.substring(0, 2)), sha1.substring(2, 4)), sha1);
+	}
+
+	public boolean contains(String sha1) {
+		return sha1 != null && sha1.length() > 4 && fileFor(sha1).isFile();
+	}
+
+	/**
+	 * Adds a downloaded file to the store. If the content is already stored, the file
+	 * is replaced by a link to the stored copy.
+	 * @param file downloaded file
+	 * @param sha1 digest of the file
+	 * @return stored copy
+	 * @throws IOException
+	 */
+	public File store(File file, String sha1) throws IOException {
+
+		Path stored = fileFor(sha1).toPath();
+		Files.createDirectories(stored.getParent());
+
+		if (!Files.exists(stored)) {
+			try {
+				Files.createLink(stored, file.toPath());
+				return stored.toFile();
+			} catch (FileAlreadyExistsException e) {
+				// Stored meanwhile by another download
+			} catch (UnsupportedOperationException | FileSystemException e) {
+				LoggerHelper.log(logger, Level.FINE, "Could not link " + file + ", copying: " + e.getMessage());
+				copy(file.toPath(), stored);
+				return stored.toFile();
+			}
+		}
+
+		if (!Files.isSameFile(stored, file.toPath())) {
+			linkTo(stored, file.toPath());
+		}
+
+		return stored.toFile();
+	}
+
+	/**
+	 * Creates or replaces a file with a link to stored content.
+	 * @param sha1 digest of stored content
+	 * @param target
+	 * @return true if the content is stored and was linked
+	 * @throws IOException
+	 */
+	public boolean link(String sha1, File target) throws IOException {
+
+		if (!contains(sha1)) return false;
+
+		Path stored = fileFor(sha1).toPath();
+		if (target.exists() && Files.isSameFile(stored, target.toPath())) return true;
+
+		Files.createDirectories(target.toPath().toAbsolutePath().getParent());
+		linkTo(stored, target.toPath());
+		return true;
+	}
+
+	/**
+	 * The link is created next to the target and renamed over it, so the target
+	 * is never missing or incomplete.
+	 */
+	private void linkTo(Path stored, Path target) throws IOException {
+
+		Path temporary = target.resolveSibling(target.getFileName() + LINK_EXTENSION);
+		Files.deleteIfExists(temporary);
+
+		try {
+			Files.createLink(temporary, stored);
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			copy(stored, temporary);
+		}
+
+		try {
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private void copy(Path source, Path target) throws IOException {
+
+		Path temporary = target.resolveSibling(target.getFileName() + FileDownloader.PART_EXTENSION);
+		Files.copy(source, temporary, StandardCopyOption.REPLACE_EXISTING);
+
+		try {
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
@@ -0,0 +1,43 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Folders named like versions in listings with a maven-metadata.xml, held back until the
+ * metadata is parsed, shared by all crawler threads. Only the metadata tells whether the
+ * listing is an artifact's, whose POMs are fetched from the listed versions instead, or
+ * a group's, whose folders are artifacts that must still be crawled.
+ */
+public class DeferredFolders {
+
+	private final Map<String, List<String>> folders = new HashMap<>();
+
+	/**
+	 * @param metadataURL maven-metadata.xml of the listing
+	 * @param folderURL
+	 */
+	public synchronized void defer(String metadataURL, String folderURL) {
+		folders.computeIfAbsent(metadataURL, url -> new ArrayList<>()).add(folderURL);
+	}
+
+	/**
+	 * @param metadataURL
+	 * @return folders held back for the metadata, no longer kept
+	 */
+	public synchronized List<String> release(String metadataURL) {
+		List<String> released = folders.remove(metadataURL);
+		return (released == null) ? Collections.<String>emptyList() : released;
+	}
+
+	/**
+	 * @return number of maven-metadata.xml with folders held back
+	 */
+	public synchronized int size() {
+		return folders.size();
+	}
+
+}
@@ -0,0 +1,209 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+
+/**
+ * Runs downloads on a fixed pool of workers. At most maxPerHost downloads run against
+ * the same host at once, and at most maxInFlight downloads are submitted and not yet
+ * finished, so producers block instead of piling up work.
+ *
+ * Downloads over a host's limit wait in that host's queue, not in a worker, and are handed
+ * to the workers one by one as the host's running downloads finish. Workers are thus never
+ * blocked by a busy host while downloads from other hosts are waiting.
+ */
+public class DownloadEngine implements AutoCloseable {
+
+	public static final int DEFAULT_THREADS = 8;
+	public static final int DEFAULT_MAX_PER_HOST = 4;
+
+	private final int threads;
+	private final int maxPerHost;
+	private final int maxInFlight;
+	private final ExecutorService executor;
+	private final Semaphore inFlight;
+	// Hosts with running downloads, guarded by itself
+	private final Map<String, HostQueue> hostQueues = new HashMap<>();
+	private final Logger logger;
+
+	public DownloadEngine(int threads, int maxPerHost, Logger logger) {
+		this(threads, maxPerHost, threads * 2, logger);
+	}
+
+	/**
+	 * @param threads number of download workers
+	 * @param maxPerHost maximum concurrent downloads from the same host
+	 * @param maxInFlight maximum submitted downloads not finished yet
+	 * @param logger
+	 */
+	public DownloadEngine(int threads, int maxPerHost, int maxInFlight, Logger logger) {
+		super();
+		this.threads = threads;
+		this.maxPerHost = maxPerHost;
+		this.maxInFlight = maxInFlight;
+		this.inFlight = new Semaphore(maxInFlight);
+		this.logger = logger;
+
+		AtomicInteger workerCount = new AtomicInteger();
+		ThreadFactory threadFactory = runnable -> {
+			Thread thread = new Thread(runnable, "download-worker-" + workerCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+		this.executor = Executors.newFixedThreadPool(threads, threadFactory);
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Submits a download, blocking while too many downloads are in flight.
+	 * @param host the download is counted against this host's limit
+	 * @param download returns true if successful
+	 * @return completes with the download result, or false if it failed with an exception
+	 */
+	public CompletableFuture<Boolean> submit(String host, Callable<Boolean> download) {
+
+		try {
+			inFlight.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.completedFuture(false);
+		}
+
+		Download task = new Download(host == null ? "" : host, download);
+
+		boolean start;
+		synchronized (hostQueues) {
+			HostQueue hostQueue = hostQueues.computeIfAbsent(task.host, h -> new HostQueue());
+			start = hostQueue.running < maxPerHost;
+			if (start) {
+				hostQueue.running++;
+			}
+			else {
+				hostQueue.pending.add(task);
+			}
+		}
+
+		if (start) execute(task);
+
+		return task.future;
+	}
+
+	private void execute(Download task) {
+
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			LoggerHelper.logError(logger, e, "Could not submit download from " + task.host);
+			task.finish(false);
+		}
+	}
+
+	/**
+	 * Starts the host's next waiting download in place of the one finished, if any.
+	 */
+	private void startNext(String host) {
+
+		Download next;
+		synchronized (hostQueues) {
+			HostQueue hostQueue = hostQueues.get(host);
+			next = hostQueue.pending.poll();
+			if (next == null && --hostQueue.running == 0) {
+				hostQueues.remove(host);
+				if (hostQueues.isEmpty()) hostQueues.notifyAll();
+			}
+		}
+
+		if (next != null) execute(next);
+	}
+
+	private static class HostQueue {
+		private int running;
+		private final Queue<Download> pending = new ArrayDeque<>();
+	}
+
+	private class Download implements Runnable {
+
+		private final String host;
+		private final Callable<Boolean> download;
+		private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+		private Download(String host, Callable<Boolean> download) {
+			super();
+			this.host = host;
+			this.download = download;
+		}
+
+		@Override
+		public void run() {
+
+			boolean success = false;
+			try {
+				success = Boolean.TRUE.equals(download.call());
+			} catch (Exception e) {
+				LoggerHelper.logError(logger, e, "Error downloading from " + host);
+			} finally {
+				finish(success);
+			}
+		}
+
+		private void finish(boolean success) {
+			inFlight.release();
+			startNext(host);
+			future.complete(success);
+		}
+	}
+
+	/**
+	 * Waits for running and waiting downloads to finish and stops the workers.
+	 */
+	@Override
+	public void close() {
+
+		try {
+			// Waiting downloads are only handed to the workers later, so the pool must stay open
+			synchronized (hostQueues) {
+				while (!hostQueues.isEmpty()) {
+					hostQueues.wait(TimeUnit.MINUTES.toMillis(1));
+					if (!hostQueues.isEmpty()) {
+						LoggerHelper.log(logger, Level.INFO, "Waiting for downloads from " + hostQueues.size() + " hosts...");
+					}
+				}
+			}
+
+			executor.shutdown();
+			while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+				LoggerHelper.log(logger, Level.INFO, "Waiting for downloads to finish...");
+			}
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -2,12 +2,16 @@ package ca.uwaterloo.swag.mavencrawler;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.google.gson.Gson;
+import com.mongodb.client.MongoDatabase;
 
 import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
 import ca.uwaterloo.swag.mavencrawler.db.RabbitMQHandler;
@@ -18,6 +22,7 @@ import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
 public class DownloadEnqueuer {
 
 	private static final String DEFAULT_CONFIG_FILE = "mavencrawler.conf"; 
+	private static final int BATCH_SIZE = 1000;
 
 	public static void main(String[] args) throws InterruptedException {
 		
@@ -46,10 +51,25 @@ public class DownloadEnqueuer {
 	public static void enqueue(MongoDBHandler mongoHandler, RabbitMQHandler rabbitHandler, Logger logger) {
 		
 		Gson gson = new Gson();
+		List<String> batch = new ArrayList<>(BATCH_SIZE);
+		MongoDatabase mongoDatabase = mongoHandler.getMongoDatabase();
+		
+		// Downloaded versions are looked up by artifact
+		Downloaded.checkIndexesInCollection(mongoDatabase.getCollection(Downloaded.DOWNLOADED_COLLECTION, Downloaded.class));
 		
 		Consumer<Metadata> metadataConsumer = metadata -> {
 			
+			Set<String> downloadedVersions = Downloaded.findDownloadedVersions(
+					metadata.getGroupId(), 
+					metadata.getArtifactId(), 
+					metadata.getRepository(), 
+					metadata.getVersions(), 
+					mongoDatabase);
+			
 			for (String version : metadata.getVersions()) {
+				
+				if (downloadedVersions.contains(version)) continue;
+				
 				Downloaded toDownload = new Downloaded(
 						metadata.getGroupId(), 
 						metadata.getArtifactId(),
@@ -58,14 +78,28 @@ public class DownloadEnqueuer {
 						null,
 						null);
 				
-				if (!Downloaded.exists(toDownload, mongoHandler.getMongoDatabase())) {
-					rabbitHandler.sendMessage(gson.toJson(toDownload));
-				}
-
+				batch.add(gson.toJson(toDownload));
+			}
+			
+			if (batch.size() >= BATCH_SIZE) {
+				sendBatch(batch, rabbitHandler, logger);
 			}
 		};
 		
-		Metadata.iterateAllInMongo(mongoHandler.getMongoDatabase(), metadataConsumer);
+		Metadata.iterateAllInMongo(mongoDatabase, metadataConsumer);
+		sendBatch(batch, rabbitHandler, logger);
+	}
+
+	private static void sendBatch(List<String> batch, RabbitMQHandler rabbitHandler, Logger logger) {
+		
+		if (batch.isEmpty()) return;
+		
+		if (!rabbitHandler.sendMessages(batch)) {
+			// Not downloaded yet, so these will be enqueued again in the next pass
+			LoggerHelper.log(logger, Level.WARNING, "Could not confirm " + batch.size() + " enqueued downloads.");
+		}
+		
+		batch.clear();
 	}
 	
 }
@@ -0,0 +1,82 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Where downloaded files are saved under the download folder.
+ */
+public enum DownloadLayout {
+
+	/**
+	 * One folder per library: "groupId.artifactId/groupId.artifactId-version.jar"
+	 */
+	FLAT {
+		@Override
+		public File fileFor(File root, String groupId, String artifactId, String version, String extension) {
+			String library = groupId + "." + artifactId;
+			return new File(new File(root, library), library + "-" + version + "." + extension);
+		}
+	},
+
+	/**
+	 * Same as a Maven repository: "group/id/artifactId/version/artifactId-version.jar"
+	 */
+	MAVEN {
+		@Override
+		public File fileFor(File root, String groupId, String artifactId, String version, String extension) {
+			File groupFolder = new File(root, groupId.replace('.', File.separatorChar));
+			File versionFolder = new File(new File(groupFolder, artifactId), version);
+			return new File(versionFolder, artifactId + "-" + version + "." + extension);
+		}
+	},
+
+	/**
+	 * Flat library folders spread over two levels of 256 folders by the SHA-1 of
+	 * "groupId:artifactId": "ab/cd/groupId.artifactId/groupId.artifactId-version.jar"
+	 */
+	HASHED {
+		@Override
+		public File fileFor(File root, String groupId, String artifactId, String version, String extension) {
+			String hash = hash(groupId + ":" + artifactId);
+			File fanOut = new File(new File(root, hash.substring(0, 2)), hash.substring(2, 4));
+			return FLAT.fileFor(fanOut, groupId, artifactId, version, extension);
+		}
+	};
+
+	public static final DownloadLayout DEFAULT_LAYOUT = FLAT;
+
+	/**
+	 * @param root download folder
+	 * @param groupId
+	 * @param artifactId
+	 * @param version
+	 * @param extension file extension, e.g. "jar"
+	 * @return location of the downloaded file
+	 */
+	public abstract File fileFor(File root, String groupId, String artifactId, String version, String extension);
+
+	/**
+	 * @param name layout name, case insensitive
+	 * @return layout, or the default layout if name is null or unknown
+	 */
+	public static DownloadLayout fromName(String name) {
+		try {
+			return name == null ? DEFAULT_LAYOUT : DownloadLayout.valueOf(name.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			return DEFAULT_LAYOUT;
+		}
+	}
+
+	private static String hash(String value) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			return FileDownloader.toHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,200 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import ca.uwaterloo.swag.mavencrawler.db.ResumableCursor;
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.pojo.Downloaded;
+
+/**
+ * Moves already downloaded files to another layout. Each file is first linked at its
+ * new location, then the new paths are saved in bulk, and only then the old links are
+ * removed. If interrupted, running it again finishes the migration.
+ * Files that cannot be linked are copied to a temporary file first and then renamed,
+ * so a new location never holds a partial copy.
+ */
+public class DownloadLayoutMigrator {
+
+	private static final String DEFAULT_CONFIG_FILE = "mavencrawler.conf";
+	private static final String DOWNLOAD_FOLDER_PROPERTY = "DOWNLOAD_FOLDER";
+
+	private final MongoDatabase mongoDatabase;
+	private final File downloadFolder;
+	private final DownloadLayout layout;
+	private final Logger logger;
+	private int batchSize = ResumableCursor.DEFAULT_BATCH_SIZE;
+
+	private final List<Downloaded> movedBatch = new ArrayList<>();
+	private final List<File> oldFiles = new ArrayList<>();
+	private long migrated;
+
+	public DownloadLayoutMigrator(MongoDatabase mongoDatabase, File downloadFolder, DownloadLayout layout, Logger logger) {
+		super();
+		this.mongoDatabase = mongoDatabase;
+		this.downloadFolder = downloadFolder.getAbsoluteFile();
+		this.layout = layout;
+		this.logger = logger;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * @return number of downloads moved to the new layout
+	 */
+	public long migrate() {
+
+		migrated = 0;
+		Downloaded.iterateDownloadedFilesInMongo(mongoDatabase, batchSize, this::migrateDownloaded);
+		flush();
+
+		return migrated;
+	}
+
+	private void migrateDownloaded(Downloaded downloaded) {
+
+		File oldFile = new File(downloaded.getDownloadPath()).getAbsoluteFile();
+		String fileName = oldFile.getName();
+		String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+
+		File newFile = layout.fileFor(downloadFolder,
+				downloaded.getGroupId(),
+				downloaded.getArtifactId(),
+				downloaded.getVersion(),
+				extension);
+
+		if (newFile.equals(oldFile)) return;
+
+		try {
+			if (!linkToNewFile(oldFile, newFile)) {
+				LoggerHelper.log(logger, Level.WARNING, "Missing downloaded file " + oldFile);
+				return;
+			}
+		} catch (IOException e) {
+			LoggerHelper.logError(logger, e, "Could not move " + oldFile + " to " + newFile);
+			return;
+		}
+
+		downloaded.setDownloadPath(newFile.getAbsolutePath());
+		movedBatch.add(downloaded);
+		oldFiles.add(oldFile);
+
+		if (movedBatch.size() >= batchSize) flush();
+	}
+
+	/**
+	 * @return false if the file is neither at the old nor at the new location
+	 */
+	private boolean linkToNewFile(File oldFile, File newFile) throws IOException {
+
+		if (newFile.exists()) {
+			// Already linked, e.g. by an interrupted migration or for another repository
+			if (!oldFile.exists() || newFile.length() == oldFile.length()) return true;
+
+			// Partial copy, e.g. left by a migration that copied in place
+			LoggerHelper.log(logger, Level.WARNING, "Replacing incomplete " + newFile);
+			Files.delete(newFile.toPath());
+		}
+		if (!oldFile.exists()) return false;
+
+		Files.createDirectories(newFile.getParentFile().toPath());
+
+		try {
+			Files.createLink(newFile.toPath(), oldFile.toPath());
+		} catch (UnsupportedOperationException | FileSystemException e) {
+			copyToNewFile(oldFile, newFile);
+		}
+
+		return true;
+	}
+
+	private void copyToNewFile(File oldFile, File newFile) throws IOException {
+
+		// In the same folder, so the rename is atomic
+		Path tempFile = Files.createTempFile(newFile.getParentFile().toPath(), newFile.getName(), FileDownloader.PART_EXTENSION);
+
+		try {
+			Files.copy(oldFile.toPath(), tempFile, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(tempFile, newFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	private void flush() {
+
+		if (movedBatch.isEmpty()) return;
+
+		Downloaded.updateDownloadPathsInMongo(movedBatch, mongoDatabase);
+
+		// Old files are removed only once the new paths are saved
+		for (File oldFile : oldFiles) {
+			if (oldFile.exists() && !oldFile.delete()) {
+				LoggerHelper.log(logger, Level.WARNING, "Could not delete " + oldFile);
+			}
+			deleteEmptyFolders(oldFile.getParentFile());
+		}
+
+		migrated += movedBatch.size();
+		LoggerHelper.log(logger, Level.INFO, "Moved " + migrated + " downloads to " + layout + " layout");
+
+		movedBatch.clear();
+		oldFiles.clear();
+	}
+
+	private void deleteEmptyFolders(File folder) {
+		// Only empty folders are deleted
+		while (folder != null && !folder.equals(downloadFolder) && folder.delete()) {
+			folder = folder.getParentFile();
+		}
+	}
+
+	/**
+	 * Moves all downloads to the layout given as argument, or else to DOWNLOAD_LAYOUT
+	 * from mavencrawler.conf.
+	 * @param args optional layout name
+	 */
+	public static void main(String[] args) {
+
+		Logger logger = Logger.getLogger(DownloadLayoutMigrator.class.getName());
+		File configFile = new File(DEFAULT_CONFIG_FILE);
+
+		Properties properties = new Properties();
+		try {
+			properties.load(new FileInputStream(configFile));
+			LoggerHelper.log(logger, Level.INFO, "Read " + configFile.getAbsolutePath());
+		} catch (Exception e) {
+			LoggerHelper.logError(logger, e, "Could not open mavencrawler.conf file.");
+			System.exit(1);
+		}
+
+		DownloadLayout layout = DownloadLayout.fromName(args.length > 0 ?
+				args[0] : properties.getProperty(MavenDownloader.DOWNLOAD_LAYOUT_PROPERTY));
+		File downloadFolder = new File(properties.getProperty(DOWNLOAD_FOLDER_PROPERTY));
+		MongoDBHandler mongoHandler = MongoDBHandler.newInstance(logger, properties);
+
+		LoggerHelper.log(logger, Level.INFO, "Moving downloads in " + downloadFolder + " to " + layout + " layout...");
+		long migrated = new DownloadLayoutMigrator(mongoHandler.getMongoDatabase(), downloadFolder, layout, logger).migrate();
+		LoggerHelper.log(logger, Level.INFO, "Moved " + migrated + " downloads. Set " +
+				MavenDownloader.DOWNLOAD_LAYOUT_PROPERTY + " = " + layout + " before downloading again.");
+	}
+
+}
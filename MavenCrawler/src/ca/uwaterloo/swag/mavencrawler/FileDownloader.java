@@ -0,0 +1,470 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.http.HttpClientHandler;
+
+/**
+ * Downloads a file to a temporary ".part" file next to it, and renames it to the final
+ * name only when complete. Interrupted downloads continue from the bytes already saved
+ * with HTTP Range requests, either in the next attempt or the next time the same file
+ * is downloaded.
+ * <p>
+ * Digests are computed while the bytes are written, and checked against the ".sha1"
+ * (or else ".md5") file the repository publishes next to the downloaded file. A file
+ * that does not match is downloaded again from the start. A final file left by an
+ * earlier download is read and checked the same way before it is kept.
+ */
+public class FileDownloader {
+
+	public static final String PART_EXTENSION = ".part";
+	public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+	private static final String SHA1 = "SHA-1";
+	private static final String SHA256 = "SHA-256";
+	private static final String MD5 = "MD5";
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_CHECKSUM_FILE_SIZE = 1024;
+	private static final Pattern CHECKSUM_PATTERN = Pattern.compile("^\\s*([0-9a-fA-F]+)");
+
+	private Logger logger;
+	private HttpClientHandler httpClientHandler;
+	private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
+	private boolean computeSha256 = false;
+	private boolean verifyChecksums = true;
+
+	public FileDownloader(Logger logger) {
+		this(logger, HttpClientHandler.newInstance(logger));
+	}
+
+	public FileDownloader(Logger logger, HttpClientHandler httpClientHandler) {
+		super();
+		this.logger = logger;
+		this.httpClientHandler = httpClientHandler;
+	}
+
+	public HttpClientHandler getHttpClientHandler() {
+		return httpClientHandler;
+	}
+	public void setHttpClientHandler(HttpClientHandler httpClientHandler) {
+		this.httpClientHandler = httpClientHandler;
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+	public boolean isComputeSha256() {
+		return computeSha256;
+	}
+	public void setComputeSha256(boolean computeSha256) {
+		this.computeSha256 = computeSha256;
+	}
+	public boolean isVerifyChecksums() {
+		return verifyChecksums;
+	}
+	public void setVerifyChecksums(boolean verifyChecksums) {
+		this.verifyChecksums = verifyChecksums;
+	}
+
+	/**
+	 * @param url
+	 * @param downloadFile final file, only created once the download is complete
+	 * @return digests of the downloaded file, or of the existing file if it matches, 
+	 * or null if the download failed
+	 * @throws FileNotFoundException if the server has no such file
+	 */
+	public Checksums download(URL url, File downloadFile) throws FileNotFoundException {
+
+		File partFile = new File(downloadFile.getPath() + PART_EXTENSION);
+		ExpectedChecksum expected = null;
+
+		for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+			try {
+				if (verifyChecksums && expected == null) {
+					expected = fetchExpectedChecksum(url);
+				}
+
+				if (downloadFile.exists()) {
+					Checksums existing = checkExistingFile(downloadFile, expected);
+					if (existing != null) return existing;
+				}
+
+				Map<String, MessageDigest> digests = createDigests(expected);
+				downloadToPartFile(url, partFile, digests.values());
+
+				Map<String, String> values = toHex(digests);
+				String mismatch = findMismatch(expected, values);
+				if (mismatch != null) {
+					throw restart(partFile, mismatch);
+				}
+
+				publish(partFile, downloadFile);
+				return new Checksums(values.get(SHA1), values.get(SHA256), expected != null && expected.value != null);
+			}
+			catch (FileNotFoundException e) {
+				throw e;
+			}
+			catch (IOException e) {
+				LoggerHelper.log(logger, Level.WARNING, "Attempt " + attempt + " downloading " + url + " failed: " + e.getMessage());
+			}
+		}
+
+		LoggerHelper.log(logger, Level.SEVERE, "Error downloading " + downloadFile.getName());
+		return null;
+	}
+
+	/**
+	 * Reads a final file left by an earlier download, deleting it if it does not match
+	 * the expected checksum.
+	 * @return digests of the file, or null if it has to be downloaded again
+	 * @throws IOException if the file could not be read or deleted
+	 */
+	private Checksums checkExistingFile(File downloadFile, ExpectedChecksum expected) throws IOException {
+
+		Map<String, MessageDigest> digests = createDigests(expected);
+		updateDigestsFromFile(downloadFile, downloadFile.length(), digests.values(), new byte[BUFFER_SIZE]);
+
+		Map<String, String> values = toHex(digests);
+		String mismatch = findMismatch(expected, values);
+		if (mismatch != null) {
+			LoggerHelper.log(logger, Level.WARNING, "Existing " + downloadFile + " is downloaded again, " + mismatch);
+			Files.delete(downloadFile.toPath());
+			return null;
+		}
+
+		return new Checksums(values.get(SHA1), values.get(SHA256), expected != null && expected.value != null);
+	}
+
+	/**
+	 * @return reason why the digests do not match the expected checksum, or null if they match
+	 * or nothing is expected
+	 */
+	private static String findMismatch(ExpectedChecksum expected, Map<String, String> values) {
+
+		if (expected == null || expected.value == null) return null;
+
+		String actual = values.get(expected.algorithm);
+		if (expected.value.equalsIgnoreCase(actual)) return null;
+
+		return expected.algorithm + " mismatch, expected " + expected.value + " but was " + actual;
+	}
+
+	/**
+	 * @param url
+	 * @return SHA-1 digest published next to the file, or null if there is none
+	 * @throws IOException if the checksum file could not be read
+	 */
+	public String fetchPublishedSha1(URL url) throws IOException {
+		String sha1 = fetchChecksumFile(url, ".sha1");
+		return (sha1 != null && sha1.length() == 40) ? sha1 : null;
+	}
+
+	/**
+	 * Reads the checksum published next to the file, preferring SHA-1 over MD5.
+	 * @return expected checksum, with a null value if the repository publishes none
+	 * @throws IOException if the checksum file could not be read
+	 */
+	private ExpectedChecksum fetchExpectedChecksum(URL url) throws IOException {
+
+		String sha1 = fetchChecksumFile(url, ".sha1");
+		if (sha1 != null) return new ExpectedChecksum(SHA1, sha1);
+
+		String md5 = fetchChecksumFile(url, ".md5");
+		if (md5 != null) return new ExpectedChecksum(MD5, md5);
+
+		LoggerHelper.log(logger, Level.INFO, "No checksum published for " + url);
+		return new ExpectedChecksum(null, null);
+	}
+
+	private String fetchChecksumFile(URL url, String extension) throws IOException {
+
+		URL checksumURL;
+		try {
+			checksumURL = new URL(url, url.getPath() + extension);
+		} catch (MalformedURLException e) {
+			return null;
+		}
+
+		byte[] content = new byte[MAX_CHECKSUM_FILE_SIZE];
+		int length = 0;
+
+		try (InputStream input = httpClientHandler.openStream(checksumURL)) {
+			int read;
+			while (length < content.length && (read = input.read(content, length, content.length - length)) != -1) {
+				length += read;
+			}
+		} catch (FileNotFoundException e) {
+			return null;
+		}
+
+		return parseChecksum(new String(content, 0, length, StandardCharsets.US_ASCII));
+	}
+
+	/**
+	 * Checksum files hold the hex digest, sometimes followed by the file name.
+	 * @param content
+	 * @return lower case hex digest, or null if not found
+	 */
+	static String parseChecksum(String content) {
+
+		if (content == null) return null;
+
+		Matcher matcher = CHECKSUM_PATTERN.matcher(content);
+		if (!matcher.find()) return null;
+
+		String checksum = matcher.group(1).toLowerCase();
+		return (checksum.length() == 32 || checksum.length() == 40 || checksum.length() == 64) ? checksum : null;
+	}
+
+	/**
+	 * SHA-1, SHA-256 if enabled, and the algorithm of the expected checksum, by algorithm.
+	 */
+	private Map<String, MessageDigest> createDigests(ExpectedChecksum expected) throws IOException {
+
+		Map<String, MessageDigest> digests = new HashMap<>();
+
+		try {
+			digests.put(SHA1, MessageDigest.getInstance(SHA1));
+			if (computeSha256) digests.put(SHA256, MessageDigest.getInstance(SHA256));
+			if (expected != null && expected.algorithm != null && !digests.containsKey(expected.algorithm)) {
+				digests.put(expected.algorithm, MessageDigest.getInstance(expected.algorithm));
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+
+		return digests;
+	}
+
+	private void downloadToPartFile(URL url, File partFile, Collection<MessageDigest> digests) throws IOException {
+
+		long offset = partFile.exists() ? partFile.length() : 0;
+
+		// Not compressed, so the saved bytes and the requested range match the file
+		HttpGet request = httpClientHandler.newGetRequest(url, false);
+
+		if (offset > 0) {
+			request.setHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+		}
+
+		try (CloseableHttpResponse response = httpClientHandler.execute(request)) {
+
+			int responseCode = response.getStatusLine().getStatusCode();
+			HttpEntity entity = response.getEntity();
+			long expectedLength = -1;
+
+			if (responseCode == HttpStatus.SC_NOT_FOUND) {
+				throw new FileNotFoundException(url.toString());
+			}
+			else if (responseCode == HttpStatus.SC_PARTIAL_CONTENT) {
+				String contentRange = getHeader(response, HttpHeaders.CONTENT_RANGE);
+				long[] range = parseContentRange(contentRange);
+				if (range == null || range[0] != offset) {
+					throw restart(partFile, "Unexpected range " + contentRange);
+				}
+				expectedLength = range[1];
+			}
+			else if (responseCode == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+				// Saved part may already be complete
+				long[] range = parseContentRange(getHeader(response, HttpHeaders.CONTENT_RANGE));
+				if (range != null && range[1] == offset) {
+					updateDigestsFromFile(partFile, offset, digests, new byte[BUFFER_SIZE]);
+					return;
+				}
+				throw restart(partFile, "Saved part does not match remote file");
+			}
+			else if (responseCode == HttpStatus.SC_OK) {
+				// Server ignored the range, start over
+				offset = 0;
+				expectedLength = entity == null ? -1 : entity.getContentLength();
+			}
+			else {
+				throw new IOException("Unexpected response " + responseCode);
+			}
+
+			if (entity == null) {
+				throw new IOException("Empty response");
+			}
+
+			byte[] buffer = new byte[BUFFER_SIZE];
+
+			// Bytes saved by an earlier attempt are only read to update the digests
+			if (offset > 0) {
+				updateDigestsFromFile(partFile, offset, digests, buffer);
+			}
+
+			try (InputStream input = entity.getContent();
+				 FileOutputStream output = new FileOutputStream(partFile, offset > 0)) {
+
+				int read;
+				while ((read = input.read(buffer)) != -1) {
+					output.write(buffer, 0, read);
+					for (MessageDigest digest : digests) {
+						digest.update(buffer, 0, read);
+					}
+				}
+
+				// Make sure file is on disk before it is published
+				output.getChannel().force(true);
+			}
+
+			if (expectedLength >= 0 && partFile.length() != expectedLength) {
+				throw new IOException("Incomplete download, " + partFile.length() + " of " + expectedLength + " bytes");
+			}
+		}
+	}
+
+	private static String getHeader(CloseableHttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	private void updateDigestsFromFile(File file, long length, Collection<MessageDigest> digests, byte[] buffer) throws IOException {
+
+		try (InputStream input = new FileInputStream(file)) {
+			long remaining = length;
+			int read;
+			while (remaining > 0 && (read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+				for (MessageDigest digest : digests) {
+					digest.update(buffer, 0, read);
+				}
+				remaining -= read;
+			}
+		}
+	}
+
+	private IOException restart(File partFile, String reason) throws IOException {
+		Files.deleteIfExists(partFile.toPath());
+		return new IOException(reason);
+	}
+
+	private void publish(File partFile, File downloadFile) throws IOException {
+		try {
+			Files.move(partFile.toPath(), downloadFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(partFile.toPath(), downloadFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static Map<String, String> toHex(Map<String, MessageDigest> digests) {
+		Map<String, String> values = new HashMap<>();
+		for (Map.Entry<String, MessageDigest> digest : digests.entrySet()) {
+			values.put(digest.getKey(), toHex(digest.getValue().digest()));
+		}
+		return values;
+	}
+
+	static String toHex(byte[] bytes) {
+		StringBuilder builder = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+			builder.append(Character.forDigit(b & 0xF, 16));
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * Parses "bytes start-end/total" or "bytes &#42;/total".
+	 * @param contentRange
+	 * @return start (-1 if unknown) and total length (-1 if unknown), or null if not valid
+	 */
+	static long[] parseContentRange(String contentRange) {
+
+		if (contentRange == null || !contentRange.startsWith("bytes ")) return null;
+
+		String value = contentRange.substring("bytes ".length()).trim();
+		int slash = value.indexOf('/');
+		if (slash < 0) return null;
+
+		try {
+			String range = value.substring(0, slash);
+			String total = value.substring(slash + 1);
+			long start = range.equals("*") ? -1 : Long.parseLong(range.substring(0, range.indexOf('-')));
+			long length = total.equals("*") ? -1 : Long.parseLong(total);
+			return new long[] {start, length};
+		} catch (NumberFormatException | IndexOutOfBoundsException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Digests of a downloaded file, as lower case hex.
+	 */
+	public static class Checksums {
+
+		private final String sha1;
+		private final String sha256;
+		private final boolean verified;
+
+		public Checksums(String sha1, String sha256, boolean verified) {
+			super();
+			this.sha1 = sha1;
+			this.sha256 = sha256;
+			this.verified = verified;
+		}
+
+		/**
+		 * @return SHA-1 digest, or null if not known
+		 */
+		public String getSha1() {
+			return sha1;
+		}
+
+		/**
+		 * @return SHA-256 digest, or null if not computed
+		 */
+		public String getSha256() {
+			return sha256;
+		}
+
+		/**
+		 * @return true if the file matched a checksum published by the repository
+		 */
+		public boolean isVerified() {
+			return verified;
+		}
+	}
+
+	private static class ExpectedChecksum {
+
+		private final String algorithm;
+		private final String value;
+
+		private ExpectedChecksum(String algorithm, String value) {
+			this.algorithm = algorithm;
+			this.value = value;
+		}
+	}
+
+}
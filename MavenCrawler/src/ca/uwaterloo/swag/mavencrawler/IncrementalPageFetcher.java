@@ -0,0 +1,100 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.pojo.CrawledPage;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+
+/**
+ * Page fetcher that sends conditional requests (If-None-Match/If-Modified-Since)
+ * using the validators saved from previous crawls. Unchanged pages are answered
+ * with 304 and are neither parsed nor followed.
+ *
+ * Listings are requested conditionally too, and a listing answered with 304 hides its
+ * whole subtree. Their validators are only saved once their subtree was crawled
+ * completely, see {@link SubtreeTracker}.
+ *
+ * Validators of the links of a listing are looked up together before they are
+ * requested, see {@link #prefetchValidators(Collection)}. Other pages, e.g. seeds,
+ * are looked up one at a time.
+ */
+public class IncrementalPageFetcher extends PageFetcher {
+
+	// Stands for pages looked up without saved validators
+	private static final CrawledPage NO_VALIDATORS = new CrawledPage();
+
+	private MongoDatabase mongoDatabase;
+	// Validators looked up ahead, until their page is requested
+	private final Map<String, CrawledPage> prefetchedValidators = new ConcurrentHashMap<>();
+
+	public IncrementalPageFetcher(CrawlConfig config, MongoDatabase mongoDatabase) {
+		super(config);
+		this.mongoDatabase = mongoDatabase;
+	}
+
+	public MongoDatabase getMongoDatabase() {
+		return mongoDatabase;
+	}
+
+	public void setMongoDatabase(MongoDatabase mongoDatabase) {
+		this.mongoDatabase = mongoDatabase;
+	}
+
+	/**
+	 * Looks up the saved validators of pages about to be requested, in a single query.
+	 * @param urls
+	 */
+	public void prefetchValidators(Collection<String> urls) {
+
+		List<String> conditionalURLs = new ArrayList<>(urls.size());
+		for (String url : urls) {
+			if (isConditional(url)) conditionalURLs.add(url);
+		}
+		if (conditionalURLs.isEmpty()) return;
+
+		Map<String, CrawledPage> crawledPages = CrawledPage.findByURLs(conditionalURLs, mongoDatabase);
+		for (String url : conditionalURLs) {
+			prefetchedValidators.put(url, crawledPages.getOrDefault(url, NO_VALIDATORS));
+		}
+	}
+
+	@Override
+	protected HttpUriRequest newHttpUriRequest(String url) {
+
+		HttpUriRequest request = super.newHttpUriRequest(url);
+
+		if (!isConditional(url)) return request;
+
+		CrawledPage crawledPage = prefetchedValidators.remove(url);
+		if (crawledPage == null) {
+			crawledPage = CrawledPage.findByURL(url, mongoDatabase);
+		}
+
+		if (crawledPage != null && crawledPage != NO_VALIDATORS) {
+			if (crawledPage.getEtag() != null) {
+				request.addHeader(HttpHeaders.IF_NONE_MATCH, crawledPage.getEtag());
+			}
+			if (crawledPage.getLastModified() != null) {
+				request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, crawledPage.getLastModified());
+			}
+		}
+
+		return request;
+	}
+
+	private static boolean isConditional(String url) {
+		LinkType linkType = LinkType.of(url);
+		return linkType == LinkType.DIRECTORY || linkType == LinkType.METADATA || linkType == LinkType.POM;
+	}
+
+}
@@ -0,0 +1,69 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+/**
+ * Kind of link found in a Maven repository listing, told apart by the end of the URL only.
+ */
+public enum LinkType {
+
+	/**
+	 * Subfolder, e.g. a group, artifact or version folder
+	 */
+	DIRECTORY,
+
+	/**
+	 * maven-metadata.xml
+	 */
+	METADATA,
+
+	/**
+	 * archetype-catalog.xml
+	 */
+	CATALOG,
+
+	POM,
+
+	/**
+	 * Binary artifact, e.g. jar or aar
+	 */
+	ARCHIVE,
+
+	/**
+	 * Checksum or signature of another file, e.g. ".sha1" or ".asc"
+	 */
+	CHECKSUM,
+
+	OTHER;
+
+	private static final String[] ARCHIVE_EXTENSIONS = {".jar", ".aar", ".war", ".ear", ".zip"};
+	private static final String[] CHECKSUM_EXTENSIONS = {".sha1", ".md5", ".sha256", ".sha512", ".asc"};
+
+	/**
+	 * @param url
+	 * @return type of the linked file, ignoring case
+	 */
+	public static LinkType of(String url) {
+
+		if (url.endsWith("/")) return DIRECTORY;
+		if (endsWithIgnoreCase(url, "maven-metadata.xml")) return METADATA;
+		if (endsWithIgnoreCase(url, "archetype-catalog.xml")) return CATALOG;
+		if (endsWithIgnoreCase(url, ".pom")) return POM;
+
+		for (String extension : ARCHIVE_EXTENSIONS) {
+			if (endsWithIgnoreCase(url, extension)) return ARCHIVE;
+		}
+		for (String extension : CHECKSUM_EXTENSIONS) {
+			if (endsWithIgnoreCase(url, extension)) return CHECKSUM;
+		}
+
+		return OTHER;
+	}
+
+	/**
+	 * Same as lower casing the URL first, without copying it.
+	 */
+	static boolean endsWithIgnoreCase(String url, String suffix) {
+		int start = url.length() - suffix.length();
+		return start >= 0 && url.regionMatches(true, start, suffix, 0, suffix.length());
+	}
+
+}
@@ -2,19 +2,34 @@ package ca.uwaterloo.swag.mavencrawler;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.bson.BsonBoolean;
+
+import com.mongodb.client.MongoDatabase;
+
 import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
 import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
 import ca.uwaterloo.swag.mavencrawler.helpers.StringHelper;
+import ca.uwaterloo.swag.mavencrawler.http.HttpClientHandler;
+import ca.uwaterloo.swag.mavencrawler.pojo.Checkpoint;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+import ca.uwaterloo.swag.mavencrawler.xml.VersionPomExtractor;
 
 public class MainCrawlerHandler {
 	
 	private static final String DEFAULT_CONFIG_FILE = "mavencrawler.conf"; 
 	private static final String DEFAULT_URLS_LIST = "mavenURLs.list"; 
+	private static final String INCREMENTAL_CRAWL_PROPERTY = "INCREMENTAL_CRAWL";
+	private static final String METADATA_DRIVEN_CRAWL_PROPERTY = "METADATA_DRIVEN_CRAWL";
+	private static final String INDEX_DISCOVERY_PROPERTY = "INDEX_DISCOVERY";
+	private static final String INDEX_FETCH_POMS_PROPERTY = "INDEX_FETCH_POMS";
+	private static final String PARENT_RESOLUTION_PROPERTY = "PARENT_RESOLUTION";
+	static final String VERSION_KEYS_CHECKPOINT = "VersionPom.addVersionKeys";
 
 	public static void main(String[] args) {
 		
@@ -38,7 +53,52 @@ public class MainCrawlerHandler {
 		List<String> mavenURLs = StringHelper.getStringsFromFile(urlsFile.getAbsolutePath());
 		LoggerHelper.log(logger, Level.INFO, "Crawling " + mavenURLs.size() + " maven URLs.");
 		MongoDBHandler persister = MongoDBHandler.newInstance(logger, properties);
-		MetadataCrawler.crawlMavenRoots(mavenURLs, persister.getMongoDatabase(), logger);
+		boolean incremental = Boolean.valueOf(properties.getProperty(INCREMENTAL_CRAWL_PROPERTY));
+		boolean metadataDriven = Boolean.valueOf(properties.getProperty(METADATA_DRIVEN_CRAWL_PROPERTY));
+		boolean indexDiscovery = Boolean.valueOf(properties.getProperty(INDEX_DISCOVERY_PROPERTY));
+		boolean indexFetchPoms = Boolean.valueOf(properties.getProperty(INDEX_FETCH_POMS_PROPERTY, "true"));
+		boolean parentResolution = Boolean.valueOf(properties.getProperty(PARENT_RESOLUTION_PROPERTY));
+		VersionPomExtractor versionPomExtractor = VersionPomExtractor.newInstance(logger, properties);
+		
+		try (HttpClientHandler httpClientHandler = HttpClientHandler.newInstance(logger, properties)) {
+			
+			// Repositories without a published index are still crawled
+			List<String> rootsToCrawl = mavenURLs;
+			if (indexDiscovery) {
+				NexusIndexCrawler indexCrawler = new NexusIndexCrawler(logger, persister.getMongoDatabase(), httpClientHandler);
+				indexCrawler.setVersionPomExtractor(versionPomExtractor);
+				rootsToCrawl = new ArrayList<>();
+				for (String mavenURL : mavenURLs) {
+					if (!indexCrawler.crawlIndex(mavenURL)) {
+						rootsToCrawl.add(mavenURL);
+					}
+					// Without their POMs, indexed versions have no SCM, URL, parent or dependencies
+					else if (indexFetchPoms) {
+						indexCrawler.fetchIndexedPoms(mavenURL);
+					}
+				}
+			}
+			
+			if (!rootsToCrawl.isEmpty()) {
+				MetadataCrawler.crawlMavenRoots(rootsToCrawl, persister.getMongoDatabase(), logger, incremental, metadataDriven, 
+						versionPomExtractor, httpClientHandler);
+			}
+		}
+		
+		MongoDatabase mongoDatabase = persister.getMongoDatabase();
+		VersionPom.checkIndexesInCollection(mongoDatabase.getCollection(VersionPom.VERSIONPOM_COLLECTION, VersionPom.class));
+		
+		// POMs saved before versions had a sort key. New ones always have one, so the
+		// whole collection is only scanned once.
+		if (Checkpoint.findByName(VERSION_KEYS_CHECKPOINT, mongoDatabase) == null) {
+			VersionPom.addVersionKeysInMongo(mongoDatabase, logger);
+			Checkpoint.upsertInMongo(VERSION_KEYS_CHECKPOINT, BsonBoolean.TRUE, mongoDatabase);
+		}
+		
+		// Once all parents are saved
+		if (parentResolution) {
+			ParentPomResolver.newInstance(persister.getMongoDatabase(), logger, properties).resolveAll();
+		}
 	}
 
 }
@@ -3,16 +3,19 @@ package ca.uwaterloo.swag.mavencrawler;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.net.MalformedURLException;
 import java.net.URL;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.FileHandler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -20,23 +23,45 @@ import java.util.logging.SimpleFormatter;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonSyntaxException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
 
 import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
 import ca.uwaterloo.swag.mavencrawler.db.RabbitMQHandler;
-import ca.uwaterloo.swag.mavencrawler.db.RabbitMQHandler.MessageHandler;
+import ca.uwaterloo.swag.mavencrawler.db.RabbitMQHandler.AsyncMessageHandler;
+import ca.uwaterloo.swag.mavencrawler.db.ResumableCursor;
 import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.http.HttpClientHandler;
+import ca.uwaterloo.swag.mavencrawler.pojo.Checkpoint;
 import ca.uwaterloo.swag.mavencrawler.pojo.Downloaded;
 import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
 
 public class MavenDownloader {
 
 	private static final String DEFAULT_CONFIG_FILE = "mavencrawler.conf"; 
 	private static final String DOWNLOAD_FOLDER_PROPERTY = "DOWNLOAD_FOLDER";
+	private static final String DOWNLOAD_THREADS_PROPERTY = "DOWNLOAD_THREADS";
+	private static final String DOWNLOAD_MAX_PER_HOST_PROPERTY = "DOWNLOAD_MAX_PER_HOST";
+	private static final String DOWNLOAD_BATCH_SIZE_PROPERTY = "DOWNLOAD_BATCH_SIZE";
+	private static final String DOWNLOAD_VERIFY_CHECKSUMS_PROPERTY = "DOWNLOAD_VERIFY_CHECKSUMS";
+	private static final String DOWNLOAD_SHA256_PROPERTY = "DOWNLOAD_SHA256";
+	private static final String DOWNLOAD_CONTENT_STORE_PROPERTY = "DOWNLOAD_CONTENT_STORE";
+	static final String DOWNLOAD_LAYOUT_PROPERTY = "DOWNLOAD_LAYOUT";
+	private static final String DOWNLOAD_MISSING_RETRY_DAYS_PROPERTY = "DOWNLOAD_MISSING_RETRY_DAYS";
+	public static final int DEFAULT_MISSING_RETRY_DAYS = 30;
+	private static final String DOWNLOAD_CHECKPOINT = "MavenDownloader.downloadLibraries";
 
 	private Logger logger;
 	private MongoDBHandler mongoHandler;
 	private RabbitMQHandler rabbitHandler;
 	private String downloadFolder;
+	private DownloadEngine downloadEngine;
+	private FileDownloader fileDownloader;
+	private ContentStore contentStore;
+	private DownloadLayout layout = DownloadLayout.DEFAULT_LAYOUT;
+	private int batchSize = ResumableCursor.DEFAULT_BATCH_SIZE;
+	private int missingRetryDays = DEFAULT_MISSING_RETRY_DAYS;
 
 	public MavenDownloader(Logger logger, MongoDBHandler mongoHandler, RabbitMQHandler rabbitHandler, String downloadFolder) {
 		super();
@@ -44,6 +69,7 @@ public class MavenDownloader {
 		this.mongoHandler = mongoHandler;
 		this.downloadFolder = downloadFolder;
 		this.rabbitHandler = rabbitHandler;
+		this.fileDownloader = new FileDownloader(logger);
 	}
 
 	public Logger getLogger() {
@@ -70,95 +96,331 @@ public class MavenDownloader {
 	public void setDownloadFolder(String downloadFolder) {
 		this.downloadFolder = downloadFolder;
 	}
+	public DownloadEngine getDownloadEngine() {
+		return downloadEngine;
+	}
+	public void setDownloadEngine(DownloadEngine downloadEngine) {
+		this.downloadEngine = downloadEngine;
+	}
+	public FileDownloader getFileDownloader() {
+		return fileDownloader;
+	}
+	public void setFileDownloader(FileDownloader fileDownloader) {
+		this.fileDownloader = fileDownloader;
+	}
+	public ContentStore getContentStore() {
+		return contentStore;
+	}
+	/**
+	 * @param contentStore if set, downloaded files are deduplicated by digest
+	 */
+	public void setContentStore(ContentStore contentStore) {
+		this.contentStore = contentStore;
+	}
+	public DownloadLayout getLayout() {
+		return layout;
+	}
+	public void setLayout(DownloadLayout layout) {
+		this.layout = layout;
+	}
+	public int getBatchSize() {
+		return batchSize;
+	}
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+	public int getMissingRetryDays() {
+		return missingRetryDays;
+	}
+	/**
+	 * @param missingRetryDays days before a version whose binary was not found under
+	 * a guessed packaging is tried again
+	 */
+	public void setMissingRetryDays(int missingRetryDays) {
+		this.missingRetryDays = missingRetryDays;
+	}
 
+	/**
+	 * Downloads all libraries, reading Metadata in batches. The last downloaded batch is saved
+	 * as a checkpoint, so an interrupted pass continues from there when called again.
+	 */
 	public void downloadLibraries() {
-		List<Metadata> metadataList = Metadata.findAllFromMongo(mongoHandler.getMongoDatabase());
 		
-		for (Metadata metadata : metadataList) {
-			downloadLibrariesFromMetadata(metadata);
+		MongoDatabase mongoDatabase = mongoHandler.getMongoDatabase();
+		MongoCollection<Metadata> collection = mongoDatabase.getCollection(Metadata.METADATA_COLLECTION, Metadata.class);
+		ResumableCursor<Metadata> cursor = new ResumableCursor<>(collection, batchSize, logger);
+		
+		Checkpoint checkpoint = Checkpoint.findByName(DOWNLOAD_CHECKPOINT, mongoDatabase);
+		if (checkpoint != null) {
+			LoggerHelper.log(logger, Level.INFO, "Resuming downloads after " + checkpoint.getLastId());
+			cursor.setLastId(checkpoint.getLastId());
 		}
+		
+		List<CompletableFuture<Boolean>> pending = new ArrayList<>(batchSize);
+		
+		// Batch is saved only after all its downloads are finished
+		cursor.setBatchListener(lastId -> {
+			CompletableFuture.allOf(pending.toArray(new CompletableFuture[pending.size()])).join();
+			pending.clear();
+			Checkpoint.upsertInMongo(DOWNLOAD_CHECKPOINT, lastId, mongoDatabase);
+		});
+		
+		cursor.forEach(metadata -> pending.add(downloadLibrariesFromMetadataAsync(metadata)));
+		
+		Checkpoint.deleteFromMongo(DOWNLOAD_CHECKPOINT, mongoDatabase);
 	}
 
 	public boolean downloadLibrariesFromMetadata(Metadata metadata) {
 		
-		File libDownloadFolder = new File(this.getDownloadFolder(), metadata.getGroupId() + "." + metadata.getArtifactId());
+		boolean overall_success = true;
+		Map<String, String> packagings = findPackagings(metadata);
+		Set<String> skippedVersions = findSkippedVersions(metadata, packagings);
 		
-		// Check download folder
-		if ((!libDownloadFolder.exists() && !libDownloadFolder.mkdirs()) ||
-			(libDownloadFolder.exists() && !libDownloadFolder.isDirectory())) {
-			LoggerHelper.log(logger, Level.SEVERE, "Error with download folder");
-			return false;
+		for (String version : metadata.getVersions()) {
+			if (skippedVersions.contains(version)) continue;
+			boolean success = downloadVersion(metadata, version, packagings.get(version));
+			overall_success = overall_success && success;
 		}
 		
-		boolean overall_success = true;
+		return overall_success;
+	}
+
+	/**
+	 * Downloads all versions in parallel with the download engine. 
+	 * Without an engine, versions are downloaded in the calling thread.
+	 * @param metadata
+	 * @return completes with true if all versions were downloaded
+	 */
+	public CompletableFuture<Boolean> downloadLibrariesFromMetadataAsync(Metadata metadata) {
+		
+		if (downloadEngine == null) {
+			return CompletableFuture.completedFuture(downloadLibrariesFromMetadata(metadata));
+		}
+		
+		List<CompletableFuture<Boolean>> results = new ArrayList<>(metadata.getVersions().size());
+		Map<String, String> packagings = findPackagings(metadata);
+		Set<String> skippedVersions = findSkippedVersions(metadata, packagings);
 		
 		for (String version : metadata.getVersions()) {
+			if (skippedVersions.contains(version)) continue;
 			URL url = metadata.findURLForVersion(version);
-			File downloadFile = new File(libDownloadFolder, metadata.buildJARFileNameForVersion(version));
+			String packaging = packagings.get(version);
 			
-			boolean success = false;
+			// Nothing to download, so handled here as in downloadLibrariesFromMetadata
+			if (url == null) {
+				results.add(CompletableFuture.completedFuture(downloadVersion(metadata, version, packaging)));
+				continue;
+			}
 			
-			try {
-				LoggerHelper.log(logger, Level.INFO, "Downloading " + url);
-				success = downloadLibFromURLToFile(url, downloadFile);
-			} catch (FileNotFoundException e) {
-				
-				// JAR not found, try AAR
-				try {
-					URL newURL = new URL(url, url.getPath().substring(0, url.getPath().length()-3) + "aar");
-					downloadFile = new File(libDownloadFolder, metadata.buildAARFileNameForVersion(version));
+			results.add(downloadEngine.submit(url.getHost(), () -> downloadVersion(metadata, version, packaging)));
+		}
+		
+		return CompletableFuture.allOf(results.toArray(new CompletableFuture[results.size()]))
+				.thenApply(nothing -> results.stream().allMatch(CompletableFuture::join));
+	}
 
-					LoggerHelper.log(logger, Level.INFO, "JAR not found, trying " + newURL);
-					success = downloadLibFromURLToFile(newURL, downloadFile);
-				} catch (MalformedURLException |FileNotFoundException e1) {
-					LoggerHelper.log(logger, Level.SEVERE, "Error downloading " + url);
+	/**
+	 * Versions already downloaded with a recorded digest and whose file is still there,
+	 * and versions recorded without a binary. These are skipped without requesting them again.
+	 * A version whose binary was missing under a guessed packaging is tried again once its
+	 * POM gives the packaging, or once its record expired.
+	 */
+	private Set<String> findSkippedVersions(Metadata metadata, Map<String, String> packagings) {
+		
+		Set<String> skippedVersions = new HashSet<>();
+		Date now = new Date();
+		Downloaded.findByVersions(metadata.getGroupId(), 
+				metadata.getArtifactId(), 
+				metadata.getRepository(), 
+				metadata.getVersions(), 
+				mongoHandler.getMongoDatabase())
+			.forEach((version, downloaded) -> {
+				if (downloaded.getDownloadPath() != null) {
+					if (downloaded.getSha1() != null && new File(downloaded.getDownloadPath()).exists()) {
+						skippedVersions.add(version);
+					}
 				}
-			}
+				// Expired records may not be deleted by MongoDB yet
+				else if (downloaded.getSha1() == null && (downloaded.getExpiresAt() == null || 
+						(packagings.get(version) == null && downloaded.getExpiresAt().after(now)))) {
+					skippedVersions.add(version);
+				}
+			});
+		
+		return skippedVersions;
+	}
+	
+	/**
+	 * Packagings from the crawled POMs, so the right file is requested first.
+	 */
+	private Map<String, String> findPackagings(Metadata metadata) {
+		return VersionPom.findPackagings(metadata.getGroupId(), 
+				metadata.getArtifactId(), 
+				metadata.getVersions(), 
+				mongoHandler.getMongoDatabase());
+	}
+
+	/**
+	 * @param packaging null if the POM was not crawled, then JAR and AAR are tried
+	 * @return file extensions to try in order, empty if the version has no binary
+	 */
+	static List<String> findExtensionsToTry(String packaging) {
+		
+		if (packaging == null) return Arrays.asList("jar", "aar");
+		
+		String extension = VersionPom.extensionForPackaging(packaging);
+		return extension == null ? Collections.<String>emptyList() : Arrays.asList(extension);
+	}
+
+	private File findDownloadFile(Metadata metadata, String version, String extension) {
+		return layout.fileFor(new File(this.getDownloadFolder()), 
+				metadata.getGroupId(), 
+				metadata.getArtifactId(), 
+				version, 
+				extension);
+	}
+
+	private boolean checkDownloadFolder(File folder) {
+		
+		if ((!folder.exists() && !folder.mkdirs()) ||
+			(folder.exists() && !folder.isDirectory())) {
+			LoggerHelper.log(logger, Level.SEVERE, "Error with download folder " + folder);
+			return false;
+		}
+		
+		return true;
+	}
+
+	private boolean downloadVersion(Metadata metadata, String version, String packaging) {
+		
+		List<String> extensions = findExtensionsToTry(packaging);
+		
+		if (extensions.isEmpty()) {
+			LoggerHelper.log(logger, Level.INFO, "No binary for " + metadata.getGroupId() + ":" + 
+					metadata.getArtifactId() + ":" + version + " with packaging " + packaging);
+			saveWithoutBinary(metadata, version, false);
+			return true;
+		}
+		
+		if (contentStore != null && reuseFromOtherRepository(metadata, version)) {
+			return true;
+		}
+		
+		for (String extension : extensions) {
 			
-			if (success) {
-				saveDownloaded(metadata, version, downloadFile);
+			URL url = metadata.findURLForVersion(version, extension);
+			if (url == null) {
+				LoggerHelper.log(logger, Level.WARNING, "No URL for " + metadata.getGroupId() + ":" + 
+						metadata.getArtifactId() + ":" + version + " in " + metadata.getRepository());
+				return false;
 			}
 			
-			overall_success = overall_success && success;
+			File downloadFile = findDownloadFile(metadata, version, extension);
+			if (!checkDownloadFolder(downloadFile.getParentFile())) return false;
+			
+			try {
+				LoggerHelper.log(logger, Level.INFO, "Downloading " + url);
+				FileDownloader.Checksums checksums = fileDownloader.download(url, downloadFile);
+				
+				if (checksums != null) {
+					storeContent(downloadFile, checksums);
+					saveDownloaded(metadata, version, downloadFile, checksums);
+				}
+				
+				return checksums != null;
+			} catch (FileNotFoundException e) {
+				LoggerHelper.log(logger, Level.INFO, "Not found: " + url);
+			}
 		}
 		
-		return overall_success;
+		// Remembered, so the same missing files are not requested again
+		LoggerHelper.log(logger, Level.WARNING, "No binary found for " + metadata.getGroupId() + ":" + 
+				metadata.getArtifactId() + ":" + version + ", tried " + extensions);
+		saveWithoutBinary(metadata, version, packaging == null);
+		return true;
 	}
 
-	private boolean downloadLibFromURLToFile(URL url, File downloadFile) throws FileNotFoundException {
-		boolean success = false;
+	/**
+	 * Links the copy downloaded from another repository, if this repository publishes
+	 * the same SHA-1 for it. Only the small checksum file is fetched.
+	 * @return true if a stored copy was linked
+	 */
+	private boolean reuseFromOtherRepository(Metadata metadata, String version) {
 		
-		if (downloadFile.exists()) {
-			success = true;
-		}
-		else {
+		List<Downloaded> others = Downloaded.findInOtherRepositories(metadata.getGroupId(), 
+				metadata.getArtifactId(), 
+				metadata.getRepository(), 
+				version, 
+				mongoHandler.getMongoDatabase());
+		
+		for (Downloaded other : others) {
+			
+			if (other.getDownloadPath() == null || !contentStore.contains(other.getSha1())) continue;
+			
+			// Same extension (JAR or AAR) as the stored copy
+			String fileName = new File(other.getDownloadPath()).getName();
+			String extension = fileName.substring(fileName.lastIndexOf('.') + 1);
+			
 			try {
-				ReadableByteChannel rbc = Channels.newChannel(url.openStream());
-				FileOutputStream fos = new FileOutputStream(downloadFile);
-		        fos.getChannel().transferFrom(rbc, 0, Long.MAX_VALUE);
-		        fos.close();
-		        rbc.close();
-		        success = true;
-			} 
-			catch (FileNotFoundException e) {
-				throw e;
-			}
-			catch (IOException e) {
-				LoggerHelper.log(logger, Level.SEVERE, "Error downloading " + downloadFile.getName());
+				URL otherURL = metadata.findURLForVersion(version, extension);
+				if (otherURL == null) continue;
+				if (!other.getSha1().equals(fileDownloader.fetchPublishedSha1(otherURL))) continue;
+				
+				File downloadFile = findDownloadFile(metadata, version, extension);
+				if (!contentStore.link(other.getSha1(), downloadFile)) continue;
+				
+				LoggerHelper.log(logger, Level.INFO, "Reusing copy from " + other.getRepository() + " for " + otherURL);
+				saveDownloaded(metadata, version, downloadFile, 
+						new FileDownloader.Checksums(other.getSha1(), other.getSha256(), true));
+				return true;
+			} catch (IOException e) {
+				LoggerHelper.log(logger, Level.WARNING, "Could not reuse " + other.getDownloadPath() + ": " + e.getMessage());
 			}
-			
 		}
 		
-		return success;
+		return false;
 	}
 
-	private void saveDownloaded(Metadata metadata, String version, File downloadFile) {
+	private void storeContent(File downloadFile, FileDownloader.Checksums checksums) {
+		
+		if (contentStore == null || checksums.getSha1() == null) return;
+		
+		try {
+			contentStore.store(downloadFile, checksums.getSha1());
+		} catch (IOException e) {
+			LoggerHelper.logError(logger, e, "Could not store " + downloadFile + " by digest");
+		}
+	}
+
+	private void saveDownloaded(Metadata metadata, String version, File downloadFile, FileDownloader.Checksums checksums) {
 		Downloaded downloaded = new Downloaded(metadata.getGroupId(), 
 											  metadata.getArtifactId(), 
 											  metadata.getRepository(), 
 											  version, 
 											  new Date(), 
 											  downloadFile.getAbsolutePath());
+		
+		// Null digests are not saved, keeping the ones recorded when the file was downloaded
+		downloaded.setSha1(checksums.getSha1());
+		downloaded.setSha256(checksums.getSha256());
+		Downloaded.upsertInMongo(downloaded, mongoHandler.getMongoDatabase(), logger);
+	}
+
+	/**
+	 * Saved without a download path, so the version is not enqueued again.
+	 * @param packagingGuessed if true, the record expires so the version is tried again later
+	 */
+	private void saveWithoutBinary(Metadata metadata, String version, boolean packagingGuessed) {
+		Date now = new Date();
+		Downloaded downloaded = new Downloaded(metadata.getGroupId(), 
+											  metadata.getArtifactId(), 
+											  metadata.getRepository(), 
+											  version, 
+											  now, 
+											  null);
+		if (packagingGuessed) {
+			downloaded.setExpiresAt(new Date(now.getTime() + TimeUnit.DAYS.toMillis(missingRetryDays)));
+		}
 		Downloaded.upsertInMongo(downloaded, mongoHandler.getMongoDatabase(), logger);
 	}
 
@@ -166,10 +428,10 @@ public class MavenDownloader {
 		
 		Gson gson = new Gson();
 		
-		MessageHandler messageHandler = new MessageHandler() {
+		AsyncMessageHandler messageHandler = new AsyncMessageHandler() {
 			
 			@Override
-			public boolean handleMessage(String message) {
+			public CompletableFuture<Boolean> handleMessage(String message) {
 				
 				Downloaded received;
 				try {
@@ -177,7 +439,7 @@ public class MavenDownloader {
 				}
 				catch (JsonSyntaxException e) {
 					// Ignore any JSON errors
-					return true;
+					return CompletableFuture.completedFuture(true);
 				}
 				
 				Metadata toDownload = new Metadata();
@@ -186,9 +448,7 @@ public class MavenDownloader {
 				toDownload.setRepository(received.getRepository());
 				toDownload.setVersions(Arrays.asList(received.getVersion()));
 				
-				boolean success = downloadLibrariesFromMetadata(toDownload);
-				
-				return success;
+				return downloadLibrariesFromMetadataAsync(toDownload);
 			}
 		};
 
@@ -217,7 +477,29 @@ public class MavenDownloader {
 		MongoDBHandler persister = MongoDBHandler.newInstance(logger, properties);
 		RabbitMQHandler rabbitHandler = RabbitMQHandler.newInstance(logger, properties);
 		
+		int threads = Integer.valueOf(properties.getProperty(DOWNLOAD_THREADS_PROPERTY, 
+				String.valueOf(DownloadEngine.DEFAULT_THREADS)));
+		int maxPerHost = Integer.valueOf(properties.getProperty(DOWNLOAD_MAX_PER_HOST_PROPERTY, 
+				String.valueOf(DownloadEngine.DEFAULT_MAX_PER_HOST)));
+		
+		HttpClientHandler httpClientHandler = HttpClientHandler.newInstance(logger, properties);
+		
 		MavenDownloader downloader = new MavenDownloader(logger, persister, rabbitHandler, properties.getProperty(DOWNLOAD_FOLDER_PROPERTY));
+		downloader.setFileDownloader(new FileDownloader(logger, httpClientHandler));
+		downloader.setDownloadEngine(new DownloadEngine(threads, maxPerHost, logger));
+		downloader.setBatchSize(Integer.valueOf(properties.getProperty(DOWNLOAD_BATCH_SIZE_PROPERTY, 
+				String.valueOf(ResumableCursor.DEFAULT_BATCH_SIZE))));
+		downloader.getFileDownloader().setVerifyChecksums(Boolean.valueOf(
+				properties.getProperty(DOWNLOAD_VERIFY_CHECKSUMS_PROPERTY, "true")));
+		downloader.getFileDownloader().setComputeSha256(Boolean.valueOf(
+				properties.getProperty(DOWNLOAD_SHA256_PROPERTY, "false")));
+		downloader.setMissingRetryDays(Integer.valueOf(properties.getProperty(DOWNLOAD_MISSING_RETRY_DAYS_PROPERTY, 
+				String.valueOf(DEFAULT_MISSING_RETRY_DAYS))));
+		downloader.setLayout(DownloadLayout.fromName(properties.getProperty(DOWNLOAD_LAYOUT_PROPERTY)));
+		if (Boolean.valueOf(properties.getProperty(DOWNLOAD_CONTENT_STORE_PROPERTY, "false"))) {
+			downloader.setContentStore(new ContentStore(
+					new File(downloader.getDownloadFolder(), ContentStore.DEFAULT_FOLDER), logger));
+		}
 		downloader.listenMessages();
 	}
 
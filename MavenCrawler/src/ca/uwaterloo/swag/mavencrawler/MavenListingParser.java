@@ -0,0 +1,205 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.parser.HtmlParseData;
+import edu.uci.ics.crawler4j.parser.HtmlParser;
+import edu.uci.ics.crawler4j.url.TLDList;
+import edu.uci.ics.crawler4j.url.URLCanonicalizer;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+/**
+ * Replaces crawler4j's Tika parser for the directory listings served by Maven repositories
+ * (Apache, Nexus, Artifactory...). The raw bytes are scanned for the href of each
+ * {@code <a>} tag, without building a DOM or decoding the whole page, and only links
+ * to children of the listed folder are kept. Page text, title and meta tags are not extracted.
+ */
+public class MavenListingParser implements HtmlParser {
+
+	private final TLDList tldList;
+	private final Set<LinkType> followedTypes;
+
+	/**
+	 * @param tldList same list given to the crawl controller
+	 * @param followedTypes links of other types are dropped while parsing
+	 */
+	public MavenListingParser(TLDList tldList, Set<LinkType> followedTypes) {
+		super();
+		this.tldList = tldList;
+		this.followedTypes = EnumSet.copyOf(followedTypes);
+	}
+
+	public Set<LinkType> getFollowedTypes() {
+		return followedTypes;
+	}
+
+	@Override
+	public HtmlParseData parse(Page page, String contextURL) {
+
+		Set<WebURL> outgoingUrls = new HashSet<>();
+
+		extractLinks(page.getContentData(), contextURL, (url, type) -> {
+			if (!followedTypes.contains(type)) return;
+
+			WebURL webURL = new WebURL();
+			webURL.setTldList(tldList);
+			webURL.setURL(url);
+			webURL.setTag("a");
+			outgoingUrls.add(webURL);
+		});
+
+		HtmlParseData parseData = new HtmlParseData();
+		parseData.setText("");
+		parseData.setMetaTags(new HashMap<>());
+		parseData.setOutgoingUrls(outgoingUrls);
+
+		return parseData;
+	}
+
+	/**
+	 * Finds the links to files and subfolders of a listing, in page order.
+	 * Parent, sorting and external links are skipped.
+	 * @param content raw page
+	 * @param contextURL URL of the listing
+	 * @param linkConsumer receives each absolute URL with its type
+	 */
+	public static void extractLinks(byte[] content, String contextURL, BiConsumer<String, LinkType> linkConsumer) {
+
+		if (content == null) return;
+
+		String baseURL = baseURL(contextURL);
+		int length = content.length;
+		int i = 0;
+
+		while (i < length) {
+
+			// Next "<a " tag
+			if (content[i++] != '<' || i + 1 >= length ||
+					(content[i] | 0x20) != 'a' || !isSpace(content[i + 1])) {
+				continue;
+			}
+			i++;
+
+			// Attributes until the end of the tag
+			while (i < length) {
+				while (i < length && isSpace(content[i])) i++;
+				if (i >= length || content[i] == '>') break;
+
+				int nameStart = i;
+				while (i < length && content[i] != '=' && content[i] != '>' && !isSpace(content[i])) i++;
+				boolean isHref = isHref(content, nameStart, i);
+
+				while (i < length && isSpace(content[i])) i++;
+				if (i >= length || content[i] != '=') continue;
+				i++;
+				while (i < length && isSpace(content[i])) i++;
+				if (i >= length) break;
+
+				int valueStart;
+				int valueEnd;
+				byte quote = content[i];
+				if (quote == '"' || quote == '\'') {
+					valueStart = ++i;
+					while (i < length && content[i] != quote) i++;
+					valueEnd = i++;
+				}
+				else {
+					valueStart = i;
+					while (i < length && content[i] != '>' && !isSpace(content[i])) i++;
+					valueEnd = i;
+				}
+
+				if (isHref) {
+					String href = new String(content, valueStart, Math.min(valueEnd, length) - valueStart,
+							StandardCharsets.UTF_8).trim();
+					String url = resolve(href, baseURL, contextURL);
+					if (url != null) {
+						linkConsumer.accept(url, LinkType.of(url));
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return folder of the listing, ending with "/"
+	 */
+	static String baseURL(String contextURL) {
+
+		int end = contextURL.length();
+		int query = contextURL.indexOf('?');
+		if (query >= 0) end = query;
+		int fragment = contextURL.indexOf('#');
+		if (fragment >= 0 && fragment < end) end = fragment;
+
+		return contextURL.substring(0, contextURL.lastIndexOf('/', end - 1) + 1);
+	}
+
+	/**
+	 * Plain relative names are appended to the folder, as they already are in canonical form.
+	 * Anything else goes through crawler4j's canonicalizer.
+	 * @return absolute URL of a child of the folder, or null
+	 */
+	static String resolve(String href, String baseURL, String contextURL) {
+
+		if (href.isEmpty() || href.charAt(0) == '?' || href.charAt(0) == '#') return null;
+
+		String url = isPlainName(href) ? baseURL + href : URLCanonicalizer.getCanonicalURL(href, contextURL);
+
+		if (url == null || url.length() <= baseURL.length() || !url.startsWith(baseURL)) return null;
+
+		return url;
+	}
+
+	/**
+	 * Names like "log4j/", "1.2.16/" or "log4j-1.2.16.pom". A leading ":" is kept,
+	 * as JCenter adds it to its folder names.
+	 */
+	private static boolean isPlainName(String href) {
+
+		if (href.charAt(0) == '.' || href.charAt(0) == '/') return false;
+
+		for (int i = 0; i < href.length(); i++) {
+			char c = href.charAt(i);
+
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) continue;
+
+			switch (c) {
+			case '-': case '_': case '.': case '~': case '+': case '!': case '$': case '\'':
+			case '(': case ')': case '*': case ',': case ';': case '=': case '@':
+				continue;
+			case '/':
+				// No empty, "." or ".." segments
+				if (i + 1 < href.length() && (href.charAt(i + 1) == '/' || href.charAt(i + 1) == '.')) return false;
+				continue;
+			case ':':
+				if (i == 0) continue;
+				return false;
+			default:
+				// Scheme, query, escapes or entities
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isHref(byte[] content, int start, int end) {
+		return end - start == 4 &&
+				(content[start] | 0x20) == 'h' &&
+				(content[start + 1] | 0x20) == 'r' &&
+				(content[start + 2] | 0x20) == 'e' &&
+				(content[start + 3] | 0x20) == 'f';
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+	}
+
+}
@@ -1,45 +1,73 @@
 package ca.uwaterloo.swag.mavencrawler;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Pattern;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLStreamException;
 
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 import org.xml.sax.SAXException;
 
 import com.mongodb.client.MongoDatabase;
 
+import ca.uwaterloo.swag.mavencrawler.db.CrawlResultsWriter;
 import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.http.HttpClientHandler;
+import ca.uwaterloo.swag.mavencrawler.pojo.CrawledPage;
 import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import ca.uwaterloo.swag.mavencrawler.pojo.Repository;
 import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
 import ca.uwaterloo.swag.mavencrawler.xml.MavenMetadataHandler;
-import ca.uwaterloo.swag.mavencrawler.xml.VersionPomHandler;
+import ca.uwaterloo.swag.mavencrawler.xml.SAXParserPool;
+import ca.uwaterloo.swag.mavencrawler.xml.VersionPomExtractor;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.crawler.CrawlController;
 import edu.uci.ics.crawler4j.crawler.Page;
 import edu.uci.ics.crawler4j.crawler.WebCrawler;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.parser.HtmlParseData;
+import edu.uci.ics.crawler4j.parser.Parser;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.url.TLDList;
 import edu.uci.ics.crawler4j.url.WebURL;
 
 public class MetadataCrawler extends WebCrawler {
 
-    private final static Pattern FILTERS = Pattern.compile(".*(\\.(md5|sha1|asc|jar|aar))$");
+    // Checksums, binaries and the archetype catalog are not crawled
+    final static Set<LinkType> FOLLOWED_LINKS = 
+    		EnumSet.of(LinkType.DIRECTORY, LinkType.METADATA, LinkType.POM, LinkType.OTHER);
 
 	private Logger logger;
 	private MongoDatabase mongoDatabase;
 	private List<String> seedURLs;
+	private boolean incrementalCrawl = false;
+	private CrawlResultsWriter resultsWriter;
+	private HttpClientHandler httpClientHandler;
+	private boolean metadataDrivenCrawl = false;
+	private VersionPomExtractor versionPomExtractor = new VersionPomExtractor();
+	private SubtreeTracker subtreeTracker = new SubtreeTracker();
+	private DeferredFolders deferredFolders = new DeferredFolders();
+	
+	// Listing whose links are being checked, and its maven-metadata.xml if any
+	private String lastListingURL;
+	private String lastListingMetadataURL;
+	private String lastPrefetchedURL;
 	
 	public MetadataCrawler(Logger logger, MongoDatabase mongoDatabase, List<String> seedURLs) {
 		super();
@@ -72,15 +100,108 @@ public class MetadataCrawler extends WebCrawler {
 		this.seedURLs = seedURLs;
 	}
 
+	public boolean isIncrementalCrawl() {
+		return incrementalCrawl;
+	}
+
+	public void setIncrementalCrawl(boolean incrementalCrawl) {
+		this.incrementalCrawl = incrementalCrawl;
+	}
+
+	public CrawlResultsWriter getResultsWriter() {
+		return resultsWriter;
+	}
+
+	/**
+	 * Results are handed to the writer to be saved in batches. 
+	 * If no writer is set, results are saved right away.
+	 * @param resultsWriter
+	 */
+	public void setResultsWriter(CrawlResultsWriter resultsWriter) {
+		this.resultsWriter = resultsWriter;
+	}
+
+	public HttpClientHandler getHttpClientHandler() {
+		return httpClientHandler;
+	}
+
+	/**
+	 * Client used when a page has to be fetched again, e.g. if its content was truncated.
+	 * If no client is set, the page is fetched without pooling or timeouts.
+	 * @param httpClientHandler
+	 */
+	public void setHttpClientHandler(HttpClientHandler httpClientHandler) {
+		this.httpClientHandler = httpClientHandler;
+	}
+
+	public boolean isMetadataDrivenCrawl() {
+		return metadataDrivenCrawl;
+	}
+
+	/**
+	 * If TRUE, version folders next to an artifact's maven-metadata.xml are not crawled. 
+	 * Instead, POMs of versions listed in the metadata and not saved yet are fetched directly.
+	 * Folders next to metadata without versions, e.g. a group's, are crawled once it is parsed.
+	 * @param metadataDrivenCrawl
+	 */
+	public void setMetadataDrivenCrawl(boolean metadataDrivenCrawl) {
+		this.metadataDrivenCrawl = metadataDrivenCrawl;
+	}
+
+	public VersionPomExtractor getVersionPomExtractor() {
+		return versionPomExtractor;
+	}
+
+	/**
+	 * Extractor of the values saved for each POM.
+	 * @param versionPomExtractor
+	 */
+	public void setVersionPomExtractor(VersionPomExtractor versionPomExtractor) {
+		this.versionPomExtractor = versionPomExtractor;
+	}
+
+	public SubtreeTracker getSubtreeTracker() {
+		return subtreeTracker;
+	}
+
+	/**
+	 * In incremental crawls, pages are only validated once the pages below them 
+	 * are complete. The tracker must be shared by all crawlers of the same root.
+	 * @param subtreeTracker
+	 */
+	public void setSubtreeTracker(SubtreeTracker subtreeTracker) {
+		this.subtreeTracker = subtreeTracker;
+	}
+
+	public DeferredFolders getDeferredFolders() {
+		return deferredFolders;
+	}
+
+	/**
+	 * In metadata-driven crawls, version folders wait for the metadata next to them, 
+	 * which may be crawled by another crawler. Must be shared by all crawlers of the same root.
+	 * @param deferredFolders
+	 */
+	public void setDeferredFolders(DeferredFolders deferredFolders) {
+		this.deferredFolders = deferredFolders;
+	}
+
 	@Override
 	protected WebURL handleUrlBeforeProcess(WebURL curURL) {
 		
 		WebURL handledURL = new WebURL();
-		handledURL.setURL(curURL.getURL().replaceAll("/:", "/"));
+		handledURL.setURL(handleURL(curURL.getURL()));
 		
 		return handledURL;
 	}
 	
+	/**
+	 * @return URL as requested by the crawler
+	 */
+	private static String handleURL(String url) {
+		return url.replaceAll("/:", "/");
+	}
+	
 	@Override
 	public boolean shouldVisit(Page referringPage, WebURL url) {
 		
@@ -89,13 +210,111 @@ public class MetadataCrawler extends WebCrawler {
 			return false;
 		}
 		
-		// Do not visit catalog
-		if (url.getURL().toLowerCase().endsWith("archetype-catalog.xml")) {
+		// Avoid visiting the catalog and unwanted files
+		if (!FOLLOWED_LINKS.contains(LinkType.of(url.getURL()))) {
 			return false;
 		}
 		
-		// Avoid visiting unwanted files
-		return !FILTERS.matcher(url.getURL().toLowerCase()).matches();
+		// POMs are reached from the artifact's metadata instead, the folder is only crawled if it is no artifact's
+		if (metadataDrivenCrawl && referringPage != null && 
+				isVersionFolder(referringPage.getWebURL().getURL(), url.getURL())) {
+			String metadataURL = findListingMetadata(referringPage);
+			if (metadataURL != null) {
+				deferredFolders.defer(metadataURL, handleURL(url.getURL()));
+				return false;
+			}
+		}
+		
+		// Links are checked before they are scheduled, so the listing is only complete after them
+		if (incrementalCrawl && referringPage != null) {
+			prefetchValidators(referringPage);
+			subtreeTracker.addChild(referringPage.getWebURL().getURL(), handleURL(url.getURL()));
+		}
+		
+		return true;
+	}
+
+	/**
+	 * Checks if a link in a listing points to a direct subfolder named like a version, 
+	 * i.e. starting with a digit. Artifact folders may start with a digit too, so only 
+	 * the metadata next to the folder tells whether it really is a version.
+	 * @param listingURL
+	 * @param url
+	 * @return TRUE if the link looks like a version folder of the listed artifact.
+	 */
+	static boolean isVersionFolder(String listingURL, String url) {
+		
+		String base = listingURL.endsWith("/") ? listingURL : listingURL + "/";
+		if (!url.startsWith(base) || url.length() == base.length()) return false;
+		
+		String folder = url.substring(base.length());
+		if (folder.endsWith("/")) {
+			folder = folder.substring(0, folder.length() - 1);
+		}
+		
+		return !folder.isEmpty() && folder.indexOf('/') < 0 && Character.isDigit(folder.charAt(0));
+	}
+
+	/**
+	 * All links of a listing are checked in a row, so the result is kept for the last listing only.
+	 * @return URL of the listing's maven-metadata.xml, or null if it has none
+	 */
+	private String findListingMetadata(Page listing) {
+		
+		String listingURL = listing.getWebURL().getURL();
+		if (listingURL.equals(lastListingURL)) return lastListingMetadataURL;
+		
+		String metadataURL = null;
+		for (String link : findLinks(listing)) {
+			// Only metadata below the listing is crawled, so only it releases the folders
+			if (LinkType.of(link) == LinkType.METADATA && link.startsWith(listingURL)) {
+				metadataURL = handleURL(link);
+				break;
+			}
+		}
+		
+		lastListingURL = listingURL;
+		lastListingMetadataURL = metadataURL;
+		return metadataURL;
+	}
+
+	/**
+	 * Looks up the validators of all links of a listing at once, the first time one of them is checked.
+	 */
+	private void prefetchValidators(Page listing) {
+		
+		String listingURL = listing.getWebURL().getURL();
+		if (listingURL.equals(lastPrefetchedURL)) return;
+		lastPrefetchedURL = listingURL;
+		
+		List<String> links = new ArrayList<>();
+		for (String link : findLinks(listing)) {
+			links.add(handleURL(link));
+		}
+		prefetchValidators(links);
+	}
+
+	private void prefetchValidators(List<String> urls) {
+		
+		CrawlController controller = getMyController();
+		if (controller != null && controller.getPageFetcher() instanceof IncrementalPageFetcher) {
+			((IncrementalPageFetcher) controller.getPageFetcher()).prefetchValidators(urls);
+		}
+	}
+
+	private static List<String> findLinks(Page listing) {
+		
+		List<String> links = new ArrayList<>();
+		if (listing.getParseData() instanceof HtmlParseData) {
+			Set<WebURL> outgoingUrls = ((HtmlParseData) listing.getParseData()).getOutgoingUrls();
+			if (outgoingUrls != null) {
+				for (WebURL link : outgoingUrls) {
+					if (link.getURL() != null) links.add(link.getURL());
+				}
+			}
+		}
+		
+		return links;
 	}
 
 	@Override
@@ -103,25 +322,119 @@ public class MetadataCrawler extends WebCrawler {
 		
 		String pageUrl = page.getWebURL().getURL() != null ? page.getWebURL().getURL() : "";
 		
-		if (pageUrl.endsWith("maven-metadata.xml")) {
-			handleMetadata(pageUrl);
+		boolean complete = true;
+		
+		switch (LinkType.of(pageUrl)) {
+		case METADATA:
+			complete = handleMetadata(page, pageUrl);
+			break;
+		case POM:
+			complete = handlePom(page, pageUrl);
+			break;
+		default:
+			break;
+		}
+		
+		// Validators are only saved once the pages below are complete too, so a 304 never hides any of them
+		if (incrementalCrawl) {
+			pageCrawled(pageUrl, complete, findValidators(pageUrl, page.getFetchResponseHeaders()));
+		}
+	}
+
+	@Override
+	protected void onUnexpectedStatusCode(String urlStr, int statusCode, String contentType, String description) {
+		
+		// Unchanged since last crawl, skip page and its subtree
+		if (statusCode == HttpStatus.SC_NOT_MODIFIED) {
+			LoggerHelper.log(logger, Level.FINE, "Not modified: " + urlStr);
+			scheduleDeferredFolders(urlStr);
+			if (incrementalCrawl) pageCrawled(urlStr, true, null);
+			return;
+		}
+		
+		scheduleDeferredFolders(urlStr);
+		if (incrementalCrawl) pageCrawled(urlStr, false, null);
+		super.onUnexpectedStatusCode(urlStr, statusCode, contentType, description);
+	}
+
+	@Override
+	protected void onContentFetchError(WebURL webUrl) {
+		scheduleDeferredFolders(webUrl.getURL());
+		if (incrementalCrawl) pageCrawled(webUrl.getURL(), false, null);
+		super.onContentFetchError(webUrl);
+	}
+
+	@Override
+	protected void onParseError(WebURL webUrl) {
+		scheduleDeferredFolders(webUrl.getURL());
+		if (incrementalCrawl) pageCrawled(webUrl.getURL(), false, null);
+		super.onParseError(webUrl);
+	}
+
+	/**
+	 * Crawls the folders held back for a maven-metadata.xml, when it is not known to be an artifact's.
+	 */
+	private void scheduleDeferredFolders(String pageUrl) {
+		if (metadataDrivenCrawl && LinkType.of(pageUrl) == LinkType.METADATA) {
+			schedulePages(pageUrl, deferredFolders.release(handleURL(pageUrl)), "folders");
+		}
+	}
+
+	/**
+	 * Saves the validators of the pages now complete, the page's and maybe those of the listings above it.
+	 */
+	private void pageCrawled(String pageUrl, boolean complete, CrawledPage validators) {
+		
+		for (CrawledPage crawledPage : subtreeTracker.pageCrawled(pageUrl, complete, validators)) {
+			if (resultsWriter != null) {
+				resultsWriter.saveCrawledPage(crawledPage);
+			}
+			else {
+				CrawledPage.upsertInMongo(crawledPage, mongoDatabase);
+			}
 		}
-		else if (pageUrl.endsWith(".pom")) {
-			handlePom(pageUrl);
+	}
+
+	/**
+	 * @return validators of the page, or null if it has none
+	 */
+	private static CrawledPage findValidators(String pageUrl, Header[] headers) {
+		
+		if (headers == null) return null;
+		
+		String etag = null;
+		String lastModified = null;
+		
+		for (Header header : headers) {
+			if (HttpHeaders.ETAG.equalsIgnoreCase(header.getName())) {
+				etag = header.getValue();
+			}
+			else if (HttpHeaders.LAST_MODIFIED.equalsIgnoreCase(header.getName())) {
+				lastModified = header.getValue();
+			}
 		}
 		
+		// Nothing to validate against in the next crawl
+		if (etag == null && lastModified == null) return null;
+		
+		return new CrawledPage(pageUrl, etag, lastModified, new Date());
 	}
 
-	private void handleMetadata(String pageUrl) {
+	/**
+	 * For metadata-driven crawls, the POMs and folders scheduled are pages below the metadata.
+	 * @return TRUE if the metadata was saved
+	 */
+	private boolean handleMetadata(Page page, String pageUrl) {
 		MavenMetadataHandler metadataHandler = new MavenMetadataHandler();
+		boolean parsed = false;
 		
 		try {
-			URL url = new URL(pageUrl);
-			SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
-			
 			LoggerHelper.log(logger, Level.INFO, "Parsing METADATA " + pageUrl);
-			parser.parse(url.openStream(), metadataHandler);
+			try (InputStream content = openContent(page, pageUrl)) {
+				SAXParserPool.parse(content, metadataHandler);
+			}
 			LoggerHelper.log(logger, Level.INFO, "Parsed " + metadataHandler.getMetadata());
+			parsed = true;
 			
 		} catch (MalformedURLException e) {
 			LoggerHelper.logError(logger, e, "Bad URL: " + pageUrl);
@@ -130,31 +443,140 @@ public class MetadataCrawler extends WebCrawler {
 		}
 		finally {
 			metadataHandler.getMetadata().setRepository(getSeedURL(pageUrl));
-			Metadata.upsertInMongo(metadataHandler.getMetadata(), mongoDatabase, logger);
+			
+			if (resultsWriter != null) {
+				resultsWriter.saveMetadata(metadataHandler.getMetadata());
+			}
+			else {
+				Metadata.upsertInMongo(metadataHandler.getMetadata(), mongoDatabase, logger);
+			}
+		}
+		
+		// Only an artifact's metadata lists versions, folders next to any other are crawled after all
+		List<String> versions = metadataHandler.getMetadata().getVersions();
+		if (parsed && versions != null && !versions.isEmpty()) {
+			deferredFolders.release(handleURL(pageUrl));
 		}
+		else {
+			scheduleDeferredFolders(pageUrl);
+		}
+		
+		if (metadataDrivenCrawl && parsed) {
+			schedulePages(pageUrl, findNewPomURLs(metadataHandler.getMetadata()), "POMs");
+		}
+		
+		return parsed;
 	}
 
-	private void handlePom(String pageUrl) {
-		VersionPomHandler versionPomHandler = new VersionPomHandler();
+	/**
+	 * Builds the POM URLs of versions listed in the metadata whose POM is not saved yet.
+	 * @param metadata
+	 * @return POM URLs, in the metadata's version order
+	 */
+	List<String> findNewPomURLs(Metadata metadata) {
 		
-		try {
-			URL url = new URL(pageUrl);
-			SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+		List<String> pomURLs = new ArrayList<>();
+		if (metadata.getGroupId() == null || metadata.getArtifactId() == null || 
+				metadata.getVersions() == null || metadata.getVersions().isEmpty()) {
+			return pomURLs;
+		}
+		
+		Set<String> savedVersions = VersionPom.findPackagings(
+				metadata.getGroupId(), 
+				metadata.getArtifactId(), 
+				metadata.getVersions(), 
+				mongoDatabase).keySet();
+		
+		for (String version : metadata.getVersions()) {
+			if (savedVersions.contains(version)) continue;
 			
+			URL pomURL = metadata.findPomURLForVersion(version);
+			if (pomURL != null) {
+				pomURLs.add(pomURL.toString());
+			}
+		}
+		
+		return pomURLs;
+	}
+
+	/**
+	 * @param metadataURL
+	 * @param urls POMs or folders reached from the metadata
+	 * @param kind what is scheduled, for logging
+	 */
+	private void schedulePages(String metadataURL, List<String> urls, String kind) {
+		
+		if (urls.isEmpty()) return;
+		
+		// The metadata stays incomplete until the pages below it are complete
+		if (incrementalCrawl) {
+			for (String url : urls) {
+				subtreeTracker.addChild(metadataURL, url);
+			}
+			prefetchValidators(urls);
+		}
+		
+		CrawlController controller = getMyController();
+		if (controller == null) return;
+		
+		LoggerHelper.log(logger, Level.FINE, "Scheduling " + urls.size() + " " + kind);
+		for (String url : urls) {
+			controller.addSeed(url);
+		}
+	}
+
+	/**
+	 * @return TRUE if the POM was parsed
+	 */
+	private boolean handlePom(Page page, String pageUrl) {
+		VersionPom versionPom = new VersionPom();
+		boolean parsed = false;
+		
+		try {
 			String pomName = pageUrl.substring(pageUrl.lastIndexOf("/"));
 			LoggerHelper.log(logger, Level.INFO, "Parsing POM " + pomName);
-			parser.parse(url.openStream(), versionPomHandler);
-			LoggerHelper.log(logger, Level.INFO, "Parsed " + versionPomHandler.getVersionPom());
+			try (InputStream content = openContent(page, pageUrl)) {
+				versionPomExtractor.extract(content, versionPom);
+			}
+			LoggerHelper.log(logger, Level.INFO, "Parsed " + versionPom);
+			parsed = true;
 			
 		} catch (MalformedURLException e) {
 			LoggerHelper.logError(logger, e, "Bad URL: " + pageUrl);
-		} catch (ParserConfigurationException | SAXException | IOException e) {
-			LoggerHelper.logError(logger, e, "Error parsing maven-metadata.xml.");
+		} catch (XMLStreamException | IOException e) {
+			LoggerHelper.logError(logger, e, "Error parsing POM.");
 		}
 		finally {
-			versionPomHandler.getVersionPom().setRepository(getSeedURL(pageUrl));
-			VersionPom.upsertInMongo(Arrays.asList(versionPomHandler.getVersionPom()), mongoDatabase, logger);
+			versionPom.setRepository(getSeedURL(pageUrl));
+			
+			if (resultsWriter != null) {
+				resultsWriter.saveVersionPom(versionPom);
+			}
+			else {
+				VersionPom.upsertInMongo(Arrays.asList(versionPom), mongoDatabase, logger);
+			}
 		}
+		
+		return parsed;
+	}
+	
+	/**
+	 * Opens the content already downloaded by the crawler, only fetching 
+	 * the page again if the content is missing or was truncated.
+	 */
+	private InputStream openContent(Page page, String pageUrl) throws IOException {
+		
+		byte[] content = page.getContentData();
+		
+		if (content != null && content.length > 0 && !page.isTruncated()) {
+			return new ByteArrayInputStream(content);
+		}
+		
+		if (httpClientHandler != null) {
+			return httpClientHandler.openStream(new URL(pageUrl));
+		}
+		
+		return new URL(pageUrl).openStream();
 	}
 	
 	private String getSeedURL(String pageURL) {
@@ -171,6 +593,63 @@ public class MetadataCrawler extends WebCrawler {
 	}
 
 	public static void crawlMavenRoots(List<String> mavenRoots, MongoDatabase mongoDatabase, Logger logger) {
+		crawlMavenRoots(mavenRoots, mongoDatabase, logger, false);
+	}
+
+	/**
+	 * Crawls all Maven roots with default HTTP settings, saving found metadata and POMs.
+	 * @param mavenRoots
+	 * @param mongoDatabase
+	 * @param logger
+	 * @param incremental if TRUE, listings, maven-metadata.xml and POMs not modified since the last crawl are skipped, with all pages below them.
+	 */
+	public static void crawlMavenRoots(List<String> mavenRoots, MongoDatabase mongoDatabase, Logger logger, boolean incremental) {
+		try (HttpClientHandler httpClientHandler = HttpClientHandler.newInstance(logger)) {
+			crawlMavenRoots(mavenRoots, mongoDatabase, logger, incremental, httpClientHandler);
+		}
+	}
+
+	/**
+	 * Crawls all Maven roots, saving found metadata and POMs.
+	 * @param mavenRoots
+	 * @param mongoDatabase
+	 * @param logger
+	 * @param incremental if TRUE, listings, maven-metadata.xml and POMs not modified since the last crawl are skipped, with all pages below them.
+	 * @param httpClientHandler HTTP settings for the crawler, also used to fetch pages again
+	 */
+	public static void crawlMavenRoots(List<String> mavenRoots, MongoDatabase mongoDatabase, Logger logger, boolean incremental,
+			HttpClientHandler httpClientHandler) {
+		crawlMavenRoots(mavenRoots, mongoDatabase, logger, incremental, false, httpClientHandler);
+	}
+
+	/**
+	 * Crawls all Maven roots, saving found metadata and POMs.
+	 * @param mavenRoots
+	 * @param mongoDatabase
+	 * @param logger
+	 * @param incremental if TRUE, listings, maven-metadata.xml and POMs not modified since the last crawl are skipped, with all pages below them.
+	 * @param metadataDriven if TRUE, POMs are fetched from the versions listed in maven-metadata.xml
+	 * instead of crawling each version folder.
+	 * @param httpClientHandler HTTP settings for the crawler, also used to fetch pages again
+	 */
+	public static void crawlMavenRoots(List<String> mavenRoots, MongoDatabase mongoDatabase, Logger logger, boolean incremental,
+			boolean metadataDriven, HttpClientHandler httpClientHandler) {
+		crawlMavenRoots(mavenRoots, mongoDatabase, logger, incremental, metadataDriven, new VersionPomExtractor(), httpClientHandler);
+	}
+
+	/**
+	 * Crawls all Maven roots, saving found metadata and POMs.
+	 * @param mavenRoots
+	 * @param mongoDatabase
+	 * @param logger
+	 * @param incremental if TRUE, listings, maven-metadata.xml and POMs not modified since the last crawl are skipped, with all pages below them.
+	 * @param metadataDriven if TRUE, POMs are fetched from the versions listed in maven-metadata.xml
+	 * instead of crawling each version folder.
+	 * @param versionPomExtractor values read from each POM
+	 * @param httpClientHandler HTTP settings for the crawler, also used to fetch pages again
+	 */
+	public static void crawlMavenRoots(List<String> mavenRoots, MongoDatabase mongoDatabase, Logger logger, boolean incremental,
+			boolean metadataDriven, VersionPomExtractor versionPomExtractor, HttpClientHandler httpClientHandler) {
 
 		String tempCrawlStorageFolder = new File("crawlerTemp").getAbsolutePath();
 		int numberOfCrawlers = Runtime.getRuntime().availableProcessors();
@@ -179,20 +658,33 @@ public class MetadataCrawler extends WebCrawler {
 		config.setCrawlStorageFolder(tempCrawlStorageFolder);
 		config.setIncludeBinaryContentInCrawling(true);
 		config.setResumableCrawling(true);
+		httpClientHandler.applyTo(config);
 
 		/*
 		 * Instantiate the controller for this crawl.
 		 */
-		PageFetcher pageFetcher = new PageFetcher(config);
+		PageFetcher pageFetcher;
+		if (metadataDriven) {
+			VersionPom.checkIndexesInCollection(mongoDatabase.getCollection(VersionPom.VERSIONPOM_COLLECTION, VersionPom.class));
+		}
+		if (incremental) {
+			CrawledPage.checkIndexesInCollection(mongoDatabase.getCollection(CrawledPage.CRAWLEDPAGE_COLLECTION, CrawledPage.class));
+			pageFetcher = new IncrementalPageFetcher(config, mongoDatabase);
+		}
+		else {
+			pageFetcher = new PageFetcher(config);
+		}
 		RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
 		robotstxtConfig.setEnabled(false);
 		RobotstxtServer robotstxtServer = new RobotstxtServer(robotstxtConfig, pageFetcher);
 		List<CrawlController> controllers = new ArrayList<>(mavenRoots.size());
 		try {
 			
-			// Create one controller for each Maven root
+			// Create one controller for each Maven root, parsing listings without Tika
+			TLDList tldList = new TLDList(config);
+			Parser parser = new Parser(config, new MavenListingParser(tldList, FOLLOWED_LINKS), tldList);
 			for (int i = 0; i < mavenRoots.size(); i++) {
-				controllers.add(new CrawlController(config, pageFetcher, robotstxtServer));
+				controllers.add(new CrawlController(config, pageFetcher, parser, robotstxtServer, tldList));
 			}
 			
 		} catch (Exception e) {
@@ -200,10 +692,18 @@ public class MetadataCrawler extends WebCrawler {
 			return;
 		}
 
+		// Results from all crawlers are saved in batches
+		CrawlResultsWriter resultsWriter = new CrawlResultsWriter(mongoDatabase, logger);
+
 		for (int i = 0; i < controllers.size(); i++) {
 			CrawlController controller = controllers.get(i);
 			String seedURL = mavenRoots.get(i);
     		MetadataCrawlerFactory metadataCrawlerFactory = new MetadataCrawlerFactory(logger, mongoDatabase, mavenRoots);
+    		metadataCrawlerFactory.setIncrementalCrawl(incremental);
+    		metadataCrawlerFactory.setResultsWriter(resultsWriter);
+    		metadataCrawlerFactory.setHttpClientHandler(httpClientHandler);
+    		metadataCrawlerFactory.setMetadataDrivenCrawl(metadataDriven);
+    		metadataCrawlerFactory.setVersionPomExtractor(versionPomExtractor);
 
 			/*
 			 * For each crawl, you need to add some seed urls. These are the first
@@ -221,6 +721,13 @@ public class MetadataCrawler extends WebCrawler {
 			controller.waitUntilFinish();
 		}
 		
+		// Save remaining results
+		resultsWriter.close();
+		
+		Date finished = new Date();
+		for (String mavenRoot : mavenRoots) {
+			Repository.setLastCheckedDateForURLInMongo(mavenRoot, mongoDatabase, finished);
+		}
 	}
 
 }
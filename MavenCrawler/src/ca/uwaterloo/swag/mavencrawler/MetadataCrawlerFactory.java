@@ -5,6 +5,9 @@ import java.util.logging.Logger;
 
 import com.mongodb.client.MongoDatabase;
 
+import ca.uwaterloo.swag.mavencrawler.db.CrawlResultsWriter;
+import ca.uwaterloo.swag.mavencrawler.http.HttpClientHandler;
+import ca.uwaterloo.swag.mavencrawler.xml.VersionPomExtractor;
 import edu.uci.ics.crawler4j.crawler.CrawlController.WebCrawlerFactory;
 
 public class MetadataCrawlerFactory implements WebCrawlerFactory<MetadataCrawler> {
@@ -12,6 +15,14 @@ public class MetadataCrawlerFactory implements WebCrawlerFactory<MetadataCrawler
 	private Logger logger;
 	private MongoDatabase mongoDatabase;
 	private List<String> seedURLs;
+	private boolean incrementalCrawl = false;
+	private CrawlResultsWriter resultsWriter;
+	private HttpClientHandler httpClientHandler;
+	private boolean metadataDrivenCrawl = false;
+	private VersionPomExtractor versionPomExtractor = new VersionPomExtractor();
+	// Shared by all crawlers, as pages below a listing may be crawled by any of them
+	private SubtreeTracker subtreeTracker = new SubtreeTracker();
+	private DeferredFolders deferredFolders = new DeferredFolders();
 
 	public MetadataCrawlerFactory(Logger logger, MongoDatabase mongoDatabase, List<String> seedURLs) {
 		super();
@@ -20,10 +31,73 @@ public class MetadataCrawlerFactory implements WebCrawlerFactory<MetadataCrawler
 		this.seedURLs = seedURLs;
 	}
 
+	public boolean isIncrementalCrawl() {
+		return incrementalCrawl;
+	}
+
+	public void setIncrementalCrawl(boolean incrementalCrawl) {
+		this.incrementalCrawl = incrementalCrawl;
+	}
+
+	public CrawlResultsWriter getResultsWriter() {
+		return resultsWriter;
+	}
+
+	public void setResultsWriter(CrawlResultsWriter resultsWriter) {
+		this.resultsWriter = resultsWriter;
+	}
+
+	public HttpClientHandler getHttpClientHandler() {
+		return httpClientHandler;
+	}
+
+	public void setHttpClientHandler(HttpClientHandler httpClientHandler) {
+		this.httpClientHandler = httpClientHandler;
+	}
+
+	public boolean isMetadataDrivenCrawl() {
+		return metadataDrivenCrawl;
+	}
+
+	public void setMetadataDrivenCrawl(boolean metadataDrivenCrawl) {
+		this.metadataDrivenCrawl = metadataDrivenCrawl;
+	}
+
+	public VersionPomExtractor getVersionPomExtractor() {
+		return versionPomExtractor;
+	}
+
+	public void setVersionPomExtractor(VersionPomExtractor versionPomExtractor) {
+		this.versionPomExtractor = versionPomExtractor;
+	}
+
+	public SubtreeTracker getSubtreeTracker() {
+		return subtreeTracker;
+	}
+
+	public void setSubtreeTracker(SubtreeTracker subtreeTracker) {
+		this.subtreeTracker = subtreeTracker;
+	}
+
+	public DeferredFolders getDeferredFolders() {
+		return deferredFolders;
+	}
+
+	public void setDeferredFolders(DeferredFolders deferredFolders) {
+		this.deferredFolders = deferredFolders;
+	}
 
 	@Override
 	public MetadataCrawler newInstance() throws Exception {
-		return new MetadataCrawler(logger, mongoDatabase, seedURLs);
+		MetadataCrawler crawler = new MetadataCrawler(logger, mongoDatabase, seedURLs);
+		crawler.setIncrementalCrawl(incrementalCrawl);
+		crawler.setResultsWriter(resultsWriter);
+		crawler.setHttpClientHandler(httpClientHandler);
+		crawler.setMetadataDrivenCrawl(metadataDrivenCrawl);
+		crawler.setVersionPomExtractor(versionPomExtractor);
+		crawler.setSubtreeTracker(subtreeTracker);
+		crawler.setDeferredFolders(deferredFolders);
+		return crawler;
 	}
 
 }
@@ -0,0 +1,356 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.db.BatchWriteQueue;
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.http.HttpClientHandler;
+import ca.uwaterloo.swag.mavencrawler.index.IndexArtifact;
+import ca.uwaterloo.swag.mavencrawler.index.NexusIndexReader;
+import ca.uwaterloo.swag.mavencrawler.pojo.Checkpoint;
+import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import ca.uwaterloo.swag.mavencrawler.pojo.Repository;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+import ca.uwaterloo.swag.mavencrawler.xml.VersionPomExtractor;
+
+/**
+ * Finds artifacts and versions from the Nexus index published by a repository under
+ * ".index/", instead of crawling its folders. The first run imports the full index;
+ * later runs import only the incremental chunks published since, as long as the
+ * index chain did not change.
+ *
+ * Versions are added to the artifact's Metadata, and a VersionPom is saved with the
+ * name, description and packaging found in the index. The index has nothing else from
+ * the POM (SCM, URL, parent, dependencies): {@link #fetchIndexedPoms(String)} fetches
+ * the POMs of these versions instead of crawling the repository's folders.
+ */
+public class NexusIndexCrawler {
+
+	public static final String INDEX_FOLDER = ".index";
+	public static final String INDEX_NAME = "nexus-maven-repository-index";
+
+	static final String CHAIN_ID_PROPERTY = "nexus.index.chain-id";
+	static final String LAST_INCREMENTAL_PROPERTY = "nexus.index.last-incremental";
+	private static final String CHECKPOINT_PREFIX = "NexusIndex ";
+	private static final String CHAIN_ID = "chainId";
+	private static final String LAST_INCREMENTAL = "lastIncremental";
+
+	private Logger logger;
+	private MongoDatabase mongoDatabase;
+	private HttpClientHandler httpClientHandler;
+	private int batchSize = BatchWriteQueue.DEFAULT_BATCH_SIZE;
+	private VersionPomExtractor versionPomExtractor = new VersionPomExtractor();
+
+	public NexusIndexCrawler(Logger logger, MongoDatabase mongoDatabase, HttpClientHandler httpClientHandler) {
+		super();
+		this.logger = logger;
+		this.mongoDatabase = mongoDatabase;
+		this.httpClientHandler = httpClientHandler;
+	}
+
+	public Logger getLogger() {
+		return logger;
+	}
+	public void setLogger(Logger logger) {
+		this.logger = logger;
+	}
+	public MongoDatabase getMongoDatabase() {
+		return mongoDatabase;
+	}
+	public void setMongoDatabase(MongoDatabase mongoDatabase) {
+		this.mongoDatabase = mongoDatabase;
+	}
+	public HttpClientHandler getHttpClientHandler() {
+		return httpClientHandler;
+	}
+	public void setHttpClientHandler(HttpClientHandler httpClientHandler) {
+		this.httpClientHandler = httpClientHandler;
+	}
+	public int getBatchSize() {
+		return batchSize;
+	}
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+	public VersionPomExtractor getVersionPomExtractor() {
+		return versionPomExtractor;
+	}
+	public void setVersionPomExtractor(VersionPomExtractor versionPomExtractor) {
+		this.versionPomExtractor = versionPomExtractor;
+	}
+
+	/**
+	 * Imports the index of a repository, or only its new incremental chunks.
+	 * @param repositoryURL repository root, e.g. "http://central.maven.org/maven2", or a "file:" URL
+	 * @return FALSE if the repository does not publish an index or it could not be read
+	 */
+	public boolean crawlIndex(String repositoryURL) {
+
+		URL indexURL;
+		Properties properties = new Properties();
+
+		try {
+			indexURL = new URL(repositoryURL.replaceAll("/+$", "") + "/" + INDEX_FOLDER + "/");
+			try (InputStream stream = open(new URL(indexURL, INDEX_NAME + ".properties"))) {
+				properties.load(stream);
+			}
+		} catch (MalformedURLException e) {
+			LoggerHelper.logError(logger, e, "Bad URL: " + repositoryURL);
+			return false;
+		} catch (FileNotFoundException e) {
+			LoggerHelper.log(logger, Level.INFO, "No index published in " + repositoryURL);
+			return false;
+		} catch (IOException e) {
+			LoggerHelper.logError(logger, e, "Could not read index properties of " + repositoryURL);
+			return false;
+		}
+
+		VersionPom.checkIndexesInCollection(mongoDatabase.getCollection(VersionPom.VERSIONPOM_COLLECTION, VersionPom.class));
+
+		String chainId = properties.getProperty(CHAIN_ID_PROPERTY, "");
+		int lastIncremental = parseInt(properties.getProperty(LAST_INCREMENTAL_PROPERTY));
+		String checkpointName = CHECKPOINT_PREFIX + repositoryURL;
+
+		try {
+			int importedIncremental = findImportedIncremental(checkpointName, chainId, lastIncremental);
+
+			if (importedIncremental >= 0) {
+				try {
+					for (int chunk = importedIncremental + 1; chunk <= lastIncremental; chunk++) {
+						importIndex(new URL(indexURL, INDEX_NAME + "." + chunk + ".gz"), repositoryURL);
+						saveImportedIncremental(checkpointName, chainId, chunk);
+					}
+				} catch (FileNotFoundException e) {
+					// Old chunks are removed from the repository after a while
+					LoggerHelper.log(logger, Level.WARNING, "Missing incremental index " + e.getMessage() + ", importing full index");
+					importedIncremental = -1;
+				}
+			}
+
+			if (importedIncremental < 0) {
+				importIndex(new URL(indexURL, INDEX_NAME + ".gz"), repositoryURL);
+				saveImportedIncremental(checkpointName, chainId, lastIncremental);
+			}
+
+		} catch (IOException e) {
+			LoggerHelper.logError(logger, e, "Could not import index of " + repositoryURL);
+			return false;
+		}
+
+		Repository.setLastCheckedDateForURLInMongo(repositoryURL, mongoDatabase, new Date());
+		return true;
+	}
+
+	/**
+	 * @return last incremental chunk imported from the same chain, or -1 if the full index must be imported
+	 */
+	private int findImportedIncremental(String checkpointName, String chainId, int lastIncremental) {
+
+		Checkpoint checkpoint = Checkpoint.findByName(checkpointName, mongoDatabase);
+		if (chainId.isEmpty() || lastIncremental < 0 || checkpoint == null ||
+				checkpoint.getLastId() == null || !checkpoint.getLastId().isDocument()) {
+			return -1;
+		}
+
+		BsonDocument position = checkpoint.getLastId().asDocument();
+		if (!position.isString(CHAIN_ID) || !position.isInt32(LAST_INCREMENTAL) ||
+				!chainId.equals(position.getString(CHAIN_ID).getValue())) {
+			return -1;
+		}
+
+		int importedIncremental = position.getInt32(LAST_INCREMENTAL).getValue();
+		return (importedIncremental <= lastIncremental) ? importedIncremental : -1;
+	}
+
+	private void saveImportedIncremental(String checkpointName, String chainId, int incremental) {
+		Checkpoint.upsertInMongo(checkpointName,
+				new BsonDocument(CHAIN_ID, new BsonString(chainId)).append(LAST_INCREMENTAL, new BsonInt32(incremental)),
+				mongoDatabase);
+	}
+
+	/**
+	 * Imports one full or incremental index file.
+	 * @param url gzipped index
+	 * @param repositoryURL saved with the found artifacts
+	 * @return number of versions found
+	 * @throws IOException if the index could not be read, or some of its entries could not be saved
+	 */
+	public long importIndex(URL url, String repositoryURL) throws IOException {
+
+		LoggerHelper.log(logger, Level.INFO, "Importing index " + url);
+		long versions = 0;
+
+		try (InputStream stream = open(url);
+			 NexusIndexReader reader = new NexusIndexReader(stream);
+			 BatchWriteQueue<Metadata> metadataQueue = new BatchWriteQueue<>(Metadata.METADATA_COLLECTION,
+					 batch -> Metadata.addVersionsInMongo(batch, mongoDatabase, logger),
+					 batchSize, BatchWriteQueue.DEFAULT_FLUSH_INTERVAL, BatchWriteQueue.DEFAULT_CAPACITY, logger);
+			 BatchWriteQueue<VersionPom> versionPomQueue = new BatchWriteQueue<>(VersionPom.VERSIONPOM_COLLECTION,
+					 batch -> VersionPom.insertFromIndexInMongo(batch, mongoDatabase, logger),
+					 batchSize, BatchWriteQueue.DEFAULT_FLUSH_INTERVAL, BatchWriteQueue.DEFAULT_CAPACITY, logger)) {
+
+			Metadata metadata = null;
+			IndexArtifact artifact;
+
+			while ((artifact = reader.readArtifact()) != null) {
+
+				// Sources, javadoc and other classified files belong to an already listed version
+				if (!artifact.isMainArtifact()) continue;
+
+				// Versions of the same artifact usually follow each other, and are saved together
+				if (metadata == null ||
+						!metadata.getArtifactId().equals(artifact.getArtifactId()) ||
+						!metadata.getGroupId().equals(artifact.getGroupId())) {
+					if (metadata != null) metadataQueue.add(metadata);
+					metadata = newMetadata(artifact, repositoryURL);
+				}
+
+				metadata.getVersions().add(artifact.getVersion());
+				versionPomQueue.add(newVersionPom(artifact, repositoryURL));
+				versions++;
+			}
+
+			if (metadata != null) metadataQueue.add(metadata);
+
+			LoggerHelper.log(logger, Level.INFO, "Found " + versions + " versions in " +
+					reader.getDocumentsRead() + " documents of " + url);
+
+			// The checkpoint only moves past this index once every batch is saved
+			metadataQueue.close();
+			versionPomQueue.close();
+			long failed = metadataQueue.getFailedCount() + versionPomQueue.getFailedCount();
+			if (failed > 0) {
+				throw new IOException("Could not save " + failed + " entries of " + url);
+			}
+		}
+
+		return versions;
+	}
+
+	/**
+	 * Fetches the POMs of the versions of a repository only found in its index so far, 
+	 * and saves what they add to the index. POMs that could not be fetched are tried 
+	 * again on the next call, missing ones are not.
+	 * @param repositoryURL
+	 * @return number of POMs saved
+	 */
+	public long fetchIndexedPoms(String repositoryURL) {
+
+		String host;
+		try {
+			host = new URL(repositoryURL).getHost();
+		} catch (MalformedURLException e) {
+			LoggerHelper.logError(logger, e, "Bad URL: " + repositoryURL);
+			return 0;
+		}
+
+		LoggerHelper.log(logger, Level.INFO, "Fetching POMs of versions found in the index of " + repositoryURL);
+		AtomicLong saved = new AtomicLong();
+
+		// Closed in reverse order, so all fetched POMs are queued before the queue closes
+		try (BatchWriteQueue<VersionPom> versionPomQueue = new BatchWriteQueue<>(VersionPom.VERSIONPOM_COLLECTION,
+					 batch -> VersionPom.upsertInMongo(batch, mongoDatabase, logger),
+					 batchSize, BatchWriteQueue.DEFAULT_FLUSH_INTERVAL, BatchWriteQueue.DEFAULT_CAPACITY, logger);
+			 DownloadEngine engine = new DownloadEngine(DownloadEngine.DEFAULT_THREADS, DownloadEngine.DEFAULT_MAX_PER_HOST, logger)) {
+
+			VersionPom.iterateIndexOnlyInMongo(repositoryURL, mongoDatabase, indexed ->
+				engine.submit(host, () -> fetchPom(indexed, versionPomQueue))
+					.thenAccept(fetched -> {
+						if (fetched) saved.incrementAndGet();
+					}));
+		}
+
+		LoggerHelper.log(logger, Level.INFO, "Saved " + saved.get() + " POMs of " + repositoryURL);
+		return saved.get();
+	}
+
+	/**
+	 * @return FALSE if the POM could not be fetched, and should be tried again
+	 */
+	private boolean fetchPom(VersionPom indexed, BatchWriteQueue<VersionPom> versionPomQueue) throws IOException {
+
+		Metadata metadata = new Metadata();
+		metadata.setGroupId(indexed.getGroupId());
+		metadata.setArtifactId(indexed.getArtifactId());
+		metadata.setRepository(indexed.getRepository());
+		metadata.setVersions(Arrays.asList(indexed.getVersion()));
+		URL pomURL = metadata.findPomURLForVersion(indexed.getVersion());
+		if (pomURL == null) return false;
+
+		VersionPom versionPom = new VersionPom();
+
+		try (InputStream stream = open(pomURL)) {
+			versionPomExtractor.extract(stream, versionPom);
+		} catch (FileNotFoundException e) {
+			// Saved anyway, so it is not requested again
+			LoggerHelper.log(logger, Level.FINE, "No POM for " + pomURL);
+		} catch (XMLStreamException e) {
+			LoggerHelper.logError(logger, e, "Error parsing POM " + pomURL);
+		}
+
+		// Matches the indexed version even if the POM declares other coordinates
+		versionPom.setGroupId(indexed.getGroupId());
+		versionPom.setArtifactId(indexed.getArtifactId());
+		versionPom.setVersion(indexed.getVersion());
+		versionPom.setRepository(indexed.getRepository());
+		versionPomQueue.add(versionPom);
+
+		return true;
+	}
+
+	private static Metadata newMetadata(IndexArtifact artifact, String repositoryURL) {
+		Metadata metadata = new Metadata();
+		metadata.setGroupId(artifact.getGroupId());
+		metadata.setArtifactId(artifact.getArtifactId());
+		metadata.setRepository(repositoryURL);
+		metadata.setVersions(new ArrayList<>());
+		return metadata;
+	}
+
+	private static VersionPom newVersionPom(IndexArtifact artifact, String repositoryURL) {
+		VersionPom versionPom = new VersionPom();
+		versionPom.setGroupId(artifact.getGroupId());
+		versionPom.setArtifactId(artifact.getArtifactId());
+		versionPom.setVersion(artifact.getVersion());
+		versionPom.setName(artifact.getName());
+		versionPom.setDescription(artifact.getDescription());
+		versionPom.setPackaging(artifact.getPackaging());
+		versionPom.setRepository(repositoryURL);
+		return versionPom;
+	}
+
+	/**
+	 * Local files stand in for a repository in tests and for mirrored indexes.
+	 */
+	private InputStream open(URL url) throws IOException {
+		return "file".equals(url.getProtocol()) ? url.openStream() : httpClientHandler.openStream(url);
+	}
+
+	private static int parseInt(String value) {
+		try {
+			return value == null ? -1 : Integer.parseInt(value.trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+}
@@ -0,0 +1,323 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import ca.uwaterloo.swag.mavencrawler.db.ResumableCursor;
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.pojo.Dependency;
+import ca.uwaterloo.swag.mavencrawler.pojo.InheritedValues;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+
+/**
+ * Fills the values a POM inherits from its parent chain, from the parents saved in the
+ * VersionPoms collection. Parents are kept resolved in a cache bounded by their estimated
+ * size and evicting the least recently used, so widely shared parents (e.g. org.apache:apache)
+ * are read once instead of once per child.
+ *
+ * As in Maven, description is inherited as is, and url and scm get the child's artifactId
+ * appended. Packaging is not inherited. Inherited values are saved apart from the values
+ * declared by the child, see {@link InheritedValues}, and computed again on each run, so
+ * changed parents and recrawled children are taken into account.
+ * Saved POMs are matched by groupId, artifactId and version, so these are never changed.
+ * Not thread-safe.
+ */
+public class ParentPomResolver {
+
+	private static final String DEFAULT_CONFIG_FILE = "mavencrawler.conf";
+	public static final long DEFAULT_CACHE_SIZE = 64L * 1024 * 1024;
+	public static final int MAX_DEPTH = 16;
+
+	private enum PropertyType {
+		PARENT_CACHE_MB
+	}
+
+	// Cached for parents not saved, so they are not looked up again
+	private static final VersionPom MISSING = new VersionPom();
+
+	private final MongoDatabase mongoDatabase;
+	private final long cacheSize;
+	private final Logger logger;
+	private int batchSize = ResumableCursor.DEFAULT_BATCH_SIZE;
+
+	private final LinkedHashMap<String, VersionPom> cache = new LinkedHashMap<>(1024, 0.75f, true);
+	private long cachedSize;
+	private long hits;
+	private long misses;
+
+	private final List<VersionPom> resolvedBatch = new ArrayList<>();
+	private long resolved;
+
+	/**
+	 * @param mongoDatabase
+	 * @param cacheSize estimated size in bytes of the cached parents
+	 * @param logger
+	 */
+	public ParentPomResolver(MongoDatabase mongoDatabase, long cacheSize, Logger logger) {
+		super();
+		this.mongoDatabase = mongoDatabase;
+		this.cacheSize = cacheSize;
+		this.logger = logger;
+	}
+
+	public static ParentPomResolver newInstance(MongoDatabase mongoDatabase, Logger logger, Properties properties) {
+
+		long cacheSize = DEFAULT_CACHE_SIZE;
+		try {
+			cacheSize = Long.parseLong(properties.getProperty(PropertyType.PARENT_CACHE_MB.name(),
+					String.valueOf(DEFAULT_CACHE_SIZE >> 20)).trim()) << 20;
+		} catch (NumberFormatException e) {
+			LoggerHelper.logError(logger, e, "Bad " + PropertyType.PARENT_CACHE_MB + ", using default.");
+		}
+
+		return new ParentPomResolver(mongoDatabase, cacheSize, logger);
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public long getCacheSize() {
+		return cacheSize;
+	}
+
+	/**
+	 * @return number of parents found in the cache
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return number of parents looked up in the database
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Fills the inherited values of all saved POMs with a parent, saving those changed in bulk.
+	 * @return number of POMs whose inherited values changed
+	 */
+	public long resolveAll() {
+
+		resolved = 0;
+		VersionPom.iterateChildrenInMongo(mongoDatabase, child -> {
+			if (!resolve(child)) return;
+
+			resolvedBatch.add(child);
+			if (resolvedBatch.size() >= batchSize) flush();
+		});
+		flush();
+
+		LoggerHelper.log(logger, Level.INFO, "Resolved parents of " + resolved + " POMs. Parent cache hits: " +
+				hits + ". Misses: " + misses + ".");
+
+		return resolved;
+	}
+
+	private void flush() {
+
+		if (resolvedBatch.isEmpty()) return;
+
+		VersionPom.updateInheritedInMongo(resolvedBatch, mongoDatabase, logger);
+		resolved += resolvedBatch.size();
+		resolvedBatch.clear();
+	}
+
+	/**
+	 * Fills the values the POM inherits from its parent chain, if the parents are saved.
+	 * @param child
+	 * @return TRUE if its inherited values changed
+	 */
+	public boolean resolve(VersionPom child) {
+		return inherit(child, effectiveParent(child, 0));
+	}
+
+	/**
+	 * @return parent with its own inherited values, or null if not saved
+	 */
+	private VersionPom effectiveParent(VersionPom child, int depth) {
+
+		if (child.getParentGroupId() == null || child.getParentArtifactId() == null || child.getParentVersion() == null) {
+			return null;
+		}
+
+		String key = child.getParentGroupId() + ":" + child.getParentArtifactId() + ":" + child.getParentVersion();
+		VersionPom parent = cache.get(key);
+		if (parent != null) {
+			hits++;
+			return (parent == MISSING) ? null : parent;
+		}
+
+		// Parent chains are short, so this is a cycle
+		if (depth >= MAX_DEPTH) {
+			LoggerHelper.log(logger, Level.WARNING, "Parent chain too long at " + key);
+			return null;
+		}
+
+		misses++;
+		parent = VersionPom.findInMongo(child.getParentGroupId(), child.getParentArtifactId(), child.getParentVersion(),
+				mongoDatabase);
+		if (parent != null) {
+			inherit(parent, effectiveParent(parent, depth + 1));
+			// Maven also inherits dependencies and dependencyManagement, but they are not
+			// applied here, so cached parents are kept small
+			parent.setDependencies(null);
+			parent.setImportedDependencies(null);
+		}
+
+		cache(key, (parent == null) ? MISSING : parent);
+		return parent;
+	}
+
+	private void cache(String key, VersionPom parent) {
+
+		VersionPom previous = cache.put(key, parent);
+		if (previous != null) {
+			cachedSize -= estimateSize(key, previous);
+		}
+		cachedSize += estimateSize(key, parent);
+
+		// Least recently used first
+		Iterator<Map.Entry<String, VersionPom>> entries = cache.entrySet().iterator();
+		while (cachedSize > cacheSize && entries.hasNext()) {
+			Map.Entry<String, VersionPom> eldest = entries.next();
+			cachedSize -= estimateSize(eldest.getKey(), eldest.getValue());
+			entries.remove();
+		}
+	}
+
+	/**
+	 * Rough heap size of a cached parent: two bytes per char and a fixed overhead per object.
+	 */
+	static long estimateSize(String key, VersionPom versionPom) {
+
+		long size = 128 + 2L * key.length();
+		for (String value : new String[] {versionPom.getGroupId(), versionPom.getArtifactId(), versionPom.getName(),
+				versionPom.getVersion(), versionPom.getDescription(), versionPom.getProjectUrl(),
+				versionPom.getRepository(), versionPom.getScmConnection(), versionPom.getScmUrl(),
+				versionPom.getPackaging(), versionPom.getParentGroupId(), versionPom.getParentArtifactId(),
+				versionPom.getParentVersion()}) {
+			if (value != null) size += 40 + 2L * value.length();
+		}
+
+		InheritedValues inherited = versionPom.getInherited();
+		if (inherited != null) {
+			for (String value : new String[] {inherited.getDescription(), inherited.getProjectUrl(),
+					inherited.getScmConnection(), inherited.getScmUrl()}) {
+				if (value != null) size += 40 + 2L * value.length();
+			}
+		}
+
+		size += dependenciesSize(versionPom.getDependencies());
+		size += dependenciesSize(versionPom.getImportedDependencies());
+
+		return size;
+	}
+
+	private static long dependenciesSize(List<Dependency> dependencies) {
+
+		if (dependencies == null) return 0;
+
+		long size = 0;
+		for (Dependency dependency : dependencies) {
+			size += 160 + 2L * (length(dependency.getGroupId()) + length(dependency.getArtifactId()) +
+					length(dependency.getVersion()));
+		}
+
+		return size;
+	}
+
+	private static int length(String value) {
+		return (value == null) ? 0 : value.length();
+	}
+
+	/**
+	 * Sets the values the child inherits from the parent, for those the child does not declare.
+	 * @param child
+	 * @param parent resolved parent, or null
+	 * @return TRUE if the child's inherited values changed
+	 */
+	static boolean inherit(VersionPom child, VersionPom parent) {
+
+		InheritedValues inherited = null;
+
+		// groupId and version already fall back to the parent's when the POM is parsed
+		if (parent != null) {
+			InheritedValues fromParent = parent.getInherited();
+			inherited = new InheritedValues();
+			if (child.getDescription() == null) {
+				inherited.setDescription(effective(parent.getDescription(),
+						fromParent == null ? null : fromParent.getDescription()));
+			}
+			if (child.getProjectUrl() == null) {
+				inherited.setProjectUrl(appendPath(effective(parent.getProjectUrl(),
+						fromParent == null ? null : fromParent.getProjectUrl()), child.getArtifactId()));
+			}
+			if (child.getScmConnection() == null) {
+				inherited.setScmConnection(appendPath(effective(parent.getScmConnection(),
+						fromParent == null ? null : fromParent.getScmConnection()), child.getArtifactId()));
+			}
+			if (child.getScmUrl() == null) {
+				inherited.setScmUrl(appendPath(effective(parent.getScmUrl(),
+						fromParent == null ? null : fromParent.getScmUrl()), child.getArtifactId()));
+			}
+			if (inherited.equals(new InheritedValues())) inherited = null;
+		}
+
+		if (inherited == null ? child.getInherited() == null : inherited.equals(child.getInherited())) return false;
+
+		child.setInherited(inherited);
+		return true;
+	}
+
+	/**
+	 * @return value declared by the POM, or else the one it inherited
+	 */
+	private static String effective(String declared, String inherited) {
+		return (declared != null) ? declared : inherited;
+	}
+
+	static String appendPath(String url, String artifactId) {
+		if (url == null || artifactId == null) return url;
+		return url.endsWith("/") ? url + artifactId : url + "/" + artifactId;
+	}
+
+	/**
+	 * Fills the inherited values of all saved POMs, with PARENT_CACHE_MB from mavencrawler.conf.
+	 * @param args
+	 */
+	public static void main(String[] args) {
+
+		Logger logger = Logger.getLogger(ParentPomResolver.class.getName());
+		File configFile = new File(DEFAULT_CONFIG_FILE);
+
+		Properties properties = new Properties();
+		try {
+			properties.load(new FileInputStream(configFile));
+			LoggerHelper.log(logger, Level.INFO, "Read " + configFile.getAbsolutePath());
+		} catch (Exception e) {
+			LoggerHelper.logError(logger, e, "Could not open mavencrawler.conf file.");
+			System.exit(1);
+		}
+
+		MongoDBHandler mongoHandler = MongoDBHandler.newInstance(logger, properties);
+		newInstance(mongoHandler.getMongoDatabase(), logger, properties).resolveAll();
+	}
+
+}
@@ -0,0 +1,95 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.uwaterloo.swag.mavencrawler.pojo.CrawledPage;
+
+/**
+ * Keeps track of the pages still to be crawled below each crawled page, shared by all
+ * crawler threads. Validators of a page are only handed back once the page and every
+ * page below it were crawled completely, so a listing answered with 304 by the next
+ * crawl never hides pages left to crawl.
+ *
+ * Pages are matched by URL with the page that linked to them. A link that is never
+ * crawled, e.g. because it was already seen before the crawl was resumed, only keeps
+ * the pages above it from being validated.
+ */
+public class SubtreeTracker {
+
+	// Pages with pages still to crawl below them, or not crawled yet themselves
+	private final Map<String, Node> nodes = new HashMap<>();
+	// Page that linked to each page not crawled yet
+	private final Map<String, String> parents = new HashMap<>();
+
+	private static class Node {
+		private int pending = 0;
+		private boolean crawled = false;
+		private boolean failed = false;
+		private CrawledPage validators;
+	}
+
+	/**
+	 * Records a link to a page that will be crawled below another page.
+	 * Must be called before the linked page can be crawled.
+	 * @param parentURL
+	 * @param childURL
+	 * @return FALSE if the page was already linked from elsewhere, and is not counted again
+	 */
+	public synchronized boolean addChild(String parentURL, String childURL) {
+
+		if (childURL.equals(parentURL) || parents.containsKey(childURL)) return false;
+
+		parents.put(childURL, parentURL);
+		nodes.computeIfAbsent(parentURL, url -> new Node()).pending++;
+		return true;
+	}
+
+	/**
+	 * Records a crawled page, or a page that could not be crawled.
+	 * @param url
+	 * @param complete FALSE if the page was not fully handled, so neither it
+	 * nor the pages above it are validated
+	 * @param validators validators of the page, or null if none
+	 * @return validators of the pages complete with everything below them,
+	 * to be saved in this order
+	 */
+	public synchronized List<CrawledPage> pageCrawled(String url, boolean complete, CrawledPage validators) {
+
+		Node node = nodes.computeIfAbsent(url, u -> new Node());
+		node.crawled = true;
+		node.failed |= !complete;
+		node.validators = validators;
+
+		List<CrawledPage> completed = new ArrayList<>();
+
+		// Completing a page may complete the page above it, and so on
+		while (node.crawled && node.pending == 0) {
+			nodes.remove(url);
+			if (!node.failed && node.validators != null) {
+				completed.add(node.validators);
+			}
+
+			String parentURL = parents.remove(url);
+			Node parent = parentURL == null ? null : nodes.get(parentURL);
+			if (parent == null) break;
+
+			parent.failed |= node.failed;
+			parent.pending--;
+			url = parentURL;
+			node = parent;
+		}
+
+		return completed;
+	}
+
+	/**
+	 * @return number of pages not complete yet
+	 */
+	public synchronized int size() {
+		return nodes.size();
+	}
+
+}
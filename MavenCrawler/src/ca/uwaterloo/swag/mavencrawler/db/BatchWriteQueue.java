@@ -0,0 +1,263 @@
+package ca.uwaterloo.swag.mavencrawler.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+
+/**
+ * Write-behind queue that collects items from any number of producer threads and
+ * hands them in batches to a single writer thread. A batch is written when it
+ * reaches the batch size or when the flush interval expires, whichever comes first.
+ * Producers block when the queue is full, so a lagging database slows the crawl
+ * down instead of exhausting memory.
+ *
+ * @param <T> the type of the queued items
+ */
+public class BatchWriteQueue<T> implements AutoCloseable {
+
+	public static final int DEFAULT_BATCH_SIZE = 500;
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	// Queued last on close, so the writer wakes up and knows nothing follows
+	private static final Object CLOSED = new Object();
+
+	private final String name;
+	private final Consumer<List<T>> batchWriter;
+	private final int batchSize;
+	private final long flushInterval;
+	private final BlockingQueue<Object> queue;
+	private final Thread writerThread;
+	private final Object pendingLock = new Object();
+	// Held shared while adding and exclusively while closing, so no item is queued after CLOSED
+	private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+	private final Logger logger;
+
+	// Items queued and items written (or given up on) since the start, in queue order
+	private long queued = 0;
+	private long done = 0;
+	private long failed = 0;
+	private boolean running = true;
+
+	public BatchWriteQueue(String name, Consumer<List<T>> batchWriter, Logger logger) {
+		this(name, batchWriter, DEFAULT_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL, DEFAULT_CAPACITY, logger);
+	}
+
+	/**
+	 * @param name used for the writer thread and log messages
+	 * @param batchWriter writes a batch of items, called from one thread at a time
+	 * @param batchSize maximum number of items per batch
+	 * @param flushInterval maximum time (in milliseconds) an item waits to be written
+	 * @param capacity maximum number of queued items before producers block
+	 * @param logger
+	 */
+	public BatchWriteQueue(String name, Consumer<List<T>> batchWriter, int batchSize, long flushInterval, int capacity, Logger logger) {
+		super();
+		this.name = name;
+		this.batchWriter = batchWriter;
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.logger = logger;
+
+		this.writerThread = new Thread(this::writeLoop, name + "-writer");
+		this.writerThread.setDaemon(true);
+		this.writerThread.start();
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public long getFlushInterval() {
+		return flushInterval;
+	}
+
+	/**
+	 * Queues an item to be written, blocking while the queue is full.
+	 * @param item
+	 * @throws IllegalStateException if the queue is closed
+	 */
+	public void add(T item) {
+
+		closeLock.readLock().lock();
+		try {
+			if (!running) {
+				throw new IllegalStateException("Write queue " + name + " is closed.");
+			}
+
+			synchronized (pendingLock) {
+				queued++;
+			}
+
+			queue.put(item);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			releasePending(1);
+			LoggerHelper.log(logger, Level.WARNING, "Interrupted while queueing item for " + name);
+		} finally {
+			closeLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Failed batches are logged and not written again, so callers that depend on
+	 * earlier items being saved check this count after {@link #flush()}.
+	 * @return number of items in batches that could not be written, since the start
+	 */
+	public long getFailedCount() {
+		synchronized (pendingLock) {
+			return failed;
+		}
+	}
+
+	/**
+	 * Waits until every item queued so far has been written. Items queued meanwhile
+	 * are not waited for, so producers that keep adding cannot hold this up.
+	 */
+	public void flush() throws InterruptedException {
+		synchronized (pendingLock) {
+			long target = queued;
+			while (done < target) {
+				pendingLock.wait();
+			}
+		}
+	}
+
+	/**
+	 * Stops accepting items, writes everything still queued and stops the writer thread.
+	 */
+	@Override
+	public void close() {
+
+		boolean interrupted = false;
+
+		closeLock.writeLock().lock();
+		try {
+			if (!running) return;
+			running = false;
+
+			// Only blocks while the queue is full, and the writer is still draining it
+			while (true) {
+				try {
+					queue.put(CLOSED);
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} finally {
+			closeLock.writeLock().unlock();
+		}
+
+		while (writerThread.isAlive()) {
+			try {
+				writerThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+
+		// Anything the writer left behind, should it have stopped early
+		List<Object> remaining = new ArrayList<>();
+		queue.drainTo(remaining);
+		List<T> batch = new ArrayList<>(remaining.size());
+		for (Object item : remaining) {
+			collect(item, batch);
+		}
+		write(batch);
+
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void writeLoop() {
+
+		List<T> batch = new ArrayList<>(batchSize);
+		List<Object> drained = new ArrayList<>(batchSize);
+		boolean closed = false;
+
+		while (!closed) {
+
+			try {
+				Object first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+				if (first == null) continue;
+
+				closed = collect(first, batch);
+				long deadline = System.currentTimeMillis() + flushInterval;
+
+				// Fill the batch until it's full or the oldest item waited long enough
+				while (!closed && batch.size() < batchSize) {
+					queue.drainTo(drained, batchSize - batch.size());
+					for (Object item : drained) {
+						closed = collect(item, batch) || closed;
+					}
+					drained.clear();
+					long remaining = deadline - System.currentTimeMillis();
+
+					if (closed || batch.size() >= batchSize || remaining <= 0) break;
+
+					Object next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+					if (next == null) break;
+					closed = collect(next, batch);
+				}
+			} catch (InterruptedException e) {
+				// Write what was collected and keep going until CLOSED is read
+			}
+
+			write(batch);
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Adds a queued item to the batch.
+	 * @return TRUE if it was CLOSED, the last item ever queued
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean collect(Object item, List<T> batch) {
+
+		if (item == CLOSED) return true;
+
+		batch.add((T) item);
+		return false;
+	}
+
+	private void write(List<T> batch) {
+
+		if (batch.isEmpty()) return;
+
+		try {
+			batchWriter.accept(new ArrayList<>(batch));
+		} catch (RuntimeException e) {
+			LoggerHelper.logError(logger, e, "Could not write batch of " + batch.size() + " items to " + name);
+			synchronized (pendingLock) {
+				failed += batch.size();
+			}
+		} finally {
+			releasePending(batch.size());
+		}
+	}
+
+	private void releasePending(int count) {
+		synchronized (pendingLock) {
+			done += count;
+			pendingLock.notifyAll();
+		}
+	}
+
+}
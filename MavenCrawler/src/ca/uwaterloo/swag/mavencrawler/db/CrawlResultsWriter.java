@@ -0,0 +1,116 @@
+package ca.uwaterloo.swag.mavencrawler.db;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.pojo.CrawledPage;
+import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+
+/**
+ * Write-behind stage for crawler results. Crawler threads hand over their results
+ * and go on crawling, while one writer per collection saves them in bulk.
+ * Crawled pages are saved only after the results handed over before them, and are
+ * dropped if any of these could not be saved, so a page is never skipped by the next
+ * crawl while its results are lost.
+ */
+public class CrawlResultsWriter implements AutoCloseable {
+
+	private BatchWriteQueue<Metadata> metadataQueue;
+	private BatchWriteQueue<VersionPom> versionPomQueue;
+	private BatchWriteQueue<CrawledPage> crawledPageQueue;
+	private Logger logger;
+
+	// Failed metadata and POMs already accounted for, used by the crawled page writer only
+	private long knownFailures = 0;
+
+	public CrawlResultsWriter(MongoDatabase mongoDatabase, Logger logger) {
+		this(mongoDatabase, logger,
+				BatchWriteQueue.DEFAULT_BATCH_SIZE,
+				BatchWriteQueue.DEFAULT_FLUSH_INTERVAL,
+				BatchWriteQueue.DEFAULT_CAPACITY);
+	}
+
+	public CrawlResultsWriter(MongoDatabase mongoDatabase, Logger logger, int batchSize, long flushInterval, int capacity) {
+		this(batch -> Metadata.upsertInMongo(batch, mongoDatabase, logger),
+				batch -> VersionPom.upsertInMongo(batch, mongoDatabase, logger),
+				batch -> CrawledPage.upsertInMongo(batch, mongoDatabase),
+				logger, batchSize, flushInterval, capacity);
+	}
+
+	CrawlResultsWriter(Consumer<List<Metadata>> metadataWriter, Consumer<List<VersionPom>> versionPomWriter, 
+			Consumer<List<CrawledPage>> crawledPageWriter, Logger logger, int batchSize, long flushInterval, int capacity) {
+		super();
+		this.logger = logger;
+
+		metadataQueue = new BatchWriteQueue<>(Metadata.METADATA_COLLECTION, metadataWriter,
+				batchSize, flushInterval, capacity, logger);
+
+		versionPomQueue = new BatchWriteQueue<>(VersionPom.VERSIONPOM_COLLECTION, versionPomWriter,
+				batchSize, flushInterval, capacity, logger);
+
+		crawledPageQueue = new BatchWriteQueue<>(CrawledPage.CRAWLEDPAGE_COLLECTION,
+				batch -> saveCrawledPages(batch, crawledPageWriter),
+				batchSize, flushInterval, capacity, logger);
+	}
+
+	private void saveCrawledPages(List<CrawledPage> crawledPages, Consumer<List<CrawledPage>> crawledPageWriter) {
+
+		try {
+			metadataQueue.flush();
+			versionPomQueue.flush();
+		} catch (InterruptedException e) {
+			// Not saved, so the pages are fetched again by the next crawl
+			Thread.currentThread().interrupt();
+			return;
+		}
+
+		// Failed results cannot be told apart, so all pages handed over meanwhile are fetched again
+		long failures = metadataQueue.getFailedCount() + versionPomQueue.getFailedCount();
+		if (failures > knownFailures) {
+			knownFailures = failures;
+			LoggerHelper.log(logger, Level.WARNING, "Not saving validators of " + crawledPages.size() + 
+					" pages, as some crawl results could not be saved.");
+			return;
+		}
+
+		crawledPageWriter.accept(crawledPages);
+	}
+
+	public void saveMetadata(Metadata metadata) {
+		metadataQueue.add(metadata);
+	}
+
+	public void saveVersionPom(VersionPom versionPom) {
+		versionPomQueue.add(versionPom);
+	}
+
+	public void saveCrawledPage(CrawledPage crawledPage) {
+		crawledPageQueue.add(crawledPage);
+	}
+
+	/**
+	 * Waits until all results handed over so far are saved.
+	 */
+	public void flush() throws InterruptedException {
+		metadataQueue.flush();
+		versionPomQueue.flush();
+		crawledPageQueue.flush();
+	}
+
+	/**
+	 * Saves all pending results and stops the writers.
+	 */
+	@Override
+	public void close() {
+		metadataQueue.close();
+		versionPomQueue.close();
+		crawledPageQueue.close();
+	}
+
+}
@@ -15,8 +15,14 @@ import org.bson.codecs.pojo.PojoCodecProvider;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoCredential;
+import com.mongodb.MongoException;
+import com.mongodb.ReadPreference;
 import com.mongodb.ServerAddress;
+import com.mongodb.WriteConcern;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.connection.ClusterDescription;
+import com.mongodb.event.ClusterDescriptionChangedEvent;
+import com.mongodb.event.ClusterListenerAdapter;
 
 import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
 import ca.uwaterloo.swag.mavencrawler.pojo.Archetype;
@@ -44,6 +50,15 @@ public class MongoDBHandler {
 	
 	private static final String MONGODB_AUTHDATABASE = "admin";
 	
+	public static final int DEFAULT_MAX_POOL_SIZE = 100;
+	public static final int DEFAULT_MIN_POOL_SIZE = 0;
+	public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+	public static final int DEFAULT_SOCKET_TIMEOUT = 0;
+	public static final int DEFAULT_SERVER_SELECTION_TIMEOUT = 30000;
+	public static final int DEFAULT_MAX_WAIT_TIME = 120000;
+	public static final String DEFAULT_WRITE_CONCERN = "ACKNOWLEDGED";
+	public static final String DEFAULT_READ_PREFERENCE = "primary";
+	
 	// Default values
 	private String host = "localhost";
 	private Integer port = 27017;
@@ -54,9 +69,21 @@ public class MongoDBHandler {
 	private Boolean sslEnabled = false;
 	private String replicaSetName = null;
 	private String databaseName = "MavenCrawler";
+	private Integer maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+	private Integer minPoolSize = DEFAULT_MIN_POOL_SIZE;
+	private Integer connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private Integer socketTimeout = DEFAULT_SOCKET_TIMEOUT;
+	private Integer serverSelectionTimeout = DEFAULT_SERVER_SELECTION_TIMEOUT;
+	private Integer maxWaitTime = DEFAULT_MAX_WAIT_TIME;
+	private String writeConcern = DEFAULT_WRITE_CONCERN;
+	private String readPreference = DEFAULT_READ_PREFERENCE;
 	
 	private Logger logger;
 	private MongoClient mongo;
+	private volatile MongoDatabase mongoDatabase;
+	
+	// Updated by the driver's cluster monitor, so no round trip is needed to check it
+	private volatile boolean available = false;
 	
 	private enum PropertyType {
 		MONGODB_HOST,
@@ -67,7 +94,15 @@ public class MongoDBHandler {
 		MONGODB_PASSWORD,
 		MONGODB_SSL_ENABLED,
 		MONGODB_REPLICASETNAME,
-		MONGODB_MAINDATABASE
+		MONGODB_MAINDATABASE,
+		MONGODB_MAX_POOL_SIZE,
+		MONGODB_MIN_POOL_SIZE,
+		MONGODB_CONNECT_TIMEOUT,
+		MONGODB_SOCKET_TIMEOUT,
+		MONGODB_SERVER_SELECTION_TIMEOUT,
+		MONGODB_MAX_WAIT_TIME,
+		MONGODB_WRITE_CONCERN,
+		MONGODB_READ_PREFERENCE
 	}
 
 	// Disable default constructor
@@ -92,6 +127,20 @@ public class MongoDBHandler {
 		persister.sslEnabled = Boolean.valueOf(properties.getProperty(PropertyType.MONGODB_SSL_ENABLED.name()));
 		persister.replicaSetName = properties.getProperty(PropertyType.MONGODB_REPLICASETNAME.name());
 		persister.databaseName = properties.getProperty(PropertyType.MONGODB_MAINDATABASE.name());
+		persister.maxPoolSize = Integer.valueOf(properties.getProperty(PropertyType.MONGODB_MAX_POOL_SIZE.name(), 
+				String.valueOf(DEFAULT_MAX_POOL_SIZE)));
+		persister.minPoolSize = Integer.valueOf(properties.getProperty(PropertyType.MONGODB_MIN_POOL_SIZE.name(), 
+				String.valueOf(DEFAULT_MIN_POOL_SIZE)));
+		persister.connectTimeout = Integer.valueOf(properties.getProperty(PropertyType.MONGODB_CONNECT_TIMEOUT.name(), 
+				String.valueOf(DEFAULT_CONNECT_TIMEOUT)));
+		persister.socketTimeout = Integer.valueOf(properties.getProperty(PropertyType.MONGODB_SOCKET_TIMEOUT.name(), 
+				String.valueOf(DEFAULT_SOCKET_TIMEOUT)));
+		persister.serverSelectionTimeout = Integer.valueOf(properties.getProperty(PropertyType.MONGODB_SERVER_SELECTION_TIMEOUT.name(), 
+				String.valueOf(DEFAULT_SERVER_SELECTION_TIMEOUT)));
+		persister.maxWaitTime = Integer.valueOf(properties.getProperty(PropertyType.MONGODB_MAX_WAIT_TIME.name(), 
+				String.valueOf(DEFAULT_MAX_WAIT_TIME)));
+		persister.writeConcern = properties.getProperty(PropertyType.MONGODB_WRITE_CONCERN.name(), DEFAULT_WRITE_CONCERN);
+		persister.readPreference = properties.getProperty(PropertyType.MONGODB_READ_PREFERENCE.name(), DEFAULT_READ_PREFERENCE);
 		
 		return persister;
 	}
@@ -168,35 +217,103 @@ public class MongoDBHandler {
 		this.databaseName = databaseName;
 	}
 
+	public Integer getMaxPoolSize() {
+		return maxPoolSize;
+	}
+
+	public void setMaxPoolSize(Integer maxPoolSize) {
+		this.maxPoolSize = maxPoolSize;
+	}
+
+	public Integer getMinPoolSize() {
+		return minPoolSize;
+	}
+
+	public void setMinPoolSize(Integer minPoolSize) {
+		this.minPoolSize = minPoolSize;
+	}
+
+	public Integer getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(Integer connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public Integer getSocketTimeout() {
+		return socketTimeout;
+	}
+
+	public void setSocketTimeout(Integer socketTimeout) {
+		this.socketTimeout = socketTimeout;
+	}
+
+	public Integer getServerSelectionTimeout() {
+		return serverSelectionTimeout;
+	}
+
+	public void setServerSelectionTimeout(Integer serverSelectionTimeout) {
+		this.serverSelectionTimeout = serverSelectionTimeout;
+	}
+
+	public Integer getMaxWaitTime() {
+		return maxWaitTime;
+	}
+
+	public void setMaxWaitTime(Integer maxWaitTime) {
+		this.maxWaitTime = maxWaitTime;
+	}
+
+	public String getWriteConcern() {
+		return writeConcern;
+	}
+
+	/**
+	 * @param writeConcern name of a {@link WriteConcern} constant, e.g. "MAJORITY"
+	 */
+	public void setWriteConcern(String writeConcern) {
+		this.writeConcern = writeConcern;
+	}
+
+	public String getReadPreference() {
+		return readPreference;
+	}
+
+	/**
+	 * @param readPreference name of a {@link ReadPreference}, e.g. "secondaryPreferred"
+	 */
+	public void setReadPreference(String readPreference) {
+		this.readPreference = readPreference;
+	}
+
 	/**
-	 * Checks if it's currently connected to the database.
+	 * Checks if it's currently connected to the database. The state is kept by the
+	 * driver's cluster monitor, so this does not contact the server.
 	 * @return the connection status TRUE if connected correctly.
 	 */
 	public boolean isConnected() {
-		
-		if (mongo == null) return false;
-		
-		try {
-			Document ping = mongo.getDatabase(getDatabaseName()).runCommand(new BsonDocument("ping", new BsonInt32(1)));
-			return (ping.get("ok").equals(1.0) || ping.get("ok").equals(1));
-		} catch (Exception e) {
-			LoggerHelper.logError(logger, e, "Could not connect to Mongo Database " + getDatabaseName());
-			return false;
-		}
+		return mongo != null && available;
 	}
 
 	/**
-	 * Connects and return the database.
+	 * Connects on first use and returns the same database afterwards. If the server
+	 * goes away, the driver reconnects by itself and operations wait for it up to
+	 * the server selection timeout.
 	 * @return the database if connected correctly, otherwise returns null.
 	 */
 	public MongoDatabase getMongoDatabase() {
-		return connect() ? mongo.getDatabase(getDatabaseName()) : null;
+		
+		MongoDatabase database = mongoDatabase;
+		if (database != null) return database;
+		
+		return connect() ? mongoDatabase : null;
 	}
 
-	public boolean connect() {
+	public synchronized boolean connect() {
 		
 		// Don't connect again, if already connected
-		if (isConnected()) return true;
+		if (mongo != null) return ping();
 		
 		boolean success = false;
 
@@ -206,6 +323,8 @@ public class MongoDBHandler {
 			credential = MongoCredential.createCredential(getUsername(), getAuthDatabase(), getPassword().toCharArray());
 		}
 		
+		ReadPreference preference = parseReadPreference();
+		
 		// Register classes
 		CodecRegistry pojoCodecRegistry = CodecRegistries.fromRegistries(MongoClient.getDefaultCodecRegistry(),
 				CodecRegistries.fromProviders(PojoCodecProvider.builder().automatic(true).conventions(Conventions.DEFAULT_CONVENTIONS).build()));
@@ -213,16 +332,25 @@ public class MongoDBHandler {
 				.codecRegistry(pojoCodecRegistry)
 				.sslEnabled(sslEnabled)
 				.requiredReplicaSetName(replicaSetName)
+				.connectionsPerHost(maxPoolSize)
+				.minConnectionsPerHost(minPoolSize)
+				.connectTimeout(connectTimeout)
+				.socketTimeout(socketTimeout)
+				.serverSelectionTimeout(serverSelectionTimeout)
+				.maxWaitTime(maxWaitTime)
+				.writeConcern(parseWriteConcern())
+				.readPreference(preference)
+				.addClusterListener(new ConnectionStateListener(preference))
 				.build();
 		
 		// Creating a Mongo client 
 		mongo = (credential == null) ? 
 				new MongoClient(new ServerAddress(getHost(), getPort()), options) :
 				new MongoClient(new ServerAddress(getHost(), getPort()), credential, options); 
-		success = isConnected();
+		success = ping() && checkCollectionsIndexes();
 		
 		if (success) {
-			checkCollectionsIndexes();
+			mongoDatabase = mongo.getDatabase(getDatabaseName());
 			LoggerHelper.log(logger, Level.INFO, "Connected to the database successfully");
 		}
 		else {
@@ -233,13 +361,90 @@ public class MongoDBHandler {
 		return success;
 	}
 
-	private void checkCollectionsIndexes() {
-		MongoDatabase mainDatabase = mongo.getDatabase(getDatabaseName());
-		Archetype.checkIndexesInCollection(mainDatabase.getCollection(Archetype.ARCHETYPE_COLLECTION, Archetype.class));
-		Metadata.checkIndexesInCollection(mainDatabase.getCollection(Metadata.METADATA_COLLECTION, Metadata.class));
+	/**
+	 * Only used when connecting. Afterwards, the cluster monitor keeps the state.
+	 */
+	private boolean ping() {
+		
+		try {
+			Document ping = mongo.getDatabase(getDatabaseName()).runCommand(new BsonDocument("ping", new BsonInt32(1)));
+			available = (ping.get("ok").equals(1.0) || ping.get("ok").equals(1));
+		} catch (Exception e) {
+			LoggerHelper.logError(logger, e, "Could not connect to Mongo Database " + getDatabaseName());
+			available = false;
+		}
+		
+		return available;
+	}
+
+	private WriteConcern parseWriteConcern() {
+		
+		WriteConcern concern = (writeConcern == null) ? null : WriteConcern.valueOf(writeConcern.trim());
+		if (concern == null) {
+			LoggerHelper.log(logger, Level.WARNING, "Unknown write concern " + writeConcern + ", using " + DEFAULT_WRITE_CONCERN);
+			concern = WriteConcern.valueOf(DEFAULT_WRITE_CONCERN);
+		}
+		
+		return concern;
+	}
+
+	private ReadPreference parseReadPreference() {
+		
+		try {
+			return ReadPreference.valueOf(readPreference.trim());
+		} catch (Exception e) {
+			LoggerHelper.log(logger, Level.WARNING, "Unknown read preference " + readPreference + ", using " + DEFAULT_READ_PREFERENCE);
+			return ReadPreference.valueOf(DEFAULT_READ_PREFERENCE);
+		}
+	}
+
+	/**
+	 * Follows the driver's view of the cluster. It is notified from the driver's
+	 * monitor threads whenever a server is lost or found again.
+	 */
+	private class ConnectionStateListener extends ClusterListenerAdapter {
+		
+		private final ReadPreference readPreference;
+		
+		private ConnectionStateListener(ReadPreference readPreference) {
+			this.readPreference = readPreference;
+		}
+		
+		@Override
+		public void clusterDescriptionChanged(ClusterDescriptionChangedEvent event) {
+			
+			ClusterDescription description = event.getNewDescription();
+			boolean wasAvailable = available;
+			available = description.hasWritableServer() || description.hasReadableServer(readPreference);
+			
+			if (wasAvailable && !available) {
+				LoggerHelper.log(logger, Level.WARNING, "Lost connection to the database, waiting for it to come back");
+			}
+			else if (!wasAvailable && available && mongoDatabase != null) {
+				LoggerHelper.log(logger, Level.INFO, "Connection to the database is back");
+			}
+		}
+	}
+
+	/**
+	 * Only used when connecting. If indexes can't be created, the connection is closed,
+	 * so they are checked again on the next connection attempt.
+	 */
+	private boolean checkCollectionsIndexes() {
+		
+		try {
+			MongoDatabase mainDatabase = mongo.getDatabase(getDatabaseName());
+			Archetype.checkIndexesInCollection(mainDatabase.getCollection(Archetype.ARCHETYPE_COLLECTION, Archetype.class));
+			Metadata.checkIndexesInCollection(mainDatabase.getCollection(Metadata.METADATA_COLLECTION, Metadata.class));
+		} catch (MongoException e) {
+			LoggerHelper.logError(logger, e, "Could not create indexes in Mongo Database " + getDatabaseName());
+			return false;
+		}
+		
+		return true;
 	}
 
-	public boolean disconnect() {
+	public synchronized boolean disconnect() {
 
 		boolean success = false;
 		
@@ -255,6 +460,8 @@ public class MongoDBHandler {
 		}
 		finally {
 			mongo = null;
+			mongoDatabase = null;
+			available = false;
 		}
 		
 		return success;
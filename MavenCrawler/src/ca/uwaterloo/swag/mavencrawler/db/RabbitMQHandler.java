@@ -1,39 +1,75 @@
 package ca.uwaterloo.swag.mavencrawler.db;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.rabbitmq.client.AMQP;
 import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.Consumer;
 import com.rabbitmq.client.DefaultConsumer;
 import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.MessageProperties;
 
 import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
 
 public class RabbitMQHandler {
 	
+	public static final int DEFAULT_PREFETCH_COUNT = 16;
+	public static final int DEFAULT_CONSUMER_COUNT = 1;
+	public static final int DEFAULT_MAX_RETRIES = 5;
+	public static final long DEFAULT_RETRY_DELAY = 60000;
+	public static final int DEFAULT_MAX_UNCONFIRMED = 1000;
+	public static final String RETRY_COUNT_HEADER = "x-retry-count";
+	
+	private static final long CONFIRM_TIMEOUT = 60;
+	
 	private String username;
 	private String password;
 	private String host;
 	private int port;
 	private String queueName;
+	private int prefetchCount = DEFAULT_PREFETCH_COUNT;
+	private int consumerCount = DEFAULT_CONSUMER_COUNT;
+	private int maxRetries = DEFAULT_MAX_RETRIES;
+	private long retryDelay = DEFAULT_RETRY_DELAY;
+	private int maxUnconfirmed = DEFAULT_MAX_UNCONFIRMED;
 	
 	private Logger logger;
 	private Connection connection;
 	private Channel channel;
+	private List<Channel> consumerChannels = new CopyOnWriteArrayList<>();
+	private Channel confirmChannel;
+	private NavigableSet<Long> unconfirmed = new ConcurrentSkipListSet<>();
+	private Semaphore confirmPermits;
+	private volatile boolean batchNacked;
 	
 	private enum PropertyType {
 		RABBITMQ_HOST,
 		RABBITMQ_PORT,
 		RABBITMQ_USERNAME,
 		RABBITMQ_PASSWORD,
-		RABBITMQ_QUEUE
+		RABBITMQ_QUEUE,
+		RABBITMQ_PREFETCH,
+		RABBITMQ_CONSUMERS,
+		RABBITMQ_MAX_RETRIES,
+		RABBITMQ_RETRY_DELAY,
+		RABBITMQ_MAX_UNCONFIRMED
 	}
 
 	// Disable default constructor
@@ -54,6 +90,16 @@ public class RabbitMQHandler {
 		handler.username = properties.getProperty(PropertyType.RABBITMQ_USERNAME.name());
 		handler.password = properties.getProperty(PropertyType.RABBITMQ_PASSWORD.name());
 		handler.queueName = properties.getProperty(PropertyType.RABBITMQ_QUEUE.name());
+		handler.prefetchCount = Integer.valueOf(properties.getProperty(PropertyType.RABBITMQ_PREFETCH.name(), 
+				String.valueOf(DEFAULT_PREFETCH_COUNT)));
+		handler.consumerCount = Integer.valueOf(properties.getProperty(PropertyType.RABBITMQ_CONSUMERS.name(), 
+				String.valueOf(DEFAULT_CONSUMER_COUNT)));
+		handler.maxRetries = Integer.valueOf(properties.getProperty(PropertyType.RABBITMQ_MAX_RETRIES.name(), 
+				String.valueOf(DEFAULT_MAX_RETRIES)));
+		handler.retryDelay = Long.valueOf(properties.getProperty(PropertyType.RABBITMQ_RETRY_DELAY.name(), 
+				String.valueOf(DEFAULT_RETRY_DELAY)));
+		handler.maxUnconfirmed = Integer.valueOf(properties.getProperty(PropertyType.RABBITMQ_MAX_UNCONFIRMED.name(), 
+				String.valueOf(DEFAULT_MAX_UNCONFIRMED)));
 		
 		return handler;
 	}
@@ -97,6 +143,59 @@ public class RabbitMQHandler {
 	public void setQueueName(String queueName) {
 		this.queueName = queueName;
 	}
+
+	public int getPrefetchCount() {
+		return prefetchCount;
+	}
+
+	public void setPrefetchCount(int prefetchCount) {
+		this.prefetchCount = prefetchCount;
+	}
+
+	public int getConsumerCount() {
+		return consumerCount;
+	}
+
+	public void setConsumerCount(int consumerCount) {
+		this.consumerCount = consumerCount;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public long getRetryDelay() {
+		return retryDelay;
+	}
+
+	public void setRetryDelay(long retryDelay) {
+		this.retryDelay = retryDelay;
+	}
+
+	public int getMaxUnconfirmed() {
+		return maxUnconfirmed;
+	}
+
+	public void setMaxUnconfirmed(int maxUnconfirmed) {
+		this.maxUnconfirmed = maxUnconfirmed;
+	}
+
+	/**
+	 * The delay is part of the name, as the arguments of a queue cannot change once declared.
+	 * After changing the delay, messages left in the old retry queue still go back to the queue.
+	 * @return name of the retry queue for the current retry delay
+	 */
+	public String getRetryQueueName() {
+		return queueName + ".retry." + retryDelay;
+	}
+
+	public String getFailedQueueName() {
+		return queueName + ".failed";
+	}
 	public Connection getConnection() {
 		return connection;
 	}
@@ -107,7 +206,7 @@ public class RabbitMQHandler {
 		
 		if (connect()) {
 			try {
-				channel.basicPublish("", queueName, null, message.getBytes());
+				channel.basicPublish("", queueName, MessageProperties.PERSISTENT_TEXT_PLAIN, message.getBytes(StandardCharsets.UTF_8));
 			} catch (IOException e) {
 				LoggerHelper.logError(logger, e, "Could not send message to RabbitMQ.");
 			}
@@ -118,31 +217,144 @@ public class RabbitMQHandler {
 		
 	}
 	
+	/**
+	 * Publishes persistent messages on a channel with publisher confirms. At most maxUnconfirmed 
+	 * messages wait for their confirmation at once, and the method returns after all are confirmed.
+	 * @param messages
+	 * @return true if the broker confirmed every message
+	 */
+	public synchronized boolean sendMessages(Iterable<String> messages) {
+		
+		if (!connect()) {
+			LoggerHelper.log(logger, Level.SEVERE, "Could not connect to RabbitMQ.");
+			return false;
+		}
+		
+		try {
+			Channel publishChannel = getConfirmChannel();
+			batchNacked = false;
+			
+			for (String message : messages) {
+				if (!confirmPermits.tryAcquire(CONFIRM_TIMEOUT, TimeUnit.SECONDS)) {
+					throw new IOException("Timed out waiting for RabbitMQ confirms.");
+				}
+				unconfirmed.add(publishChannel.getNextPublishSeqNo());
+				publishChannel.basicPublish("", queueName, MessageProperties.PERSISTENT_TEXT_PLAIN, 
+						message.getBytes(StandardCharsets.UTF_8));
+			}
+			
+			// All permits are back once every message is confirmed
+			if (!confirmPermits.tryAcquire(maxUnconfirmed, CONFIRM_TIMEOUT, TimeUnit.SECONDS)) {
+				throw new IOException("Timed out waiting for RabbitMQ confirms.");
+			}
+			confirmPermits.release(maxUnconfirmed);
+			
+			return !batchNacked;
+			
+		} catch (IOException e) {
+			LoggerHelper.logError(logger, e, "Could not send messages to RabbitMQ.");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LoggerHelper.log(logger, Level.WARNING, "Interrupted while waiting for RabbitMQ confirms.");
+		}
+		
+		// Pending confirms are lost with the channel
+		closeConfirmChannel();
+		return false;
+	}
+	
+	private Channel getConfirmChannel() throws IOException {
+		
+		if (confirmChannel != null && confirmChannel.isOpen()) return confirmChannel;
+		
+		unconfirmed.clear();
+		confirmPermits = new Semaphore(maxUnconfirmed);
+		
+		confirmChannel = connection.createChannel();
+		confirmChannel.confirmSelect();
+		confirmChannel.addConfirmListener(new ConfirmListener() {
+			@Override
+			public void handleAck(long deliveryTag, boolean multiple) {
+				confirm(deliveryTag, multiple);
+			}
+			@Override
+			public void handleNack(long deliveryTag, boolean multiple) {
+				batchNacked = true;
+				confirm(deliveryTag, multiple);
+			}
+		});
+		
+		return confirmChannel;
+	}
+	
+	private void confirm(long deliveryTag, boolean multiple) {
+		
+		int confirmed = 0;
+		
+		if (multiple) {
+			NavigableSet<Long> confirmedTags = unconfirmed.headSet(deliveryTag, true);
+			while (confirmedTags.pollFirst() != null) {
+				confirmed++;
+			}
+		}
+		else if (unconfirmed.remove(deliveryTag)) {
+			confirmed = 1;
+		}
+		
+		confirmPermits.release(confirmed);
+	}
+	
+	private void closeConfirmChannel() {
+		
+		try {
+			if (confirmChannel != null && confirmChannel.isOpen()) confirmChannel.close();
+		} catch (IOException | TimeoutException e) {
+			LoggerHelper.logError(logger, e, "Could not close RabbitMQ channel.");
+		} finally {
+			confirmChannel = null;
+		}
+	}
+	
 	public static interface MessageHandler {
 		public boolean handleMessage(String message);
 	}
 	
+	public static interface AsyncMessageHandler {
+		/**
+		 * @param message
+		 * @return completes with true once the message is fully handled
+		 */
+		public CompletableFuture<Boolean> handleMessage(String message);
+	}
+	
+	/**
+	 * Listens with manual acknowledgements, see {@link #listenMessages(AsyncMessageHandler)}.
+	 * Messages are handled in the consumer thread.
+	 * @param messageHandler
+	 */
 	public void listenMessages(MessageHandler messageHandler) {
+		AsyncMessageHandler asyncMessageHandler = message -> CompletableFuture.completedFuture(messageHandler.handleMessage(message));
+		listenMessages(asyncMessageHandler);
+	}
+	
+	/**
+	 * Starts consumerCount consumers, each on its own channel. Each consumer handles at most 
+	 * prefetchCount messages at once, and a message is acknowledged only when its handling 
+	 * completes successfully. Failed messages wait retryDelay milliseconds in the retry queue 
+	 * before going back to the queue, and are parked in the failed queue after maxRetries.
+	 * @param messageHandler
+	 */
+	public void listenMessages(AsyncMessageHandler messageHandler) {
 
 		if (connect()) {
 			
 			try {
-				
-				Consumer consumer = new DefaultConsumer(channel) {
-					@Override
-					public void handleDelivery(String consumerTag, Envelope envelope,
-							AMQP.BasicProperties properties, byte[] body)
-									throws IOException {
-						
-						String message = new String(body, "UTF-8");
-						System.out.println(" [x] Received '" + message + "'");
-						
-						messageHandler.handleMessage(message);
-					}
-				};
-				
-				channel.basicConsume(queueName, true, consumer);
-				
+				for (int i = 0; i < consumerCount; i++) {
+					Channel consumerChannel = connection.createChannel();
+					consumerChannel.basicQos(prefetchCount);
+					consumerChannels.add(consumerChannel);
+					consumerChannel.basicConsume(queueName, false, newConsumer(consumerChannel, messageHandler));
+				}
 			} catch (IOException e) {
 				LoggerHelper.logError(logger, e, "Could not listen to messages from RabbitMQ.");
 			}
@@ -152,6 +364,68 @@ public class RabbitMQHandler {
 		}
 	}
 	
+	private Consumer newConsumer(Channel consumerChannel, AsyncMessageHandler messageHandler) {
+		
+		return new DefaultConsumer(consumerChannel) {
+			@Override
+			public void handleDelivery(String consumerTag, Envelope envelope,
+					AMQP.BasicProperties properties, byte[] body)
+							throws IOException {
+				
+				String message = new String(body, "UTF-8");
+				LoggerHelper.log(logger, Level.FINE, "Received '" + message + "'");
+				
+				CompletableFuture<Boolean> result;
+				try {
+					result = messageHandler.handleMessage(message);
+				} catch (RuntimeException e) {
+					LoggerHelper.logError(logger, e, "Could not handle message from RabbitMQ.");
+					result = CompletableFuture.completedFuture(false);
+				}
+				
+				result.whenComplete((success, error) -> 
+					acknowledge(consumerChannel, envelope, properties, body, error == null && Boolean.TRUE.equals(success)));
+			}
+		};
+	}
+	
+	private void acknowledge(Channel consumerChannel, Envelope envelope, AMQP.BasicProperties properties, 
+			byte[] body, boolean success) {
+		
+		// Acknowledgements may come from many worker threads
+		synchronized (consumerChannel) {
+			try {
+				if (!success) {
+					int retryCount = getRetryCount(properties);
+					String targetQueue = retryCount < maxRetries ? getRetryQueueName() : getFailedQueueName();
+					
+					Map<String, Object> headers = new HashMap<>();
+					if (properties != null && properties.getHeaders() != null) {
+						headers.putAll(properties.getHeaders());
+					}
+					headers.put(RETRY_COUNT_HEADER, retryCount + 1);
+					
+					// Published before the ack, so a crash may duplicate the message but never lose it
+					consumerChannel.basicPublish("", targetQueue, 
+							MessageProperties.PERSISTENT_TEXT_PLAIN.builder().headers(headers).build(), 
+							body);
+				}
+				
+				consumerChannel.basicAck(envelope.getDeliveryTag(), false);
+			} catch (IOException e) {
+				LoggerHelper.logError(logger, e, "Could not acknowledge message to RabbitMQ.");
+			}
+		}
+	}
+	
+	static int getRetryCount(AMQP.BasicProperties properties) {
+		
+		if (properties == null || properties.getHeaders() == null) return 0;
+		
+		Object retryCount = properties.getHeaders().get(RETRY_COUNT_HEADER);
+		return retryCount instanceof Number ? ((Number) retryCount).intValue() : 0;
+	}
+	
 	public boolean isConnected() {
 		return (channel != null && channel.isOpen());
 	}
@@ -172,6 +446,7 @@ public class RabbitMQHandler {
 			connection = factory.newConnection();
 			channel = connection.createChannel();
 			channel.queueDeclare(queueName, true, false, false, null);
+			declareRetryQueues();
 			success = channel.isOpen();
 		} catch (IOException|TimeoutException e) {
 			LoggerHelper.logError(logger, e, "Could not connect to RabbitMQ.");
@@ -182,17 +457,34 @@ public class RabbitMQHandler {
 		return success;
 	}
 
+	private void declareRetryQueues() throws IOException {
+		
+		// Expired messages go back to the main queue
+		Map<String, Object> retryArguments = new HashMap<>();
+		retryArguments.put("x-message-ttl", retryDelay);
+		retryArguments.put("x-dead-letter-exchange", "");
+		retryArguments.put("x-dead-letter-routing-key", queueName);
+		
+		channel.queueDeclare(getRetryQueueName(), true, false, false, retryArguments);
+		channel.queueDeclare(getFailedQueueName(), true, false, false, null);
+	}
+
 	public boolean disconnect() {
 
 		boolean success = false;
 		
 		try {
+			for (Channel consumerChannel : consumerChannels) {
+				if (consumerChannel.isOpen()) consumerChannel.close();
+			}
+			closeConfirmChannel();
 			channel.close();
 			connection.close();
 			success = (!channel.isOpen() && !connection.isOpen());
 		} catch (IOException | TimeoutException e) {
 			LoggerHelper.logError(logger, e, "Could not disconnect to RabbitMQ.");
 		} finally {
+			consumerChannels.clear();
 			channel = null;
 			connection = null;
 		}
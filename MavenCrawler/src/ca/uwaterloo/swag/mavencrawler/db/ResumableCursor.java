@@ -0,0 +1,150 @@
+package ca.uwaterloo.swag.mavencrawler.db;
+
+import static com.mongodb.client.model.Filters.gt;
+
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.conversions.Bson;
+
+import com.mongodb.MongoCursorNotFoundException;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Sorts;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+
+/**
+ * Iterates over a whole collection in _id order, holding only one batch in memory.
+ * The _id of the last processed document is kept, so the iteration can continue
+ * from there when the server cursor is lost or when the process is restarted.
+ *
+ * @param <T> the document class of the collection
+ */
+public class ResumableCursor<T> {
+
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	public static final int MAX_RESUMES_WITHOUT_PROGRESS = 3;
+
+	private final MongoCollection<T> collection;
+	private final Codec<T> codec;
+	private final int batchSize;
+	private final Logger logger;
+
+	private Bson filter = new Document();
+	private BsonValue lastId;
+	private Consumer<BsonValue> batchListener;
+	private long processed;
+
+	public ResumableCursor(MongoCollection<T> collection, Logger logger) {
+		this(collection, DEFAULT_BATCH_SIZE, logger);
+	}
+
+	public ResumableCursor(MongoCollection<T> collection, int batchSize, Logger logger) {
+		super();
+		this.collection = collection;
+		this.codec = collection.getCodecRegistry().get(collection.getDocumentClass());
+		this.batchSize = batchSize;
+		this.logger = logger;
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public Bson getFilter() {
+		return filter;
+	}
+
+	public void setFilter(Bson filter) {
+		this.filter = filter;
+	}
+
+	public BsonValue getLastId() {
+		return lastId;
+	}
+
+	/**
+	 * Documents up to and including this _id are skipped.
+	 * @param lastId
+	 */
+	public void setLastId(BsonValue lastId) {
+		this.lastId = lastId;
+	}
+
+	/**
+	 * Called with the last processed _id after each batch, e.g. to save a checkpoint.
+	 * @param batchListener
+	 */
+	public void setBatchListener(Consumer<BsonValue> batchListener) {
+		this.batchListener = batchListener;
+	}
+
+	/**
+	 * Passes every remaining document to the consumer.
+	 * @param consumer
+	 * @return number of documents processed
+	 * @throws MongoCursorNotFoundException if the cursor is lost MAX_RESUMES_WITHOUT_PROGRESS 
+	 * times in a row without processing any document
+	 */
+	public long forEach(Consumer<T> consumer) {
+
+		processed = 0;
+		int resumesWithoutProgress = 0;
+
+		while (true) {
+			BsonValue resumedId = lastId;
+			long resumedProcessed = processed;
+
+			try {
+				iterateFromLastId(consumer);
+				return processed;
+			} catch (MongoCursorNotFoundException e) {
+				resumesWithoutProgress = (processed > resumedProcessed) ? 0 : resumesWithoutProgress + 1;
+				if (resumesWithoutProgress >= MAX_RESUMES_WITHOUT_PROGRESS) {
+					LoggerHelper.log(logger, Level.SEVERE, "Cursor on " + collection.getNamespace() +
+							" keeps being lost after " + resumedId + ", giving up");
+					throw e;
+				}
+
+				LoggerHelper.log(logger, Level.WARNING, "Cursor on " + collection.getNamespace() +
+						" was lost, resuming after " + lastId);
+			}
+		}
+	}
+
+	private void iterateFromLastId(Consumer<T> consumer) {
+
+		Bson query = lastId == null ? filter : Filters.and(filter, gt("_id", lastId));
+
+		try (MongoCursor<RawBsonDocument> cursor = collection.withDocumentClass(RawBsonDocument.class)
+				.find(query)
+				.sort(Sorts.ascending("_id"))
+				.batchSize(batchSize)
+				.iterator()) {
+
+			while (cursor.hasNext()) {
+				RawBsonDocument rawDocument = cursor.next();
+				consumer.accept(codec.decode(rawDocument.asBsonReader(), DecoderContext.builder().build()));
+				lastId = rawDocument.get("_id");
+				processed++;
+
+				if (processed % batchSize == 0) notifyBatchListener();
+			}
+		}
+
+		notifyBatchListener();
+	}
+
+	private void notifyBatchListener() {
+		if (batchListener != null && lastId != null) batchListener.accept(lastId);
+	}
+
+}
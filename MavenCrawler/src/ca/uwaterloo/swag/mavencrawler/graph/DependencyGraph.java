@@ -0,0 +1,335 @@
+package ca.uwaterloo.swag.mavencrawler.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.pojo.Dependency;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+
+/**
+ * Read-only graph of saved POMs and their dependencies, with one int node per
+ * "groupId:artifactId:version". Edges are kept in compressed sparse rows, both from
+ * each node to its dependencies and from each node to its dependents, so that
+ * neighbours are a slice of an int array and traversals do not allocate per edge.
+ *
+ * Dependency targets are the declared version specifications: ranges and unresolved
+ * properties are nodes of their own.
+ */
+public class DependencyGraph {
+
+	/**
+	 * Relationship from a POM to another one
+	 */
+	public enum EdgeType {
+
+		/**
+		 * compile or runtime dependency, also a dependency of the dependents
+		 */
+		DEPENDENCY,
+
+		/**
+		 * test, provided, system or optional dependency
+		 */
+		NON_TRANSITIVE_DEPENDENCY,
+
+		PARENT,
+
+		/**
+		 * POM imported in dependencyManagement
+		 */
+		IMPORT;
+
+		private static final EdgeType[] VALUES = values();
+
+		public static EdgeType of(Dependency dependency) {
+			if (Dependency.IMPORT_SCOPE.equals(dependency.getScope())) return IMPORT;
+			return dependency.transitive() ? DEPENDENCY : NON_TRANSITIVE_DEPENDENCY;
+		}
+
+		static int mask(Set<EdgeType> types) {
+			int mask = 0;
+			for (EdgeType type : types) {
+				mask |= 1 << type.ordinal();
+			}
+			return mask;
+		}
+	}
+
+	private final GavInterner nodes;
+	private final int[] forwardOffsets;
+	private final int[] forwardTargets;
+	private final byte[] forwardTypes;
+	private final int[] reverseOffsets;
+	private final int[] reverseSources;
+	private final byte[] reverseTypes;
+
+	private DependencyGraph(GavInterner nodes, int[] forwardOffsets, int[] forwardTargets, byte[] forwardTypes,
+			int[] reverseOffsets, int[] reverseSources, byte[] reverseTypes) {
+		super();
+		this.nodes = nodes;
+		this.forwardOffsets = forwardOffsets;
+		this.forwardTargets = forwardTargets;
+		this.forwardTypes = forwardTypes;
+		this.reverseOffsets = reverseOffsets;
+		this.reverseSources = reverseSources;
+		this.reverseTypes = reverseTypes;
+	}
+
+	/**
+	 * Builds the graph of all VersionPoms saved with their dependencies.
+	 * @param mongoDatabase
+	 * @param logger
+	 * @return graph
+	 */
+	public static DependencyGraph loadFromMongo(MongoDatabase mongoDatabase, Logger logger) {
+
+		Builder builder = new Builder();
+		VersionPom.iterateAllInMongo(mongoDatabase, builder::addVersionPom);
+
+		DependencyGraph graph = builder.build();
+		LoggerHelper.log(logger, Level.INFO, "Loaded dependency graph with " + graph.nodeCount() + " nodes and " +
+				graph.edgeCount() + " edges");
+
+		return graph;
+	}
+
+	public int nodeCount() {
+		return nodes.size();
+	}
+
+	public int edgeCount() {
+		return forwardTargets.length;
+	}
+
+	/**
+	 * @return node id, or -1 if not in the graph
+	 */
+	public int find(String groupId, String artifactId, String version) {
+		return nodes.find(GavInterner.gav(groupId, artifactId, version));
+	}
+
+	/**
+	 * @return "groupId:artifactId:version" of the node
+	 */
+	public String gav(int node) {
+		return nodes.get(node);
+	}
+
+	/**
+	 * @return direct dependencies, parents and imports of the node, through edges of the given types
+	 */
+	public int[] dependencies(int node, Set<EdgeType> types) {
+		return neighbours(node, forwardOffsets, forwardTargets, forwardTypes, EdgeType.mask(types));
+	}
+
+	/**
+	 * @return nodes with an edge of the given types to the node
+	 */
+	public int[] dependents(int node, Set<EdgeType> types) {
+		return neighbours(node, reverseOffsets, reverseSources, reverseTypes, EdgeType.mask(types));
+	}
+
+	/**
+	 * Nodes reachable from the node through edges of the given types, e.g. DEPENDENCY
+	 * only for the dependencies a project gets from its compile dependencies.
+	 * @return reached nodes, without the node itself unless in a cycle
+	 */
+	public BitSet transitiveDependencies(int node, Set<EdgeType> types) {
+		return reach(node, forwardOffsets, forwardTargets, forwardTypes, EdgeType.mask(types));
+	}
+
+	/**
+	 * Nodes from which the node is reachable through edges of the given types.
+	 * @return reaching nodes, without the node itself unless in a cycle
+	 */
+	public BitSet transitiveDependents(int node, Set<EdgeType> types) {
+		return reach(node, reverseOffsets, reverseSources, reverseTypes, EdgeType.mask(types));
+	}
+
+	private static int[] neighbours(int node, int[] offsets, int[] adjacent, byte[] edgeTypes, int mask) {
+
+		int start = offsets[node];
+		int end = offsets[node + 1];
+		int[] found = new int[end - start];
+		int count = 0;
+
+		for (int edge = start; edge < end; edge++) {
+			if ((mask & (1 << edgeTypes[edge])) != 0) {
+				found[count++] = adjacent[edge];
+			}
+		}
+
+		return (count == found.length) ? found : Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Breadth-first search, with a queue growing with the number of reached nodes.
+	 */
+	private BitSet reach(int node, int[] offsets, int[] adjacent, byte[] edgeTypes, int mask) {
+
+		BitSet reached = new BitSet(nodeCount());
+		int[] queue = new int[64];
+		int head = 0;
+		int tail = 0;
+		queue[tail++] = node;
+
+		while (head < tail) {
+			int current = queue[head++];
+
+			for (int edge = offsets[current], end = offsets[current + 1]; edge < end; edge++) {
+				int next = adjacent[edge];
+				if ((mask & (1 << edgeTypes[edge])) == 0 || reached.get(next)) continue;
+
+				reached.set(next);
+				if (tail == queue.length) {
+					queue = Arrays.copyOf(queue, queue.length * 2);
+				}
+				queue[tail++] = next;
+			}
+		}
+
+		return reached;
+	}
+
+	/**
+	 * Collects edges in growing arrays, then sorts them into rows by counting.
+	 * Not thread-safe.
+	 */
+	public static class Builder {
+
+		private final GavInterner nodes;
+		private int[] sources = new int[1024];
+		private int[] targets = new int[1024];
+		private byte[] types = new byte[1024];
+		private int edgeCount;
+
+		public Builder() {
+			this(new GavInterner());
+		}
+
+		/**
+		 * @param expectedNodes number of nodes expected, to avoid resizing
+		 */
+		public Builder(int expectedNodes) {
+			this(new GavInterner(expectedNodes));
+		}
+
+		private Builder(GavInterner nodes) {
+			super();
+			this.nodes = nodes;
+		}
+
+		/**
+		 * Adds the POM, with edges to its parent, dependencies and imported POMs.
+		 * Dependencies without a version are skipped.
+		 * @param versionPom
+		 */
+		public void addVersionPom(VersionPom versionPom) {
+
+			if (versionPom.getGroupId() == null || versionPom.getArtifactId() == null || versionPom.getVersion() == null) {
+				return;
+			}
+
+			int node = addNode(GavInterner.gav(versionPom.getGroupId(), versionPom.getArtifactId(), versionPom.getVersion()));
+
+			if (versionPom.getParentGroupId() != null && versionPom.getParentArtifactId() != null &&
+					versionPom.getParentVersion() != null) {
+				addEdge(node, addNode(GavInterner.gav(versionPom.getParentGroupId(), versionPom.getParentArtifactId(),
+						versionPom.getParentVersion())), EdgeType.PARENT);
+			}
+
+			addDependencies(node, versionPom.getDependencies());
+			addDependencies(node, versionPom.getImportedDependencies());
+		}
+
+		private void addDependencies(int node, Iterable<Dependency> dependencies) {
+
+			if (dependencies == null) return;
+
+			for (Dependency dependency : dependencies) {
+				if (dependency.getVersion() == null) continue;
+				int target = addNode(GavInterner.gav(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion()));
+				addEdge(node, target, EdgeType.of(dependency));
+			}
+		}
+
+		/**
+		 * @param gav "groupId:artifactId:version"
+		 * @return node id, added if new
+		 */
+		public int addNode(String gav) {
+			return nodes.intern(gav);
+		}
+
+		public void addEdge(int source, int target, EdgeType type) {
+
+			if (edgeCount == sources.length) {
+				int capacity = edgeCount + (edgeCount >> 1);
+				sources = Arrays.copyOf(sources, capacity);
+				targets = Arrays.copyOf(targets, capacity);
+				types = Arrays.copyOf(types, capacity);
+			}
+
+			sources[edgeCount] = source;
+			targets[edgeCount] = target;
+			types[edgeCount] = (byte) type.ordinal();
+			edgeCount++;
+		}
+
+		/**
+		 * @return graph of the nodes and edges added so far
+		 */
+		public DependencyGraph build() {
+
+			int nodeCount = nodes.size();
+			nodes.trim();
+
+			int[] forwardOffsets = offsets(sources, nodeCount);
+			int[] forwardTargets = new int[edgeCount];
+			byte[] forwardTypes = new byte[edgeCount];
+			fill(forwardOffsets, sources, targets, forwardTargets, forwardTypes);
+
+			int[] reverseOffsets = offsets(targets, nodeCount);
+			int[] reverseSources = new int[edgeCount];
+			byte[] reverseTypes = new byte[edgeCount];
+			fill(reverseOffsets, targets, sources, reverseSources, reverseTypes);
+
+			return new DependencyGraph(nodes, forwardOffsets, forwardTargets, forwardTypes,
+					reverseOffsets, reverseSources, reverseTypes);
+		}
+
+		/**
+		 * @return start of each node's row, and the edge count at the end
+		 */
+		private int[] offsets(int[] rows, int nodeCount) {
+
+			int[] offsets = new int[nodeCount + 1];
+			for (int edge = 0; edge < edgeCount; edge++) {
+				offsets[rows[edge] + 1]++;
+			}
+			for (int node = 0; node < nodeCount; node++) {
+				offsets[node + 1] += offsets[node];
+			}
+
+			return offsets;
+		}
+
+		private void fill(int[] offsets, int[] rows, int[] columns, int[] adjacent, byte[] edgeTypes) {
+
+			int[] next = Arrays.copyOf(offsets, offsets.length - 1);
+
+			for (int edge = 0; edge < edgeCount; edge++) {
+				int position = next[rows[edge]]++;
+				adjacent[position] = columns[edge];
+				edgeTypes[position] = types[edge];
+			}
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+package ca.uwaterloo.swag.mavencrawler.graph;
+
+import java.util.Arrays;
+
+/**
+ * Maps "groupId:artifactId:version" strings to dense int ids, from 0 in insertion order.
+ * Keys are kept once, in an open-addressing table, instead of a HashMap with an
+ * entry and a boxed Integer per key.
+ */
+public class GavInterner {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private String[] keys;
+	private int[] slots;
+	private int mask;
+	private int size;
+
+	public GavInterner() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param expectedSize number of keys expected, to avoid resizing
+	 */
+	public GavInterner(int expectedSize) {
+		super();
+		int capacity = Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1;
+		this.keys = new String[Math.max(expectedSize, 16)];
+		this.slots = new int[capacity];
+		this.mask = capacity - 1;
+		Arrays.fill(slots, -1);
+	}
+
+	public static String gav(String groupId, String artifactId, String version) {
+		return groupId + ":" + artifactId + ":" + version;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return id of the key, added if new
+	 */
+	public int intern(String key) {
+
+		int slot = slot(key);
+		if (slots[slot] >= 0) return slots[slot];
+
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size + (size >> 1) + 1);
+		}
+		int id = size++;
+		keys[id] = key;
+		slots[slot] = id;
+
+		// Table at most half full
+		if (size * 2 > slots.length) {
+			rehash(slots.length * 2);
+		}
+
+		return id;
+	}
+
+	/**
+	 * @return id of the key, or -1 if unknown
+	 */
+	public int find(String key) {
+		return slots[slot(key)];
+	}
+
+	/**
+	 * @return key of the id
+	 */
+	public String get(int id) {
+		if (id < 0 || id >= size) throw new IndexOutOfBoundsException("Unknown id " + id);
+		return keys[id];
+	}
+
+	/**
+	 * Drops unused capacity once all keys are added.
+	 */
+	public void trim() {
+		keys = Arrays.copyOf(keys, size);
+	}
+
+	private int slot(String key) {
+
+		int slot = hash(key) & mask;
+		int id;
+
+		while ((id = slots[slot]) >= 0 && !keys[id].equals(key)) {
+			slot = (slot + 1) & mask;
+		}
+
+		return slot;
+	}
+
+	private void rehash(int capacity) {
+
+		slots = new int[capacity];
+		mask = capacity - 1;
+		Arrays.fill(slots, -1);
+
+		for (int id = 0; id < size; id++) {
+			int slot = hash(keys[id]) & mask;
+			while (slots[slot] >= 0) slot = (slot + 1) & mask;
+			slots[slot] = id;
+		}
+	}
+
+	private static int hash(String key) {
+		int hash = key.hashCode() * 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+
+}
@@ -0,0 +1,225 @@
+package ca.uwaterloo.swag.mavencrawler.helpers;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Orders versions as Maven does: numbers are compared as numbers ("1.9" &lt; "1.10"),
+ * trailing zeros and release qualifiers are ignored ("1" = "1.0" = "1.0.0.Final"), and
+ * alpha &lt; beta &lt; milestone &lt; rc = cr &lt; snapshot &lt; release &lt; sp &lt; other qualifiers.
+ * A qualifier after a dot or a hyphen comes before a number after a hyphen, itself before
+ * a number after a dot. Single letters a, b and m followed by a digit stand for alpha, beta
+ * and milestone.
+ *
+ * Each version is turned into an ASCII sort key, whose string order is the version order.
+ * Keys can then be saved and compared by the database. Where Maven's own comparison is not
+ * transitive (e.g. "1.0-1" against "1.0.RC1" and "1.0.1"), keys still give a total order.
+ */
+public class MavenVersion {
+
+	public static final Comparator<String> COMPARATOR = MavenVersion::compare;
+
+	static final int MAX_CACHED = 100000;
+	private static final int MAX_NUMBER_LENGTH = 99;
+
+	// Kinds of items, in ascending order
+	private static final char ALPHA = '1';
+	private static final char BETA = '2';
+	private static final char MILESTONE = '3';
+	private static final char RC = '4';
+	private static final char SNAPSHOT = '5';
+	private static final char NULL_BEFORE_LOWER = '6';
+	private static final char END = '7';
+	private static final char NULL_BEFORE_HIGHER = '8';
+	private static final char SP = '9';
+	private static final char QUALIFIER = 'A';
+	private static final char HYPHEN_NUMBER = 'B';
+	private static final char DOT_NUMBER = 'C';
+
+	// Zero, empty or release qualifier, equal to the padding of the shorter version
+	private static final char NULL = 0;
+
+	private static final char QUALIFIER_END = ' ';
+
+	private static final Map<String, String> keys = new ConcurrentHashMap<>();
+
+	/**
+	 * @return negative, zero or positive as v1 is older, the same as or newer than v2.
+	 * Null versions come first.
+	 */
+	public static int compare(String v1, String v2) {
+		if (v1 == null) return (v2 == null) ? 0 : -1;
+		if (v2 == null) return 1;
+		return sortKey(v1).compareTo(sortKey(v2));
+	}
+
+	/**
+	 * Sort key of the version, cached for the first distinct versions seen.
+	 * @param version
+	 * @return ASCII key, or null if the version is null
+	 */
+	public static String sortKey(String version) {
+
+		if (version == null) return null;
+
+		String key = keys.get(version);
+		if (key == null) {
+			key = computeSortKey(version);
+			if (keys.size() < MAX_CACHED) {
+				keys.put(version, key);
+			}
+		}
+
+		return key;
+	}
+
+	static int cachedKeys() {
+		return keys.size();
+	}
+
+	static String computeSortKey(String version) {
+
+		List<Item> items = parse(version.trim().toLowerCase(Locale.ROOT));
+
+		// Trailing nulls are dropped, at the end and before each hyphen
+		for (int i = items.size() - 1; i >= 0; i--) {
+			if (items.get(i).kind == NULL && (i == items.size() - 1 || items.get(i + 1).separator == '-')) {
+				items.remove(i);
+			}
+		}
+
+		StringBuilder key = new StringBuilder(version.length() + 8);
+		char next = END;
+
+		// From the end, as a null compares to padding by the next item that is not null
+		for (int i = items.size() - 1; i >= 0; i--) {
+			Item item = items.get(i);
+			if (item.kind == NULL) {
+				item.kind = (next < END) ? NULL_BEFORE_LOWER : (item.separator == '.') ? DOT_NUMBER : NULL_BEFORE_HIGHER;
+				item.value = (item.kind == DOT_NUMBER) ? "00" : null;
+			}
+			else {
+				next = item.kind;
+			}
+		}
+
+		for (Item item : items) {
+			key.append(item.kind);
+			if (item.value != null) key.append(item.value);
+		}
+
+		return key.append(END).toString();
+	}
+
+	private static List<Item> parse(String version) {
+
+		List<Item> items = new ArrayList<>();
+		char separator = '.';
+		int start = 0;
+
+		for (int i = 0; i <= version.length(); i++) {
+			char c = (i < version.length()) ? version.charAt(i) : '.';
+
+			if (c == '.' || c == '-') {
+				if (i < version.length() || i > start) {
+					items.add(item(separator, version.substring(start, i), false));
+				}
+				separator = c;
+				start = i + 1;
+			}
+			else if (i > start && isDigit(c) != isDigit(version.charAt(i - 1))) {
+				// A switch between digits and letters is a hyphen
+				items.add(item(separator, version.substring(start, i), isDigit(c)));
+				separator = '-';
+				start = i;
+			}
+		}
+
+		return items;
+	}
+
+	private static Item item(char separator, String text, boolean followedByDigit) {
+
+		if (!text.isEmpty() && isDigit(text.charAt(0))) {
+			int zeros = 0;
+			while (zeros < text.length() - 1 && text.charAt(zeros) == '0') zeros++;
+			String number = text.substring(zeros);
+			if (number.equals("0")) return new Item(separator, NULL, null);
+			if (number.length() > MAX_NUMBER_LENGTH) number = number.substring(0, MAX_NUMBER_LENGTH);
+
+			String length = (number.length() < 10) ? "0" + number.length() : String.valueOf(number.length());
+			return new Item(separator, (separator == '-') ? HYPHEN_NUMBER : DOT_NUMBER, length + number);
+		}
+
+		if (followedByDigit && text.length() == 1) {
+			switch (text.charAt(0)) {
+			case 'a':
+				return new Item(separator, ALPHA, null);
+			case 'b':
+				return new Item(separator, BETA, null);
+			case 'm':
+				return new Item(separator, MILESTONE, null);
+			}
+		}
+
+		switch (text) {
+		case "alpha":
+			return new Item(separator, ALPHA, null);
+		case "beta":
+			return new Item(separator, BETA, null);
+		case "milestone":
+			return new Item(separator, MILESTONE, null);
+		case "rc":
+		case "cr":
+			return new Item(separator, RC, null);
+		case "snapshot":
+			return new Item(separator, SNAPSHOT, null);
+		case "":
+		case "ga":
+		case "final":
+		case "release":
+			return new Item(separator, NULL, null);
+		case "sp":
+			return new Item(separator, SP, null);
+		default:
+			return new Item(separator, QUALIFIER, printable(text) + QUALIFIER_END);
+		}
+	}
+
+	/**
+	 * Keeps keys in printable ASCII, above the end of qualifiers.
+	 */
+	private static String printable(String text) {
+
+		StringBuilder printable = new StringBuilder(text.length());
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			printable.append((c > QUALIFIER_END && c < 127) ? c : '~');
+		}
+
+		return printable.toString();
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static class Item {
+
+		private final char separator;
+		private char kind;
+		private String value;
+
+		private Item(char separator, char kind, String value) {
+			super();
+			this.separator = separator;
+			this.kind = kind;
+			this.value = value;
+		}
+	}
+
+}
@@ -0,0 +1,289 @@
+package ca.uwaterloo.swag.mavencrawler.http;
+
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.HttpHost;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+/**
+ * HTTP client shared by the crawlers and the downloader. Connections are kept alive
+ * in a pool, limited per host, and closed after being idle for a minute. All requests
+ * have connect and read timeouts, and a timeout to get a connection from the pool.
+ * Responses are compressed with gzip when the server supports it, except for
+ * downloads that use byte ranges.
+ */
+public class HttpClientHandler implements AutoCloseable {
+
+	public static final int DEFAULT_CONNECT_TIMEOUT = 20000;
+	public static final int DEFAULT_READ_TIMEOUT = 30000;
+	public static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = 60000;
+	public static final int DEFAULT_MAX_CONNECTIONS = 100;
+	public static final int DEFAULT_MAX_PER_HOST = 16;
+	public static final String DEFAULT_USER_AGENT = "MavenCrawler";
+
+	private static final long IDLE_CONNECTION_TIMEOUT = 60;
+
+	private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+	private int readTimeout = DEFAULT_READ_TIMEOUT;
+	private int connectionRequestTimeout = DEFAULT_CONNECTION_REQUEST_TIMEOUT;
+	private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+	private int maxPerHost = DEFAULT_MAX_PER_HOST;
+	private String userAgent = DEFAULT_USER_AGENT;
+	private String proxyHost;
+	private int proxyPort;
+
+	private Logger logger;
+	private CloseableHttpClient httpClient;
+	private RequestConfig requestConfig;
+
+	private enum PropertyType {
+		HTTP_CONNECT_TIMEOUT,
+		HTTP_READ_TIMEOUT,
+		HTTP_CONNECTION_REQUEST_TIMEOUT,
+		HTTP_MAX_CONNECTIONS,
+		HTTP_MAX_PER_HOST,
+		HTTP_USER_AGENT,
+		HTTP_PROXY_HOST,
+		HTTP_PROXY_PORT
+	}
+
+	// Disable default constructor
+	private HttpClientHandler() {}
+
+	public static HttpClientHandler newInstance(Logger logger) {
+		HttpClientHandler handler = new HttpClientHandler();
+		handler.logger = logger;
+
+		return handler;
+	}
+
+	public static HttpClientHandler newInstance(Logger logger, Properties properties) {
+		HttpClientHandler handler = new HttpClientHandler();
+		handler.logger = logger;
+		handler.connectTimeout = Integer.valueOf(properties.getProperty(PropertyType.HTTP_CONNECT_TIMEOUT.name(),
+				String.valueOf(DEFAULT_CONNECT_TIMEOUT)));
+		handler.readTimeout = Integer.valueOf(properties.getProperty(PropertyType.HTTP_READ_TIMEOUT.name(),
+				String.valueOf(DEFAULT_READ_TIMEOUT)));
+		handler.connectionRequestTimeout = Integer.valueOf(properties.getProperty(
+				PropertyType.HTTP_CONNECTION_REQUEST_TIMEOUT.name(), String.valueOf(DEFAULT_CONNECTION_REQUEST_TIMEOUT)));
+		handler.maxConnections = Integer.valueOf(properties.getProperty(PropertyType.HTTP_MAX_CONNECTIONS.name(),
+				String.valueOf(DEFAULT_MAX_CONNECTIONS)));
+		handler.maxPerHost = Integer.valueOf(properties.getProperty(PropertyType.HTTP_MAX_PER_HOST.name(),
+				String.valueOf(DEFAULT_MAX_PER_HOST)));
+		handler.userAgent = properties.getProperty(PropertyType.HTTP_USER_AGENT.name(), DEFAULT_USER_AGENT);
+		handler.proxyHost = properties.getProperty(PropertyType.HTTP_PROXY_HOST.name());
+		handler.proxyPort = Integer.valueOf(properties.getProperty(PropertyType.HTTP_PROXY_PORT.name(), "0"));
+
+		if (handler.proxyHost != null && handler.proxyHost.trim().isEmpty()) {
+			handler.proxyHost = null;
+		}
+
+		return handler;
+	}
+
+	public int getConnectTimeout() {
+		return connectTimeout;
+	}
+
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+	public int getReadTimeout() {
+		return readTimeout;
+	}
+
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+	/**
+	 * @return maximum time (in milliseconds) to wait for a connection from the pool
+	 */
+	public int getConnectionRequestTimeout() {
+		return connectionRequestTimeout;
+	}
+
+	public void setConnectionRequestTimeout(int connectionRequestTimeout) {
+		this.connectionRequestTimeout = connectionRequestTimeout;
+	}
+
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	public void setMaxConnections(int maxConnections) {
+		this.maxConnections = maxConnections;
+	}
+
+	public int getMaxPerHost() {
+		return maxPerHost;
+	}
+
+	public void setMaxPerHost(int maxPerHost) {
+		this.maxPerHost = maxPerHost;
+	}
+
+	public String getUserAgent() {
+		return userAgent;
+	}
+
+	public void setUserAgent(String userAgent) {
+		this.userAgent = userAgent;
+	}
+
+	public String getProxyHost() {
+		return proxyHost;
+	}
+
+	public void setProxyHost(String proxyHost) {
+		this.proxyHost = proxyHost;
+	}
+
+	public int getProxyPort() {
+		return proxyPort;
+	}
+
+	public void setProxyPort(int proxyPort) {
+		this.proxyPort = proxyPort;
+	}
+
+	/**
+	 * The client is created with the current settings on first use.
+	 * @return shared client
+	 */
+	public synchronized CloseableHttpClient getHttpClient() {
+
+		if (httpClient == null) {
+			// No time to live, connections are only closed once idle or expired
+			PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+			connectionManager.setMaxTotal(maxConnections);
+			connectionManager.setDefaultMaxPerRoute(maxPerHost);
+
+			requestConfig = RequestConfig.custom()
+					.setConnectTimeout(connectTimeout)
+					.setConnectionRequestTimeout(connectionRequestTimeout)
+					.setSocketTimeout(readTimeout)
+					.build();
+
+			HttpClientBuilder builder = HttpClients.custom()
+					.setConnectionManager(connectionManager)
+					.setDefaultRequestConfig(requestConfig)
+					.setUserAgent(userAgent)
+					.evictExpiredConnections()
+					.evictIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.SECONDS);
+
+			if (proxyHost != null) {
+				builder.setProxy(new HttpHost(proxyHost, proxyPort));
+			}
+
+			httpClient = builder.build();
+			LoggerHelper.log(logger, Level.INFO, "HTTP client with " + maxConnections + " connections, " +
+					maxPerHost + " per host" + (proxyHost != null ? ", through " + proxyHost + ":" + proxyPort : ""));
+		}
+
+		return httpClient;
+	}
+
+	/**
+	 * @param url
+	 * @param compressed false to receive the content as is, e.g. to request byte ranges
+	 * @return GET request with the shared timeouts
+	 */
+	public HttpGet newGetRequest(URL url, boolean compressed) {
+
+		getHttpClient();
+
+		HttpGet request = new HttpGet(url.toString());
+		request.setConfig(RequestConfig.copy(requestConfig).setContentCompressionEnabled(compressed).build());
+
+		return request;
+	}
+
+	public CloseableHttpResponse execute(HttpGet request) throws IOException {
+		return getHttpClient().execute(request);
+	}
+
+	/**
+	 * Opens the content of a URL. Closing the stream returns the connection to the pool.
+	 * @param url
+	 * @return content
+	 * @throws FileNotFoundException if the server answers 404
+	 * @throws IOException if the server answers anything other than 200
+	 */
+	public InputStream openStream(URL url) throws IOException {
+
+		CloseableHttpResponse response = execute(newGetRequest(url, true));
+		int statusCode = response.getStatusLine().getStatusCode();
+
+		if (statusCode != HttpStatus.SC_OK || response.getEntity() == null) {
+			response.close();
+
+			if (statusCode == HttpStatus.SC_NOT_FOUND) {
+				throw new FileNotFoundException(url.toString());
+			}
+			throw new IOException("Unexpected response " + statusCode + " for " + url);
+		}
+
+		return new FilterInputStream(response.getEntity().getContent()) {
+			@Override
+			public void close() throws IOException {
+				try {
+					super.close();
+				} finally {
+					response.close();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Uses the same timeouts, limits, user agent and proxy in the crawler's own client.
+	 * @param config
+	 */
+	public void applyTo(CrawlConfig config) {
+		config.setConnectionTimeout(connectTimeout);
+		config.setSocketTimeout(readTimeout);
+		config.setMaxTotalConnections(maxConnections);
+		config.setMaxConnectionsPerHost(maxPerHost);
+		config.setUserAgentString(userAgent);
+
+		if (proxyHost != null) {
+			config.setProxyHost(proxyHost);
+			config.setProxyPort(proxyPort);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+
+		if (httpClient == null) return;
+
+		try {
+			httpClient.close();
+		} catch (IOException e) {
+			LoggerHelper.logError(logger, e, "Error closing HTTP client");
+		}
+
+		httpClient = null;
+	}
+
+}
@@ -0,0 +1,114 @@
+package ca.uwaterloo.swag.mavencrawler.index;
+
+import java.util.Date;
+
+/**
+ * One artifact file listed in a Nexus repository index, i.e. one document
+ * with a "u" (groupId|artifactId|version|classifier[|extension]) field.
+ */
+public class IndexArtifact {
+
+	private String groupId;
+	private String artifactId;
+	private String version;
+	private String classifier;
+	private String extension;
+	private String packaging;
+	private Date lastModified;
+	private long size = -1;
+	private String name;
+	private String description;
+
+	public IndexArtifact() {
+		super();
+	}
+
+	public IndexArtifact(String groupId, String artifactId, String version, String classifier, String extension) {
+		super();
+		this.groupId = groupId;
+		this.artifactId = artifactId;
+		this.version = version;
+		this.classifier = classifier;
+		this.extension = extension;
+	}
+
+	public String getGroupId() {
+		return groupId;
+	}
+	public void setGroupId(String groupId) {
+		this.groupId = groupId;
+	}
+	public String getArtifactId() {
+		return artifactId;
+	}
+	public void setArtifactId(String artifactId) {
+		this.artifactId = artifactId;
+	}
+	public String getVersion() {
+		return version;
+	}
+	public void setVersion(String version) {
+		this.version = version;
+	}
+	/**
+	 * @return classifier, e.g. "sources", or null for the main artifact
+	 */
+	public String getClassifier() {
+		return classifier;
+	}
+	public void setClassifier(String classifier) {
+		this.classifier = classifier;
+	}
+	public String getExtension() {
+		return extension;
+	}
+	public void setExtension(String extension) {
+		this.extension = extension;
+	}
+	public String getPackaging() {
+		return packaging;
+	}
+	public void setPackaging(String packaging) {
+		this.packaging = packaging;
+	}
+	public Date getLastModified() {
+		return lastModified;
+	}
+	public void setLastModified(Date lastModified) {
+		this.lastModified = lastModified;
+	}
+	/**
+	 * @return file size in bytes, or -1 if unknown
+	 */
+	public long getSize() {
+		return size;
+	}
+	public void setSize(long size) {
+		this.size = size;
+	}
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public String getDescription() {
+		return description;
+	}
+	public void setDescription(String description) {
+		this.description = description;
+	}
+
+	public boolean isMainArtifact() {
+		return classifier == null;
+	}
+
+	@Override
+	public String toString() {
+		return "IndexArtifact [groupId=" + groupId + ", artifactId=" + artifactId + ", version=" + version
+				+ ", classifier=" + classifier + ", extension=" + extension + ", packaging=" + packaging
+				+ ", lastModified=" + lastModified + ", size=" + size + ", name=" + name + ", description="
+				+ description + "]";
+	}
+
+}
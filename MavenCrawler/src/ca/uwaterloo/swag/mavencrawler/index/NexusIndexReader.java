@@ -0,0 +1,267 @@
+package ca.uwaterloo.swag.mavencrawler.index;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UTFDataFormatException;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams the documents of a nexus-maven-repository-index.gz file, full or incremental.
+ *
+ * Format (maven-indexer IndexDataWriter): a version byte and a timestamp long, then
+ * one record per document until the end of the stream. Each record is an int field
+ * count followed, per field, by a flags byte, the name (DataOutput.writeUTF) and the
+ * value (int length, then modified UTF-8 bytes).
+ *
+ * Only the fields needed for discovery are decoded; all other values are skipped.
+ */
+public class NexusIndexReader implements AutoCloseable {
+
+	public static final int SUPPORTED_VERSION = 1;
+
+	static final String UINFO = "u";
+	static final String INFO = "i";
+	static final String NAME = "n";
+	static final String DESCRIPTION = "d";
+	static final String DELETED = "del";
+
+	static final String FIELD_SEPARATOR = "|";
+	static final String NOT_AVAILABLE = "NA";
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final DataInputStream input;
+	private final int version;
+	private final Date timestamp;
+	private byte[] valueBuffer = new byte[1024];
+	private long documentsRead;
+
+	/**
+	 * Reads the header of a gzipped index.
+	 * @param gzippedIndex
+	 * @throws IOException if the stream is not an index in a supported version
+	 */
+	public NexusIndexReader(InputStream gzippedIndex) throws IOException {
+		this(new GZIPInputStream(gzippedIndex, BUFFER_SIZE), true);
+	}
+
+	NexusIndexReader(InputStream index, boolean buffered) throws IOException {
+		super();
+		this.input = new DataInputStream(buffered ? new BufferedInputStream(index, BUFFER_SIZE) : index);
+
+		this.version = input.readByte();
+		if (version != SUPPORTED_VERSION) {
+			throw new IOException("Unsupported index version " + version);
+		}
+
+		long time = input.readLong();
+		this.timestamp = (time == -1) ? null : new Date(time);
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return when the index was published, or null if not given
+	 */
+	public Date getTimestamp() {
+		return timestamp;
+	}
+
+	public long getDocumentsRead() {
+		return documentsRead;
+	}
+
+	/**
+	 * Reads documents until the next artifact. Descriptor, group list and deletion
+	 * documents are skipped.
+	 * @return next artifact, or null at the end of the index
+	 * @throws IOException
+	 */
+	public IndexArtifact readArtifact() throws IOException {
+
+		while (true) {
+
+			int fieldCount;
+			try {
+				fieldCount = input.readInt();
+			} catch (EOFException e) {
+				return null;
+			}
+			documentsRead++;
+
+			String uinfo = null;
+			String info = null;
+			String name = null;
+			String description = null;
+			boolean deleted = false;
+
+			for (int i = 0; i < fieldCount; i++) {
+				input.readByte(); // flags
+				String fieldName = input.readUTF();
+
+				switch (fieldName) {
+				case UINFO:
+					uinfo = readValue();
+					break;
+				case INFO:
+					info = readValue();
+					break;
+				case NAME:
+					name = readValue();
+					break;
+				case DESCRIPTION:
+					description = readValue();
+					break;
+				case DELETED:
+					deleted = true;
+					skipValue();
+					break;
+				default:
+					skipValue();
+				}
+			}
+
+			if (deleted || uinfo == null) continue;
+
+			IndexArtifact artifact = parseUinfo(uinfo);
+			if (artifact == null) continue;
+
+			parseInfo(info, artifact);
+			artifact.setName(name);
+			artifact.setDescription(description);
+
+			return artifact;
+		}
+	}
+
+	/**
+	 * @param uinfo "groupId|artifactId|version|classifier" with "NA" for no classifier,
+	 * and "|extension" for classified artifacts
+	 * @return artifact, or null if malformed
+	 */
+	static IndexArtifact parseUinfo(String uinfo) {
+
+		String[] parts = uinfo.split("\\" + FIELD_SEPARATOR, -1);
+		if (parts.length < 3 || parts[0].isEmpty() || parts[1].isEmpty() || parts[2].isEmpty()) return null;
+
+		String classifier = (parts.length > 3) ? notAvailableToNull(parts[3]) : null;
+		String extension = (parts.length > 4) ? notAvailableToNull(parts[4]) : null;
+
+		return new IndexArtifact(parts[0], parts[1], parts[2], classifier, extension);
+	}
+
+	/**
+	 * @param info "packaging|lastModified|size|sourcesExists|javadocExists|signatureExists|extension"
+	 * @param artifact completed with the values found
+	 */
+	static void parseInfo(String info, IndexArtifact artifact) {
+
+		if (info == null) return;
+
+		String[] parts = info.split("\\" + FIELD_SEPARATOR, -1);
+
+		if (parts.length > 0) {
+			artifact.setPackaging(notAvailableToNull(parts[0]));
+		}
+		if (parts.length > 1) {
+			long lastModified = parseLong(parts[1]);
+			if (lastModified > 0) artifact.setLastModified(new Date(lastModified));
+		}
+		if (parts.length > 2) {
+			artifact.setSize(parseLong(parts[2]));
+		}
+		if (parts.length > 6 && artifact.getExtension() == null) {
+			artifact.setExtension(notAvailableToNull(parts[6]));
+		}
+	}
+
+	private static String notAvailableToNull(String value) {
+		return (value.isEmpty() || NOT_AVAILABLE.equals(value)) ? null : value;
+	}
+
+	private static long parseLong(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private String readValue() throws IOException {
+
+		int length = input.readInt();
+		if (length > valueBuffer.length) {
+			valueBuffer = new byte[Math.max(length, valueBuffer.length * 2)];
+		}
+		input.readFully(valueBuffer, 0, length);
+
+		return decodeModifiedUtf8(valueBuffer, length);
+	}
+
+	private void skipValue() throws IOException {
+
+		int length = input.readInt();
+		while (length > 0) {
+			int skipped = input.skipBytes(length);
+			if (skipped <= 0) throw new EOFException();
+			length -= skipped;
+		}
+	}
+
+	/**
+	 * Same decoding as DataInputStream.readUTF, for values longer than 64K.
+	 */
+	static String decodeModifiedUtf8(byte[] bytes, int length) throws UTFDataFormatException {
+
+		char[] chars = new char[length];
+		int count = 0;
+		int i = 0;
+
+		// ASCII only, the common case
+		while (i < length && bytes[i] >= 0) {
+			chars[count++] = (char) bytes[i++];
+		}
+
+		while (i < length) {
+			int c = bytes[i] & 0xff;
+
+			switch (c >> 4) {
+			case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+				chars[count++] = (char) c;
+				i++;
+				break;
+			case 12: case 13:
+				if (i + 1 >= length) throw new UTFDataFormatException("Truncated character at " + i);
+				int c2 = bytes[i + 1];
+				if ((c2 & 0xc0) != 0x80) throw new UTFDataFormatException("Malformed character at " + i);
+				chars[count++] = (char) (((c & 0x1f) << 6) | (c2 & 0x3f));
+				i += 2;
+				break;
+			case 14:
+				if (i + 2 >= length) throw new UTFDataFormatException("Truncated character at " + i);
+				int b2 = bytes[i + 1];
+				int b3 = bytes[i + 2];
+				if ((b2 & 0xc0) != 0x80 || (b3 & 0xc0) != 0x80) throw new UTFDataFormatException("Malformed character at " + i);
+				chars[count++] = (char) (((c & 0x0f) << 12) | ((b2 & 0x3f) << 6) | (b3 & 0x3f));
+				i += 3;
+				break;
+			default:
+				throw new UTFDataFormatException("Malformed character at " + i);
+			}
+		}
+
+		return new String(chars, 0, count);
+	}
+
+	@Override
+	public void close() throws IOException {
+		input.close();
+	}
+
+}
@@ -9,6 +9,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -18,11 +19,13 @@ import org.bson.codecs.pojo.annotations.BsonIgnore;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
 import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
 
+import ca.uwaterloo.swag.mavencrawler.db.ResumableCursor;
 import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
 
 public class Archetype {
@@ -161,7 +164,7 @@ public class Archetype {
 		LoggerHelper.log(logger, Level.INFO, "Saving " + upsertRequests.size() + " upserts to database...");
 		
 		MongoCollection<Archetype> collection = mongoDatabase.getCollection(ARCHETYPE_COLLECTION, Archetype.class);
-		BulkWriteResult result = collection.bulkWrite(upsertRequests);
+		BulkWriteResult result = collection.bulkWrite(upsertRequests, new BulkWriteOptions().ordered(false));
 
 		LoggerHelper.log(logger, Level.INFO, "Matched: " + result.getMatchedCount() + 
 				". Inserted: " + result.getInsertedCount() +
@@ -174,4 +177,14 @@ public class Archetype {
 		return collection.find().into(new ArrayList<Archetype>());
 	}
 
+	/**
+	 * Iterates over all Archetype in batches, without loading the whole collection.
+	 * @param mongoDatabase
+	 * @param archetypeConsumer
+	 */
+	public static void iterateAllInMongo(MongoDatabase mongoDatabase, Consumer<Archetype> archetypeConsumer) {
+		MongoCollection<Archetype> collection = mongoDatabase.getCollection(ARCHETYPE_COLLECTION, Archetype.class);
+		new ResumableCursor<>(collection, null).forEach(archetypeConsumer);
+	}
+
 }
@@ -0,0 +1,112 @@
+package ca.uwaterloo.swag.mavencrawler.pojo;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+
+import java.util.Date;
+
+import org.bson.BsonValue;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.UpdateOptions;
+
+/**
+ * Last processed _id of a long-running pass over a collection, so the pass can be 
+ * resumed after a restart. One-off passes keep a checkpoint once done, so they are
+ * not run again.
+ */
+public class Checkpoint {
+
+	public static final String CHECKPOINT_COLLECTION = "Checkpoints";
+
+	private String name;
+	private BsonValue lastId;
+	private Date lastUpdated;
+
+	public Checkpoint() {
+		super();
+	}
+
+	public Checkpoint(String name, BsonValue lastId, Date lastUpdated) {
+		super();
+		this.name = name;
+		this.lastId = lastId;
+		this.lastUpdated = lastUpdated;
+	}
+
+	public String getName() {
+		return name;
+	}
+	public void setName(String name) {
+		this.name = name;
+	}
+	public BsonValue getLastId() {
+		return lastId;
+	}
+	public void setLastId(BsonValue lastId) {
+		this.lastId = lastId;
+	}
+	public Date getLastUpdated() {
+		return lastUpdated;
+	}
+	public void setLastUpdated(Date lastUpdated) {
+		this.lastUpdated = lastUpdated;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((lastId == null) ? 0 : lastId.hashCode());
+		result = prime * result + ((name == null) ? 0 : name.hashCode());
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Checkpoint other = (Checkpoint) obj;
+		if (lastId == null) {
+			if (other.lastId != null)
+				return false;
+		} else if (!lastId.equals(other.lastId))
+			return false;
+		if (name == null) {
+			if (other.name != null)
+				return false;
+		} else if (!name.equals(other.name))
+			return false;
+		return true;
+	}
+	@Override
+	public String toString() {
+		return "Checkpoint [name=" + name + ", lastId=" + lastId + ", lastUpdated=" + lastUpdated + "]";
+	}
+
+	public static Checkpoint findByName(String name, MongoDatabase mongoDatabase) {
+		MongoCollection<Checkpoint> collection = mongoDatabase.getCollection(CHECKPOINT_COLLECTION, Checkpoint.class);
+		return collection.find(eq("name", name)).first();
+	}
+
+	public static void upsertInMongo(String name, BsonValue lastId, MongoDatabase mongoDatabase) {
+
+		MongoCollection<Checkpoint> collection = mongoDatabase.getCollection(CHECKPOINT_COLLECTION, Checkpoint.class);
+
+		collection.updateOne(
+				eq("name", name),
+				combine(set("lastId", lastId), set("lastUpdated", new Date())),
+				new UpdateOptions().upsert(true));
+	}
+
+	public static void deleteFromMongo(String name, MongoDatabase mongoDatabase) {
+		MongoCollection<Checkpoint> collection = mongoDatabase.getCollection(CHECKPOINT_COLLECTION, Checkpoint.class);
+		collection.deleteOne(eq("name", name));
+	}
+
+}
@@ -0,0 +1,174 @@
+package ca.uwaterloo.swag.mavencrawler.pojo;
+
+import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.Document;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+
+/**
+ * HTTP cache validators (ETag and Last-Modified) of a crawled page, used to send
+ * conditional requests when the repository is crawled again.
+ */
+public class CrawledPage {
+
+	public static final String CRAWLEDPAGE_COLLECTION = "CrawledPages";
+
+	private String url;
+	private String etag;
+	private String lastModified;
+	private Date lastChecked;
+
+	public CrawledPage() {
+		super();
+	}
+
+	public CrawledPage(String url, String etag, String lastModified, Date lastChecked) {
+		super();
+		this.url = url;
+		this.etag = etag;
+		this.lastModified = lastModified;
+		this.lastChecked = lastChecked;
+	}
+
+	public String getUrl() {
+		return url;
+	}
+	public void setUrl(String url) {
+		this.url = url;
+	}
+	public String getEtag() {
+		return etag;
+	}
+	public void setEtag(String etag) {
+		this.etag = etag;
+	}
+	public String getLastModified() {
+		return lastModified;
+	}
+	public void setLastModified(String lastModified) {
+		this.lastModified = lastModified;
+	}
+	public Date getLastChecked() {
+		return lastChecked;
+	}
+	public void setLastChecked(Date lastChecked) {
+		this.lastChecked = lastChecked;
+	}
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((etag == null) ? 0 : etag.hashCode());
+		result = prime * result + ((lastChecked == null) ? 0 : lastChecked.hashCode());
+		result = prime * result + ((lastModified == null) ? 0 : lastModified.hashCode());
+		result = prime * result + ((url == null) ? 0 : url.hashCode());
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		CrawledPage other = (CrawledPage) obj;
+		if (etag == null) {
+			if (other.etag != null)
+				return false;
+		} else if (!etag.equals(other.etag))
+			return false;
+		if (lastChecked == null) {
+			if (other.lastChecked != null)
+				return false;
+		} else if (!lastChecked.equals(other.lastChecked))
+			return false;
+		if (lastModified == null) {
+			if (other.lastModified != null)
+				return false;
+		} else if (!lastModified.equals(other.lastModified))
+			return false;
+		if (url == null) {
+			if (other.url != null)
+				return false;
+		} else if (!url.equals(other.url))
+			return false;
+		return true;
+	}
+	@Override
+	public String toString() {
+		return "CrawledPage [url=" + url + ", etag=" + etag + ", lastModified=" + lastModified + ", lastChecked="
+				+ lastChecked + "]";
+	}
+
+	public static void checkIndexesInCollection(MongoCollection<CrawledPage> collection) {
+		IndexOptions indexOptions = new IndexOptions().unique(true);
+		collection.createIndex(Indexes.ascending("url"), indexOptions);
+	}
+
+	public static CrawledPage findByURL(String url, MongoDatabase mongoDatabase) {
+		MongoCollection<CrawledPage> collection = mongoDatabase.getCollection(CRAWLEDPAGE_COLLECTION, CrawledPage.class);
+		return collection.find(eq("url", url)).first();
+	}
+
+	/**
+	 * Finds the validators of many pages in a single query.
+	 * @param urls
+	 * @param mongoDatabase
+	 * @return validators by URL, only for pages with saved validators
+	 */
+	public static Map<String, CrawledPage> findByURLs(Collection<String> urls, MongoDatabase mongoDatabase) {
+		
+		Map<String, CrawledPage> crawledPages = new HashMap<>();
+		if (urls.isEmpty()) return crawledPages;
+		
+		MongoCollection<CrawledPage> collection = mongoDatabase.getCollection(CRAWLEDPAGE_COLLECTION, CrawledPage.class);
+		for (CrawledPage crawledPage : collection.find(in("url", urls))) {
+			crawledPages.put(crawledPage.getUrl(), crawledPage);
+		}
+		
+		return crawledPages;
+	}
+
+	public static void upsertInMongo(CrawledPage crawledPage, MongoDatabase mongoDatabase) {
+
+		MongoCollection<CrawledPage> collection = mongoDatabase.getCollection(CRAWLEDPAGE_COLLECTION, CrawledPage.class);
+
+		collection.updateOne(
+				eq("url", crawledPage.getUrl()),
+				new Document("$set", crawledPage),
+				new UpdateOptions().upsert(true));
+	}
+
+	public static void upsertInMongo(List<CrawledPage> crawledPagesList, MongoDatabase mongoDatabase) {
+
+		List<UpdateOneModel<CrawledPage>> upsertRequests = new ArrayList<UpdateOneModel<CrawledPage>>(crawledPagesList.size());
+		UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+
+		for (CrawledPage crawledPage : crawledPagesList) {
+			upsertRequests.add(new UpdateOneModel<CrawledPage>(
+					eq("url", crawledPage.getUrl()),
+					new Document("$set", crawledPage),
+					updateOptions));
+		}
+
+		MongoCollection<CrawledPage> collection = mongoDatabase.getCollection(CRAWLEDPAGE_COLLECTION, CrawledPage.class);
+		collection.bulkWrite(upsertRequests, new BulkWriteOptions().ordered(false));
+	}
+
+}
@@ -0,0 +1,175 @@
+package ca.uwaterloo.swag.mavencrawler.pojo;
+
+/**
+ * Direct dependency declared in a POM, saved inside its VersionPom.
+ * To keep documents small, default values are left null: no scope means "compile",
+ * no type means "jar" and no optional flag means not optional.
+ * The version is the declared specification, e.g. "1.2", "[1.0,2.0)", or a property
+ * that could not be resolved.
+ */
+public class Dependency {
+
+	public static final String DEFAULT_SCOPE = "compile";
+	public static final String DEFAULT_TYPE = "jar";
+	public static final String IMPORT_SCOPE = "import";
+
+	private String groupId;
+	private String artifactId;
+	private String version;
+	private String classifier;
+	private String type;
+	private String scope;
+	private Boolean optional;
+
+	public Dependency() {
+		super();
+	}
+
+	public Dependency(String groupId, String artifactId, String version) {
+		super();
+		this.groupId = groupId;
+		this.artifactId = artifactId;
+		this.version = version;
+	}
+
+	public String getGroupId() {
+		return groupId;
+	}
+	public void setGroupId(String groupId) {
+		this.groupId = groupId;
+	}
+	public String getArtifactId() {
+		return artifactId;
+	}
+	public void setArtifactId(String artifactId) {
+		this.artifactId = artifactId;
+	}
+	public String getVersion() {
+		return version;
+	}
+	public void setVersion(String version) {
+		this.version = version;
+	}
+	public String getClassifier() {
+		return classifier;
+	}
+	public void setClassifier(String classifier) {
+		this.classifier = classifier;
+	}
+	public String getType() {
+		return type;
+	}
+	/**
+	 * @param type null for the default "jar"
+	 */
+	public void setType(String type) {
+		this.type = type;
+	}
+	public String getScope() {
+		return scope;
+	}
+	/**
+	 * @param scope null for the default "compile"
+	 */
+	public void setScope(String scope) {
+		this.scope = scope;
+	}
+	public Boolean getOptional() {
+		return optional;
+	}
+	/**
+	 * @param optional TRUE, or null if not optional
+	 */
+	public void setOptional(Boolean optional) {
+		this.optional = optional;
+	}
+
+	/**
+	 * @return scope, "compile" if none was declared
+	 */
+	public String scopeOrDefault() {
+		return (scope == null) ? DEFAULT_SCOPE : scope;
+	}
+
+	/**
+	 * As in Maven, test, provided and system dependencies, and optional ones,
+	 * are not passed on to the projects depending on this one.
+	 * @return TRUE if the dependency is also a dependency of the dependents
+	 */
+	public boolean transitive() {
+		if (Boolean.TRUE.equals(optional)) return false;
+		switch (scopeOrDefault()) {
+		case "compile":
+		case "runtime":
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((artifactId == null) ? 0 : artifactId.hashCode());
+		result = prime * result + ((classifier == null) ? 0 : classifier.hashCode());
+		result = prime * result + ((groupId == null) ? 0 : groupId.hashCode());
+		result = prime * result + ((optional == null) ? 0 : optional.hashCode());
+		result = prime * result + ((scope == null) ? 0 : scope.hashCode());
+		result = prime * result + ((type == null) ? 0 : type.hashCode());
+		result = prime * result + ((version == null) ? 0 : version.hashCode());
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Dependency other = (Dependency) obj;
+		if (artifactId == null) {
+			if (other.artifactId != null)
+				return false;
+		} else if (!artifactId.equals(other.artifactId))
+			return false;
+		if (classifier == null) {
+			if (other.classifier != null)
+				return false;
+		} else if (!classifier.equals(other.classifier))
+			return false;
+		if (groupId == null) {
+			if (other.groupId != null)
+				return false;
+		} else if (!groupId.equals(other.groupId))
+			return false;
+		if (optional == null) {
+			if (other.optional != null)
+				return false;
+		} else if (!optional.equals(other.optional))
+			return false;
+		if (scope == null) {
+			if (other.scope != null)
+				return false;
+		} else if (!scope.equals(other.scope))
+			return false;
+		if (type == null) {
+			if (other.type != null)
+				return false;
+		} else if (!type.equals(other.type))
+			return false;
+		if (version == null) {
+			if (other.version != null)
+				return false;
+		} else if (!version.equals(other.version))
+			return false;
+		return true;
+	}
+	@Override
+	public String toString() {
+		return "Dependency [groupId=" + groupId + ", artifactId=" + artifactId + ", version=" + version
+				+ ", classifier=" + classifier + ", type=" + type + ", scope=" + scope + ", optional=" + optional + "]";
+	}
+
+}
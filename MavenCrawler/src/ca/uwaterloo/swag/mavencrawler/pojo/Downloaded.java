@@ -2,18 +2,39 @@ package ca.uwaterloo.swag.mavencrawler.pojo;
 
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.ne;
+import static com.mongodb.client.model.Projections.excludeId;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.set;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 import org.bson.Document;
 
+import com.mongodb.Block;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
 
+import ca.uwaterloo.swag.mavencrawler.db.ResumableCursor;
+
 public class Downloaded {
 
 	public static final String DOWNLOADED_COLLECTION = "DownloadedLibraries";
@@ -24,6 +45,9 @@ public class Downloaded {
 	private String version;
 	private Date downloadDate;
 	private String downloadPath;
+	private String sha1;
+	private String sha256;
+	private Date expiresAt;
 
 	public Downloaded() {
 		super();
@@ -77,6 +101,28 @@ public class Downloaded {
 	public void setDownloadPath(String downloadPath) {
 		this.downloadPath = downloadPath;
 	}
+	public String getSha1() {
+		return sha1;
+	}
+	public void setSha1(String sha1) {
+		this.sha1 = sha1;
+	}
+	public String getSha256() {
+		return sha256;
+	}
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+	public Date getExpiresAt() {
+		return expiresAt;
+	}
+	/**
+	 * @param expiresAt date when the record is deleted by MongoDB, so the version is
+	 * tried again. Null to keep it.
+	 */
+	public void setExpiresAt(Date expiresAt) {
+		this.expiresAt = expiresAt;
+	}
 
 	@Override
 	public int hashCode() {
@@ -85,8 +131,11 @@ public class Downloaded {
 		result = prime * result + ((artifactId == null) ? 0 : artifactId.hashCode());
 		result = prime * result + ((downloadDate == null) ? 0 : downloadDate.hashCode());
 		result = prime * result + ((downloadPath == null) ? 0 : downloadPath.hashCode());
+		result = prime * result + ((expiresAt == null) ? 0 : expiresAt.hashCode());
 		result = prime * result + ((groupId == null) ? 0 : groupId.hashCode());
 		result = prime * result + ((repository == null) ? 0 : repository.hashCode());
+		result = prime * result + ((sha1 == null) ? 0 : sha1.hashCode());
+		result = prime * result + ((sha256 == null) ? 0 : sha256.hashCode());
 		result = prime * result + ((version == null) ? 0 : version.hashCode());
 		return result;
 	}
@@ -114,6 +163,11 @@ public class Downloaded {
 				return false;
 		} else if (!downloadPath.equals(other.downloadPath))
 			return false;
+		if (expiresAt == null) {
+			if (other.expiresAt != null)
+				return false;
+		} else if (!expiresAt.equals(other.expiresAt))
+			return false;
 		if (groupId == null) {
 			if (other.groupId != null)
 				return false;
@@ -124,6 +178,16 @@ public class Downloaded {
 				return false;
 		} else if (!repository.equals(other.repository))
 			return false;
+		if (sha1 == null) {
+			if (other.sha1 != null)
+				return false;
+		} else if (!sha1.equals(other.sha1))
+			return false;
+		if (sha256 == null) {
+			if (other.sha256 != null)
+				return false;
+		} else if (!sha256.equals(other.sha256))
+			return false;
 		if (version == null) {
 			if (other.version != null)
 				return false;
@@ -134,24 +198,30 @@ public class Downloaded {
 	@Override
 	public String toString() {
 		return "Downloaded [groupId=" + groupId + ", artifactId=" + artifactId + ", repository=" + repository
-				+ ", version=" + version + ", downloadDate=" + downloadDate + ", downloadPath=" + downloadPath + "]";
+				+ ", version=" + version + ", downloadDate=" + downloadDate + ", downloadPath=" + downloadPath + ", sha1=" + sha1 + ", sha256=" + sha256 + ", expiresAt=" + expiresAt + "]";
 	}
 
-	public static void checkIndexesInCollection(MongoCollection<Metadata> collection) {
+	public static void checkIndexesInCollection(MongoCollection<Downloaded> collection) {
 		IndexOptions indexOptions = new IndexOptions().unique(true);
 		collection.createIndex(Indexes.ascending("groupId", "artifactId", "repository", "version"), indexOptions);
+		
+		// Records are deleted once expired
+		collection.createIndex(Indexes.ascending("expiresAt"), new IndexOptions().expireAfter(0L, TimeUnit.SECONDS));
 	}
 
 	public static void upsertInMongo(Downloaded downloaded, MongoDatabase mongoDatabase, Logger logger) {
 
 		MongoCollection<Downloaded> collection = mongoDatabase.getCollection(DOWNLOADED_COLLECTION, Downloaded.class);
+		
+		Document update = new Document("$set", downloaded);
+		if (downloaded.getExpiresAt() == null) update.append("$unset", new Document("expiresAt", ""));
 
 		collection.updateOne(
 						and(eq("groupId", downloaded.getGroupId()), 
 							eq("artifactId", downloaded.getArtifactId()),
 							eq("repository", downloaded.getRepository()),
 							eq("version", downloaded.getVersion())), 
-				new Document("$set", downloaded), 
+				update, 
 				new UpdateOptions().upsert(true));
 	}
 
@@ -167,4 +237,124 @@ public class Downloaded {
 		return (itemsFound > 0);
 	}
 
+	/**
+	 * Finds which of the given versions of an artifact were already downloaded, in a single query.
+	 * Only versions are read, so the query is answered from the unique index alone.
+	 * @param groupId
+	 * @param artifactId
+	 * @param repository
+	 * @param versions
+	 * @param mongoDatabase
+	 * @return downloaded versions
+	 */
+	public static Set<String> findDownloadedVersions(String groupId, String artifactId, String repository, 
+			Collection<String> versions, MongoDatabase mongoDatabase) {
+		
+		Set<String> downloadedVersions = new HashSet<>();
+		if (versions == null || versions.isEmpty()) return downloadedVersions;
+		
+		MongoCollection<Document> collection = mongoDatabase.getCollection(DOWNLOADED_COLLECTION);
+		
+		collection.find(
+				and(eq("groupId", groupId), 
+					eq("artifactId", artifactId),
+					eq("repository", repository),
+					in("version", versions)))
+			.projection(fields(include("version"), excludeId()))
+			.forEach((Block<Document>) document -> downloadedVersions.add(document.getString("version")));
+		
+		return downloadedVersions;
+	}
+
+	/**
+	 * Finds the records of the given versions of an artifact, in a single query.
+	 * Only the fields telling whether a version was downloaded or is missing are read.
+	 * @param groupId
+	 * @param artifactId
+	 * @param repository
+	 * @param versions
+	 * @param mongoDatabase
+	 * @return downloads by version
+	 */
+	public static Map<String, Downloaded> findByVersions(String groupId, String artifactId, String repository, 
+			Collection<String> versions, MongoDatabase mongoDatabase) {
+		
+		Map<String, Downloaded> downloadedByVersion = new HashMap<>();
+		if (versions == null || versions.isEmpty()) return downloadedByVersion;
+		
+		MongoCollection<Downloaded> collection = mongoDatabase.getCollection(DOWNLOADED_COLLECTION, Downloaded.class);
+		
+		collection.find(
+				and(eq("groupId", groupId), 
+					eq("artifactId", artifactId),
+					eq("repository", repository),
+					in("version", versions)))
+			.projection(fields(include("version", "downloadPath", "sha1", "expiresAt"), excludeId()))
+			.forEach((Block<Downloaded>) downloaded -> downloadedByVersion.put(downloaded.getVersion(), downloaded));
+		
+		return downloadedByVersion;
+	}
+
+	/**
+	 * Finds the same version of an artifact downloaded from other repositories, with
+	 * a recorded digest.
+	 * @param groupId
+	 * @param artifactId
+	 * @param repository repository to exclude
+	 * @param version
+	 * @param mongoDatabase
+	 * @return downloads with digest
+	 */
+	public static List<Downloaded> findInOtherRepositories(String groupId, String artifactId, String repository, 
+			String version, MongoDatabase mongoDatabase) {
+		
+		MongoCollection<Downloaded> collection = mongoDatabase.getCollection(DOWNLOADED_COLLECTION, Downloaded.class);
+		
+		return collection.find(
+				and(eq("groupId", groupId), 
+					eq("artifactId", artifactId),
+					ne("repository", repository),
+					eq("version", version),
+					Filters.exists("sha1")))
+			.into(new ArrayList<Downloaded>());
+	}
+
+	/**
+	 * Saves the download path of many downloads in one bulk write.
+	 * @param downloadedList downloads with their new path
+	 * @param mongoDatabase
+	 */
+	public static void updateDownloadPathsInMongo(List<Downloaded> downloadedList, MongoDatabase mongoDatabase) {
+		
+		if (downloadedList.isEmpty()) return;
+		
+		List<UpdateOneModel<Downloaded>> updateRequests = new ArrayList<UpdateOneModel<Downloaded>>(downloadedList.size());
+		
+		for (Downloaded downloaded : downloadedList) {
+			updateRequests.add(new UpdateOneModel<Downloaded>(
+					and(eq("groupId", downloaded.getGroupId()), 
+						eq("artifactId", downloaded.getArtifactId()),
+						eq("repository", downloaded.getRepository()),
+						eq("version", downloaded.getVersion())), 
+					set("downloadPath", downloaded.getDownloadPath())));
+		}
+		
+		MongoCollection<Downloaded> collection = mongoDatabase.getCollection(DOWNLOADED_COLLECTION, Downloaded.class);
+		collection.bulkWrite(updateRequests, new BulkWriteOptions().ordered(false));
+	}
+
+	/**
+	 * Iterates over all downloads with a downloaded file in batches, without loading the whole collection.
+	 * @param mongoDatabase
+	 * @param batchSize
+	 * @param downloadedConsumer
+	 */
+	public static void iterateDownloadedFilesInMongo(MongoDatabase mongoDatabase, int batchSize, 
+			Consumer<Downloaded> downloadedConsumer) {
+		MongoCollection<Downloaded> collection = mongoDatabase.getCollection(DOWNLOADED_COLLECTION, Downloaded.class);
+		ResumableCursor<Downloaded> cursor = new ResumableCursor<>(collection, batchSize, null);
+		cursor.setFilter(ne("downloadPath", null));
+		cursor.forEach(downloadedConsumer);
+	}
+
 }
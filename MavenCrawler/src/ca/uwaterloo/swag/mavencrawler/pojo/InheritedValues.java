@@ -0,0 +1,91 @@
+package ca.uwaterloo.swag.mavencrawler.pojo;
+
+/**
+ * Values a POM inherits from its parent chain, saved inside its VersionPom apart from
+ * the values the POM declares, so they can be filled again when a parent changes.
+ * Only values the POM does not declare itself are set.
+ */
+public class InheritedValues {
+
+	private String description;
+	private String projectUrl;
+	private String scmConnection;
+	private String scmUrl;
+
+	public InheritedValues() {
+		super();
+	}
+
+	public String getDescription() {
+		return description;
+	}
+	public void setDescription(String description) {
+		this.description = description;
+	}
+	public String getProjectUrl() {
+		return projectUrl;
+	}
+	public void setProjectUrl(String projectUrl) {
+		this.projectUrl = projectUrl;
+	}
+	public String getScmConnection() {
+		return scmConnection;
+	}
+	public void setScmConnection(String scmConnection) {
+		this.scmConnection = scmConnection;
+	}
+	public String getScmUrl() {
+		return scmUrl;
+	}
+	public void setScmUrl(String scmUrl) {
+		this.scmUrl = scmUrl;
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + ((description == null) ? 0 : description.hashCode());
+		result = prime * result + ((projectUrl == null) ? 0 : projectUrl.hashCode());
+		result = prime * result + ((scmConnection == null) ? 0 : scmConnection.hashCode());
+		result = prime * result + ((scmUrl == null) ? 0 : scmUrl.hashCode());
+		return result;
+	}
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		InheritedValues other = (InheritedValues) obj;
+		if (description == null) {
+			if (other.description != null)
+				return false;
+		} else if (!description.equals(other.description))
+			return false;
+		if (projectUrl == null) {
+			if (other.projectUrl != null)
+				return false;
+		} else if (!projectUrl.equals(other.projectUrl))
+			return false;
+		if (scmConnection == null) {
+			if (other.scmConnection != null)
+				return false;
+		} else if (!scmConnection.equals(other.scmConnection))
+			return false;
+		if (scmUrl == null) {
+			if (other.scmUrl != null)
+				return false;
+		} else if (!scmUrl.equals(other.scmUrl))
+			return false;
+		return true;
+	}
+	@Override
+	public String toString() {
+		return "InheritedValues [description=" + description + ", projectUrl=" + projectUrl + ", scmConnection="
+				+ scmConnection + ", scmUrl=" + scmUrl + "]";
+	}
+
+}
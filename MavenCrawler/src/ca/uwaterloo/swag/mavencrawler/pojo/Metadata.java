@@ -2,31 +2,48 @@ package ca.uwaterloo.swag.mavencrawler.pojo;
 
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.lte;
+import static com.mongodb.client.model.Filters.or;
+import static com.mongodb.client.model.Updates.addEachToSet;
+import static com.mongodb.client.model.Updates.combine;
+import static com.mongodb.client.model.Updates.set;
+import static com.mongodb.client.model.Updates.setOnInsert;
 
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Consumer;
+import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
-import org.bson.Document;
 import org.bson.codecs.pojo.annotations.BsonIgnore;
+import org.bson.conversions.Bson;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.MongoWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoCursor;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
 
+import ca.uwaterloo.swag.mavencrawler.db.ResumableCursor;
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+
 public class Metadata {
 
 	public static final String METADATA_COLLECTION = "Metadata";
+	
+	private static final int DUPLICATE_KEY_ERROR = 11000;
 
 	private String groupId;
 	private String artifactId;
@@ -120,6 +137,32 @@ public class Metadata {
 	public URL findURLForVersion(String version) {
 		return this.getVersionsURLS().get(version);
 	}
+
+	/**
+	 * @param version
+	 * @param extension file extension, e.g. "jar" or "aar"
+	 * @return URL of the version's main artifact with the given extension
+	 */
+	public URL findURLForVersion(String version, String extension) {
+		
+		URL jarURL = findURLForVersion(version);
+		if (jarURL == null || "jar".equals(extension)) return jarURL;
+		
+		String path = jarURL.getPath();
+		try {
+			return new URL(jarURL, path.substring(0, path.length() - "jar".length()) + extension);
+		} catch (MalformedURLException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @param version
+	 * @return URL of the version's POM, built from the repository layout
+	 */
+	public URL findPomURLForVersion(String version) {
+		return findURLForVersion(version, "pom");
+	}
 	
 	@Override
 	public int hashCode() {
@@ -193,11 +236,15 @@ public class Metadata {
 	}
 	
 	public String buildJARFileNameForVersion(String version) {
-		return buildLibraryVersionFileName(version) + ".jar";
+		return buildFileNameForVersion(version, "jar");
 	}
 	
 	public String buildAARFileNameForVersion(String version) {
-		return buildLibraryVersionFileName(version) + ".aar";
+		return buildFileNameForVersion(version, "aar");
+	}
+	
+	public String buildFileNameForVersion(String version, String extension) {
+		return buildLibraryVersionFileName(version) + "." + extension;
 	}
 	
 
@@ -207,6 +254,8 @@ public class Metadata {
 	
 	/**
 	 * If Metadata already exists for given groupId and artifactId, versions are appended distinctively.
+	 * Metadata older than the saved one is ignored. Relies on the unique index on groupId and artifactId 
+	 * to detect older metadata without reading the saved document first.
 	 * @param metadata
 	 * @param mongoDatabase
 	 * @param logger
@@ -215,35 +264,150 @@ public class Metadata {
 		
 		MongoCollection<Metadata> collection = mongoDatabase.getCollection(METADATA_COLLECTION, Metadata.class);
 		
-		Metadata oldMetadata = collection.find(
-				and(eq("groupId", metadata.getGroupId()), 
-					eq("artifactId", metadata.getArtifactId())))
-				.first();
+		// Retry once, in case another thread inserted the same artifact in between. 
+		// Only older metadata fails twice, as it matches nothing and cannot be inserted
+		for (int attempt = 0; attempt < 2; attempt++) {
+			try {
+				collection.updateOne(buildUpsertFilter(metadata), buildUpsertUpdate(metadata), new UpdateOptions().upsert(true));
+				return;
+			} catch (MongoWriteException e) {
+				if (e.getError().getCode() != DUPLICATE_KEY_ERROR) throw e;
+			}
+		}
 		
-		// Check if upserting new metadata
-		if (oldMetadata != null && oldMetadata.getLastUpdated() != null && metadata.getLastUpdated() == null) {
-			return;
+		LoggerHelper.log(logger, Level.FINE, "Skipping older metadata for " + metadata.getGroupId() + ":" + metadata.getArtifactId());
+	}
+	
+	/**
+	 * Same as {@link #upsertInMongo(Metadata, MongoDatabase, Logger)} for many Metadata in a single bulk write.
+	 * @param metadataList
+	 * @param mongoDatabase
+	 * @param logger
+	 * @throws MongoBulkWriteException if some metadata could not be saved, after the others are
+	 */
+	public static void upsertInMongo(List<Metadata> metadataList, MongoDatabase mongoDatabase, Logger logger) {
+		
+		if (metadataList.isEmpty()) return;
+		
+		List<UpdateOneModel<Metadata>> upsertRequests = new ArrayList<UpdateOneModel<Metadata>>(metadataList.size());
+		UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+		
+		for (Metadata metadata : metadataList) {
+			upsertRequests.add(new UpdateOneModel<Metadata>(
+					buildUpsertFilter(metadata), 
+					buildUpsertUpdate(metadata), 
+					updateOptions));
 		}
-		else if (oldMetadata != null && 
-				 oldMetadata.getLastUpdated() != null && 
-				 metadata.getLastUpdated() != null && 
-				 oldMetadata.getLastUpdated().compareTo(metadata.getLastUpdated()) >= 0) {
-			return;
+		
+		MongoCollection<Metadata> collection = mongoDatabase.getCollection(METADATA_COLLECTION, Metadata.class);
+		
+		try {
+			collection.bulkWrite(upsertRequests, new BulkWriteOptions().ordered(false));
+		} catch (MongoBulkWriteException e) {
+			boolean failed = false;
+			
+			for (BulkWriteError error : e.getWriteErrors()) {
+				Metadata metadata = metadataList.get(error.getIndex());
+				
+				if (error.getCode() == DUPLICATE_KEY_ERROR) {
+					upsertInMongo(metadata, mongoDatabase, logger);
+				}
+				else {
+					LoggerHelper.log(logger, Level.WARNING, "Could not save metadata for " + 
+							metadata.getGroupId() + ":" + metadata.getArtifactId() + ": " + error.getMessage());
+					failed = true;
+				}
+			}
+			
+			// Lets callers know some metadata was not saved
+			if (failed) throw e;
 		}
+	}
+	
+	/**
+	 * Adds versions found elsewhere than in maven-metadata.xml, e.g. in a repository index. 
+	 * Versions are appended distinctively whatever the date of the saved metadata, and 
+	 * lastUpdated, latest and release are left as they are, so the next maven-metadata.xml 
+	 * crawled still updates them.
+	 * @param metadataList
+	 * @param mongoDatabase
+	 * @param logger
+	 * @throws MongoBulkWriteException if versions of some metadata could not be added, after the others are
+	 */
+	public static void addVersionsInMongo(List<Metadata> metadataList, MongoDatabase mongoDatabase, Logger logger) {
+		
+		if (metadataList.isEmpty()) return;
+		
+		List<UpdateOneModel<Metadata>> upsertRequests = new ArrayList<UpdateOneModel<Metadata>>(metadataList.size());
+		UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+		
+		for (Metadata metadata : metadataList) {
+			upsertRequests.add(buildAddVersionsRequest(metadata, updateOptions));
+		}
+		
+		MongoCollection<Metadata> collection = mongoDatabase.getCollection(METADATA_COLLECTION, Metadata.class);
 		
-		if (oldMetadata != null && oldMetadata.getVersions() != null) {
-			List<String> newVersions = new ArrayList<>(metadata.getVersions());
-			newVersions.addAll(oldMetadata.getVersions());
-			newVersions = newVersions.stream().distinct().collect(Collectors.toList());
-			newVersions.sort(String::compareTo);
-			metadata.setVersions(newVersions);
+		try {
+			collection.bulkWrite(upsertRequests, new BulkWriteOptions().ordered(false));
+		} catch (MongoBulkWriteException e) {
+			boolean failed = false;
+			
+			for (BulkWriteError error : e.getWriteErrors()) {
+				Metadata metadata = metadataList.get(error.getIndex());
+				
+				// Inserted by another thread in between, so it matches now
+				if (error.getCode() == DUPLICATE_KEY_ERROR) {
+					collection.bulkWrite(Arrays.asList(buildAddVersionsRequest(metadata, updateOptions)));
+				}
+				else {
+					LoggerHelper.log(logger, Level.WARNING, "Could not add versions for " + 
+							metadata.getGroupId() + ":" + metadata.getArtifactId() + ": " + error.getMessage());
+					failed = true;
+				}
+			}
+			
+			if (failed) throw e;
 		}
+	}
+	
+	private static UpdateOneModel<Metadata> buildAddVersionsRequest(Metadata metadata, UpdateOptions updateOptions) {
 		
-		collection.updateOne(
-				and(eq("groupId", metadata.getGroupId()), 
-					eq("artifactId", metadata.getArtifactId())), 
-				new Document("$set", metadata), 
-				new UpdateOptions().upsert(true));
+		List<String> versions = metadata.getVersions() == null ? new ArrayList<>() : metadata.getVersions();
+		
+		return new UpdateOneModel<Metadata>(
+				and(eq("groupId", metadata.getGroupId()), eq("artifactId", metadata.getArtifactId())), 
+				combine(setOnInsert("repository", metadata.getRepository()), addEachToSet("versions", versions)), 
+				updateOptions);
+	}
+	
+	/**
+	 * Matches saved metadata for the same artifact unless it is newer than the given one. 
+	 * Metadata with the same date matches too, so it only adds its versions instead of 
+	 * failing on the unique index.
+	 */
+	private static Bson buildUpsertFilter(Metadata metadata) {
+		
+		Bson lastUpdatedFilter = metadata.getLastUpdated() == null ? 
+				eq("lastUpdated", null) : 
+				or(eq("lastUpdated", null), lte("lastUpdated", metadata.getLastUpdated()));
+		
+		return and(eq("groupId", metadata.getGroupId()), 
+				   eq("artifactId", metadata.getArtifactId()), 
+				   lastUpdatedFilter);
+	}
+	
+	private static Bson buildUpsertUpdate(Metadata metadata) {
+		
+		List<Bson> updates = new ArrayList<>();
+		if (metadata.getRepository() != null) updates.add(set("repository", metadata.getRepository()));
+		if (metadata.getLatest() != null) updates.add(set("latest", metadata.getLatest()));
+		if (metadata.getRelease() != null) updates.add(set("release", metadata.getRelease()));
+		if (metadata.getLastUpdated() != null) updates.add(set("lastUpdated", metadata.getLastUpdated()));
+		
+		List<String> versions = metadata.getVersions() == null ? new ArrayList<>() : metadata.getVersions();
+		updates.add(addEachToSet("versions", versions));
+		
+		return combine(updates);
 	}
 	
 	public static List<Metadata> findAllFromMongo(MongoDatabase mongoDatabase) {
@@ -251,14 +415,14 @@ public class Metadata {
 		return collection.find().into(new ArrayList<Metadata>());
 	}
 	
+	/**
+	 * Iterates over all Metadata in batches, without loading the whole collection.
+	 * @param mongoDatabase
+	 * @param metadataConsumer
+	 */
 	public static void iterateAllInMongo(MongoDatabase mongoDatabase, Consumer<Metadata> metadataConsumer) {
-		
 		MongoCollection<Metadata> collection = mongoDatabase.getCollection(METADATA_COLLECTION, Metadata.class);
-		MongoCursor<Metadata> cursor = collection.find().iterator();
-		
-		while (cursor.hasNext()) {
-			metadataConsumer.accept(cursor.next());
-		}
+		new ResumableCursor<>(collection, null).forEach(metadataConsumer);
 	}
 
 }
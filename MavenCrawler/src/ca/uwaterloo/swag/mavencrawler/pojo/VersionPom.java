@@ -2,37 +2,66 @@ package ca.uwaterloo.swag.mavencrawler.pojo;
 
 import static com.mongodb.client.model.Filters.and;
 import static com.mongodb.client.model.Filters.eq;
+import static com.mongodb.client.model.Filters.exists;
+import static com.mongodb.client.model.Filters.gte;
+import static com.mongodb.client.model.Filters.in;
+import static com.mongodb.client.model.Filters.lt;
+import static com.mongodb.client.model.Projections.excludeId;
+import static com.mongodb.client.model.Projections.fields;
+import static com.mongodb.client.model.Projections.include;
+import static com.mongodb.client.model.Updates.set;
+import static com.mongodb.client.model.Updates.unset;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.bson.Document;
+import org.bson.conversions.Bson;
 
+import com.mongodb.Block;
 import com.mongodb.bulk.BulkWriteResult;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.IndexOptions;
 import com.mongodb.client.model.Indexes;
+import com.mongodb.client.model.Sorts;
 import com.mongodb.client.model.UpdateOneModel;
 import com.mongodb.client.model.UpdateOptions;
 
+import ca.uwaterloo.swag.mavencrawler.db.ResumableCursor;
 import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.helpers.MavenVersion;
 
 public class VersionPom {
 	
 	public static final String VERSIONPOM_COLLECTION = "VersionPoms";
+	public static final String DEFAULT_PACKAGING = "jar";
 
 	private String groupId;
 	private String artifactId;
 	private String name;
 	private String version;
+	private String versionKey;
 	private String description;
 	private String projectUrl;
 	private String repository;
 	private String scmConnection;
 	private String scmUrl;
+	private String packaging;
+	private String parentGroupId;
+	private String parentArtifactId;
+	private String parentVersion;
+	private List<Dependency> dependencies;
+	private List<Dependency> importedDependencies;
+	private Boolean indexOnly;
+	private InheritedValues inherited;
 	
 	public String getGroupId() {
 		return groupId;
@@ -55,8 +84,22 @@ public class VersionPom {
 	public String getVersion() {
 		return version;
 	}
+	/**
+	 * Also sets the version's sort key.
+	 * @param version
+	 */
 	public void setVersion(String version) {
 		this.version = version;
+		this.versionKey = MavenVersion.sortKey(version);
+	}
+	/**
+	 * @return key whose string order is the order of Maven versions, see {@link MavenVersion}
+	 */
+	public String getVersionKey() {
+		return versionKey;
+	}
+	public void setVersionKey(String versionKey) {
+		this.versionKey = versionKey;
 	}
 	public String getDescription() {
 		return description;
@@ -88,14 +131,82 @@ public class VersionPom {
 	public void setScmUrl(String scmUrl) {
 		this.scmUrl = scmUrl;
 	}
+	public String getPackaging() {
+		return packaging;
+	}
+	public void setPackaging(String packaging) {
+		this.packaging = packaging;
+	}
+	public String getParentGroupId() {
+		return parentGroupId;
+	}
+	public void setParentGroupId(String parentGroupId) {
+		this.parentGroupId = parentGroupId;
+	}
+	public String getParentArtifactId() {
+		return parentArtifactId;
+	}
+	public void setParentArtifactId(String parentArtifactId) {
+		this.parentArtifactId = parentArtifactId;
+	}
+	public String getParentVersion() {
+		return parentVersion;
+	}
+	public void setParentVersion(String parentVersion) {
+		this.parentVersion = parentVersion;
+	}
+	/**
+	 * @return direct dependencies, or null if they were not extracted
+	 */
+	public List<Dependency> getDependencies() {
+		return dependencies;
+	}
+	public void setDependencies(List<Dependency> dependencies) {
+		this.dependencies = dependencies;
+	}
+	/**
+	 * @return POMs imported in dependencyManagement (scope "import"), or null if they were not extracted
+	 */
+	public List<Dependency> getImportedDependencies() {
+		return importedDependencies;
+	}
+	public void setImportedDependencies(List<Dependency> importedDependencies) {
+		this.importedDependencies = importedDependencies;
+	}
+	/**
+	 * @return TRUE if only found in a repository index, and its POM was not saved yet
+	 */
+	public Boolean getIndexOnly() {
+		return indexOnly;
+	}
+	public void setIndexOnly(Boolean indexOnly) {
+		this.indexOnly = indexOnly;
+	}
+	/**
+	 * @return values inherited from the parent chain and not declared in the POM, 
+	 * or null if none or not resolved yet
+	 */
+	public InheritedValues getInherited() {
+		return inherited;
+	}
+	public void setInherited(InheritedValues inherited) {
+		this.inherited = inherited;
+	}
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
 		result = prime * result + ((artifactId == null) ? 0 : artifactId.hashCode());
+		result = prime * result + ((dependencies == null) ? 0 : dependencies.hashCode());
 		result = prime * result + ((description == null) ? 0 : description.hashCode());
 		result = prime * result + ((groupId == null) ? 0 : groupId.hashCode());
+		result = prime * result + ((importedDependencies == null) ? 0 : importedDependencies.hashCode());
+		result = prime * result + ((inherited == null) ? 0 : inherited.hashCode());
 		result = prime * result + ((name == null) ? 0 : name.hashCode());
+		result = prime * result + ((packaging == null) ? 0 : packaging.hashCode());
+		result = prime * result + ((parentArtifactId == null) ? 0 : parentArtifactId.hashCode());
+		result = prime * result + ((parentGroupId == null) ? 0 : parentGroupId.hashCode());
+		result = prime * result + ((parentVersion == null) ? 0 : parentVersion.hashCode());
 		result = prime * result + ((projectUrl == null) ? 0 : projectUrl.hashCode());
 		result = prime * result + ((repository == null) ? 0 : repository.hashCode());
 		result = prime * result + ((scmConnection == null) ? 0 : scmConnection.hashCode());
@@ -117,6 +228,11 @@ public class VersionPom {
 				return false;
 		} else if (!artifactId.equals(other.artifactId))
 			return false;
+		if (dependencies == null) {
+			if (other.dependencies != null)
+				return false;
+		} else if (!dependencies.equals(other.dependencies))
+			return false;
 		if (description == null) {
 			if (other.description != null)
 				return false;
@@ -127,11 +243,41 @@ public class VersionPom {
 				return false;
 		} else if (!groupId.equals(other.groupId))
 			return false;
+		if (importedDependencies == null) {
+			if (other.importedDependencies != null)
+				return false;
+		} else if (!importedDependencies.equals(other.importedDependencies))
+			return false;
+		if (inherited == null) {
+			if (other.inherited != null)
+				return false;
+		} else if (!inherited.equals(other.inherited))
+			return false;
 		if (name == null) {
 			if (other.name != null)
 				return false;
 		} else if (!name.equals(other.name))
 			return false;
+		if (packaging == null) {
+			if (other.packaging != null)
+				return false;
+		} else if (!packaging.equals(other.packaging))
+			return false;
+		if (parentArtifactId == null) {
+			if (other.parentArtifactId != null)
+				return false;
+		} else if (!parentArtifactId.equals(other.parentArtifactId))
+			return false;
+		if (parentGroupId == null) {
+			if (other.parentGroupId != null)
+				return false;
+		} else if (!parentGroupId.equals(other.parentGroupId))
+			return false;
+		if (parentVersion == null) {
+			if (other.parentVersion != null)
+				return false;
+		} else if (!parentVersion.equals(other.parentVersion))
+			return false;
 		if (projectUrl == null) {
 			if (other.projectUrl != null)
 				return false;
@@ -163,41 +309,319 @@ public class VersionPom {
 	public String toString() {
 		return "VersionPom [groupId=" + groupId + ", artifactId=" + artifactId + ", name=" + name + ", version="
 				+ version + ", description=" + description + ", projectUrl=" + projectUrl + ", repository=" + repository
-				+ ", scmConnection=" + scmConnection + ", scmUrl=" + scmUrl + "]";
+				+ ", scmConnection=" + scmConnection + ", scmUrl=" + scmUrl + ", packaging=" + packaging
+				+ ", parentGroupId=" + parentGroupId + ", parentArtifactId=" + parentArtifactId + ", parentVersion="
+				+ parentVersion + ", dependencies=" + dependencies + ", importedDependencies=" + importedDependencies + ", inherited=" + inherited + "]";
+	}
+	
+	/**
+	 * File extension of the main artifact for a packaging, as Maven resolves it.
+	 * @param packaging packaging declared in the POM, null if none
+	 * @return file extension, or null if the packaging has no binary (e.g. "pom")
+	 */
+	public static String extensionForPackaging(String packaging) {
+		
+		if (packaging == null || packaging.trim().isEmpty()) return DEFAULT_PACKAGING;
+		
+		switch (packaging.trim().toLowerCase()) {
+		case "pom":
+			return null;
+		case "jar":
+		case "bundle":
+		case "maven-plugin":
+		case "maven-archetype":
+		case "ejb":
+		case "eclipse-plugin":
+		case "test-jar":
+		case "java-source":
+		case "javadoc":
+			return "jar";
+		default:
+			// Other packagings (war, ear, aar, apk...) use their own name as extension
+			return packaging.trim().toLowerCase();
+		}
 	}
 	
 	public static void checkIndexesInCollection(MongoCollection<VersionPom> collection) {
 		IndexOptions indexOptions = new IndexOptions().unique(true);
 		collection.createIndex(Indexes.ascending("groupId", "artifactId", "version", "repository"), indexOptions);
+		collection.createIndex(Indexes.ascending("groupId", "artifactId", "versionKey"));
+		collection.createIndex(Indexes.ascending("repository", "_id"), 
+				new IndexOptions().partialFilterExpression(eq("indexOnly", true)));
 	}
 	
+	/**
+	 * Saves VersionPoms read from their POM. VersionPoms only found in an index so far 
+	 * are no longer marked as such, unless indexOnly is set.
+	 * @param versionPomsList
+	 * @param mongoDatabase
+	 * @param logger
+	 */
 	public static void upsertInMongo(List<VersionPom> versionPomsList, MongoDatabase mongoDatabase, Logger logger) {
 		
 		List<UpdateOneModel<VersionPom>> upsertRequests = new ArrayList<UpdateOneModel<VersionPom>>(versionPomsList.size());
 		UpdateOptions updateOptions = new UpdateOptions().upsert(true);
 		
 		for (VersionPom versionPom : versionPomsList) {
+			Document update = new Document("$set", versionPom);
+			if (versionPom.getIndexOnly() == null) update.append("$unset", new Document("indexOnly", ""));
+			
 			upsertRequests.add(new UpdateOneModel<VersionPom>(
 					and(eq("groupId", versionPom.getGroupId()), 
 						eq("artifactId", versionPom.getArtifactId()),
 						eq("version", versionPom.getVersion())), 
-					new Document("$set", versionPom), 
+					update, 
 					updateOptions));
 		}
 
 		LoggerHelper.log(logger, Level.INFO, "Saving " + upsertRequests.size() + " upserts to database...");
 		
 		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
-		BulkWriteResult result = collection.bulkWrite(upsertRequests);
+		BulkWriteResult result = collection.bulkWrite(upsertRequests, new BulkWriteOptions().ordered(false));
 
 		LoggerHelper.log(logger, Level.INFO, "Matched: " + result.getMatchedCount() + 
 				". Inserted: " + result.getInsertedCount() +
 				". Modified:" + result.getModifiedCount() + ".");
 	}
 	
+	/**
+	 * Saves the inherited values of VersionPoms already saved, replacing the previous ones,
+	 * and leaving the values read from their POM as they are.
+	 * @param versionPomsList
+	 * @param mongoDatabase
+	 * @param logger
+	 */
+	public static void updateInheritedInMongo(List<VersionPom> versionPomsList, MongoDatabase mongoDatabase, Logger logger) {
+		
+		List<UpdateOneModel<VersionPom>> updateRequests = new ArrayList<UpdateOneModel<VersionPom>>(versionPomsList.size());
+		
+		for (VersionPom versionPom : versionPomsList) {
+			updateRequests.add(new UpdateOneModel<VersionPom>(
+					and(eq("groupId", versionPom.getGroupId()), 
+						eq("artifactId", versionPom.getArtifactId()),
+						eq("version", versionPom.getVersion())), 
+					(versionPom.getInherited() == null) ? unset("inherited") : set("inherited", versionPom.getInherited())));
+		}
+
+		LoggerHelper.log(logger, Level.INFO, "Saving inherited values of " + updateRequests.size() + " POMs to database...");
+		
+		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
+		BulkWriteResult result = collection.bulkWrite(updateRequests, new BulkWriteOptions().ordered(false));
+
+		LoggerHelper.log(logger, Level.INFO, "Matched: " + result.getMatchedCount() + 
+				". Modified:" + result.getModifiedCount() + ".");
+	}
+	
+	/**
+	 * Saves VersionPoms found in a repository index, marked as index only. 
+	 * VersionPoms already saved are left as they are, as their POM says more than the index.
+	 * @param versionPomsList
+	 * @param mongoDatabase
+	 * @param logger
+	 */
+	public static void insertFromIndexInMongo(List<VersionPom> versionPomsList, MongoDatabase mongoDatabase, Logger logger) {
+		
+		List<UpdateOneModel<VersionPom>> insertRequests = new ArrayList<UpdateOneModel<VersionPom>>(versionPomsList.size());
+		UpdateOptions updateOptions = new UpdateOptions().upsert(true);
+		
+		for (VersionPom versionPom : versionPomsList) {
+			Document fields = new Document("indexOnly", true);
+			if (versionPom.getVersionKey() != null) fields.append("versionKey", versionPom.getVersionKey());
+			if (versionPom.getRepository() != null) fields.append("repository", versionPom.getRepository());
+			if (versionPom.getName() != null) fields.append("name", versionPom.getName());
+			if (versionPom.getDescription() != null) fields.append("description", versionPom.getDescription());
+			if (versionPom.getPackaging() != null) fields.append("packaging", versionPom.getPackaging());
+			
+			insertRequests.add(new UpdateOneModel<VersionPom>(
+					and(eq("groupId", versionPom.getGroupId()), 
+						eq("artifactId", versionPom.getArtifactId()),
+						eq("version", versionPom.getVersion())), 
+					new Document("$setOnInsert", fields), 
+					updateOptions));
+		}
+
+		LoggerHelper.log(logger, Level.INFO, "Saving " + insertRequests.size() + " indexed versions to database...");
+		
+		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
+		BulkWriteResult result = collection.bulkWrite(insertRequests, new BulkWriteOptions().ordered(false));
+
+		LoggerHelper.log(logger, Level.INFO, "Already saved: " + result.getMatchedCount() + 
+				". Inserted: " + result.getUpserts().size() + ".");
+	}
+	
 	public static List<VersionPom> findAllFromMongo(MongoDatabase mongoDatabase) {
 		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
 		return collection.find().into(new ArrayList<VersionPom>());
 	}
 
+	/**
+	 * Iterates over all VersionPom in batches, without loading the whole collection.
+	 * @param mongoDatabase
+	 * @param versionPomConsumer
+	 */
+	public static void iterateAllInMongo(MongoDatabase mongoDatabase, Consumer<VersionPom> versionPomConsumer) {
+		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
+		new ResumableCursor<>(collection, null).forEach(versionPomConsumer);
+	}
+
+	/**
+	 * Iterates over the VersionPoms declaring a parent, in batches.
+	 * @param mongoDatabase
+	 * @param versionPomConsumer
+	 */
+	public static void iterateChildrenInMongo(MongoDatabase mongoDatabase, Consumer<VersionPom> versionPomConsumer) {
+		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
+		ResumableCursor<VersionPom> cursor = new ResumableCursor<>(collection, null);
+		cursor.setFilter(exists("parentArtifactId"));
+		cursor.forEach(versionPomConsumer);
+	}
+
+	/**
+	 * Iterates over the VersionPoms of a repository only found in its index, in batches.
+	 * @param repository
+	 * @param mongoDatabase
+	 * @param versionPomConsumer
+	 */
+	public static void iterateIndexOnlyInMongo(String repository, MongoDatabase mongoDatabase, 
+			Consumer<VersionPom> versionPomConsumer) {
+		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
+		ResumableCursor<VersionPom> cursor = new ResumableCursor<>(collection, null);
+		cursor.setFilter(and(eq("repository", repository), eq("indexOnly", true)));
+		cursor.forEach(versionPomConsumer);
+	}
+
+	/**
+	 * @param groupId
+	 * @param artifactId
+	 * @param version
+	 * @param mongoDatabase
+	 * @return saved VersionPom, from any repository, or null if none
+	 */
+	public static VersionPom findInMongo(String groupId, String artifactId, String version, MongoDatabase mongoDatabase) {
+		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
+		return collection.find(
+				and(eq("groupId", groupId), 
+					eq("artifactId", artifactId),
+					eq("version", version)))
+			.first();
+	}
+
+	/**
+	 * Finds the newest saved versions of an artifact, in Maven's version order, 
+	 * with a scan of the versionKey index.
+	 * @param groupId
+	 * @param artifactId
+	 * @param limit maximum number of versions
+	 * @param mongoDatabase
+	 * @return versions, newest first
+	 */
+	public static List<String> findNewestVersions(String groupId, String artifactId, int limit, MongoDatabase mongoDatabase) {
+		
+		MongoCollection<Document> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION);
+		List<String> versions = new ArrayList<>();
+		
+		collection.find(
+				and(eq("groupId", groupId), 
+					eq("artifactId", artifactId),
+					exists("versionKey")))
+			.sort(Sorts.descending("versionKey"))
+			.limit(limit)
+			.projection(fields(include("version"), excludeId()))
+			.forEach((Block<Document>) document -> versions.add(document.getString("version")));
+		
+		return versions;
+	}
+
+	/**
+	 * Finds the saved versions of an artifact from a version, included, to another, excluded,
+	 * in Maven's version order, with a scan of the versionKey index.
+	 * @param groupId
+	 * @param artifactId
+	 * @param fromVersion lowest version, or null for no lower bound
+	 * @param toVersion version above the range, or null for no upper bound
+	 * @param mongoDatabase
+	 * @return versions, oldest first
+	 */
+	public static List<String> findVersionsInRange(String groupId, String artifactId, String fromVersion, String toVersion, 
+			MongoDatabase mongoDatabase) {
+		
+		List<Bson> filters = new ArrayList<>();
+		filters.add(eq("groupId", groupId));
+		filters.add(eq("artifactId", artifactId));
+		filters.add(fromVersion == null ? exists("versionKey") : gte("versionKey", MavenVersion.sortKey(fromVersion)));
+		if (toVersion != null) filters.add(lt("versionKey", MavenVersion.sortKey(toVersion)));
+		
+		MongoCollection<Document> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION);
+		List<String> versions = new ArrayList<>();
+		
+		collection.find(and(filters))
+			.sort(Sorts.ascending("versionKey"))
+			.projection(fields(include("version"), excludeId()))
+			.forEach((Block<Document>) document -> versions.add(document.getString("version")));
+		
+		return versions;
+	}
+
+	/**
+	 * Sets the sort key of VersionPoms saved without one, in bulk.
+	 * @param mongoDatabase
+	 * @param logger
+	 * @return number of VersionPoms updated
+	 */
+	public static long addVersionKeysInMongo(MongoDatabase mongoDatabase, Logger logger) {
+		
+		MongoCollection<VersionPom> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION, VersionPom.class);
+		ResumableCursor<VersionPom> cursor = new ResumableCursor<>(collection, logger);
+		cursor.setFilter(and(exists("version"), exists("versionKey", false)));
+		
+		List<UpdateOneModel<VersionPom>> updates = new ArrayList<>();
+		long[] updated = {0};
+		
+		cursor.setBatchListener(lastId -> {
+			if (updates.isEmpty()) return;
+			collection.bulkWrite(updates, new BulkWriteOptions().ordered(false));
+			updated[0] += updates.size();
+			updates.clear();
+		});
+		cursor.forEach(versionPom -> updates.add(new UpdateOneModel<VersionPom>(
+				and(eq("groupId", versionPom.getGroupId()), 
+					eq("artifactId", versionPom.getArtifactId()),
+					eq("version", versionPom.getVersion())), 
+				set("versionKey", versionPom.getVersionKey()))));
+		
+		LoggerHelper.log(logger, Level.INFO, "Added version keys to " + updated[0] + " VersionPoms");
+		
+		return updated[0];
+	}
+
+	/**
+	 * Finds the packaging of the given versions of an artifact, in a single query.
+	 * @param groupId
+	 * @param artifactId
+	 * @param versions
+	 * @param mongoDatabase
+	 * @return packaging by version, only for versions with a saved POM. 
+	 * POMs without packaging are mapped to the default "jar".
+	 */
+	public static Map<String, String> findPackagings(String groupId, String artifactId, Collection<String> versions, 
+			MongoDatabase mongoDatabase) {
+		
+		Map<String, String> packagings = new HashMap<>();
+		if (versions == null || versions.isEmpty()) return packagings;
+		
+		MongoCollection<Document> collection = mongoDatabase.getCollection(VERSIONPOM_COLLECTION);
+		
+		collection.find(
+				and(eq("groupId", groupId), 
+					eq("artifactId", artifactId),
+					in("version", versions)))
+			.projection(fields(include("version", "packaging"), excludeId()))
+			.forEach((Block<Document>) document -> {
+				String packaging = document.getString("packaging");
+				packagings.put(document.getString("version"), packaging == null ? DEFAULT_PACKAGING : packaging);
+			});
+		
+		return packagings;
+	}
+
 }
@@ -1,6 +1,7 @@
 package ca.uwaterloo.swag.mavencrawler.xml;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 
 import org.xml.sax.Attributes;
@@ -26,7 +27,11 @@ public class ArchetypeCatalogHandler extends DefaultHandler {
 		NONE
 	}
 
+	private static final ElementLookup<ElementType> ELEMENTS =
+			new ElementLookup<>(EnumSet.range(ElementType.ARCHETYPE, ElementType.DESCRIPTION), ElementType.NONE);
+
 	private ElementType currentElementType = ElementType.NONE;
+	private StringBuilder text = new StringBuilder();
 	private Archetype currentArchetype = null;
 	private List<Archetype> archetypes = new ArrayList<Archetype>();
 	
@@ -38,12 +43,8 @@ public class ArchetypeCatalogHandler extends DefaultHandler {
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 		super.startElement(uri, localName, qName, attributes);
 
-		try {
-			currentElementType = ElementType.valueOf(qName.toUpperCase());
-		} catch (Exception e) {
-			// If an unknown element is found
-			currentElementType = ElementType.NONE;
-		}
+		currentElementType = ELEMENTS.get(qName);
+		text.setLength(0);
 		
 		if (currentElementType == ElementType.ARCHETYPE) {
 			currentArchetype = new Archetype();
@@ -54,6 +55,11 @@ public class ArchetypeCatalogHandler extends DefaultHandler {
 	@Override
 	public void endElement(String uri, String localName, String qName) throws SAXException {
 		super.endElement(uri, localName, qName);
+
+		// Values may come in several chunks, and are only complete here
+		if (currentArchetype != null && text.length() > 0) {
+			setValue(currentElementType, text.toString());
+		}
 		
 		// Release current element
 		currentElementType = ElementType.NONE;
@@ -63,10 +69,15 @@ public class ArchetypeCatalogHandler extends DefaultHandler {
 	// Reading data from inside an element
 	public void characters(char[] ch, int start, int length) throws SAXException {
 		super.characters(ch, start, length);
+
+		if (currentElementType != ElementType.NONE && currentElementType != ElementType.ARCHETYPE) {
+			text.append(ch, start, length);
+		}
+	}
+
+	private void setValue(ElementType elementType, String value) {
 		
-		String value = new String(ch, start, length);
-		
-		switch (currentElementType) {
+		switch (elementType) {
 		case GROUPID:
 			currentArchetype.setGroupId(value);
 			break;
@@ -0,0 +1,73 @@
+package ca.uwaterloo.swag.mavencrawler.xml;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the element type of a tag name, ignoring case, without copying the name
+ * or throwing for unknown elements. Names are the lower-cased enum constants,
+ * kept in an open-addressing table built once per handler class.
+ */
+final class ElementLookup<E extends Enum<E>> {
+
+	private final String[] names;
+	private final Object[] types;
+	private final int mask;
+	private final E unknown;
+
+	/**
+	 * @param types element types matched by their name
+	 * @param unknown returned for any other name
+	 */
+	ElementLookup(Set<E> types, E unknown) {
+		super();
+
+		int size = Integer.highestOneBit(Math.max(types.size(), 1) * 4 - 1) << 1;
+		this.names = new String[size];
+		this.types = new Object[size];
+		this.mask = size - 1;
+		this.unknown = unknown;
+
+		for (E type : types) {
+			String name = type.name().toLowerCase(Locale.ROOT);
+			int i = hash(name) & mask;
+			while (names[i] != null) i = (i + 1) & mask;
+			names[i] = name;
+			this.types[i] = type;
+		}
+	}
+
+	/**
+	 * @param qName tag name as given by the parser
+	 * @return matching type, or the unknown type
+	 */
+	@SuppressWarnings("unchecked")
+	E get(String qName) {
+
+		int i = hash(qName) & mask;
+		String name;
+
+		while ((name = names[i]) != null) {
+			if (name.length() == qName.length() && name.regionMatches(true, 0, qName, 0, name.length())) {
+				return (E) types[i];
+			}
+			i = (i + 1) & mask;
+		}
+
+		return unknown;
+	}
+
+	/**
+	 * Same value for names differing only by ASCII case.
+	 */
+	private static int hash(String name) {
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+			hash = 31 * hash + c;
+		}
+		return hash ^ (hash >>> 16);
+	}
+
+}
@@ -3,6 +3,7 @@ package ca.uwaterloo.swag.mavencrawler.xml;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.EnumSet;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
@@ -26,9 +27,13 @@ public class MavenMetadataHandler extends DefaultHandler {
 		LASTUPDATED,
 		NONE
 	}
+
+	private static final ElementLookup<ElementType> ELEMENTS =
+			new ElementLookup<>(EnumSet.range(ElementType.GROUPID, ElementType.LASTUPDATED), ElementType.NONE);
 	
 	private DateFormat mavenFormat = new SimpleDateFormat("yyyyMMddHHmmss");
 	private ElementType currentElementType = ElementType.NONE;
+	private StringBuilder text = new StringBuilder();
 	private Metadata metadata = new Metadata();
 
 	public Metadata getMetadata() {
@@ -39,17 +44,18 @@ public class MavenMetadataHandler extends DefaultHandler {
 	public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
 		super.startElement(uri, localName, qName, attributes);
 
-		try {
-			currentElementType = ElementType.valueOf(qName.toUpperCase());
-		} catch (Exception e) {
-			// If an unknown element is found
-			currentElementType = ElementType.NONE;
-		}
+		currentElementType = ELEMENTS.get(qName);
+		text.setLength(0);
 	}
 	
 	@Override
 	public void endElement(String uri, String localName, String qName) throws SAXException {
 		super.endElement(uri, localName, qName);
+
+		// Values may come in several chunks, and are only complete here
+		if (currentElementType != ElementType.NONE && text.length() > 0) {
+			setValue(currentElementType, text.toString());
+		}
 		
 		// Release current element
 		currentElementType = ElementType.NONE;
@@ -58,9 +64,15 @@ public class MavenMetadataHandler extends DefaultHandler {
 	@Override
 	public void characters(char[] ch, int start, int length) throws SAXException {
 		super.characters(ch, start, length);
-		String value = new String(ch, start, length);
+
+		if (currentElementType != ElementType.NONE) {
+			text.append(ch, start, length);
+		}
+	}
+
+	private void setValue(ElementType elementType, String value) {
 		
-		switch (currentElementType) {
+		switch (elementType) {
 		case GROUPID:
 			metadata.setGroupId(value);
 			break;
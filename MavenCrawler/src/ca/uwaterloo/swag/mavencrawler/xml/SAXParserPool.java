@@ -0,0 +1,113 @@
+package ca.uwaterloo.swag.mavencrawler.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+
+/**
+ * Thread-confined pool of SAX parsers shared by all XML entry points. Each thread
+ * creates its parser once and resets it after every document, avoiding the factory
+ * lookup and parser construction for each parsed page.
+ *
+ * The factory implementation can be set with the system property
+ * {@value #FACTORY_CLASS_PROPERTY}, otherwise the JAXP default is used.
+ * Documents with a DOCTYPE are rejected, and DTDs and external entities are never loaded.
+ */
+public class SAXParserPool {
+
+	public static final String FACTORY_CLASS_PROPERTY = "mavencrawler.saxParserFactory";
+
+	private static final String DISALLOW_DOCTYPE_FEATURE = "http://apache.org/xml/features/disallow-doctype-decl";
+	private static final String LOAD_EXTERNAL_DTD_FEATURE = "http://apache.org/xml/features/nonvalidating/load-external-dtd";
+	private static final String EXTERNAL_GENERAL_ENTITIES_FEATURE = "http://xml.org/sax/features/external-general-entities";
+	private static final String EXTERNAL_PARAMETER_ENTITIES_FEATURE = "http://xml.org/sax/features/external-parameter-entities";
+
+	private static final Logger logger = Logger.getLogger(SAXParserPool.class.getName());
+	private static final ThreadLocal<SAXParser> parsers = new ThreadLocal<>();
+	private static SAXParserFactory factory;
+
+	// Disable default constructor
+	private SAXParserPool() {}
+
+	/**
+	 * Parses the stream with the current thread's parser, resetting it afterwards.
+	 * @param stream
+	 * @param handler
+	 */
+	public static void parse(InputStream stream, DefaultHandler handler) throws ParserConfigurationException, SAXException, IOException {
+
+		SAXParser parser = getParser();
+
+		try {
+			parser.parse(stream, handler);
+		}
+		finally {
+			parser.reset();
+		}
+	}
+
+	static SAXParser getParser() throws ParserConfigurationException, SAXException {
+
+		SAXParser parser = parsers.get();
+
+		if (parser == null) {
+			parser = newParser();
+			parsers.set(parser);
+		}
+
+		return parser;
+	}
+
+	private static synchronized SAXParser newParser() throws ParserConfigurationException, SAXException {
+
+		if (factory == null) {
+			factory = newFactory();
+		}
+
+		return factory.newSAXParser();
+	}
+
+	/**
+	 * @return factory configured as the one of the pool
+	 */
+	static SAXParserFactory newFactory() {
+
+		String factoryClassName = System.getProperty(FACTORY_CLASS_PROPERTY);
+		SAXParserFactory newFactory = (factoryClassName == null || factoryClassName.isEmpty()) ?
+				SAXParserFactory.newInstance() :
+				SAXParserFactory.newInstance(factoryClassName, SAXParserPool.class.getClassLoader());
+
+		newFactory.setNamespaceAware(false);
+		newFactory.setValidating(false);
+		newFactory.setXIncludeAware(false);
+		setFeature(newFactory, XMLConstants.FEATURE_SECURE_PROCESSING, true);
+		setFeature(newFactory, DISALLOW_DOCTYPE_FEATURE, true);
+		setFeature(newFactory, LOAD_EXTERNAL_DTD_FEATURE, false);
+		setFeature(newFactory, EXTERNAL_GENERAL_ENTITIES_FEATURE, false);
+		setFeature(newFactory, EXTERNAL_PARAMETER_ENTITIES_FEATURE, false);
+
+		return newFactory;
+	}
+
+	private static void setFeature(SAXParserFactory aFactory, String feature, boolean value) {
+		try {
+			aFactory.setFeature(feature, value);
+		} catch (ParserConfigurationException | SAXException e) {
+			// Feature not supported by this implementation, keep its default
+			LoggerHelper.log(logger, Level.WARNING, "Could not set " + feature + " to " + value + 
+					" on " + aFactory.getClass().getName() + ": " + e.getMessage());
+		}
+	}
+
+}
@@ -0,0 +1,629 @@
+package ca.uwaterloo.swag.mavencrawler.xml;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.LoggerHelper;
+import ca.uwaterloo.swag.mavencrawler.pojo.Dependency;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+
+/**
+ * Pull parser for the values of a POM saved in its {@link VersionPom}, reading only the
+ * wanted children of {@code <project>}, {@code <parent>} and {@code <scm>}.
+ * Other elements are skipped without collecting their text, and parsing ends as soon
+ * as all wanted values of the project itself were read.
+ *
+ * With stopAtBody, parsing also ends at the first build section of the POM
+ * (dependencies, build, profiles...). POMs following the Maven element order declare
+ * all wanted values before, but values placed after such a section are lost.
+ * If dependencies are wanted, parsing goes on until they are read.
+ *
+ * Dependency versions are resolved from the properties and dependencyManagement of
+ * the POM itself, when declared before the dependencies. Values inherited from the
+ * parent are not resolved, and are kept as declared (e.g. "${spring.version}") or null.
+ *
+ * Instances are immutable and can be shared by crawler threads.
+ */
+public class VersionPomExtractor {
+
+	/**
+	 * Values that can be extracted. Coordinates missing in the project are taken from its parent.
+	 */
+	public enum Field {
+		GROUP_ID,
+		ARTIFACT_ID,
+		VERSION,
+		NAME,
+		DESCRIPTION,
+		PROJECT_URL,
+		PACKAGING,
+		SCM_CONNECTION,
+		SCM_URL,
+		PARENT,
+		DEPENDENCIES
+	}
+
+	private enum ElementType {
+		PROJECT,
+		PARENT,
+		SCM,
+		GROUPID,
+		ARTIFACTID,
+		VERSION,
+		NAME,
+		DESCRIPTION,
+		URL,
+		PACKAGING,
+		CONNECTION,
+		PROPERTIES,
+		DEPENDENCY,
+		CLASSIFIER,
+		TYPE,
+		SCOPE,
+		OPTIONAL,
+		// Build sections
+		DEPENDENCYMANAGEMENT,
+		DEPENDENCIES,
+		REPOSITORIES,
+		PLUGINREPOSITORIES,
+		BUILD,
+		REPORTING,
+		PROFILES,
+		IGNORE
+	}
+
+	private enum PropertyType {
+		POM_FIELDS,
+		POM_STOP_AT_BODY
+	}
+
+	public static final Set<Field> ALL_FIELDS = Collections.unmodifiableSet(EnumSet.allOf(Field.class));
+	/**
+	 * Values of the project itself, without its dependencies
+	 */
+	public static final Set<Field> PROJECT_FIELDS = Collections.unmodifiableSet(EnumSet.range(Field.GROUP_ID, Field.SCM_URL));
+	public static final boolean DEFAULT_STOP_AT_BODY = true;
+
+	private static final ElementLookup<ElementType> ELEMENTS =
+			new ElementLookup<>(EnumSet.range(ElementType.PROJECT, ElementType.PROFILES), ElementType.IGNORE);
+	private static final Set<ElementType> BODY = EnumSet.range(ElementType.DEPENDENCYMANAGEMENT, ElementType.PROFILES);
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+	private static final Pattern PROPERTY = Pattern.compile("\\$\\{([^}]+)\\}");
+	private static final int MAX_INTERPOLATIONS = 5;
+	private static final XMLInputFactory factory = newFactory();
+
+	private final Set<Field> fields;
+	private final boolean stopAtBody;
+
+	/**
+	 * Extracts all fields, stopping at the body.
+	 */
+	public VersionPomExtractor() {
+		this(ALL_FIELDS, DEFAULT_STOP_AT_BODY);
+	}
+
+	/**
+	 * @param fields values to extract, others are left null
+	 * @param stopAtBody if TRUE, parsing ends at the first build section
+	 */
+	public VersionPomExtractor(Set<Field> fields, boolean stopAtBody) {
+		super();
+		this.fields = Collections.unmodifiableSet(fields.isEmpty() ? EnumSet.noneOf(Field.class) : EnumSet.copyOf(fields));
+		this.stopAtBody = stopAtBody;
+	}
+
+	/**
+	 * Reads POM_FIELDS (comma separated Field names, all by default) and POM_STOP_AT_BODY.
+	 * Unknown field names are logged and ignored.
+	 * @param logger
+	 * @param properties
+	 * @return extractor
+	 */
+	public static VersionPomExtractor newInstance(Logger logger, Properties properties) {
+
+		String fieldNames = properties.getProperty(PropertyType.POM_FIELDS.name(), "").trim();
+		Set<Field> fields = EnumSet.noneOf(Field.class);
+
+		if (fieldNames.isEmpty()) {
+			fields.addAll(ALL_FIELDS);
+		}
+		else {
+			for (String fieldName : fieldNames.split(",")) {
+				try {
+					fields.add(Field.valueOf(fieldName.trim().toUpperCase(Locale.ROOT)));
+				} catch (IllegalArgumentException e) {
+					LoggerHelper.log(logger, Level.WARNING, "Unknown POM field: " + fieldName.trim());
+				}
+			}
+		}
+
+		boolean stopAtBody = Boolean.valueOf(properties.getProperty(PropertyType.POM_STOP_AT_BODY.name(),
+				String.valueOf(DEFAULT_STOP_AT_BODY)).trim());
+
+		return new VersionPomExtractor(fields, stopAtBody);
+	}
+
+	public Set<Field> getFields() {
+		return fields;
+	}
+
+	public boolean isStopAtBody() {
+		return stopAtBody;
+	}
+
+	/**
+	 * @param stream POM, left open
+	 * @return extracted values
+	 * @throws XMLStreamException
+	 */
+	public VersionPom extract(InputStream stream) throws XMLStreamException {
+		VersionPom versionPom = new VersionPom();
+		extract(stream, versionPom);
+		return versionPom;
+	}
+
+	/**
+	 * Sets the extracted values. On error, values read so far are kept.
+	 * @param stream POM, left open
+	 * @param versionPom receives the values
+	 * @throws XMLStreamException
+	 */
+	public void extract(InputStream stream, VersionPom versionPom) throws XMLStreamException {
+
+		if (fields.isEmpty()) return;
+
+		boolean withDependencies = fields.contains(Field.DEPENDENCIES);
+		boolean withParent = withDependencies || fields.contains(Field.PARENT) ||
+				fields.contains(Field.GROUP_ID) || fields.contains(Field.ARTIFACT_ID) || fields.contains(Field.VERSION);
+
+		// Coordinates are also needed to resolve dependency versions
+		Set<Field> missing = EnumSet.copyOf(fields);
+		if (withDependencies) missing.addAll(EnumSet.of(Field.GROUP_ID, Field.VERSION, Field.PARENT));
+
+		XMLStreamReader reader = factory.createXMLStreamReader(stream);
+		String groupId = null;
+		String version = null;
+		String parentGroupId = null;
+		String parentArtifactId = null;
+		String parentVersion = null;
+		Map<String, String> properties = null;
+		List<Dependency> managedDependencies = null;
+		List<Dependency> dependencies = null;
+		boolean isProject = false;
+
+		try {
+			// Root element
+			if (nextElement(reader) != XMLStreamConstants.START_ELEMENT ||
+					ELEMENTS.get(reader.getLocalName()) != ElementType.PROJECT) {
+				return;
+			}
+			isProject = true;
+
+			// Wanted values are removed from missing when read, later duplicates are skipped
+			while (!missing.isEmpty() && nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+
+				ElementType element = ELEMENTS.get(reader.getLocalName());
+
+				if (stopAtBody && BODY.contains(element) && !missing.contains(Field.DEPENDENCIES)) break;
+
+				switch (element) {
+				case GROUPID:
+					if (missing.remove(Field.GROUP_ID)) {
+						groupId = trim(readText(reader));
+						continue;
+					}
+					break;
+				case ARTIFACTID:
+					if (missing.remove(Field.ARTIFACT_ID)) {
+						versionPom.setArtifactId(readText(reader));
+						continue;
+					}
+					break;
+				case VERSION:
+					if (missing.remove(Field.VERSION)) {
+						version = readText(reader);
+						continue;
+					}
+					break;
+				case NAME:
+					if (missing.remove(Field.NAME)) {
+						versionPom.setName(readText(reader));
+						continue;
+					}
+					break;
+				case DESCRIPTION:
+					if (missing.remove(Field.DESCRIPTION)) {
+						versionPom.setDescription(readText(reader));
+						continue;
+					}
+					break;
+				case URL:
+					if (missing.remove(Field.PROJECT_URL)) {
+						versionPom.setProjectUrl(removeWhitespace(readText(reader)));
+						continue;
+					}
+					break;
+				case PACKAGING:
+					if (missing.remove(Field.PACKAGING)) {
+						versionPom.setPackaging(trim(readText(reader)));
+						continue;
+					}
+					break;
+				case PARENT:
+					if (withParent) {
+						missing.remove(Field.PARENT);
+						while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+							switch (ELEMENTS.get(reader.getLocalName())) {
+							case GROUPID:
+								parentGroupId = readText(reader);
+								break;
+							case ARTIFACTID:
+								parentArtifactId = readText(reader);
+								break;
+							case VERSION:
+								parentVersion = readText(reader);
+								break;
+							default:
+								skipElement(reader);
+							}
+						}
+						continue;
+					}
+					break;
+				case SCM:
+					if (fields.contains(Field.SCM_CONNECTION) || fields.contains(Field.SCM_URL)) {
+						while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+							switch (ELEMENTS.get(reader.getLocalName())) {
+							case CONNECTION:
+								if (missing.remove(Field.SCM_CONNECTION)) {
+									versionPom.setScmConnection(removeWhitespace(readText(reader)));
+								}
+								else {
+									skipElement(reader);
+								}
+								break;
+							case URL:
+								if (missing.remove(Field.SCM_URL)) {
+									versionPom.setScmUrl(removeWhitespace(readText(reader)));
+								}
+								else {
+									skipElement(reader);
+								}
+								break;
+							default:
+								skipElement(reader);
+							}
+						}
+						continue;
+					}
+					break;
+				case PROPERTIES:
+					if (withDependencies && properties == null) {
+						properties = readProperties(reader);
+						continue;
+					}
+					break;
+				case DEPENDENCYMANAGEMENT:
+					if (withDependencies && managedDependencies == null) {
+						managedDependencies = new ArrayList<>();
+						while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+							if (ELEMENTS.get(reader.getLocalName()) == ElementType.DEPENDENCIES) {
+								readDependencies(reader, managedDependencies);
+							}
+							else {
+								skipElement(reader);
+							}
+						}
+						continue;
+					}
+					break;
+				case DEPENDENCIES:
+					if (missing.remove(Field.DEPENDENCIES)) {
+						dependencies = readDependencies(reader, new ArrayList<>());
+						continue;
+					}
+					break;
+				default:
+					break;
+				}
+
+				skipElement(reader);
+			}
+		}
+		finally {
+			reader.close();
+
+			// Coordinates inherited from the parent
+			if (groupId == null) groupId = trim(parentGroupId);
+			if (version == null) version = parentVersion;
+
+			if (fields.contains(Field.GROUP_ID)) {
+				versionPom.setGroupId(groupId);
+			}
+			if (versionPom.getArtifactId() == null && fields.contains(Field.ARTIFACT_ID)) {
+				versionPom.setArtifactId(parentArtifactId);
+			}
+			if (fields.contains(Field.VERSION)) {
+				versionPom.setVersion(version);
+			}
+			if (fields.contains(Field.PARENT)) {
+				versionPom.setParentGroupId(trim(parentGroupId));
+				versionPom.setParentArtifactId(trim(parentArtifactId));
+				versionPom.setParentVersion(trim(parentVersion));
+			}
+			if (withDependencies && isProject) {
+				Map<String, String> values = (properties == null) ? new HashMap<>() : properties;
+				putIfValue(values, groupId, "project.groupId", "pom.groupId", "groupId");
+				putIfValue(values, version, "project.version", "pom.version", "version");
+				putIfValue(values, trim(parentGroupId), "project.parent.groupId", "parent.groupId");
+				putIfValue(values, trim(parentVersion), "project.parent.version", "parent.version");
+
+				resolveDependencies(versionPom, dependencies, managedDependencies, values);
+			}
+		}
+	}
+
+	/**
+	 * Completes the dependencies with their managed version and scope, resolves
+	 * properties and leaves default values null.
+	 */
+	private static void resolveDependencies(VersionPom versionPom, List<Dependency> dependencies,
+			List<Dependency> managedDependencies, Map<String, String> properties) {
+
+		Map<String, Dependency> managed = new HashMap<>();
+		List<Dependency> imported = new ArrayList<>();
+
+		if (managedDependencies != null) {
+			for (Dependency dependency : managedDependencies) {
+				interpolate(dependency, properties);
+
+				if (Dependency.IMPORT_SCOPE.equals(dependency.getScope())) {
+					normalize(dependency);
+					imported.add(dependency);
+				}
+				else {
+					managed.putIfAbsent(dependency.getGroupId() + ":" + dependency.getArtifactId(), dependency);
+				}
+			}
+		}
+
+		if (dependencies == null) dependencies = new ArrayList<>();
+
+		for (Dependency dependency : dependencies) {
+			interpolate(dependency, properties);
+
+			Dependency managedDependency = managed.get(dependency.getGroupId() + ":" + dependency.getArtifactId());
+			if (managedDependency != null) {
+				if (dependency.getVersion() == null) dependency.setVersion(managedDependency.getVersion());
+				if (dependency.getScope() == null) dependency.setScope(managedDependency.getScope());
+			}
+
+			normalize(dependency);
+		}
+
+		versionPom.setDependencies(dependencies);
+		versionPom.setImportedDependencies(imported.isEmpty() ? null : imported);
+	}
+
+	private static void interpolate(Dependency dependency, Map<String, String> properties) {
+		dependency.setGroupId(interpolate(dependency.getGroupId(), properties));
+		dependency.setArtifactId(interpolate(dependency.getArtifactId(), properties));
+		dependency.setVersion(interpolate(dependency.getVersion(), properties));
+		dependency.setScope(interpolate(dependency.getScope(), properties));
+	}
+
+	/**
+	 * Default values are not saved.
+	 */
+	private static void normalize(Dependency dependency) {
+		if (Dependency.DEFAULT_SCOPE.equals(dependency.getScope())) dependency.setScope(null);
+		if (Dependency.DEFAULT_TYPE.equals(dependency.getType())) dependency.setType(null);
+	}
+
+	/**
+	 * Replaces "${name}" with the property value, if known. Properties referring to
+	 * other properties are resolved a few levels deep.
+	 */
+	static String interpolate(String value, Map<String, String> properties) {
+
+		for (int i = 0; i < MAX_INTERPOLATIONS && value != null && value.contains("${"); i++) {
+
+			Matcher matcher = PROPERTY.matcher(value);
+			StringBuffer resolved = new StringBuffer(value.length());
+			boolean replaced = false;
+
+			while (matcher.find()) {
+				String propertyValue = properties.get(matcher.group(1));
+				if (propertyValue != null) replaced = true;
+				matcher.appendReplacement(resolved, Matcher.quoteReplacement(
+						(propertyValue != null) ? propertyValue : matcher.group()));
+			}
+			matcher.appendTail(resolved);
+
+			if (!replaced) break;
+			value = resolved.toString();
+		}
+
+		return value;
+	}
+
+	private static void putIfValue(Map<String, String> properties, String value, String... names) {
+		if (value == null) return;
+		for (String name : names) {
+			properties.put(name, value);
+		}
+	}
+
+	private static Map<String, String> readProperties(XMLStreamReader reader) throws XMLStreamException {
+
+		Map<String, String> properties = new HashMap<>();
+
+		while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+			String name = reader.getLocalName();
+			String value = trim(readText(reader));
+			if (value != null) properties.put(name, value);
+		}
+
+		return properties;
+	}
+
+	/**
+	 * Reads the dependency elements of a dependencies section, up to its end tag.
+	 * @return the given list
+	 */
+	private static List<Dependency> readDependencies(XMLStreamReader reader, List<Dependency> dependencies)
+			throws XMLStreamException {
+
+		while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+
+			if (ELEMENTS.get(reader.getLocalName()) != ElementType.DEPENDENCY) {
+				skipElement(reader);
+				continue;
+			}
+
+			Dependency dependency = new Dependency();
+
+			while (nextElement(reader) == XMLStreamConstants.START_ELEMENT) {
+				switch (ELEMENTS.get(reader.getLocalName())) {
+				case GROUPID:
+					dependency.setGroupId(trim(readText(reader)));
+					break;
+				case ARTIFACTID:
+					dependency.setArtifactId(trim(readText(reader)));
+					break;
+				case VERSION:
+					dependency.setVersion(trim(readText(reader)));
+					break;
+				case CLASSIFIER:
+					dependency.setClassifier(trim(readText(reader)));
+					break;
+				case TYPE:
+					dependency.setType(trim(readText(reader)));
+					break;
+				case SCOPE:
+					dependency.setScope(trim(readText(reader)));
+					break;
+				case OPTIONAL:
+					dependency.setOptional("true".equalsIgnoreCase(trim(readText(reader))) ? Boolean.TRUE : null);
+					break;
+				default:
+					skipElement(reader);
+				}
+			}
+
+			if (dependency.getGroupId() != null && dependency.getArtifactId() != null) {
+				dependencies.add(dependency);
+			}
+		}
+
+		return dependencies;
+	}
+
+	/**
+	 * Moves to the next start tag of a child, or the end tag of the current element.
+	 * @return START_ELEMENT, END_ELEMENT or END_DOCUMENT
+	 */
+	private static int nextElement(XMLStreamReader reader) throws XMLStreamException {
+
+		while (reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT || event == XMLStreamConstants.END_ELEMENT) {
+				return event;
+			}
+		}
+
+		return XMLStreamConstants.END_DOCUMENT;
+	}
+
+	/**
+	 * Moves to the end tag of the current element, without reading its content.
+	 */
+	private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+
+		int depth = 1;
+
+		while (depth > 0 && reader.hasNext()) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT) depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT) depth--;
+		}
+	}
+
+	/**
+	 * Reads the text of the current element up to its end tag. Text of nested elements is skipped.
+	 * @return text, or null if empty
+	 */
+	private static String readText(XMLStreamReader reader) throws XMLStreamException {
+
+		String text = null;
+		StringBuilder builder = null;
+
+		while (reader.hasNext()) {
+			int event = reader.next();
+
+			switch (event) {
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				// Most values come in a single chunk
+				if (text == null) {
+					text = reader.getText();
+				}
+				else {
+					if (builder == null) builder = new StringBuilder(text);
+					builder.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				}
+				break;
+			case XMLStreamConstants.START_ELEMENT:
+				skipElement(reader);
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				String value = (builder != null) ? builder.toString() : text;
+				return (value == null || value.isEmpty()) ? null : value;
+			default:
+				break;
+			}
+		}
+
+		return null;
+	}
+
+	private static String trim(String value) {
+		return (value == null) ? null : value.trim();
+	}
+
+	private static String removeWhitespace(String value) {
+		return (value == null) ? null : WHITESPACE.matcher(value).replaceAll("");
+	}
+
+	private static XMLInputFactory newFactory() {
+
+		XMLInputFactory newFactory = XMLInputFactory.newInstance();
+		newFactory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+		newFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+		newFactory.setProperty(XMLInputFactory.IS_VALIDATING, false);
+		newFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		newFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+
+		return newFactory;
+	}
+
+}
@@ -0,0 +1,114 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.TestHelper;
+
+public class ContentStoreTest {
+
+	private static final String SHA1 = "0b2dbe11b251d595b35eb42fe85b3a3e15767aa0";
+	private static final byte[] CONTENT = new byte[] {1, 2, 3};
+
+	private File downloadFolder;
+	private ContentStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		downloadFolder = new File("tempDownload");
+		assertTrue(TestHelper.deleteRecursive(downloadFolder));
+		assertTrue(downloadFolder.mkdirs());
+		store = new ContentStore(new File(downloadFolder, ContentStore.DEFAULT_FOLDER), Logger.getLogger(this.getClass().getName()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		assertTrue(TestHelper.deleteRecursive(downloadFolder));
+	}
+
+	@Test
+	public void testFileFor() {
+		File expected = new File(new File(new File(store.getRoot(), "0b"), "2d"), SHA1);
+		assertEquals(expected, store.fileFor(SHA1));
+	}
+
+	@Test
+	public void testStore() throws IOException {
+
+		// Given
+		File file = new File(downloadFolder, "lib.jar");
+		Files.write(file.toPath(), CONTENT);
+		assertFalse(store.contains(SHA1));
+
+		// When
+		File stored = store.store(file, SHA1);
+
+		// Then
+		assertTrue(store.contains(SHA1));
+		assertEquals(store.fileFor(SHA1), stored);
+		assertArrayEquals(CONTENT, Files.readAllBytes(stored.toPath()));
+		assertArrayEquals(CONTENT, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void testStoreSameContentTwiceShouldShareFile() throws IOException {
+
+		// Given
+		File file1 = new File(downloadFolder, "central.jar");
+		File file2 = new File(downloadFolder, "jcenter.jar");
+		Files.write(file1.toPath(), CONTENT);
+		Files.write(file2.toPath(), CONTENT);
+
+		// When
+		store.store(file1, SHA1);
+		store.store(file2, SHA1);
+
+		// Then
+		assertTrue(Files.isSameFile(file1.toPath(), file2.toPath()));
+		assertArrayEquals(CONTENT, Files.readAllBytes(file2.toPath()));
+	}
+
+	@Test
+	public void testLink() throws IOException {
+
+		// Given
+		File file = new File(downloadFolder, "lib.jar");
+		Files.write(file.toPath(), CONTENT);
+		store.store(file, SHA1);
+		File target = new File(new File(downloadFolder, "other"), "lib.jar");
+
+		// When
+		boolean linked = store.link(SHA1, target);
+
+		// Then
+		assertTrue(linked);
+		assertArrayEquals(CONTENT, Files.readAllBytes(target.toPath()));
+		assertFalse(new File(target.getPath() + ".link").exists());
+	}
+
+	@Test
+	public void testLinkMissingContent() throws IOException {
+
+		// Given
+		File target = new File(downloadFolder, "lib.jar");
+
+		// When
+		boolean linked = store.link(SHA1, target);
+
+		// Then
+		assertFalse(linked);
+		assertFalse(target.exists());
+	}
+
+}
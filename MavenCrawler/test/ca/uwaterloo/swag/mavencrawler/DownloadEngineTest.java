@@ -0,0 +1,150 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DownloadEngineTest {
+
+	private DownloadEngine engine;
+
+	@Before
+	public void setUp() throws Exception {
+		engine = new DownloadEngine(4, 2, 8, Logger.getLogger(DownloadEngineTest.class.getName()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		engine.close();
+	}
+
+	@Test
+	public void testDownloadResults() {
+
+		// When
+		CompletableFuture<Boolean> success = engine.submit("host", () -> true);
+		CompletableFuture<Boolean> failure = engine.submit("host", () -> false);
+		CompletableFuture<Boolean> error = engine.submit("host", () -> { throw new IllegalStateException("Error"); });
+
+		// Then
+		assertTrue(success.join());
+		assertFalse(failure.join());
+		assertFalse(error.join());
+	}
+
+	@Test
+	public void testMaxDownloadsPerHost() throws InterruptedException {
+
+		// Given
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		List<CompletableFuture<Boolean>> results = new ArrayList<>();
+
+		// When
+		for (int i = 0; i < 8; i++) {
+			results.add(engine.submit("host", () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Thread.sleep(20);
+				running.decrementAndGet();
+				return true;
+			}));
+		}
+		results.forEach(CompletableFuture::join);
+
+		// Then
+		assertEquals(2, maxRunning.get());
+	}
+
+	@Test
+	public void testDifferentHostsRunInParallel() throws InterruptedException {
+
+		// Given
+		CountDownLatch started = new CountDownLatch(4);
+
+		// When
+		for (int i = 0; i < 4; i++) {
+			engine.submit("host" + i, () -> {
+				started.countDown();
+				return started.await(5, TimeUnit.SECONDS);
+			});
+		}
+
+		// Then
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testBusyHostDoesNotBlockOtherHosts() throws Exception {
+
+		// Given
+		CountDownLatch release = new CountDownLatch(1);
+		List<CompletableFuture<Boolean>> busy = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			busy.add(engine.submit("busy", () -> release.await(5, TimeUnit.SECONDS)));
+		}
+
+		// When
+		CompletableFuture<Boolean> other = engine.submit("other", () -> true);
+
+		// Then
+		assertTrue(other.get(1, TimeUnit.SECONDS));
+		release.countDown();
+		busy.forEach(result -> assertTrue(result.join()));
+	}
+
+	@Test
+	public void testCloseRunsWaitingDownloads() {
+
+		// Given
+		AtomicInteger done = new AtomicInteger();
+		for (int i = 0; i < 6; i++) {
+			engine.submit("host", () -> {
+				Thread.sleep(10);
+				return done.incrementAndGet() > 0;
+			});
+		}
+
+		// When
+		engine.close();
+
+		// Then
+		assertEquals(6, done.get());
+	}
+
+	@Test
+	public void testSubmitBlocksWhenTooManyInFlight() throws InterruptedException {
+
+		// Given
+		CountDownLatch release = new CountDownLatch(1);
+		for (int i = 0; i < engine.getMaxInFlight(); i++) {
+			engine.submit("host" + i, () -> release.await(5, TimeUnit.SECONDS));
+		}
+
+		CountDownLatch submitted = new CountDownLatch(1);
+		Thread producer = new Thread(() -> {
+			engine.submit("host", () -> true);
+			submitted.countDown();
+		});
+
+		// When
+		producer.start();
+
+		// Then
+		assertFalse(submitted.await(100, TimeUnit.MILLISECONDS));
+		release.countDown();
+		assertTrue(submitted.await(5, TimeUnit.SECONDS));
+	}
+
+}
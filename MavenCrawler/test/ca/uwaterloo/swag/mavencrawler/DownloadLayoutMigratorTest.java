@@ -0,0 +1,186 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Date;
+import java.util.logging.Logger;
+
+import org.bson.Document;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import ca.uwaterloo.swag.mavencrawler.helpers.TestHelper;
+import ca.uwaterloo.swag.mavencrawler.pojo.Downloaded;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+public class DownloadLayoutMigratorTest {
+
+	/**
+	 * please store Starter or RuntimeConfig in a static final field
+	 * if you want to use artifact store caching (or else disable caching)
+	 */
+	private static final MongodStarter starter = MongodStarter.getDefaultInstance();
+	private static MongodExecutable _mongodExe;
+	private static MongodProcess _mongod;
+	private static MongoDBHandler handler;
+
+	private MongoDatabase db;
+	private File downloadFolder;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		_mongodExe = starter.prepare(new MongodConfigBuilder()
+				.version(Version.Main.PRODUCTION)
+				.net(new Net("localhost", 12345, Network.localhostIsIPv6()))
+				.build());
+		_mongod = _mongodExe.start();
+
+		handler = MongoDBHandler.newInstance(Logger.getLogger(DownloadLayoutMigratorTest.class.getName()));
+		handler.setHost("localhost");
+		handler.setPort(12345);
+		handler.setAuthEnabled(false);
+		handler.setDatabaseName("TestDatabase");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		_mongod.stop();
+		_mongodExe.stop();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		db = handler.getMongoDatabase();
+		downloadFolder = new File("tempDownload").getAbsoluteFile();
+		assertTrue(TestHelper.deleteRecursive(downloadFolder));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.drop();
+		db = null;
+		assertTrue(TestHelper.deleteRecursive(downloadFolder));
+	}
+
+	@Test
+	public void testMigrateToMavenLayout() throws IOException {
+
+		// Given
+		File oldFile1 = saveDownloadedFile("org.group", "artifact", "1", "central", "jar", new byte[] {1});
+		File oldFile2 = saveDownloadedFile("org.group", "artifact", "2", "central", "aar", new byte[] {2});
+		Downloaded.upsertInMongo(new Downloaded("org.group", "pom-only", "central", "1", new Date(), null), db, null);
+
+		DownloadLayoutMigrator migrator = new DownloadLayoutMigrator(db, downloadFolder, DownloadLayout.MAVEN, null);
+		migrator.setBatchSize(1);
+
+		// When
+		long migrated = migrator.migrate();
+
+		// Then
+		assertEquals(2, migrated);
+
+		File newFile1 = DownloadLayout.MAVEN.fileFor(downloadFolder, "org.group", "artifact", "1", "jar");
+		File newFile2 = DownloadLayout.MAVEN.fileFor(downloadFolder, "org.group", "artifact", "2", "aar");
+		assertArrayEquals(new byte[] {1}, Files.readAllBytes(newFile1.toPath()));
+		assertArrayEquals(new byte[] {2}, Files.readAllBytes(newFile2.toPath()));
+		assertFalse(oldFile1.exists());
+		assertFalse(oldFile2.exists());
+		assertFalse(oldFile1.getParentFile().exists());
+
+		assertEquals(newFile1.getAbsolutePath(), findDownloaded("artifact", "1").getDownloadPath());
+		assertEquals(newFile2.getAbsolutePath(), findDownloaded("artifact", "2").getDownloadPath());
+		assertNull(findDownloaded("pom-only", "1").getDownloadPath());
+	}
+
+	@Test
+	public void testMigrateAgainShouldDoNothing() throws IOException {
+
+		// Given
+		saveDownloadedFile("org.group", "artifact", "1", "central", "jar", new byte[] {1});
+		new DownloadLayoutMigrator(db, downloadFolder, DownloadLayout.HASHED, null).migrate();
+
+		// When
+		long migrated = new DownloadLayoutMigrator(db, downloadFolder, DownloadLayout.HASHED, null).migrate();
+
+		// Then
+		assertEquals(0, migrated);
+		File newFile = DownloadLayout.HASHED.fileFor(downloadFolder, "org.group", "artifact", "1", "jar");
+		assertTrue(newFile.exists());
+	}
+
+	@Test
+	public void testSameFileFromTwoRepositories() throws IOException {
+
+		// Given
+		File oldFile = saveDownloadedFile("org.group", "artifact", "1", "central", "jar", new byte[] {1});
+		Downloaded.upsertInMongo(new Downloaded("org.group", "artifact", "jcenter", "1", new Date(), 
+				oldFile.getAbsolutePath()), db, null);
+
+		// When
+		long migrated = new DownloadLayoutMigrator(db, downloadFolder, DownloadLayout.MAVEN, null).migrate();
+
+		// Then
+		assertEquals(2, migrated);
+		File newFile = DownloadLayout.MAVEN.fileFor(downloadFolder, "org.group", "artifact", "1", "jar");
+		assertTrue(newFile.exists());
+		assertFalse(oldFile.exists());
+	}
+
+	@Test
+	public void testIncompleteNewFileShouldBeReplaced() throws IOException {
+
+		// Given
+		File oldFile = saveDownloadedFile("org.group", "artifact", "1", "central", "jar", new byte[] {1, 2, 3});
+		File newFile = DownloadLayout.MAVEN.fileFor(downloadFolder, "org.group", "artifact", "1", "jar");
+		Files.createDirectories(newFile.getParentFile().toPath());
+		Files.write(newFile.toPath(), new byte[] {1});
+
+		// When
+		long migrated = new DownloadLayoutMigrator(db, downloadFolder, DownloadLayout.MAVEN, null).migrate();
+
+		// Then
+		assertEquals(1, migrated);
+		assertArrayEquals(new byte[] {1, 2, 3}, Files.readAllBytes(newFile.toPath()));
+		assertFalse(oldFile.exists());
+		assertEquals(1, newFile.getParentFile().list().length);
+	}
+
+	private File saveDownloadedFile(String groupId, String artifactId, String version, String repository, 
+			String extension, byte[] content) throws IOException {
+
+		File file = DownloadLayout.FLAT.fileFor(downloadFolder, groupId, artifactId, version, extension);
+		Files.createDirectories(file.getParentFile().toPath());
+		Files.write(file.toPath(), content);
+
+		Downloaded.upsertInMongo(new Downloaded(groupId, artifactId, repository, version, new Date(), 
+				file.getAbsolutePath()), db, null);
+
+		return file;
+	}
+
+	private Downloaded findDownloaded(String artifactId, String version) {
+		MongoCollection<Downloaded> collection = db.getCollection(Downloaded.DOWNLOADED_COLLECTION, Downloaded.class);
+		return collection.find(new Document("artifactId", artifactId).append("version", version)).first();
+	}
+
+}
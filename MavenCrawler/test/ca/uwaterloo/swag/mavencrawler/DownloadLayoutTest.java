@@ -0,0 +1,63 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+
+import org.junit.Test;
+
+public class DownloadLayoutTest {
+
+	private static final File ROOT = new File("downloads");
+
+	@Test
+	public void testFlatLayout() {
+
+		// When
+		File file = DownloadLayout.FLAT.fileFor(ROOT, "org.apache", "commons-lang3", "3.7", "jar");
+
+		// Then
+		assertEquals(new File(ROOT, "org.apache.commons-lang3/org.apache.commons-lang3-3.7.jar"), file);
+	}
+
+	@Test
+	public void testMavenLayout() {
+
+		// When
+		File file = DownloadLayout.MAVEN.fileFor(ROOT, "org.apache", "commons-lang3", "3.7", "aar");
+
+		// Then
+		assertEquals(new File(ROOT, "org/apache/commons-lang3/3.7/commons-lang3-3.7.aar"), file);
+	}
+
+	@Test
+	public void testHashedLayout() {
+
+		// When
+		File file1 = DownloadLayout.HASHED.fileFor(ROOT, "org.apache", "commons-lang3", "3.7", "jar");
+		File file2 = DownloadLayout.HASHED.fileFor(ROOT, "org.apache", "commons-lang3", "3.8", "jar");
+		File file3 = DownloadLayout.HASHED.fileFor(ROOT, "org.apache", "commons-text", "1.0", "jar");
+
+		// Then
+		File libraryFolder = file1.getParentFile();
+		assertEquals("org.apache.commons-lang3", libraryFolder.getName());
+		assertEquals(2, libraryFolder.getParentFile().getName().length());
+		assertEquals(2, libraryFolder.getParentFile().getParentFile().getName().length());
+		assertEquals(ROOT, libraryFolder.getParentFile().getParentFile().getParentFile());
+		assertEquals("org.apache.commons-lang3-3.7.jar", file1.getName());
+
+		// All versions of a library are in the same folder
+		assertEquals(libraryFolder, file2.getParentFile());
+		assertNotEquals(libraryFolder.getParentFile(), file3.getParentFile().getParentFile());
+	}
+
+	@Test
+	public void testFromName() {
+		assertEquals(DownloadLayout.MAVEN, DownloadLayout.fromName("maven"));
+		assertEquals(DownloadLayout.HASHED, DownloadLayout.fromName(" HASHED "));
+		assertEquals(DownloadLayout.DEFAULT_LAYOUT, DownloadLayout.fromName("unknown"));
+		assertEquals(DownloadLayout.DEFAULT_LAYOUT, DownloadLayout.fromName(null));
+	}
+
+}
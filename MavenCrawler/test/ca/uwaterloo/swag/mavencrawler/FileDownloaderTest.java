@@ -0,0 +1,339 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import ca.uwaterloo.swag.mavencrawler.helpers.TestHelper;
+
+public class FileDownloaderTest {
+
+	private static final byte[] CONTENT = new byte[100000];
+
+	private HttpServer server;
+	private List<String> ranges;
+	private AtomicInteger truncatedResponses;
+	private String publishedSha1;
+	private File downloadFolder;
+	private FileDownloader downloader;
+
+	@Before
+	public void setUp() throws Exception {
+
+		for (int i = 0; i < CONTENT.length; i++) {
+			CONTENT[i] = (byte) i;
+		}
+
+		ranges = new CopyOnWriteArrayList<>();
+		truncatedResponses = new AtomicInteger();
+		publishedSha1 = digest("SHA-1", CONTENT) + "  lib.jar\n";
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/lib.jar", this::serveContent);
+		server.createContext("/lib.jar.sha1", exchange -> serveText(exchange, publishedSha1));
+		server.createContext("/lib.jar.md5", exchange -> serveText(exchange, null));
+		server.start();
+
+		downloadFolder = new File("tempDownload");
+		assertTrue(TestHelper.deleteRecursive(downloadFolder));
+		assertTrue(downloadFolder.mkdirs());
+		downloader = new FileDownloader(Logger.getLogger(this.getClass().getName()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.stop(0);
+		assertTrue(TestHelper.deleteRecursive(downloadFolder));
+	}
+
+	@Test
+	public void testDownload() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNotNull(checksums);
+		assertArrayEquals(CONTENT, Files.readAllBytes(downloadFile.toPath()));
+		assertFalse(new File(downloadFolder, "lib.jar" + FileDownloader.PART_EXTENSION).exists());
+		assertEquals(Arrays.asList((String) null), ranges);
+		assertEquals(digest("SHA-1", CONTENT), checksums.getSha1());
+		assertNull(checksums.getSha256());
+		assertTrue(checksums.isVerified());
+	}
+
+	@Test
+	public void testResumeFromPartFile() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		File partFile = new File(downloadFolder, "lib.jar" + FileDownloader.PART_EXTENSION);
+		Files.write(partFile.toPath(), Arrays.copyOf(CONTENT, 40000));
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNotNull(checksums);
+		assertArrayEquals(CONTENT, Files.readAllBytes(downloadFile.toPath()));
+		assertFalse(partFile.exists());
+		assertEquals(Arrays.asList("bytes=40000-"), ranges);
+		assertEquals(digest("SHA-1", CONTENT), checksums.getSha1());
+		assertTrue(checksums.isVerified());
+	}
+
+	@Test
+	public void testTruncatedTransferIsResumed() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		truncatedResponses.set(1);
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNotNull(checksums);
+		assertEquals(digest("SHA-1", CONTENT), checksums.getSha1());
+		assertArrayEquals(CONTENT, Files.readAllBytes(downloadFile.toPath()));
+		assertEquals(2, ranges.size());
+		assertNull(ranges.get(0));
+		assertEquals("bytes=" + (CONTENT.length / 2) + "-", ranges.get(1));
+	}
+
+	@Test
+	public void testIncompleteDownloadIsNotPublished() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		truncatedResponses.set(Integer.MAX_VALUE);
+		downloader.setMaxAttempts(1);
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNull(checksums);
+		assertFalse(downloadFile.exists());
+		assertTrue(new File(downloadFolder, "lib.jar" + FileDownloader.PART_EXTENSION).exists());
+	}
+
+	@Test
+	public void testChecksumMismatchIsDownloadedAgain() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		publishedSha1 = digest("SHA-1", new byte[] {1, 2, 3});
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNull(checksums);
+		assertFalse(downloadFile.exists());
+		assertFalse(new File(downloadFolder, "lib.jar" + FileDownloader.PART_EXTENSION).exists());
+		assertEquals(Arrays.asList(null, null, null), ranges);
+	}
+
+	@Test
+	public void testDownloadWithoutPublishedChecksum() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		publishedSha1 = null;
+		downloader.setComputeSha256(true);
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNotNull(checksums);
+		assertTrue(downloadFile.exists());
+		assertFalse(checksums.isVerified());
+		assertEquals(digest("SHA-1", CONTENT), checksums.getSha1());
+		assertEquals(digest("SHA-256", CONTENT), checksums.getSha256());
+	}
+
+	@Test
+	public void testDownloadWithSha256AndPublishedSha1() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		downloader.setComputeSha256(true);
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNotNull(checksums);
+		assertTrue(downloadFile.exists());
+		assertTrue(checksums.isVerified());
+		assertEquals(digest("SHA-1", CONTENT), checksums.getSha1());
+		assertEquals(digest("SHA-256", CONTENT), checksums.getSha256());
+	}
+
+	@Test
+	public void testMatchingExistingFileIsNotDownloadedAgain() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		Files.write(downloadFile.toPath(), CONTENT);
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNotNull(checksums);
+		assertEquals(digest("SHA-1", CONTENT), checksums.getSha1());
+		assertTrue(checksums.isVerified());
+		assertTrue(ranges.isEmpty());
+	}
+
+	@Test
+	public void testCorruptExistingFileIsDownloadedAgain() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		Files.write(downloadFile.toPath(), new byte[] {1, 2, 3});
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNotNull(checksums);
+		assertEquals(digest("SHA-1", CONTENT), checksums.getSha1());
+		assertArrayEquals(CONTENT, Files.readAllBytes(downloadFile.toPath()));
+		assertEquals(Arrays.asList((String) null), ranges);
+	}
+
+	@Test
+	public void testExistingFileWithoutPublishedChecksumIsHashed() throws IOException {
+
+		// Given
+		File downloadFile = new File(downloadFolder, "lib.jar");
+		Files.write(downloadFile.toPath(), new byte[] {1, 2, 3});
+		publishedSha1 = null;
+
+		// When
+		FileDownloader.Checksums checksums = downloader.download(url("/lib.jar"), downloadFile);
+
+		// Then
+		assertNotNull(checksums);
+		assertEquals(digest("SHA-1", new byte[] {1, 2, 3}), checksums.getSha1());
+		assertFalse(checksums.isVerified());
+		assertTrue(ranges.isEmpty());
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testNotFound() throws IOException {
+
+		// When
+		downloader.download(url("/missing.jar"), new File(downloadFolder, "missing.jar"));
+	}
+
+	@Test
+	public void testParseContentRange() {
+		assertArrayEquals(new long[] {100, 1000}, FileDownloader.parseContentRange("bytes 100-999/1000"));
+		assertArrayEquals(new long[] {-1, 1000}, FileDownloader.parseContentRange("bytes */1000"));
+		assertArrayEquals(new long[] {0, -1}, FileDownloader.parseContentRange("bytes 0-99/*"));
+		assertNull(FileDownloader.parseContentRange("items 0-99/100"));
+		assertNull(FileDownloader.parseContentRange(null));
+	}
+
+	@Test
+	public void testParseChecksum() {
+		assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", 
+				FileDownloader.parseChecksum("DA39A3EE5E6B4B0D3255BFEF95601890AFD80709  lib.jar\n"));
+		assertEquals("d41d8cd98f00b204e9800998ecf8427e", FileDownloader.parseChecksum("d41d8cd98f00b204e9800998ecf8427e"));
+		assertNull(FileDownloader.parseChecksum("<html>Not Found</html>"));
+		assertNull(FileDownloader.parseChecksum("1234"));
+		assertNull(FileDownloader.parseChecksum(null));
+	}
+
+	private static String digest(String algorithm, byte[] content) {
+		try {
+			return FileDownloader.toHex(MessageDigest.getInstance(algorithm).digest(content));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private URL url(String path) throws IOException {
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private void serveText(HttpExchange exchange, String text) throws IOException {
+
+		if (text == null) {
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+
+		byte[] body = text.getBytes(StandardCharsets.US_ASCII);
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+	private void serveContent(HttpExchange exchange) throws IOException {
+
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		ranges.add(range);
+
+		int start = range == null ? 0 : Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+		int end = CONTENT.length;
+
+		if (range != null) {
+			exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + CONTENT.length);
+			exchange.sendResponseHeaders(206, end - start);
+		}
+		else {
+			exchange.sendResponseHeaders(200, end - start);
+		}
+
+		// Close the connection halfway through, as a network failure would
+		if (truncatedResponses.getAndDecrement() > 0) {
+			int length = CONTENT.length / 2 - start;
+			exchange.getResponseBody().write(CONTENT, start, length);
+			exchange.getResponseBody().flush();
+			exchange.close();
+			return;
+		}
+
+		try (OutputStream body = exchange.getResponseBody()) {
+			body.write(CONTENT, start, end - start);
+		}
+	}
+
+}
@@ -0,0 +1,32 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LinkTypeTest {
+
+	@Test
+	public void testOf() {
+		assertEquals(LinkType.DIRECTORY, LinkType.of("http://central.maven.org/maven2/log4j/"));
+		assertEquals(LinkType.METADATA, LinkType.of("http://central.maven.org/maven2/log4j/log4j/maven-metadata.xml"));
+		assertEquals(LinkType.CATALOG, LinkType.of("http://central.maven.org/maven2/ARCHETYPE-CATALOG.XML"));
+		assertEquals(LinkType.POM, LinkType.of("http://central.maven.org/maven2/log4j/log4j/1.2.16/log4j-1.2.16.pom"));
+		assertEquals(LinkType.ARCHIVE, LinkType.of("http://central.maven.org/file.jar"));
+		assertEquals(LinkType.ARCHIVE, LinkType.of("http://central.maven.org/file.AAR"));
+		assertEquals(LinkType.CHECKSUM, LinkType.of("http://central.maven.org/file.jar.sha1"));
+		assertEquals(LinkType.CHECKSUM, LinkType.of("http://central.maven.org/file.pom.asc"));
+		assertEquals(LinkType.OTHER, LinkType.of("http://central.maven.org/file.xml"));
+		assertEquals(LinkType.OTHER, LinkType.of("http://central.maven.org/maven2"));
+		assertEquals(LinkType.OTHER, LinkType.of(""));
+	}
+
+	@Test
+	public void testEndsWithIgnoreCase() {
+		assertTrue(LinkType.endsWithIgnoreCase("file.JAR", ".jar"));
+		assertFalse(LinkType.endsWithIgnoreCase("jar", ".jar"));
+	}
+
+}
@@ -3,10 +3,13 @@ package ca.uwaterloo.swag.mavencrawler;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Date;
 import java.util.logging.Logger;
 
 import org.junit.After;
@@ -24,6 +27,7 @@ import ca.uwaterloo.swag.mavencrawler.db.RabbitMQHandler;
 import ca.uwaterloo.swag.mavencrawler.helpers.TestHelper;
 import ca.uwaterloo.swag.mavencrawler.pojo.Downloaded;
 import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodProcess;
 import de.flapdoodle.embed.mongo.MongodStarter;
@@ -189,6 +193,37 @@ public class MavenDownloaderTest {
 		assertTrue(lib2.exists());
 	}
 
+	/**
+	 * TODO: use mock instead of actual address
+	 */
+	@Test
+	public void testDownloadLibrariesFromMetadataWithEngine() {
+		
+		// Given
+		Metadata metadata = new Metadata();
+		metadata.setGroupId("br.com.ingenieux");
+		metadata.setArtifactId("elasticbeanstalk-docker-dropwizard-webapp-archetype");
+		metadata.setRepository("http://central.maven.org/maven2");
+		metadata.setVersions(Arrays.asList("1.5.0", "1.4.4"));
+		
+		File expectedLibraryFolder = new File(downloadFolder, "br.com.ingenieux.elasticbeanstalk-docker-dropwizard-webapp-archetype");
+		DownloadEngine engine = new DownloadEngine(2, 2, null);
+		downloader.setDownloadEngine(engine);
+		
+		// When
+		boolean success = downloader.downloadLibrariesFromMetadataAsync(metadata).join();
+		engine.close();
+		
+		// Then
+		assertTrue(success);
+		assertEquals(2, expectedLibraryFolder.list().length);
+		
+		File lib1 = new File(expectedLibraryFolder, "br.com.ingenieux.elasticbeanstalk-docker-dropwizard-webapp-archetype-1.5.0.jar");
+		File lib2 = new File(expectedLibraryFolder, "br.com.ingenieux.elasticbeanstalk-docker-dropwizard-webapp-archetype-1.4.4.jar");
+		assertTrue(lib1.exists());
+		assertTrue(lib2.exists());
+	}
+
 	/**
 	 * Testing downloading libraries
 	 * TODO: use mock instead of actual address
@@ -291,4 +326,134 @@ public class MavenDownloaderTest {
 		assertTrue(downloadFolder.delete());
 	}
 
+	@Test
+	public void testFindExtensionsToTry() {
+		assertEquals(Arrays.asList("jar", "aar"), MavenDownloader.findExtensionsToTry(null));
+		assertEquals(Arrays.asList("jar"), MavenDownloader.findExtensionsToTry("bundle"));
+		assertEquals(Arrays.asList("aar"), MavenDownloader.findExtensionsToTry("aar"));
+		assertTrue(MavenDownloader.findExtensionsToTry("pom").isEmpty());
+	}
+
+	/**
+	 * TODO: use mock instead of actual address
+	 */
+	@Test
+	public void testPomOnlyVersionShouldBeSavedWithoutBinary() {
+		
+		// Given
+		Metadata metadata = new Metadata();
+		metadata.setGroupId("org.apache");
+		metadata.setArtifactId("apache");
+		metadata.setRepository("http://central.maven.org/maven2");
+		metadata.setVersions(Arrays.asList("18"));
+		
+		VersionPom versionPom = new VersionPom();
+		versionPom.setGroupId("org.apache");
+		versionPom.setArtifactId("apache");
+		versionPom.setVersion("18");
+		versionPom.setPackaging("pom");
+		VersionPom.upsertInMongo(Arrays.asList(versionPom), mongoHandler.getMongoDatabase(), null);
+		
+		MongoCollection<Downloaded> collection = mongoHandler.getMongoDatabase().getCollection(Downloaded.DOWNLOADED_COLLECTION, Downloaded.class);
+		
+		// When
+		boolean success = downloader.downloadLibrariesFromMetadata(metadata);
+		
+		// Then
+		assertTrue(success);
+		assertFalse(new File(downloadFolder, "org.apache.apache").exists());
+		assertEquals(1, collection.count());
+		assertNull(collection.find().first().getDownloadPath());
+	}
+
+	@Test
+	public void testVerifiedDownloadShouldBeSkipped() throws IOException {
+		
+		// Given
+		Metadata metadata = new Metadata();
+		metadata.setGroupId("org.group");
+		metadata.setArtifactId("artifact");
+		metadata.setRepository("http://localhost:1/maven2");
+		metadata.setVersions(Arrays.asList("1.0"));
+		
+		File downloadFile = new File(downloadFolder, "org.group.artifact-1.0.jar");
+		assertTrue(downloadFolder.mkdirs());
+		assertTrue(downloadFile.createNewFile());
+		
+		Date downloadDate = new Date(0);
+		Downloaded downloaded = new Downloaded("org.group", "artifact", metadata.getRepository(), "1.0", 
+				downloadDate, downloadFile.getAbsolutePath());
+		downloaded.setSha1("sha1");
+		Downloaded.upsertInMongo(downloaded, mongoHandler.getMongoDatabase(), null);
+		
+		MongoCollection<Downloaded> collection = mongoHandler.getMongoDatabase().getCollection(Downloaded.DOWNLOADED_COLLECTION, Downloaded.class);
+		
+		// When
+		boolean success = downloader.downloadLibrariesFromMetadata(metadata);
+		
+		// Then
+		assertTrue(success);
+		assertEquals(1, collection.count());
+		assertEquals(downloadDate, collection.find().first().getDownloadDate());
+	}
+
+	@Test
+	public void testMissingBinaryShouldBeSkipped() {
+		
+		// Given
+		Metadata metadata = new Metadata();
+		metadata.setGroupId("org.group");
+		metadata.setArtifactId("artifact");
+		metadata.setRepository("http://localhost:1/maven2");
+		metadata.setVersions(Arrays.asList("1.0"));
+		
+		Date downloadDate = new Date(0);
+		Downloaded.upsertInMongo(new Downloaded("org.group", "artifact", metadata.getRepository(), "1.0", 
+				downloadDate, null), mongoHandler.getMongoDatabase(), null);
+		
+		MongoCollection<Downloaded> collection = mongoHandler.getMongoDatabase().getCollection(Downloaded.DOWNLOADED_COLLECTION, Downloaded.class);
+		
+		// When
+		boolean success = downloader.downloadLibrariesFromMetadata(metadata);
+		
+		// Then
+		assertTrue(success);
+		assertEquals(1, collection.count());
+		assertEquals(downloadDate, collection.find().first().getDownloadDate());
+	}
+
+	@Test
+	public void testGuessedMissingBinaryShouldBeRetriedOncePackagingIsKnown() {
+		
+		// Given
+		Metadata metadata = new Metadata();
+		metadata.setGroupId("org.group");
+		metadata.setArtifactId("artifact");
+		metadata.setRepository("http://localhost:1/maven2");
+		metadata.setVersions(Arrays.asList("1.0"));
+		
+		Downloaded guessed = new Downloaded("org.group", "artifact", metadata.getRepository(), "1.0", 
+				new Date(0), null);
+		guessed.setExpiresAt(new Date(System.currentTimeMillis() + 60000));
+		Downloaded.upsertInMongo(guessed, mongoHandler.getMongoDatabase(), null);
+		
+		VersionPom versionPom = new VersionPom();
+		versionPom.setGroupId("org.group");
+		versionPom.setArtifactId("artifact");
+		versionPom.setVersion("1.0");
+		versionPom.setPackaging("pom");
+		VersionPom.upsertInMongo(Arrays.asList(versionPom), mongoHandler.getMongoDatabase(), null);
+		
+		MongoCollection<Downloaded> collection = mongoHandler.getMongoDatabase().getCollection(Downloaded.DOWNLOADED_COLLECTION, Downloaded.class);
+		
+		// When
+		boolean success = downloader.downloadLibrariesFromMetadata(metadata);
+		
+		// Then saved again without binary, and kept
+		assertTrue(success);
+		assertEquals(1, collection.count());
+		assertFalse(new Date(0).equals(collection.find().first().getDownloadDate()));
+		assertNull(collection.find().first().getExpiresAt());
+	}
+
 }
@@ -0,0 +1,125 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MavenListingParserTest {
+
+	private static final String LISTING_URL = "http://central.maven.org/maven2/log4j/log4j/";
+
+	@Test
+	public void testApacheListing() {
+
+		// Given
+		String html = "<html><head><title>Index of /maven2/log4j/log4j</title></head><body>\n" +
+				"<h1>Index of /maven2/log4j/log4j</h1><pre>" +
+				"<a href=\"?C=N;O=D\">Name</a> <a href=\"?C=M;O=A\">Last modified</a>\n" +
+				"<a href=\"../\">Parent Directory</a>\n" +
+				"<a href=\"1.2.16/\">1.2.16/</a>               2010-08-06 16:24    -\n" +
+				"<a href=\"1.2.17/\">1.2.17/</a>               2012-05-26 09:31    -\n" +
+				"<a href=\"maven-metadata.xml\">maven-metadata.xml</a> 2012-05-26 09:31  1.1K\n" +
+				"<a href=\"maven-metadata.xml.sha1\">maven-metadata.xml.sha1</a>\n" +
+				"</pre></body></html>";
+
+		// When
+		List<String> links = extractLinks(html, LISTING_URL);
+
+		// Then
+		assertEquals(Arrays.asList(
+				LISTING_URL + "1.2.16/ DIRECTORY",
+				LISTING_URL + "1.2.17/ DIRECTORY",
+				LISTING_URL + "maven-metadata.xml METADATA",
+				LISTING_URL + "maven-metadata.xml.sha1 CHECKSUM"), 
+				links);
+	}
+
+	@Test
+	public void testNexusListing() {
+
+		// Given
+		String html = "<table cellspacing=\"10\">\n" +
+				"<tr><td><a href=\"http://central.maven.org/maven2/log4j/\">Parent Directory</a></td></tr>\n" +
+				"<tr>\n  <td>\n    <A class='folder'\n HREF = 'http://central.maven.org/maven2/log4j/log4j/1.2.16/'>1.2.16/</A>\n  </td>\n</tr>\n" +
+				"<tr><td><a title=\"a > b\" href=http://central.maven.org/maven2/log4j/log4j/log4j.pom>log4j.pom</a></td></tr>\n" +
+				"</table>";
+
+		// When
+		List<String> links = extractLinks(html, LISTING_URL);
+
+		// Then
+		assertEquals(Arrays.asList(
+				LISTING_URL + "1.2.16/ DIRECTORY",
+				LISTING_URL + "log4j.pom POM"), 
+				links);
+	}
+
+	@Test
+	public void testJCenterListing() {
+
+		// Given
+		String html = "<pre><a onclick=\"navi(event)\" href=\":AbsFrame/\" rel=\"nofollow\">AbsFrame/</a></pre>";
+
+		// When
+		List<String> links = extractLinks(html, "https://jcenter.bintray.com/");
+
+		// Then
+		assertEquals(Arrays.asList("https://jcenter.bintray.com/:AbsFrame/ DIRECTORY"), links);
+	}
+
+	@Test
+	public void testOtherTagsAndBrokenMarkup() {
+
+		// Given
+		String html = "<abbr href=\"1.0/\"></abbr><area href=\"2.0/\"><a name=\"top\"><a href=\"#top\"><a href=\"3.0/";
+
+		// When
+		List<String> links = extractLinks(html, LISTING_URL);
+
+		// Then
+		assertEquals(Arrays.asList(LISTING_URL + "3.0/ DIRECTORY"), links);
+	}
+
+	@Test
+	public void testNoContent() {
+
+		// When
+		List<String> links = new ArrayList<>();
+		MavenListingParser.extractLinks(null, LISTING_URL, (url, type) -> links.add(url));
+
+		// Then
+		assertEquals(0, links.size());
+	}
+
+	@Test
+	public void testBaseURL() {
+		assertEquals(LISTING_URL, MavenListingParser.baseURL(LISTING_URL));
+		assertEquals("http://central.maven.org/maven2/log4j/", MavenListingParser.baseURL("http://central.maven.org/maven2/log4j/log4j"));
+		assertEquals(LISTING_URL, MavenListingParser.baseURL(LISTING_URL + "?C=N;O=D"));
+	}
+
+	@Test
+	public void testResolve() {
+		assertEquals(LISTING_URL + "1.2.16/", MavenListingParser.resolve("1.2.16/", LISTING_URL, LISTING_URL));
+		assertEquals(LISTING_URL + "1.2.16/", MavenListingParser.resolve("/maven2/log4j/log4j/1.2.16/", LISTING_URL, LISTING_URL));
+		assertNull(MavenListingParser.resolve("../", LISTING_URL, LISTING_URL));
+		assertNull(MavenListingParser.resolve("./", LISTING_URL, LISTING_URL));
+		assertNull(MavenListingParser.resolve("?C=N;O=D", LISTING_URL, LISTING_URL));
+		assertNull(MavenListingParser.resolve("http://other.org/log4j/", LISTING_URL, LISTING_URL));
+		assertNull(MavenListingParser.resolve("", LISTING_URL, LISTING_URL));
+	}
+
+	private static List<String> extractLinks(String html, String contextURL) {
+		List<String> links = new ArrayList<>();
+		MavenListingParser.extractLinks(html.getBytes(StandardCharsets.UTF_8), contextURL, 
+				(url, type) -> links.add(url + " " + type));
+		return links;
+	}
+
+}
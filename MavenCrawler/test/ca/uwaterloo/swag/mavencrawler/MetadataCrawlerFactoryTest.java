@@ -1,8 +1,12 @@
 package ca.uwaterloo.swag.mavencrawler;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -15,6 +19,7 @@ import org.junit.Test;
 import com.mongodb.client.MongoDatabase;
 
 import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import ca.uwaterloo.swag.mavencrawler.xml.VersionPomExtractor;
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodProcess;
 import de.flapdoodle.embed.mongo.MongodStarter;
@@ -83,4 +88,76 @@ public class MetadataCrawlerFactoryTest {
 		assertEquals(seedURLs, crawler.getSeedURLs()); 
 	}
 
+	@Test
+	public void testFactoryIncrementalCrawl() throws Exception {
+		
+		// Given
+		MetadataCrawlerFactory factory = new MetadataCrawlerFactory(null, mongoHandler.getMongoDatabase(), Arrays.asList("http://seed.com"));
+		assertFalse(factory.newInstance().isIncrementalCrawl());
+		
+		// When
+		factory.setIncrementalCrawl(true);
+		
+		// Then
+		assertTrue(factory.newInstance().isIncrementalCrawl());
+	}
+
+	@Test
+	public void testFactoryMetadataDrivenCrawl() throws Exception {
+		
+		// Given
+		MetadataCrawlerFactory factory = new MetadataCrawlerFactory(null, mongoHandler.getMongoDatabase(), Arrays.asList("http://seed.com"));
+		assertFalse(factory.newInstance().isMetadataDrivenCrawl());
+		
+		// When
+		factory.setMetadataDrivenCrawl(true);
+		
+		// Then
+		assertTrue(factory.newInstance().isMetadataDrivenCrawl());
+	}
+
+	@Test
+	public void testFactoryVersionPomExtractor() throws Exception {
+		
+		// Given
+		MetadataCrawlerFactory factory = new MetadataCrawlerFactory(null, mongoHandler.getMongoDatabase(), Arrays.asList("http://seed.com"));
+		VersionPomExtractor extractor = new VersionPomExtractor(EnumSet.of(VersionPomExtractor.Field.VERSION), false);
+		
+		// When
+		factory.setVersionPomExtractor(extractor);
+		
+		// Then
+		assertSame(extractor, factory.newInstance().getVersionPomExtractor());
+	}
+
+	@Test
+	public void testFactoryCrawlersShareSubtreeTracker() throws Exception {
+		
+		// Given
+		MetadataCrawlerFactory factory = new MetadataCrawlerFactory(null, mongoHandler.getMongoDatabase(), Arrays.asList("http://seed.com"));
+		
+		// When
+		MetadataCrawler crawler1 = factory.newInstance();
+		MetadataCrawler crawler2 = factory.newInstance();
+		
+		// Then
+		assertSame(factory.getSubtreeTracker(), crawler1.getSubtreeTracker());
+		assertSame(crawler1.getSubtreeTracker(), crawler2.getSubtreeTracker());
+	}
+	
+	@Test
+	public void testFactoryCrawlersShareDeferredFolders() throws Exception {
+		
+		// Given
+		MetadataCrawlerFactory factory = new MetadataCrawlerFactory(null, mongoHandler.getMongoDatabase(), Arrays.asList("http://seed.com"));
+		
+		// When
+		MetadataCrawler crawler1 = factory.newInstance();
+		MetadataCrawler crawler2 = factory.newInstance();
+		
+		// Then
+		assertSame(factory.getDeferredFolders(), crawler1.getDeferredFolders());
+		assertSame(crawler1.getDeferredFolders(), crawler2.getDeferredFolders());
+	}
+
 }
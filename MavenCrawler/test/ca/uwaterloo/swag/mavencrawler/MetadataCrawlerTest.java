@@ -4,12 +4,23 @@ import static ca.uwaterloo.swag.mavencrawler.pojo.Metadata.METADATA_COLLECTION;
 import static ca.uwaterloo.swag.mavencrawler.pojo.VersionPom.VERSIONPOM_COLLECTION;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+import org.apache.http.Header;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+import org.apache.http.message.BasicHeader;
 import org.bson.Document;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -23,6 +34,9 @@ import com.mongodb.client.MongoDatabase;
 
 import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
 import ca.uwaterloo.swag.mavencrawler.helpers.TestHelper;
+import ca.uwaterloo.swag.mavencrawler.pojo.CrawledPage;
+import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodProcess;
 import de.flapdoodle.embed.mongo.MongodStarter;
@@ -31,6 +45,7 @@ import de.flapdoodle.embed.mongo.config.Net;
 import de.flapdoodle.embed.mongo.distribution.Version;
 import de.flapdoodle.embed.process.runtime.Network;
 import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.parser.HtmlParseData;
 import edu.uci.ics.crawler4j.url.WebURL;
 
 public class MetadataCrawlerTest {
@@ -185,6 +200,174 @@ public class MetadataCrawlerTest {
 		assertTrue(crawler.shouldVisit(referringPage, url));
 	}
 
+	@Test
+	public void testShouldVisitVersionFoldersWithoutMetadataDrivenCrawl() {
+
+		// Given
+		Page referringPage = listingPage("http://central.maven.org/maven2/log4j/log4j/", 
+				"http://central.maven.org/maven2/log4j/log4j/maven-metadata.xml",
+				"http://central.maven.org/maven2/log4j/log4j/1.2.16/");
+		WebURL url = new WebURL();
+		
+		// When
+		url.setURL("http://central.maven.org/maven2/log4j/log4j/1.2.16/");
+		
+		// Then
+		assertTrue(crawler.shouldVisit(referringPage, url));
+	}
+
+	@Test
+	public void testShouldNotVisitVersionFoldersNextToMetadata() {
+
+		// Given
+		crawler.setMetadataDrivenCrawl(true);
+		Page referringPage = listingPage("http://central.maven.org/maven2/log4j/log4j/", 
+				"http://central.maven.org/maven2/log4j/log4j/maven-metadata.xml",
+				"http://central.maven.org/maven2/log4j/log4j/1.2.16/");
+		WebURL url = new WebURL();
+		
+		// When
+		url.setURL("http://central.maven.org/maven2/log4j/log4j/1.2.16/");
+		
+		// Then
+		assertFalse(crawler.shouldVisit(referringPage, url));
+		
+		// When
+		url.setURL("http://central.maven.org/maven2/log4j/log4j/maven-metadata.xml");
+		
+		// Then
+		assertTrue(crawler.shouldVisit(referringPage, url));
+		assertEquals(Arrays.asList("http://central.maven.org/maven2/log4j/log4j/1.2.16/"), 
+				crawler.getDeferredFolders().release("http://central.maven.org/maven2/log4j/log4j/maven-metadata.xml"));
+	}
+
+	@Test
+	public void testFoldersNextToGroupMetadataShouldBeCrawled() throws Exception {
+
+		// Given
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+		crawler.setIncrementalCrawl(true);
+		crawler.setMetadataDrivenCrawl(true);
+		String metadataURL = "http://unknown.invalid/maven2/org/plugins/maven-metadata.xml";
+		String folderURL = "http://unknown.invalid/maven2/org/plugins/3d-maven-plugin/";
+		Page listing = listingPage("http://unknown.invalid/maven2/org/plugins/", metadataURL, folderURL);
+		assertTrue(crawler.shouldVisit(listing, webURL(metadataURL)));
+		assertFalse(crawler.shouldVisit(listing, webURL(folderURL)));
+		
+		Page metadata = new Page(webURL(metadataURL));
+		metadata.setContentData(("<metadata><plugins><plugin><name>3D</name><prefix>3d</prefix>" + 
+				"<artifactId>3d-maven-plugin</artifactId></plugin></plugins></metadata>").getBytes(StandardCharsets.UTF_8));
+		metadata.setFetchResponseHeaders(new Header[] {new BasicHeader(HttpHeaders.ETAG, "\"metadata\"")});
+
+		// When
+		crawler.visit(metadata);
+
+		// Then the folder is scheduled below the metadata, which waits for it
+		assertEquals(0, crawler.getDeferredFolders().size());
+		assertFalse(crawler.getSubtreeTracker().addChild(metadataURL, folderURL));
+		assertNull(CrawledPage.findByURL(metadataURL, db));
+		
+		// When
+		crawler.visit(new Page(webURL(folderURL)));
+		
+		// Then
+		assertNotNull(CrawledPage.findByURL(metadataURL, db));
+	}
+
+	@Test
+	public void testFoldersNextToArtifactMetadataShouldBeDropped() throws Exception {
+
+		// Given
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+		crawler.setIncrementalCrawl(true);
+		crawler.setMetadataDrivenCrawl(true);
+		String metadataURL = "http://unknown.invalid/maven2/log4j-group/log4j-artifact/maven-metadata.xml";
+		String folderURL = "http://unknown.invalid/maven2/log4j-group/log4j-artifact/1.2.16/";
+		Page listing = listingPage("http://unknown.invalid/maven2/log4j-group/log4j-artifact/", metadataURL, folderURL);
+		assertFalse(crawler.shouldVisit(listing, webURL(folderURL)));
+		
+		Page metadata = new Page(webURL(metadataURL));
+		metadata.setContentData(Files.readAllBytes(Paths.get(this.getClass().getResource("maven-metadata-example-multiple.xml").toURI())));
+
+		// When
+		crawler.visit(metadata);
+
+		// Then the folder is not linked from anywhere
+		assertEquals(0, crawler.getDeferredFolders().size());
+		assertTrue(crawler.getSubtreeTracker().addChild(metadataURL, folderURL));
+	}
+
+	@Test
+	public void testFoldersNextToUnreadableMetadataShouldBeCrawled() {
+
+		// Given
+		crawler.setIncrementalCrawl(true);
+		crawler.setMetadataDrivenCrawl(true);
+		String metadataURL = "http://central.maven.org/maven2/log4j/log4j/maven-metadata.xml";
+		String folderURL = "http://central.maven.org/maven2/log4j/log4j/1.2.16/";
+		Page listing = listingPage("http://central.maven.org/maven2/log4j/log4j/", metadataURL, folderURL);
+		assertFalse(crawler.shouldVisit(listing, webURL(folderURL)));
+
+		// When
+		crawler.onContentFetchError(webURL(metadataURL));
+
+		// Then
+		assertEquals(0, crawler.getDeferredFolders().size());
+		assertFalse(crawler.getSubtreeTracker().addChild(metadataURL, folderURL));
+	}
+
+	@Test
+	public void testShouldVisitFoldersWithoutMetadata() {
+
+		// Given
+		crawler.setMetadataDrivenCrawl(true);
+		Page referringPage = listingPage("http://central.maven.org/maven2/log4j/log4j/", 
+				"http://central.maven.org/maven2/log4j/log4j/1.2.16/");
+		WebURL url = new WebURL();
+		
+		// When
+		url.setURL("http://central.maven.org/maven2/log4j/log4j/1.2.16/");
+		
+		// Then
+		assertTrue(crawler.shouldVisit(referringPage, url));
+	}
+
+	@Test
+	public void testIsVersionFolder() {
+		assertTrue(MetadataCrawler.isVersionFolder("http://repo/log4j/log4j/", "http://repo/log4j/log4j/1.2.16/"));
+		assertTrue(MetadataCrawler.isVersionFolder("http://repo/log4j/log4j", "http://repo/log4j/log4j/1.2.16"));
+		assertFalse(MetadataCrawler.isVersionFolder("http://repo/log4j/log4j/", "http://repo/log4j/log4j/1.2.16/log4j-1.2.16.pom"));
+		assertFalse(MetadataCrawler.isVersionFolder("http://repo/org/apache/maven/plugins/", "http://repo/org/apache/maven/plugins/maven-jar-plugin/"));
+		assertFalse(MetadataCrawler.isVersionFolder("http://repo/log4j/log4j/", "http://repo/log4j/log4j/"));
+		assertFalse(MetadataCrawler.isVersionFolder("http://repo/log4j/log4j/", "http://repo/other/1.0/"));
+	}
+
+	@Test
+	public void testFindNewPomURLs() {
+
+		// Given
+		Metadata metadata = new Metadata();
+		metadata.setGroupId("log4j");
+		metadata.setArtifactId("log4j");
+		metadata.setRepository("http://central.maven.org/maven2");
+		metadata.setVersions(Arrays.asList("1.2.15", "1.2.16", "1.2.17"));
+		
+		VersionPom savedPom = new VersionPom();
+		savedPom.setGroupId("log4j");
+		savedPom.setArtifactId("log4j");
+		savedPom.setVersion("1.2.16");
+		VersionPom.upsertInMongo(Arrays.asList(savedPom), db, null);
+		
+		// When
+		List<String> pomURLs = crawler.findNewPomURLs(metadata);
+		
+		// Then
+		assertEquals(Arrays.asList(
+				"http://central.maven.org/maven2/log4j/log4j/1.2.15/log4j-1.2.15.pom",
+				"http://central.maven.org/maven2/log4j/log4j/1.2.17/log4j-1.2.17.pom"), 
+				pomURLs);
+	}
+
 	@Test
 	public void testVisitPage() {
 
@@ -228,6 +411,201 @@ public class MetadataCrawlerTest {
 		assertEquals(metadata.get("repository"), "http://central.maven.org/maven2");
 	}
 
+	@Test
+	public void testVisitPageShouldParseDownloadedContent() throws Exception {
+
+		// Given
+		WebURL url = new WebURL();
+		url.setURL("http://unknown.invalid/maven2/log4j-group/log4j-artifact/maven-metadata.xml");
+		Page page = new Page(url);
+		page.setContentData(Files.readAllBytes(Paths.get(this.getClass().getResource("maven-metadata-example-multiple.xml").toURI())));
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+
+		MongoCollection<Document> metadataCollection = db.getCollection(METADATA_COLLECTION);
+		assertEquals(0, metadataCollection.count());
+
+		// When
+		crawler.visit(page);
+
+		// Then
+		assertEquals(1, metadataCollection.count());
+		Document metadata = metadataCollection.find().first();
+		assertEquals("log4j-group", metadata.get("groupId"));
+		assertEquals(14, ((List<?>) metadata.get("versions")).size());
+		assertEquals("http://unknown.invalid/maven2", metadata.get("repository"));
+	}
+
+	@Test
+	public void testVisitPomFileShouldParseDownloadedContent() throws Exception {
+
+		// Given
+		WebURL url = new WebURL();
+		url.setURL("http://unknown.invalid/maven2/log4j/log4j/1.2.16/log4j-1.2.16.pom");
+		Page page = new Page(url);
+		page.setContentData(Files.readAllBytes(Paths.get(this.getClass().getResource("log4j-1.2.16.pom").toURI())));
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+
+		MongoCollection<Document> versionPomsCollection = db.getCollection(VERSIONPOM_COLLECTION);
+		assertEquals(0, versionPomsCollection.count());
+
+		// When
+		crawler.visit(page);
+
+		// Then
+		assertEquals(1, versionPomsCollection.count());
+		Document versionPom = versionPomsCollection.find().first();
+		assertEquals("log4j-group", versionPom.get("groupId"));
+		assertEquals("1.2.16", versionPom.get("version"));
+	}
+
+	@Test
+	public void testValidatorsShouldBeSavedForPomFiles() throws Exception {
+
+		// Given
+		WebURL url = new WebURL();
+		url.setURL("http://unknown.invalid/maven2/log4j/log4j/1.2.16/log4j-1.2.16.pom");
+		Page page = new Page(url);
+		page.setContentData(Files.readAllBytes(Paths.get(this.getClass().getResource("log4j-1.2.16.pom").toURI())));
+		page.setFetchResponseHeaders(new Header[] {new BasicHeader(HttpHeaders.ETAG, "\"pom\"")});
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+		crawler.setIncrementalCrawl(true);
+
+		// When
+		crawler.visit(page);
+
+		// Then
+		CrawledPage crawledPage = CrawledPage.findByURL(url.getURL(), db);
+		assertNotNull(crawledPage);
+		assertEquals("\"pom\"", crawledPage.getEtag());
+	}
+
+	@Test
+	public void testValidatorsShouldNotBeSavedForListingsBeforeTheirSubtree() {
+
+		// Given
+		String listingURL = "http://unknown.invalid/maven2/log4j/";
+		Page page = listingPage(listingURL, listingURL + "log4j/");
+		page.setFetchResponseHeaders(new Header[] {new BasicHeader(HttpHeaders.ETAG, "\"listing\"")});
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+		crawler.setIncrementalCrawl(true);
+		assertTrue(crawler.shouldVisit(page, webURL(listingURL + "log4j/")));
+
+		// When
+		crawler.visit(page);
+
+		// Then
+		assertNull(CrawledPage.findByURL(listingURL, db));
+	}
+
+	@Test
+	public void testValidatorsShouldBeSavedForListingsOnceTheirSubtreeIsComplete() throws Exception {
+
+		// Given
+		String listingURL = "http://unknown.invalid/maven2/log4j/log4j/1.2.16/";
+		Page listing = listingPage(listingURL, listingURL + "log4j-1.2.16.pom");
+		listing.setFetchResponseHeaders(new Header[] {new BasicHeader(HttpHeaders.ETAG, "\"listing\"")});
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+		crawler.setIncrementalCrawl(true);
+		assertTrue(crawler.shouldVisit(listing, webURL(listingURL + "log4j-1.2.16.pom")));
+		crawler.visit(listing);
+		assertNull(CrawledPage.findByURL(listingURL, db));
+
+		Page pom = new Page(webURL(listingURL + "log4j-1.2.16.pom"));
+		pom.setContentData(Files.readAllBytes(Paths.get(this.getClass().getResource("log4j-1.2.16.pom").toURI())));
+
+		// When
+		crawler.visit(pom);
+
+		// Then
+		CrawledPage crawledPage = CrawledPage.findByURL(listingURL, db);
+		assertNotNull(crawledPage);
+		assertEquals("\"listing\"", crawledPage.getEtag());
+	}
+
+	@Test
+	public void testValidatorsShouldNotBeSavedForListingsWithFailedPages() {
+
+		// Given
+		String listingURL = "http://unknown.invalid/maven2/log4j/log4j/1.2.16/";
+		Page listing = listingPage(listingURL, listingURL + "log4j-1.2.16.pom");
+		listing.setFetchResponseHeaders(new Header[] {new BasicHeader(HttpHeaders.ETAG, "\"listing\"")});
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+		crawler.setIncrementalCrawl(true);
+		assertTrue(crawler.shouldVisit(listing, webURL(listingURL + "log4j-1.2.16.pom")));
+		crawler.visit(listing);
+
+		// When
+		crawler.onUnexpectedStatusCode(listingURL + "log4j-1.2.16.pom", HttpStatus.SC_INTERNAL_SERVER_ERROR, null, null);
+
+		// Then
+		assertNull(CrawledPage.findByURL(listingURL, db));
+	}
+
+	@Test
+	public void testValidatorsShouldBeSavedForListingsWithUnchangedPages() {
+
+		// Given
+		String listingURL = "http://unknown.invalid/maven2/log4j/log4j/1.2.16/";
+		Page listing = listingPage(listingURL, listingURL + "log4j-1.2.16.pom");
+		listing.setFetchResponseHeaders(new Header[] {new BasicHeader(HttpHeaders.ETAG, "\"listing\"")});
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+		crawler.setIncrementalCrawl(true);
+		assertTrue(crawler.shouldVisit(listing, webURL(listingURL + "log4j-1.2.16.pom")));
+		crawler.visit(listing);
+
+		// When
+		crawler.onUnexpectedStatusCode(listingURL + "log4j-1.2.16.pom", HttpStatus.SC_NOT_MODIFIED, null, null);
+
+		// Then
+		assertNotNull(CrawledPage.findByURL(listingURL, db));
+	}
+
+	@Test
+	public void testValidatorsShouldNotBeSavedForMetadataWithNewPoms() throws Exception {
+
+		// Given
+		WebURL url = new WebURL();
+		url.setURL("http://unknown.invalid/maven2/log4j-group/log4j-artifact/maven-metadata.xml");
+		Page page = new Page(url);
+		page.setContentData(Files.readAllBytes(Paths.get(this.getClass().getResource("maven-metadata-example-multiple.xml").toURI())));
+		page.setFetchResponseHeaders(new Header[] {new BasicHeader(HttpHeaders.ETAG, "\"metadata\"")});
+		crawler.setSeedURL(Arrays.asList("http://unknown.invalid/maven2"));
+		crawler.setIncrementalCrawl(true);
+		crawler.setMetadataDrivenCrawl(true);
+
+		// When
+		crawler.visit(page);
+
+		// Then
+		assertEquals(1, db.getCollection(METADATA_COLLECTION).count());
+		assertNull(CrawledPage.findByURL(url.getURL(), db));
+	}
+
+	private static WebURL webURL(String url) {
+		WebURL webURL = new WebURL();
+		webURL.setURL(url);
+		return webURL;
+	}
+
+	private static Page listingPage(String listingURL, String... links) {
+		
+		WebURL webURL = new WebURL();
+		webURL.setURL(listingURL);
+		Page page = new Page(webURL);
+		
+		Set<WebURL> outgoingUrls = new HashSet<>();
+		for (String link : links) {
+			WebURL outgoingUrl = new WebURL();
+			outgoingUrl.setURL(link);
+			outgoingUrls.add(outgoingUrl);
+		}
+		HtmlParseData parseData = new HtmlParseData();
+		parseData.setOutgoingUrls(outgoingUrls);
+		page.setParseData(parseData);
+		
+		return page;
+	}
+
 	// JCenter links have a "/:" before folder names (maybe to avoid crawling?)
 	@Test
 	public void testHandleJCenterLinks() {
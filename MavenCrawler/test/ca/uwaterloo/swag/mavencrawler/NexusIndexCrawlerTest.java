@@ -0,0 +1,306 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static com.mongodb.client.model.Filters.exists;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.bson.BsonDocument;
+import org.bson.BsonInt32;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.CreateCollectionOptions;
+import com.mongodb.client.model.ValidationOptions;
+
+import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import ca.uwaterloo.swag.mavencrawler.helpers.TestHelper;
+import ca.uwaterloo.swag.mavencrawler.index.IndexFileBuilder;
+import ca.uwaterloo.swag.mavencrawler.pojo.Checkpoint;
+import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+public class NexusIndexCrawlerTest {
+
+	/**
+	 * please store Starter or RuntimeConfig in a static final field
+	 * if you want to use artifact store caching (or else disable caching)
+	 */
+	private static final MongodStarter starter = MongodStarter.getDefaultInstance();
+	private static MongodExecutable _mongodExe;
+	private static MongodProcess _mongod;
+	private static MongoDBHandler handler;
+
+	private MongoDatabase db;
+	private File repositoryFolder;
+	private File indexFolder;
+	private String repositoryURL;
+	private NexusIndexCrawler crawler;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		_mongodExe = starter.prepare(new MongodConfigBuilder()
+				.version(Version.Main.PRODUCTION)
+				.net(new Net("localhost", 12345, Network.localhostIsIPv6()))
+				.build());
+		_mongod = _mongodExe.start();
+
+		handler = MongoDBHandler.newInstance(Logger.getLogger(NexusIndexCrawlerTest.class.getName()));
+		handler.setHost("localhost");
+		handler.setPort(12345);
+		handler.setAuthEnabled(false);
+		handler.setDatabaseName("TestDatabase");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		_mongod.stop();
+		_mongodExe.stop();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		db = handler.getMongoDatabase();
+		repositoryFolder = new File("tempRepository").getAbsoluteFile();
+		assertTrue(TestHelper.deleteRecursive(repositoryFolder));
+		indexFolder = new File(repositoryFolder, NexusIndexCrawler.INDEX_FOLDER);
+		assertTrue(indexFolder.mkdirs());
+		repositoryURL = repositoryFolder.toURI().toString();
+		crawler = new NexusIndexCrawler(Logger.getLogger(this.getClass().getName()), db, null);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.drop();
+		db = null;
+		assertTrue(TestHelper.deleteRecursive(repositoryFolder));
+	}
+
+	@Test
+	public void testFullImport() throws IOException {
+
+		// Given
+		writeProperties("chain", 3);
+		writeFullIndex();
+
+		// When
+		assertTrue(crawler.crawlIndex(repositoryURL));
+
+		// Then
+		MongoCollection<Metadata> metadataCollection = db.getCollection(Metadata.METADATA_COLLECTION, Metadata.class);
+		assertEquals(2, metadataCollection.count());
+		Metadata log4j = metadataCollection.find(new Document("artifactId", "log4j")).first();
+		assertEquals(Arrays.asList("1.2.15", "1.2.16"), log4j.getVersions());
+		assertEquals(repositoryURL, log4j.getRepository());
+
+		MongoCollection<VersionPom> versionPomCollection = db.getCollection(VersionPom.VERSIONPOM_COLLECTION, VersionPom.class);
+		assertEquals(3, versionPomCollection.count());
+		VersionPom versionPom = versionPomCollection.find(new Document("version", "1.2.16")).first();
+		assertEquals("Apache Log4j", versionPom.getName());
+		assertEquals("bundle", versionPom.getPackaging());
+
+		assertImportedIncremental("chain", 3);
+	}
+
+	@Test
+	public void testIncrementalImport() throws IOException {
+
+		// Given
+		writeProperties("chain", 3);
+		writeFullIndex();
+		assertTrue(crawler.crawlIndex(repositoryURL));
+
+		writeProperties("chain", 4);
+		new IndexFileBuilder(System.currentTimeMillis())
+				.addArtifact("log4j", "log4j", "1.2.17", null, "bundle", "Apache Log4j", "Apache Log4j 1.2")
+				.writeGzip(new File(indexFolder, NexusIndexCrawler.INDEX_NAME + ".4.gz"));
+		
+		// Only the new chunk can be imported
+		assertTrue(new File(indexFolder, NexusIndexCrawler.INDEX_NAME + ".gz").delete());
+
+		// When
+		assertTrue(crawler.crawlIndex(repositoryURL));
+
+		// Then
+		Metadata log4j = db.getCollection(Metadata.METADATA_COLLECTION, Metadata.class)
+				.find(new Document("artifactId", "log4j")).first();
+		assertEquals(Arrays.asList("1.2.15", "1.2.16", "1.2.17"), log4j.getVersions());
+		assertEquals(4, db.getCollection(VersionPom.VERSIONPOM_COLLECTION).count());
+		assertImportedIncremental("chain", 4);
+	}
+
+	@Test
+	public void testMissingIncrementalShouldImportFullIndex() throws IOException {
+
+		// Given
+		writeProperties("chain", 3);
+		writeFullIndex();
+		Checkpoint.upsertInMongo("NexusIndex " + repositoryURL, 
+				new BsonDocument("chainId", new BsonString("chain")).append("lastIncremental", new BsonInt32(1)), db);
+
+		// When
+		assertTrue(crawler.crawlIndex(repositoryURL));
+
+		// Then
+		assertEquals(3, db.getCollection(VersionPom.VERSIONPOM_COLLECTION).count());
+		assertImportedIncremental("chain", 3);
+	}
+
+	@Test
+	public void testNewChainShouldImportFullIndex() throws IOException {
+
+		// Given
+		writeProperties("chain", 3);
+		writeFullIndex();
+		assertTrue(crawler.crawlIndex(repositoryURL));
+		db.getCollection(VersionPom.VERSIONPOM_COLLECTION).drop();
+
+		// When
+		writeProperties("newChain", 0);
+		assertTrue(crawler.crawlIndex(repositoryURL));
+
+		// Then
+		assertEquals(3, db.getCollection(VersionPom.VERSIONPOM_COLLECTION).count());
+		assertImportedIncremental("newChain", 0);
+	}
+
+	@Test
+	public void testVersionsShouldBeAddedToCrawledMetadata() throws IOException {
+
+		// Given
+		Metadata crawled = new Metadata();
+		crawled.setGroupId("log4j");
+		crawled.setArtifactId("log4j");
+		crawled.setRepository("http://central.maven.org/maven2");
+		crawled.setVersions(Arrays.asList("1.2.14"));
+		crawled.setLastUpdated(new Date());
+		Metadata.upsertInMongo(crawled, db, null);
+
+		writeProperties("chain", 3);
+		writeFullIndex();
+
+		// When
+		assertTrue(crawler.crawlIndex(repositoryURL));
+
+		// Then
+		Metadata log4j = db.getCollection(Metadata.METADATA_COLLECTION, Metadata.class)
+				.find(new Document("artifactId", "log4j")).first();
+		assertEquals(Arrays.asList("1.2.14", "1.2.15", "1.2.16"), log4j.getVersions());
+		assertEquals(crawled.getLastUpdated(), log4j.getLastUpdated());
+		assertEquals("http://central.maven.org/maven2", log4j.getRepository());
+	}
+
+	@Test
+	public void testFetchIndexedPoms() throws IOException {
+
+		// Given
+		writeProperties("chain", 3);
+		writeFullIndex();
+		assertTrue(crawler.crawlIndex(repositoryURL));
+		
+		File pomFolder = new File(repositoryFolder, "log4j/log4j/1.2.16");
+		assertTrue(pomFolder.mkdirs());
+		Files.write(new File(pomFolder, "log4j-1.2.16.pom").toPath(), Arrays.asList(
+				"<project>",
+				"  <groupId>log4j</groupId>",
+				"  <artifactId>log4j</artifactId>",
+				"  <version>1.2.16</version>",
+				"  <url>http://logging.apache.org/log4j/1.2/</url>",
+				"</project>"), StandardCharsets.UTF_8);
+		
+		MongoCollection<VersionPom> versionPomCollection = db.getCollection(VersionPom.VERSIONPOM_COLLECTION, VersionPom.class);
+		assertEquals(3, versionPomCollection.count(new Document("indexOnly", true)));
+
+		// When
+		long saved = crawler.fetchIndexedPoms(repositoryURL);
+
+		// Then
+		assertEquals(3, saved);
+		assertEquals(0, versionPomCollection.count(new Document("indexOnly", true)));
+		VersionPom versionPom = versionPomCollection.find(new Document("version", "1.2.16")).first();
+		assertEquals("http://logging.apache.org/log4j/1.2/", versionPom.getProjectUrl());
+		assertEquals("Apache Log4j", versionPom.getName());
+		assertEquals(repositoryURL, versionPom.getRepository());
+		assertNull(versionPom.getIndexOnly());
+	}
+
+	@Test
+	public void testFailedWritesShouldNotMoveCheckpoint() throws IOException {
+
+		// Given
+		writeProperties("chain", 3);
+		writeFullIndex();
+		
+		// Every VersionPom is rejected
+		db.createCollection(VersionPom.VERSIONPOM_COLLECTION, new CreateCollectionOptions()
+				.validationOptions(new ValidationOptions().validator(exists("notAField"))));
+
+		// When
+		boolean imported = crawler.crawlIndex(repositoryURL);
+
+		// Then
+		assertFalse(imported);
+		assertNull(Checkpoint.findByName("NexusIndex " + repositoryURL, db));
+	}
+
+	@Test
+	public void testRepositoryWithoutIndex() {
+
+		// When
+		boolean imported = crawler.crawlIndex(repositoryURL);
+
+		// Then
+		assertFalse(imported);
+		assertEquals(0, db.getCollection(Metadata.METADATA_COLLECTION).count());
+	}
+
+	private void writeFullIndex() throws IOException {
+		new IndexFileBuilder(System.currentTimeMillis())
+				.addDocument("DESCRIPTOR", "NexusIndex", "IDXINFO", "1.0|central")
+				.addArtifact("log4j", "log4j", "1.2.15", null, "bundle", "Apache Log4j", "Apache Log4j 1.2")
+				.addArtifact("log4j", "log4j", "1.2.16", null, "bundle", "Apache Log4j", "Apache Log4j 1.2")
+				.addArtifact("log4j", "log4j", "1.2.16", "sources", "bundle", "Apache Log4j", "Apache Log4j 1.2")
+				.addArtifact("junit", "junit", "4.12", null, "jar", "JUnit", "")
+				.writeGzip(new File(indexFolder, NexusIndexCrawler.INDEX_NAME + ".gz"));
+	}
+
+	private void writeProperties(String chainId, int lastIncremental) throws IOException {
+		List<String> lines = Arrays.asList(
+				NexusIndexCrawler.CHAIN_ID_PROPERTY + "=" + chainId,
+				NexusIndexCrawler.LAST_INCREMENTAL_PROPERTY + "=" + lastIncremental);
+		Files.write(new File(indexFolder, NexusIndexCrawler.INDEX_NAME + ".properties").toPath(), lines, StandardCharsets.UTF_8);
+	}
+
+	private void assertImportedIncremental(String chainId, int lastIncremental) {
+		Checkpoint checkpoint = Checkpoint.findByName("NexusIndex " + repositoryURL, db);
+		assertNotNull(checkpoint);
+		assertEquals(chainId, checkpoint.getLastId().asDocument().getString("chainId").getValue());
+		assertEquals(lastIncremental, checkpoint.getLastId().asDocument().getInt32("lastIncremental").getValue());
+	}
+
+}
@@ -0,0 +1,273 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import ca.uwaterloo.swag.mavencrawler.pojo.Dependency;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+public class ParentPomResolverTest {
+
+	/**
+	 * please store Starter or RuntimeConfig in a static final field
+	 * if you want to use artifact store caching (or else disable caching)
+	 */
+	private static final MongodStarter starter = MongodStarter.getDefaultInstance();
+	private static MongodExecutable _mongodExe;
+	private static MongodProcess _mongod;
+	private static MongoDBHandler handler;
+
+	private MongoDatabase db;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		_mongodExe = starter.prepare(new MongodConfigBuilder()
+				.version(Version.Main.PRODUCTION)
+				.net(new Net("localhost", 12345, Network.localhostIsIPv6()))
+				.build());
+		_mongod = _mongodExe.start();
+
+		handler = MongoDBHandler.newInstance(Logger.getLogger(ParentPomResolverTest.class.getName()));
+		handler.setHost("localhost");
+		handler.setPort(12345);
+		handler.setAuthEnabled(false);
+		handler.setDatabaseName("TestDatabase");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		_mongod.stop();
+		_mongodExe.stop();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		db = handler.getMongoDatabase();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.drop();
+		db = null;
+	}
+
+	private static VersionPom versionPom(String groupId, String artifactId, String version, VersionPom parent) {
+		VersionPom versionPom = new VersionPom();
+		versionPom.setGroupId(groupId);
+		versionPom.setArtifactId(artifactId);
+		versionPom.setVersion(version);
+		if (parent != null) {
+			versionPom.setParentGroupId(parent.getGroupId());
+			versionPom.setParentArtifactId(parent.getArtifactId());
+			versionPom.setParentVersion(parent.getVersion());
+		}
+		return versionPom;
+	}
+
+	@Test
+	public void testResolveAll() {
+
+		// Given
+		VersionPom apache = versionPom("org.apache", "apache", "18", null);
+		apache.setDescription("The Apache Software Foundation");
+		apache.setProjectUrl("http://www.apache.org/");
+		apache.setPackaging("pom");
+
+		VersionPom commons = versionPom("org.apache.commons", "commons-parent", "42", apache);
+		commons.setScmConnection("scm:git:http://git.apache.org/commons.git");
+		commons.setDependencies(Arrays.asList(new Dependency("junit", "junit", "4.12")));
+
+		VersionPom lang = versionPom("org.apache.commons", "commons-lang3", "3.7", commons);
+		lang.setDescription("Apache Commons Lang");
+		VersionPom io = versionPom("commons-io", "commons-io", "2.6", commons);
+		VersionPom orphan = versionPom("org.example", "orphan", "1", versionPom("org.example", "missing", "1", null));
+
+		VersionPom.upsertInMongo(Arrays.asList(apache, commons, lang, io, orphan), db, null);
+
+		ParentPomResolver resolver = new ParentPomResolver(db, ParentPomResolver.DEFAULT_CACHE_SIZE, null);
+		resolver.setBatchSize(1);
+
+		// When
+		long resolved = resolver.resolveAll();
+
+		// Then
+		assertEquals(3, resolved);
+
+		VersionPom savedLang = VersionPom.findInMongo("org.apache.commons", "commons-lang3", "3.7", db);
+		assertEquals("Apache Commons Lang", savedLang.getDescription());
+		assertNull(savedLang.getInherited().getDescription());
+		assertNull(savedLang.getProjectUrl());
+		assertEquals("http://www.apache.org/commons-parent/commons-lang3", savedLang.getInherited().getProjectUrl());
+		assertEquals("scm:git:http://git.apache.org/commons.git/commons-lang3", savedLang.getInherited().getScmConnection());
+		assertNull(savedLang.getPackaging());
+		assertNull(savedLang.getDependencies());
+
+		VersionPom savedIo = VersionPom.findInMongo("commons-io", "commons-io", "2.6", db);
+		assertNull(savedIo.getDescription());
+		assertEquals("The Apache Software Foundation", savedIo.getInherited().getDescription());
+		assertEquals("http://www.apache.org/commons-parent/commons-io", savedIo.getInherited().getProjectUrl());
+
+		VersionPom savedCommons = VersionPom.findInMongo("org.apache.commons", "commons-parent", "42", db);
+		assertNull(savedCommons.getProjectUrl());
+		assertEquals("http://www.apache.org/commons-parent", savedCommons.getInherited().getProjectUrl());
+		assertEquals("scm:git:http://git.apache.org/commons.git", savedCommons.getScmConnection());
+		assertNull(savedCommons.getInherited().getScmConnection());
+		assertEquals(1, savedCommons.getDependencies().size());
+
+		assertNull(VersionPom.findInMongo("org.example", "orphan", "1", db).getInherited());
+
+		// commons-parent, apache and the missing parent are read once, then from the cache
+		assertEquals(3, resolver.getMisses());
+		assertEquals(2, resolver.getHits());
+		assertEquals(5, VersionPom.findAllFromMongo(db).size());
+	}
+
+	@Test
+	public void testResolveAgainShouldDoNothing() {
+
+		// Given
+		VersionPom parent = versionPom("org.group", "parent", "1", null);
+		parent.setDescription("description");
+		VersionPom.upsertInMongo(Arrays.asList(parent, versionPom("org.group", "child", "1", parent)), db, null);
+		new ParentPomResolver(db, ParentPomResolver.DEFAULT_CACHE_SIZE, null).resolveAll();
+
+		// When
+		long resolved = new ParentPomResolver(db, ParentPomResolver.DEFAULT_CACHE_SIZE, null).resolveAll();
+
+		// Then
+		assertEquals(0, resolved);
+	}
+
+	@Test
+	public void testChangedParentShouldBeInheritedAgain() {
+
+		// Given
+		VersionPom parent = versionPom("org.group", "parent", "1", null);
+		parent.setDescription("description");
+		VersionPom child1 = versionPom("org.group", "child1", "1", parent);
+		VersionPom child2 = versionPom("org.group", "child2", "1", parent);
+		VersionPom.upsertInMongo(Arrays.asList(parent, child1, child2), db, null);
+		new ParentPomResolver(db, ParentPomResolver.DEFAULT_CACHE_SIZE, null).resolveAll();
+
+		// Parent changed, and child2 recrawled declaring its own description
+		parent.setDescription("new description");
+		child2.setDescription("child description");
+		VersionPom.upsertInMongo(Arrays.asList(parent, child2), db, null);
+
+		// When
+		long resolved = new ParentPomResolver(db, ParentPomResolver.DEFAULT_CACHE_SIZE, null).resolveAll();
+
+		// Then
+		assertEquals(2, resolved);
+		VersionPom savedChild1 = VersionPom.findInMongo("org.group", "child1", "1", db);
+		assertNull(savedChild1.getDescription());
+		assertEquals("new description", savedChild1.getInherited().getDescription());
+		VersionPom savedChild2 = VersionPom.findInMongo("org.group", "child2", "1", db);
+		assertEquals("child description", savedChild2.getDescription());
+		assertNull(savedChild2.getInherited());
+	}
+
+	@Test
+	public void testEviction() {
+
+		// Given
+		VersionPom parent1 = versionPom("org.group", "parent1", "1", null);
+		VersionPom parent2 = versionPom("org.group", "parent2", "1", null);
+		VersionPom.upsertInMongo(Arrays.asList(parent1, parent2), db, null);
+
+		ParentPomResolver resolver = new ParentPomResolver(db, 1, null);
+
+		// When
+		resolver.resolve(versionPom("org.group", "child1", "1", parent1));
+		resolver.resolve(versionPom("org.group", "child2", "1", parent2));
+		resolver.resolve(versionPom("org.group", "child3", "1", parent1));
+
+		// Then
+		assertEquals(3, resolver.getMisses());
+		assertEquals(0, resolver.getHits());
+	}
+
+	@Test
+	public void testCycle() {
+
+		// Given
+		VersionPom pom1 = versionPom("org.group", "pom1", "1", null);
+		VersionPom pom2 = versionPom("org.group", "pom2", "1", pom1);
+		pom1.setParentGroupId("org.group");
+		pom1.setParentArtifactId("pom2");
+		pom1.setParentVersion("1");
+		VersionPom.upsertInMongo(Arrays.asList(pom1, pom2), db, null);
+
+		// When
+		boolean resolved = new ParentPomResolver(db, ParentPomResolver.DEFAULT_CACHE_SIZE, null).resolve(pom2);
+
+		// Then
+		assertFalse(resolved);
+	}
+
+	@Test
+	public void testInheritKeepsChildValues() {
+
+		// Given
+		VersionPom parent = versionPom("org.group", "parent", "1", null);
+		parent.setDescription("parent description");
+		parent.setScmUrl("https://github.com/group/project/");
+		parent.setPackaging("pom");
+		VersionPom child = versionPom(null, "child", null, parent);
+		child.setDescription("child description");
+
+		// When
+		boolean changed = ParentPomResolver.inherit(child, parent);
+
+		// Then
+		assertTrue(changed);
+		assertEquals("child description", child.getDescription());
+		assertNull(child.getInherited().getDescription());
+		assertNull(child.getScmUrl());
+		assertEquals("https://github.com/group/project/child", child.getInherited().getScmUrl());
+		assertNull(child.getGroupId());
+		assertNull(child.getPackaging());
+		assertFalse(ParentPomResolver.inherit(child, parent));
+		assertTrue(ParentPomResolver.inherit(child, null));
+		assertNull(child.getInherited());
+		assertFalse(ParentPomResolver.inherit(child, null));
+	}
+
+	@Test
+	public void testNewInstance() {
+
+		// Given
+		Properties properties = new Properties();
+		properties.setProperty("PARENT_CACHE_MB", "8");
+
+		// When
+		ParentPomResolver resolver = ParentPomResolver.newInstance(db, null, properties);
+
+		// Then
+		assertEquals(8L * 1024 * 1024, resolver.getCacheSize());
+		assertEquals(ParentPomResolver.DEFAULT_CACHE_SIZE, ParentPomResolver.newInstance(db, null, new Properties()).getCacheSize());
+	}
+
+}
@@ -0,0 +1,142 @@
+package ca.uwaterloo.swag.mavencrawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.uwaterloo.swag.mavencrawler.pojo.CrawledPage;
+
+public class SubtreeTrackerTest {
+
+	private static final String ROOT = "http://repo/";
+	private static final String GROUP = "http://repo/group/";
+	private static final String METADATA = "http://repo/group/maven-metadata.xml";
+	private static final String POM = "http://repo/group/1.0/group-1.0.pom";
+
+	private SubtreeTracker tracker;
+
+	@Before
+	public void setUp() {
+		tracker = new SubtreeTracker();
+	}
+
+	@Test
+	public void testPageWithoutChildrenIsCompleteRightAway() {
+
+		// When
+		List<CrawledPage> completed = tracker.pageCrawled(POM, true, validators(POM));
+
+		// Then
+		assertEquals(Arrays.asList(validators(POM)), completed);
+		assertEquals(0, tracker.size());
+	}
+
+	@Test
+	public void testListingIsCompleteAfterItsSubtree() {
+
+		// Given
+		tracker.addChild(ROOT, GROUP);
+		assertEquals(Collections.emptyList(), tracker.pageCrawled(ROOT, true, validators(ROOT)));
+		tracker.addChild(GROUP, METADATA);
+		assertEquals(Collections.emptyList(), tracker.pageCrawled(GROUP, true, validators(GROUP)));
+		tracker.addChild(METADATA, POM);
+		assertEquals(Collections.emptyList(), tracker.pageCrawled(METADATA, true, validators(METADATA)));
+
+		// When
+		List<CrawledPage> completed = tracker.pageCrawled(POM, true, validators(POM));
+
+		// Then
+		assertEquals(Arrays.asList(validators(POM), validators(METADATA), validators(GROUP), validators(ROOT)), completed);
+		assertEquals(0, tracker.size());
+	}
+
+	@Test
+	public void testChildCrawledBeforeItsListing() {
+
+		// Given
+		tracker.addChild(GROUP, METADATA);
+		assertEquals(Arrays.asList(validators(METADATA)), tracker.pageCrawled(METADATA, true, validators(METADATA)));
+
+		// When
+		List<CrawledPage> completed = tracker.pageCrawled(GROUP, true, validators(GROUP));
+
+		// Then
+		assertEquals(Arrays.asList(validators(GROUP)), completed);
+	}
+
+	@Test
+	public void testFailedChildKeepsListingsAboveFromBeingValidated() {
+
+		// Given
+		tracker.addChild(ROOT, GROUP);
+		tracker.pageCrawled(ROOT, true, validators(ROOT));
+		tracker.addChild(GROUP, METADATA);
+		tracker.addChild(GROUP, POM);
+		tracker.pageCrawled(GROUP, true, validators(GROUP));
+		assertEquals(Arrays.asList(validators(METADATA)), tracker.pageCrawled(METADATA, true, validators(METADATA)));
+
+		// When
+		List<CrawledPage> completed = tracker.pageCrawled(POM, false, null);
+
+		// Then
+		assertEquals(Collections.emptyList(), completed);
+		assertEquals(0, tracker.size());
+	}
+
+	@Test
+	public void testUnchangedChildCompletesListing() {
+
+		// Given
+		tracker.addChild(GROUP, METADATA);
+		tracker.pageCrawled(GROUP, true, validators(GROUP));
+
+		// When answered with 304
+		List<CrawledPage> completed = tracker.pageCrawled(METADATA, true, null);
+
+		// Then
+		assertEquals(Arrays.asList(validators(GROUP)), completed);
+	}
+
+	@Test
+	public void testChildLinkedTwiceIsCountedOnce() {
+
+		// Given
+		assertTrue(tracker.addChild(GROUP, METADATA));
+		assertFalse(tracker.addChild(GROUP, METADATA));
+		assertFalse(tracker.addChild(GROUP, GROUP));
+		tracker.pageCrawled(GROUP, true, validators(GROUP));
+
+		// When
+		List<CrawledPage> completed = tracker.pageCrawled(METADATA, true, null);
+
+		// Then
+		assertEquals(Arrays.asList(validators(GROUP)), completed);
+	}
+
+	@Test
+	public void testListingWithChildrenLeftIsNotValidated() {
+
+		// Given
+		tracker.addChild(GROUP, METADATA);
+
+		// When
+		List<CrawledPage> completed = tracker.pageCrawled(GROUP, true, validators(GROUP));
+
+		// Then
+		assertEquals(Collections.emptyList(), completed);
+		assertEquals(1, tracker.size());
+	}
+
+	private static CrawledPage validators(String url) {
+		return new CrawledPage(url, "\"" + url + "\"", null, new Date(0));
+	}
+
+}
@@ -0,0 +1,140 @@
+package ca.uwaterloo.swag.mavencrawler.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.Test;
+
+public class BatchWriteQueueTest {
+
+	private static final Logger logger = Logger.getLogger(BatchWriteQueueTest.class.getName());
+
+	@Test
+	public void testBatchIsWrittenWhenFull() throws InterruptedException {
+
+		// Given
+		List<List<Integer>> batches = Collections.synchronizedList(new ArrayList<>());
+		BatchWriteQueue<Integer> queue = new BatchWriteQueue<>("Test", batches::add, 2, 60000, 10, logger);
+
+		// When
+		queue.add(1);
+		queue.add(2);
+		queue.flush();
+
+		// Then
+		assertEquals(1, batches.size());
+		assertEquals(Arrays.asList(1, 2), batches.get(0));
+		queue.close();
+	}
+
+	@Test
+	public void testBatchIsWrittenAfterInterval() throws InterruptedException {
+
+		// Given
+		CountDownLatch written = new CountDownLatch(1);
+		BatchWriteQueue<Integer> queue = new BatchWriteQueue<>("Test", batch -> written.countDown(), 100, 50, 10, logger);
+
+		// When
+		queue.add(1);
+
+		// Then
+		assertTrue(written.await(5, TimeUnit.SECONDS));
+		queue.close();
+	}
+
+	@Test(timeout = 5000)
+	public void testCloseWritesPendingItems() {
+
+		// Given
+		List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+		BatchWriteQueue<Integer> queue = new BatchWriteQueue<>("Test", written::addAll, 100, 60000, 10, logger);
+
+		// When
+		for (int i = 0; i < 5; i++) {
+			queue.add(i);
+		}
+		queue.close();
+
+		// Then
+		assertEquals(Arrays.asList(0, 1, 2, 3, 4), written);
+	}
+
+	@Test(timeout = 10000)
+	public void testCloseWhileAddingWritesAcceptedItems() throws InterruptedException {
+
+		// Given
+		AtomicInteger written = new AtomicInteger();
+		AtomicInteger accepted = new AtomicInteger();
+		BatchWriteQueue<Integer> queue = new BatchWriteQueue<>("Test", batch -> written.addAndGet(batch.size()), 
+				7, 60000, 10, logger);
+
+		List<Thread> producers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			Thread producer = new Thread(() -> {
+				try {
+					while (true) {
+						queue.add(1);
+						accepted.incrementAndGet();
+					}
+				} catch (IllegalStateException e) {
+					// Closed
+				}
+			});
+			producer.start();
+			producers.add(producer);
+		}
+
+		// When
+		Thread.sleep(100);
+		queue.close();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		// Then
+		assertTrue(accepted.get() > 0);
+		assertEquals(accepted.get(), written.get());
+		queue.flush();
+	}
+
+	@Test
+	public void testWriterErrorDoesNotStopQueue() throws InterruptedException {
+
+		// Given
+		List<Integer> written = Collections.synchronizedList(new ArrayList<>());
+		BatchWriteQueue<Integer> queue = new BatchWriteQueue<>("Test", batch -> {
+			if (batch.contains(1)) throw new IllegalStateException("Write failed");
+			written.addAll(batch);
+		}, 1, 60000, 10, logger);
+
+		// When
+		queue.add(1);
+		queue.add(2);
+		queue.flush();
+
+		// Then
+		assertEquals(Arrays.asList(2), written);
+		queue.close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testAddAfterClose() {
+
+		// Given
+		BatchWriteQueue<Integer> queue = new BatchWriteQueue<>("Test", batch -> {}, logger);
+		queue.close();
+
+		// When
+		queue.add(1);
+	}
+
+}
@@ -0,0 +1,154 @@
+package ca.uwaterloo.swag.mavencrawler.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.pojo.CrawledPage;
+import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+public class CrawlResultsWriterTest {
+
+	/**
+	 * please store Starter or RuntimeConfig in a static final field
+	 * if you want to use artifact store caching (or else disable caching)
+	 */
+	private static final MongodStarter starter = MongodStarter.getDefaultInstance();
+	private static MongodExecutable _mongodExe;
+	private static MongodProcess _mongod;
+	private static MongoDBHandler handler;
+
+	private MongoDatabase db;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		_mongodExe = starter.prepare(new MongodConfigBuilder()
+				.version(Version.Main.PRODUCTION)
+				.net(new Net("localhost", 12345, Network.localhostIsIPv6()))
+				.build());
+		_mongod = _mongodExe.start();
+
+		handler = MongoDBHandler.newInstance(Logger.getLogger(CrawlResultsWriterTest.class.getName()));
+		handler.setHost("localhost");
+		handler.setPort(12345);
+		handler.setAuthEnabled(false);
+		handler.setDatabaseName("TestDatabase");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		_mongod.stop();
+		_mongodExe.stop();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		db = handler.getMongoDatabase();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.drop();
+		db = null;
+	}
+
+	@Test
+	public void testResultsAreSavedOnFlush() throws InterruptedException {
+
+		// Given
+		CrawlResultsWriter writer = new CrawlResultsWriter(db, Logger.getLogger(CrawlResultsWriterTest.class.getName()));
+
+		Metadata metadata = new Metadata();
+		metadata.setGroupId("log4j");
+		metadata.setArtifactId("log4j");
+		metadata.setRepository("http://repo.com/");
+
+		VersionPom versionPom = new VersionPom();
+		versionPom.setGroupId("log4j");
+		versionPom.setArtifactId("log4j");
+		versionPom.setVersion("1.2.16");
+		versionPom.setRepository("http://repo.com/");
+
+		// When
+		writer.saveMetadata(metadata);
+		writer.saveVersionPom(versionPom);
+		writer.saveCrawledPage(new CrawledPage("http://repo.com/log4j/", "\"etag\"", null, new Date()));
+		writer.flush();
+
+		// Then
+		assertEquals(1, db.getCollection(Metadata.METADATA_COLLECTION).count());
+		assertEquals(1, db.getCollection(VersionPom.VERSIONPOM_COLLECTION).count());
+		assertNotNull(CrawledPage.findByURL("http://repo.com/log4j/", db));
+		writer.close();
+	}
+
+	@Test
+	public void testCloseSavesPendingResults() {
+
+		// Given
+		CrawlResultsWriter writer = new CrawlResultsWriter(db, Logger.getLogger(CrawlResultsWriterTest.class.getName()), 100, 60000, 1000);
+
+		// When
+		for (int i = 0; i < 10; i++) {
+			VersionPom versionPom = new VersionPom();
+			versionPom.setGroupId("log4j");
+			versionPom.setArtifactId("log4j");
+			versionPom.setVersion("1.2." + i);
+			versionPom.setRepository("http://repo.com/");
+			writer.saveVersionPom(versionPom);
+		}
+		writer.close();
+
+		// Then
+		assertEquals(10, db.getCollection(VersionPom.VERSIONPOM_COLLECTION).count());
+	}
+
+	@Test
+	public void testCrawledPagesAreNotSavedWhenResultsFail() throws InterruptedException {
+
+		// Given
+		List<CrawledPage> savedPages = Collections.synchronizedList(new ArrayList<>());
+		CrawlResultsWriter writer = new CrawlResultsWriter(
+				batch -> { throw new IllegalStateException("Write failed"); },
+				batch -> {},
+				savedPages::addAll,
+				Logger.getLogger(CrawlResultsWriterTest.class.getName()), 100, 60000, 1000);
+
+		// When
+		writer.saveMetadata(new Metadata());
+		writer.saveCrawledPage(new CrawledPage("http://repo.com/log4j/log4j/maven-metadata.xml", "\"etag\"", null, new Date()));
+		writer.flush();
+
+		// Then
+		assertTrue(savedPages.isEmpty());
+
+		// Later pages are saved once their results are
+		writer.saveCrawledPage(new CrawledPage("http://repo.com/log4j/log4j/1.2.16/log4j-1.2.16.pom", "\"etag\"", null, new Date()));
+		writer.flush();
+		assertEquals(1, savedPages.size());
+		writer.close();
+	}
+
+}
@@ -3,6 +3,9 @@ package ca.uwaterloo.swag.mavencrawler.db;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -20,6 +23,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.mongodb.MongoClient;
+import com.mongodb.ReadPreference;
+import com.mongodb.WriteConcern;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 
@@ -95,6 +100,10 @@ public class MongoDBHandlerTest {
 		assertEquals("admin", persister.getUsername());
 		assertEquals("myPassword", persister.getPassword());
 		assertEquals("MavenCrawler", persister.getDatabaseName());
+		assertEquals(MongoDBHandler.DEFAULT_MAX_POOL_SIZE, persister.getMaxPoolSize().intValue());
+		assertEquals(MongoDBHandler.DEFAULT_SERVER_SELECTION_TIMEOUT, persister.getServerSelectionTimeout().intValue());
+		assertEquals(MongoDBHandler.DEFAULT_WRITE_CONCERN, persister.getWriteConcern());
+		assertEquals(MongoDBHandler.DEFAULT_READ_PREFERENCE, persister.getReadPreference());
 	}
 
 	@Test
@@ -119,6 +128,12 @@ public class MongoDBHandlerTest {
 		assertTrue(persister.isSSLEnabled());
 		assertEquals("replica", persister.getReplicaSetName());
 		assertEquals("maindatabase", persister.getDatabaseName());
+		assertEquals(50, persister.getMaxPoolSize().intValue());
+		assertEquals(MongoDBHandler.DEFAULT_MIN_POOL_SIZE, persister.getMinPoolSize().intValue());
+		assertEquals(MongoDBHandler.DEFAULT_CONNECT_TIMEOUT, persister.getConnectTimeout().intValue());
+		assertEquals(5000, persister.getServerSelectionTimeout().intValue());
+		assertEquals("MAJORITY", persister.getWriteConcern());
+		assertEquals("secondaryPreferred", persister.getReadPreference());
 	}
 	
 	@Test
@@ -161,6 +176,65 @@ public class MongoDBHandlerTest {
 		assertNotNull(mongoDatabase);
 	}
 	
+	@Test
+	public void testMongoDatabaseShouldBeReused() {
+		
+		// Given
+		MongoDatabase mongoDatabase = handler.getMongoDatabase();
+		
+		// When
+		MongoDatabase again = handler.getMongoDatabase();
+		
+		// Then
+		assertSame(mongoDatabase, again);
+		assertTrue(handler.isConnected());
+	}
+	
+	@Test
+	public void testMongoDatabaseAfterDisconnect() {
+		
+		// Given
+		MongoDatabase mongoDatabase = handler.getMongoDatabase();
+		assertTrue(handler.disconnect());
+		
+		// When
+		MongoDatabase again = handler.getMongoDatabase();
+		
+		// Then
+		assertNotSame(mongoDatabase, again);
+		assertTrue(handler.isConnected());
+	}
+	
+	@Test
+	public void testWriteConcernAndReadPreference() {
+		
+		// Given
+		handler.setWriteConcern("W1");
+		handler.setReadPreference("primaryPreferred");
+		
+		// When
+		MongoDatabase mongoDatabase = handler.getMongoDatabase();
+		
+		// Then
+		assertEquals(WriteConcern.W1, mongoDatabase.getWriteConcern());
+		assertEquals(ReadPreference.primaryPreferred(), mongoDatabase.getReadPreference());
+	}
+	
+	@Test
+	public void testUnknownWriteConcernAndReadPreferenceShouldUseDefaults() {
+		
+		// Given
+		handler.setWriteConcern("SOMETIMES");
+		handler.setReadPreference("nearby");
+		
+		// When
+		MongoDatabase mongoDatabase = handler.getMongoDatabase();
+		
+		// Then
+		assertEquals(WriteConcern.ACKNOWLEDGED, mongoDatabase.getWriteConcern());
+		assertEquals(ReadPreference.primary(), mongoDatabase.getReadPreference());
+	}
+	
 	@Test
 	public void testIndexesCreation() {
 
@@ -193,4 +267,27 @@ public class MongoDBHandlerTest {
 		}
 	}
 
+	@Test
+	public void testFailedIndexesCreationShouldNotKeepConnection() {
+
+		// Given, duplicates preventing the unique index
+		MongoCollection<Document> collection = _mongo.getDatabase("TestDatabase").getCollection("Metadata");
+		collection.insertOne(new Document("groupId", "g").append("artifactId", "a"));
+		collection.insertOne(new Document("groupId", "g").append("artifactId", "a"));
+		
+		// When
+		MongoDatabase mongoDatabase = handler.getMongoDatabase();
+		
+		// Then
+		assertNull(mongoDatabase);
+		assertFalse(handler.isConnected());
+		
+		// When duplicates are removed
+		collection.deleteOne(new Document("groupId", "g"));
+		
+		// Then
+		assertNotNull(handler.getMongoDatabase());
+		assertTrue(handler.isConnected());
+	}
+
 }
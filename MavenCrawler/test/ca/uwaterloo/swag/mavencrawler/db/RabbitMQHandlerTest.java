@@ -6,7 +6,12 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.junit.After;
@@ -15,6 +20,8 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.rabbitmq.client.AMQP;
+
 import ca.uwaterloo.swag.mavencrawler.db.RabbitMQHandler.MessageHandler;
 
 public class RabbitMQHandlerTest {
@@ -65,6 +72,32 @@ public class RabbitMQHandlerTest {
 		assertEquals("rabbitmq_username", handler.getUsername());
 		assertEquals("rabbitmq_password", handler.getPassword());
 		assertEquals("queue", handler.getQueueName());
+		assertEquals(RabbitMQHandler.DEFAULT_PREFETCH_COUNT, handler.getPrefetchCount());
+		assertEquals(RabbitMQHandler.DEFAULT_CONSUMER_COUNT, handler.getConsumerCount());
+		assertEquals(RabbitMQHandler.DEFAULT_MAX_RETRIES, handler.getMaxRetries());
+		assertEquals(RabbitMQHandler.DEFAULT_RETRY_DELAY, handler.getRetryDelay());
+		assertEquals(RabbitMQHandler.DEFAULT_MAX_UNCONFIRMED, handler.getMaxUnconfirmed());
+		assertEquals("queue.retry." + RabbitMQHandler.DEFAULT_RETRY_DELAY, handler.getRetryQueueName());
+		assertEquals("queue.failed", handler.getFailedQueueName());
+	}
+	
+	@Test
+	public void testRetryCount() {
+		
+		// Given
+		AMQP.BasicProperties noHeaders = new AMQP.BasicProperties();
+		AMQP.BasicProperties intHeader = new AMQP.BasicProperties.Builder()
+				.headers(Collections.singletonMap(RabbitMQHandler.RETRY_COUNT_HEADER, 2))
+				.build();
+		AMQP.BasicProperties longHeader = new AMQP.BasicProperties.Builder()
+				.headers(Collections.singletonMap(RabbitMQHandler.RETRY_COUNT_HEADER, 3L))
+				.build();
+		
+		// Then
+		assertEquals(0, RabbitMQHandler.getRetryCount(null));
+		assertEquals(0, RabbitMQHandler.getRetryCount(noHeaders));
+		assertEquals(2, RabbitMQHandler.getRetryCount(intHeader));
+		assertEquals(3, RabbitMQHandler.getRetryCount(longHeader));
 	}
 	
 	/**
@@ -155,4 +188,65 @@ public class RabbitMQHandlerTest {
 		assertTrue(messageConfirmation);
 	}
 
+	/**
+	 * Uncomment @Test to run it on an actual server.
+	 */
+//	@Test
+	public void testSendMessages() throws InterruptedException, IOException {
+		
+		// Given
+		List<String> sentMessages = Arrays.asList("message1", "message2", "message3");
+		List<String> receivedMessages = new CopyOnWriteArrayList<>();
+		handler.setMaxUnconfirmed(2);
+		
+		MessageHandler messageHandler = new MessageHandler() {
+			@Override
+			public boolean handleMessage(String receivedMessage) {
+				receivedMessages.add(receivedMessage);
+				return true;
+			}; 
+		};
+		
+		// When
+		boolean confirmed = handler.sendMessages(sentMessages);
+		handler.listenMessages(messageHandler);
+		Thread.sleep(200);
+		
+		// Then
+		assertTrue(confirmed);
+		assertEquals(sentMessages, receivedMessages);
+	}
+
+	/**
+	 * Uncomment @Test to run it on an actual server.
+	 */
+//	@Test
+	public void testFailedMessageShouldBeParked() throws InterruptedException, IOException {
+		
+		// Given
+		String sentMessage = "testMessage";
+		handler.setMaxRetries(1);
+		handler.setRetryDelay(50);
+		AtomicInteger deliveries = new AtomicInteger();
+		
+		MessageHandler messageHandler = new MessageHandler() {
+			@Override
+			public boolean handleMessage(String receivedMessage) {
+				deliveries.incrementAndGet();
+				return false;
+			}; 
+		};
+		
+		// When
+		handler.listenMessages(messageHandler);
+		handler.sendMessage(sentMessage);
+		Thread.sleep(500);
+		
+		// Then
+		assertEquals(2, deliveries.get());
+		assertEquals(1, handler.getChannel().messageCount(handler.getFailedQueueName()));
+		handler.getChannel().queueDelete(handler.getRetryQueueName());
+		handler.getChannel().queueDelete(handler.getFailedQueueName());
+	}
+
 }
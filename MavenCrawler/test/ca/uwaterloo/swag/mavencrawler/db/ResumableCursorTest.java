@@ -0,0 +1,168 @@
+package ca.uwaterloo.swag.mavencrawler.db;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import org.bson.BsonValue;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.MongoCursorNotFoundException;
+import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+public class ResumableCursorTest {
+
+	/**
+	 * please store Starter or RuntimeConfig in a static final field
+	 * if you want to use artifact store caching (or else disable caching)
+	 */
+	private static final MongodStarter starter = MongodStarter.getDefaultInstance();
+	private static MongodExecutable _mongodExe;
+	private static MongodProcess _mongod;
+	private static MongoDBHandler handler;
+
+	private MongoDatabase db;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		_mongodExe = starter.prepare(new MongodConfigBuilder()
+				.version(Version.Main.PRODUCTION)
+				.net(new Net("localhost", 12345, Network.localhostIsIPv6()))
+				.build());
+		_mongod = _mongodExe.start();
+
+		handler = MongoDBHandler.newInstance(Logger.getLogger(ResumableCursorTest.class.getName()));
+		handler.setHost("localhost");
+		handler.setPort(12345);
+		handler.setAuthEnabled(false);
+		handler.setDatabaseName("TestDatabase");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		_mongod.stop();
+		_mongodExe.stop();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		db = handler.getMongoDatabase();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.drop();
+		db = null;
+	}
+
+	@Test
+	public void testIterateInBatches() {
+
+		// Given
+		MongoCollection<Metadata> collection = insertMetadata("a1", "a2", "a3", "a4", "a5");
+		ResumableCursor<Metadata> cursor = new ResumableCursor<>(collection, 2, null);
+		List<String> artifacts = new ArrayList<>();
+		List<BsonValue> checkpoints = new ArrayList<>();
+		cursor.setBatchListener(checkpoints::add);
+
+		// When
+		long processed = cursor.forEach(metadata -> artifacts.add(metadata.getArtifactId()));
+
+		// Then
+		assertEquals(5, processed);
+		assertEquals(Arrays.asList("a1", "a2", "a3", "a4", "a5"), artifacts);
+		assertEquals(3, checkpoints.size());
+		assertEquals(cursor.getLastId(), checkpoints.get(2));
+	}
+
+	@Test
+	public void testResumeAfterLastId() {
+
+		// Given
+		MongoCollection<Metadata> collection = insertMetadata("a1", "a2", "a3", "a4", "a5");
+		ResumableCursor<Metadata> firstCursor = new ResumableCursor<>(collection, 2, null);
+		List<BsonValue> checkpoints = new ArrayList<>();
+		firstCursor.setBatchListener(checkpoints::add);
+		firstCursor.forEach(metadata -> {});
+
+		ResumableCursor<Metadata> cursor = new ResumableCursor<>(collection, 2, null);
+		cursor.setLastId(checkpoints.get(0));
+		List<String> artifacts = new ArrayList<>();
+
+		// When
+		cursor.forEach(metadata -> artifacts.add(metadata.getArtifactId()));
+
+		// Then
+		assertEquals(Arrays.asList("a3", "a4", "a5"), artifacts);
+	}
+
+	@Test
+	public void testResumeWhenCursorIsLost() {
+
+		// Given
+		MongoCollection<Metadata> collection = insertMetadata("a1", "a2", "a3", "a4", "a5");
+		ResumableCursor<Metadata> cursor = new ResumableCursor<>(collection, 2, null);
+		List<String> artifacts = new ArrayList<>();
+		AtomicBoolean lost = new AtomicBoolean();
+
+		// When
+		long processed = cursor.forEach(metadata -> {
+			if (metadata.getArtifactId().equals("a3") && !lost.getAndSet(true)) {
+				throw new MongoCursorNotFoundException(1, new ServerAddress());
+			}
+			artifacts.add(metadata.getArtifactId());
+		});
+
+		// Then
+		assertEquals(5, processed);
+		assertEquals(Arrays.asList("a1", "a2", "a3", "a4", "a5"), artifacts);
+	}
+
+	@Test(expected = MongoCursorNotFoundException.class)
+	public void testGiveUpWhenResumingMakesNoProgress() {
+
+		// Given
+		MongoCollection<Metadata> collection = insertMetadata("a1", "a2", "a3");
+		ResumableCursor<Metadata> cursor = new ResumableCursor<>(collection, 2, null);
+
+		// When
+		cursor.forEach(metadata -> {
+			if (metadata.getArtifactId().equals("a2")) {
+				throw new MongoCursorNotFoundException(1, new ServerAddress());
+			}
+		});
+	}
+
+	private MongoCollection<Metadata> insertMetadata(String... artifactIds) {
+
+		for (String artifactId : artifactIds) {
+			Metadata metadata = new Metadata();
+			metadata.setGroupId("group");
+			metadata.setArtifactId(artifactId);
+			metadata.setVersions(Arrays.asList("1"));
+			Metadata.upsertInMongo(metadata, db, null);
+		}
+
+		return db.getCollection(Metadata.METADATA_COLLECTION, Metadata.class);
+	}
+
+}
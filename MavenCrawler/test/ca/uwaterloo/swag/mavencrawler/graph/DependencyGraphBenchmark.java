@@ -0,0 +1,112 @@
+package ca.uwaterloo.swag.mavencrawler.graph;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ca.uwaterloo.swag.mavencrawler.graph.DependencyGraph.EdgeType;
+
+/**
+ * Transitive dependents of popular artifacts in a generated graph shaped like a
+ * repository, where most POMs depend on a few widely used ones, against the same
+ * search on a HashMap of "groupId:artifactId:version" strings to lists of dependents.
+ * Run with the main method from the test classpath, with "-jvmArgs -Xmx4g" for the
+ * larger sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DependencyGraphBenchmark {
+
+	private static final Set<EdgeType> TRANSITIVE = EnumSet.of(EdgeType.DEPENDENCY);
+	private static final int EDGES_PER_NODE = 8;
+	private static final int QUERIES = 16;
+
+	@Param({"100000", "1000000"})
+	public int nodes;
+
+	private DependencyGraph graph;
+	private Map<String, List<String>> dependentsMap;
+
+	@Setup
+	public void setUp() {
+
+		Random random = new Random(42);
+		DependencyGraph.Builder builder = new DependencyGraph.Builder(nodes);
+		dependentsMap = new HashMap<>();
+
+		for (int node = 0; node < nodes; node++) {
+			builder.addNode(name(node));
+		}
+		for (int node = 1; node < nodes; node++) {
+			for (int i = 0; i < EDGES_PER_NODE; i++) {
+				// Skewed towards older, lower ids, which keeps the graph acyclic
+				int target = (int) (node * Math.pow(random.nextDouble(), 3));
+				builder.addEdge(node, target, EdgeType.DEPENDENCY);
+				dependentsMap.computeIfAbsent(name(target), key -> new ArrayList<>()).add(name(node));
+			}
+		}
+
+		graph = builder.build();
+	}
+
+	private static String name(int node) {
+		return GavInterner.gav("org.example.group" + (node % 1000), "artifact" + node, "1.0." + (node % 7));
+	}
+
+	@Benchmark
+	public int csrTransitiveDependents() {
+		int reached = 0;
+		for (int node = 0; node < QUERIES; node++) {
+			reached += graph.transitiveDependents(node * (nodes / QUERIES), TRANSITIVE).cardinality();
+		}
+		return reached;
+	}
+
+	@Benchmark
+	public int mapTransitiveDependents() {
+		int reached = 0;
+		for (int node = 0; node < QUERIES; node++) {
+			Set<String> visited = new HashSet<>();
+			ArrayDeque<String> queue = new ArrayDeque<>();
+			queue.add(name(node * (nodes / QUERIES)));
+
+			while (!queue.isEmpty()) {
+				for (String dependent : dependentsMap.getOrDefault(queue.poll(), new ArrayList<>())) {
+					if (visited.add(dependent)) queue.add(dependent);
+				}
+			}
+			reached += visited.size();
+		}
+		return reached;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(DependencyGraphBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
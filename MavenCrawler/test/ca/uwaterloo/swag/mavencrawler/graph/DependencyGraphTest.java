@@ -0,0 +1,166 @@
+package ca.uwaterloo.swag.mavencrawler.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import ca.uwaterloo.swag.mavencrawler.graph.DependencyGraph.EdgeType;
+import ca.uwaterloo.swag.mavencrawler.pojo.Dependency;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+
+public class DependencyGraphTest {
+
+	private static final Set<EdgeType> ALL = EnumSet.allOf(EdgeType.class);
+	private static final Set<EdgeType> TRANSITIVE = EnumSet.of(EdgeType.DEPENDENCY);
+
+	private DependencyGraph graph;
+
+	private static VersionPom versionPom(String gav, Dependency... dependencies) {
+		String[] parts = gav.split(":");
+		VersionPom versionPom = new VersionPom();
+		versionPom.setGroupId(parts[0]);
+		versionPom.setArtifactId(parts[1]);
+		versionPom.setVersion(parts[2]);
+		versionPom.setDependencies(Arrays.asList(dependencies));
+		return versionPom;
+	}
+
+	private static Dependency dependency(String gav, String scope) {
+		String[] parts = gav.split(":");
+		Dependency dependency = new Dependency(parts[0], parts[1], parts.length > 2 ? parts[2] : null);
+		dependency.setScope(scope);
+		return dependency;
+	}
+
+	@Before
+	public void setUp() {
+
+		// app -> lib -> core -> util, app -test-> junit, lib -> util, app has a parent and imports a BOM
+		VersionPom app = versionPom("g:app:1", dependency("g:lib:1", null), dependency("junit:junit:4.12", "test"),
+				dependency("g:unversioned", null));
+		app.setParentGroupId("g");
+		app.setParentArtifactId("parent");
+		app.setParentVersion("1");
+		app.setImportedDependencies(Arrays.asList(dependency("g:bom:1", "import")));
+
+		DependencyGraph.Builder builder = new DependencyGraph.Builder();
+		builder.addVersionPom(app);
+		builder.addVersionPom(versionPom("g:lib:1", dependency("g:core:1", "runtime"), dependency("g:util:1", null)));
+		builder.addVersionPom(versionPom("g:core:1", dependency("g:util:1", null)));
+		builder.addVersionPom(versionPom("junit:junit:4.12", dependency("org.hamcrest:hamcrest-core:1.3", null)));
+		builder.addVersionPom(new VersionPom());
+
+		graph = builder.build();
+	}
+
+	private int node(String gav) {
+		String[] parts = gav.split(":");
+		return graph.find(parts[0], parts[1], parts[2]);
+	}
+
+	private int[] nodes(String... gavs) {
+		int[] nodes = new int[gavs.length];
+		for (int i = 0; i < gavs.length; i++) {
+			nodes[i] = node(gavs[i]);
+		}
+		Arrays.sort(nodes);
+		return nodes;
+	}
+
+	private static int[] sorted(int[] nodes) {
+		Arrays.sort(nodes);
+		return nodes;
+	}
+
+	@Test
+	public void testNodesAndEdges() {
+		assertEquals(8, graph.nodeCount());
+		assertEquals(8, graph.edgeCount());
+		assertEquals(-1, graph.find("g", "missing", "1"));
+		assertEquals("g:app:1", graph.gav(node("g:app:1")));
+	}
+
+	@Test
+	public void testDirectDependencies() {
+		assertArrayEquals(nodes("g:lib:1", "junit:junit:4.12", "g:parent:1", "g:bom:1"),
+				sorted(graph.dependencies(node("g:app:1"), ALL)));
+		assertArrayEquals(nodes("g:lib:1"), graph.dependencies(node("g:app:1"), TRANSITIVE));
+		assertArrayEquals(nodes("g:parent:1"), graph.dependencies(node("g:app:1"), EnumSet.of(EdgeType.PARENT)));
+		assertArrayEquals(nodes("g:bom:1"), graph.dependencies(node("g:app:1"), EnumSet.of(EdgeType.IMPORT)));
+		assertEquals(0, graph.dependencies(node("g:util:1"), ALL).length);
+	}
+
+	@Test
+	public void testDirectDependents() {
+		assertArrayEquals(nodes("g:lib:1", "g:core:1"), sorted(graph.dependents(node("g:util:1"), ALL)));
+		assertArrayEquals(nodes("g:app:1"), graph.dependents(node("junit:junit:4.12"), ALL));
+		assertEquals(0, graph.dependents(node("junit:junit:4.12"), TRANSITIVE).length);
+	}
+
+	@Test
+	public void testTransitiveDependencies() {
+
+		// When
+		BitSet transitive = graph.transitiveDependencies(node("g:app:1"), TRANSITIVE);
+		BitSet all = graph.transitiveDependencies(node("g:app:1"), ALL);
+
+		// Then
+		assertArrayEquals(nodes("g:lib:1", "g:core:1", "g:util:1"), transitive.stream().toArray());
+		assertArrayEquals(nodes("g:lib:1", "g:core:1", "g:util:1", "junit:junit:4.12", "org.hamcrest:hamcrest-core:1.3",
+				"g:parent:1", "g:bom:1"), all.stream().toArray());
+	}
+
+	@Test
+	public void testTransitiveDependents() {
+
+		// When
+		BitSet dependents = graph.transitiveDependents(node("g:util:1"), TRANSITIVE);
+
+		// Then
+		assertArrayEquals(nodes("g:app:1", "g:lib:1", "g:core:1"), dependents.stream().toArray());
+		assertArrayEquals(nodes("junit:junit:4.12"), graph.transitiveDependents(node("org.hamcrest:hamcrest-core:1.3"), TRANSITIVE).stream().toArray());
+	}
+
+	@Test
+	public void testCycle() {
+
+		// Given
+		DependencyGraph.Builder builder = new DependencyGraph.Builder(4);
+		int a = builder.addNode("g:a:1");
+		int b = builder.addNode("g:b:1");
+		builder.addEdge(a, b, EdgeType.DEPENDENCY);
+		builder.addEdge(b, a, EdgeType.DEPENDENCY);
+
+		// When
+		DependencyGraph cycle = builder.build();
+
+		// Then
+		assertEquals(2, cycle.transitiveDependencies(a, TRANSITIVE).cardinality());
+	}
+
+	@Test
+	public void testManyEdges() {
+
+		// Given, a chain longer than the initial arrays
+		DependencyGraph.Builder builder = new DependencyGraph.Builder();
+		for (int i = 0; i < 5000; i++) {
+			builder.addEdge(builder.addNode("g:a:" + i), builder.addNode("g:a:" + (i + 1)), EdgeType.DEPENDENCY);
+		}
+
+		// When
+		DependencyGraph chain = builder.build();
+
+		// Then
+		assertEquals(5001, chain.nodeCount());
+		assertEquals(5000, chain.transitiveDependencies(0, TRANSITIVE).cardinality());
+		assertEquals(5000, chain.transitiveDependents(5000, TRANSITIVE).cardinality());
+	}
+
+}
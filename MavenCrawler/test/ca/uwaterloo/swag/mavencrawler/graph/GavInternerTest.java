@@ -0,0 +1,55 @@
+package ca.uwaterloo.swag.mavencrawler.graph;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class GavInternerTest {
+
+	@Test
+	public void testInternAndFind() {
+
+		// Given
+		GavInterner interner = new GavInterner();
+
+		// When
+		int log4j = interner.intern("log4j:log4j:1.2.16");
+		int junit = interner.intern("junit:junit:4.12");
+
+		// Then
+		assertEquals(0, log4j);
+		assertEquals(1, junit);
+		assertEquals(log4j, interner.intern(new String("log4j:log4j:1.2.16")));
+		assertEquals(junit, interner.find("junit:junit:4.12"));
+		assertEquals(-1, interner.find("junit:junit:4.11"));
+		assertEquals("junit:junit:4.12", interner.get(junit));
+		assertEquals(2, interner.size());
+	}
+
+	@Test
+	public void testGrowing() {
+
+		// Given
+		GavInterner interner = new GavInterner(2);
+
+		// When
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i, interner.intern(GavInterner.gav("g", "a" + i, "1")));
+		}
+		interner.trim();
+		int added = interner.intern("g:new:1");
+
+		// Then
+		assertEquals(10000, added);
+		assertEquals(10001, interner.size());
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(i, interner.find("g:a" + i + ":1"));
+		}
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testUnknownId() {
+		new GavInterner().get(0);
+	}
+
+}
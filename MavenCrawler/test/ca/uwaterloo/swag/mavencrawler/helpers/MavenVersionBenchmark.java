@@ -0,0 +1,70 @@
+package ca.uwaterloo.swag.mavencrawler.helpers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Sorts the versions of a long-lived artifact with cached sort keys, against parsing
+ * both versions on each comparison.
+ * Run with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MavenVersionBenchmark {
+
+	private static final String[] QUALIFIERS = {"", "-SNAPSHOT", "-alpha-1", "-beta2", "-RC1", ".Final", "-sp1"};
+
+	private List<String> versions;
+
+	@Setup
+	public void setUp() {
+
+		Random random = new Random(42);
+		versions = new ArrayList<>();
+		for (int i = 0; i < 2000; i++) {
+			versions.add(random.nextInt(5) + "." + random.nextInt(20) + "." + random.nextInt(30) +
+					QUALIFIERS[random.nextInt(QUALIFIERS.length)]);
+		}
+	}
+
+	@Benchmark
+	public List<String> sortWithCachedKeys() {
+		List<String> sorted = new ArrayList<>(versions);
+		Collections.shuffle(sorted, new Random(1));
+		sorted.sort(MavenVersion.COMPARATOR);
+		return sorted;
+	}
+
+	@Benchmark
+	public List<String> sortParsingEachComparison() {
+		List<String> sorted = new ArrayList<>(versions);
+		Collections.shuffle(sorted, new Random(1));
+		sorted.sort((v1, v2) -> MavenVersion.computeSortKey(v1).compareTo(MavenVersion.computeSortKey(v2)));
+		return sorted;
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(MavenVersionBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
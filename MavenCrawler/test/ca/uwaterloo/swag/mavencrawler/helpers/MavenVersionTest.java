@@ -0,0 +1,113 @@
+package ca.uwaterloo.swag.mavencrawler.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MavenVersionTest {
+
+	private static void assertOrder(String... versions) {
+		for (int i = 0; i < versions.length - 1; i++) {
+			assertTrue(versions[i] + " < " + versions[i + 1], MavenVersion.compare(versions[i], versions[i + 1]) < 0);
+			assertTrue(versions[i + 1] + " > " + versions[i], MavenVersion.compare(versions[i + 1], versions[i]) > 0);
+		}
+	}
+
+	private static void assertEqual(String... versions) {
+		for (String version : versions) {
+			assertEquals(versions[0] + " = " + version, 0, MavenVersion.compare(versions[0], version));
+			assertEquals(MavenVersion.sortKey(versions[0]), MavenVersion.sortKey(version));
+		}
+	}
+
+	@Test
+	public void testNumbers() {
+		assertOrder("1", "1.0.1", "1.1", "1.9", "1.10", "1.10.1", "2", "10", "100", "20180101120000");
+		assertOrder("1.0.0.1", "1.0.1", "1.1");
+		assertEqual("1", "1.0", "1.0.0", "01", "1.00", "1-0");
+	}
+
+	@Test
+	public void testQualifiers() {
+		assertOrder("1-alpha", "1-alpha-1", "1-alpha-2", "1-beta", "1-milestone", "1-rc", "1-snapshot", "1", "1-sp",
+				"1-abc", "1-abd", "1-1", "1.1");
+		assertOrder("1.0-alpha1", "1.0-alpha2", "1.0-alpha10", "1.0-beta1", "1.0-M1", "1.0-RC1", "1.0-SNAPSHOT", "1.0",
+				"1.0.1-SNAPSHOT", "1.0.1");
+		assertOrder("1.0-foo", "1.0-foo1", "1.0-foobar");
+	}
+
+	@Test
+	public void testAliases() {
+		assertEqual("1.0-alpha1", "1.0a1", "1.0-a1", "1-alpha-1");
+		assertEqual("1.0-beta2", "1.0b2");
+		assertEqual("1.0-milestone3", "1.0-m3");
+		assertEqual("1.0-rc1", "1.0-cr1", "1.0-RC-1");
+		assertEqual("1", "1-ga", "1.final", "1.0.0.RELEASE", "1.0.0.GA", "1.0.0.Final");
+		assertOrder("1.0-alpha1", "1.0-a");
+	}
+
+	@Test
+	public void testCommonSchemes() {
+		assertOrder("4.3.0.M1", "4.3.0.RC1", "4.3.0.RC2", "4.3.0.RELEASE", "4.3.1.RELEASE",
+				"4.3.10.RELEASE");
+		assertOrder("5.2.9.Final", "5.2.10.Beta1", "5.2.10.CR1", "5.2.10.Final", "5.2.10.SP1");
+		assertOrder("r03", "r09", "10.0-rc1", "10.0", "10.0.1", "23.0", "23.0-android", "23.0-jre");
+		assertOrder("1.0-20180101.120000-1", "1.0-20180101.120000-2", "1.0-20180102.080000-1");
+	}
+
+	@Test
+	public void testSortKeys() {
+
+		// Given
+		List<String> versions = new ArrayList<>(Arrays.asList("1.10", "1.9", "1.0-SNAPSHOT", "1.0", "1.0.1", "1.1-rc1",
+				"2.0-beta", "2.0", "1.1"));
+		List<String> expected = Arrays.asList("1.0-SNAPSHOT", "1.0", "1.0.1", "1.1-rc1", "1.1", "1.9", "1.10", "2.0-beta",
+				"2.0");
+		Collections.shuffle(versions, new Random(42));
+
+		// When
+		versions.sort(MavenVersion.COMPARATOR);
+
+		// Then
+		assertEquals(expected, versions);
+		for (int i = 0; i < expected.size() - 1; i++) {
+			String key = MavenVersion.sortKey(expected.get(i));
+			assertTrue(key.compareTo(MavenVersion.sortKey(expected.get(i + 1))) < 0);
+			assertTrue(key.chars().allMatch(c -> c >= ' ' && c < 127));
+		}
+	}
+
+	@Test
+	public void testNonAsciiQualifier() {
+		assertTrue(MavenVersion.sortKey("1.0-\u00e9t\u00e9").chars().allMatch(c -> c >= ' ' && c < 127));
+		assertOrder("1.0", "1.0-\u00e9t\u00e9", "1.0-1");
+	}
+
+	@Test
+	public void testNull() {
+		assertNull(MavenVersion.sortKey(null));
+		assertOrder(null, "", "0.1");
+		assertEquals(0, MavenVersion.compare(null, null));
+	}
+
+	@Test
+	public void testCache() {
+
+		// When
+		String key = MavenVersion.sortKey("3.2.2");
+
+		// Then
+		assertSame(key, MavenVersion.sortKey(new String("3.2.2")));
+		assertTrue(MavenVersion.cachedKeys() <= MavenVersion.MAX_CACHED);
+	}
+
+}
@@ -0,0 +1,200 @@
+package ca.uwaterloo.swag.mavencrawler.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+
+public class HttpClientHandlerTest {
+
+	private static final byte[] CONTENT = "<metadata></metadata>".getBytes(StandardCharsets.UTF_8);
+
+	private HttpServer server;
+	private List<String> acceptEncodings;
+	private HttpClientHandler handler;
+
+	@Before
+	public void setUp() throws Exception {
+		acceptEncodings = new CopyOnWriteArrayList<>();
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/maven-metadata.xml", this::serveContent);
+		server.start();
+
+		handler = HttpClientHandler.newInstance(Logger.getLogger(this.getClass().getName()));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		handler.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testNewInstanceWithProperties() {
+
+		// Given
+		Properties properties = new Properties();
+		properties.setProperty("HTTP_CONNECT_TIMEOUT", "1000");
+		properties.setProperty("HTTP_READ_TIMEOUT", "2000");
+		properties.setProperty("HTTP_CONNECTION_REQUEST_TIMEOUT", "3000");
+		properties.setProperty("HTTP_MAX_CONNECTIONS", "10");
+		properties.setProperty("HTTP_MAX_PER_HOST", "2");
+		properties.setProperty("HTTP_PROXY_HOST", "proxy");
+		properties.setProperty("HTTP_PROXY_PORT", "3128");
+
+		// When
+		HttpClientHandler handler = HttpClientHandler.newInstance(null, properties);
+
+		// Then
+		assertEquals(1000, handler.getConnectTimeout());
+		assertEquals(2000, handler.getReadTimeout());
+		assertEquals(3000, handler.getConnectionRequestTimeout());
+		assertEquals(10, handler.getMaxConnections());
+		assertEquals(2, handler.getMaxPerHost());
+		assertEquals(HttpClientHandler.DEFAULT_USER_AGENT, handler.getUserAgent());
+		assertEquals("proxy", handler.getProxyHost());
+		assertEquals(3128, handler.getProxyPort());
+	}
+
+	@Test
+	public void testNewInstanceWithDefaultProperties() {
+
+		// When
+		HttpClientHandler handler = HttpClientHandler.newInstance(null, new Properties());
+
+		// Then
+		assertEquals(HttpClientHandler.DEFAULT_CONNECT_TIMEOUT, handler.getConnectTimeout());
+		assertEquals(HttpClientHandler.DEFAULT_READ_TIMEOUT, handler.getReadTimeout());
+		assertEquals(HttpClientHandler.DEFAULT_CONNECTION_REQUEST_TIMEOUT, handler.getConnectionRequestTimeout());
+		assertEquals(HttpClientHandler.DEFAULT_MAX_CONNECTIONS, handler.getMaxConnections());
+		assertEquals(HttpClientHandler.DEFAULT_MAX_PER_HOST, handler.getMaxPerHost());
+		assertNull(handler.getProxyHost());
+	}
+
+	@Test
+	public void testApplyToCrawlConfig() {
+
+		// Given
+		CrawlConfig config = new CrawlConfig();
+		handler.setConnectTimeout(1000);
+		handler.setReadTimeout(2000);
+		handler.setMaxConnections(10);
+		handler.setMaxPerHost(2);
+
+		// When
+		handler.applyTo(config);
+
+		// Then
+		assertEquals(1000, config.getConnectionTimeout());
+		assertEquals(2000, config.getSocketTimeout());
+		assertEquals(10, config.getMaxTotalConnections());
+		assertEquals(2, config.getMaxConnectionsPerHost());
+		assertEquals(HttpClientHandler.DEFAULT_USER_AGENT, config.getUserAgentString());
+	}
+
+	@Test
+	public void testOpenStreamShouldDecompress() throws IOException {
+
+		// When
+		byte[] content;
+		try (InputStream stream = handler.openStream(url("/maven-metadata.xml"))) {
+			content = readAll(stream);
+		}
+
+		// Then
+		assertArrayEquals(CONTENT, content);
+		assertEquals(1, acceptEncodings.size());
+		assertTrue(acceptEncodings.get(0).contains("gzip"));
+	}
+
+	@Test
+	public void testUncompressedRequest() throws IOException {
+
+		// When
+		handler.execute(handler.newGetRequest(url("/maven-metadata.xml"), false)).close();
+
+		// Then
+		assertEquals(1, acceptEncodings.size());
+		assertNull(acceptEncodings.get(0));
+	}
+
+	@Test
+	public void testConnectionIsReused() throws IOException {
+
+		// When
+		for (int i = 0; i < 3; i++) {
+			try (InputStream stream = handler.openStream(url("/maven-metadata.xml"))) {
+				assertArrayEquals(CONTENT, readAll(stream));
+			}
+		}
+
+		// Then
+		assertEquals(3, acceptEncodings.size());
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testNotFound() throws IOException {
+		handler.openStream(url("/missing.xml"));
+	}
+
+	private URL url(String path) throws IOException {
+		return new URL("http://localhost:" + server.getAddress().getPort() + path);
+	}
+
+	private static byte[] readAll(InputStream stream) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = stream.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+		}
+		return output.toByteArray();
+	}
+
+	private void serveContent(HttpExchange exchange) throws IOException {
+
+		String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		acceptEncodings.add(acceptEncoding);
+
+		byte[] body = CONTENT;
+
+		if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+			ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+			try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+				gzip.write(CONTENT);
+			}
+			body = compressed.toByteArray();
+			exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+		}
+
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream output = exchange.getResponseBody()) {
+			output.write(body);
+		}
+	}
+
+}
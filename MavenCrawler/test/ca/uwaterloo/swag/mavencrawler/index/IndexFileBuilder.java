@@ -0,0 +1,80 @@
+package ca.uwaterloo.swag.mavencrawler.index;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes index files in the same format as maven-indexer's IndexDataWriter.
+ */
+public class IndexFileBuilder {
+
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+	private final DataOutputStream output = new DataOutputStream(bytes);
+
+	public IndexFileBuilder(long timestamp) throws IOException {
+		output.writeByte(NexusIndexReader.SUPPORTED_VERSION);
+		output.writeLong(timestamp);
+	}
+
+	/**
+	 * @param fields name and value pairs
+	 */
+	public IndexFileBuilder addDocument(String... fields) throws IOException {
+		
+		output.writeInt(fields.length / 2);
+		for (int i = 0; i < fields.length; i += 2) {
+			output.writeByte(0);
+			output.writeUTF(fields[i]);
+			writeValue(fields[i + 1]);
+		}
+		
+		return this;
+	}
+
+	public IndexFileBuilder addArtifact(String groupId, String artifactId, String version, String classifier, 
+			String packaging, String name, String description) throws IOException {
+		
+		String uinfo = groupId + "|" + artifactId + "|" + version + "|" + (classifier == null ? "NA" : classifier + "|jar");
+		String info = packaging + "|1262304000000|1024|0|0|1|jar";
+		
+		return addDocument("u", uinfo, "i", info, "m", "1262304000000", "n", name, "d", description, 
+				"1", "da39a3ee5e6b4b0d3255bfef95601890afd80709");
+	}
+
+	/**
+	 * @return index without gzip compression
+	 */
+	public byte[] toByteArray() throws IOException {
+		output.flush();
+		return bytes.toByteArray();
+	}
+
+	public byte[] toGzip() throws IOException {
+		ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+			gzip.write(toByteArray());
+		}
+		return compressed.toByteArray();
+	}
+
+	public void writeGzip(File file) throws IOException {
+		Files.write(file.toPath(), toGzip());
+	}
+
+	/**
+	 * Int length followed by modified UTF-8, like DataOutput.writeUTF without its short length.
+	 */
+	private void writeValue(String value) throws IOException {
+		ByteArrayOutputStream utf = new ByteArrayOutputStream();
+		new DataOutputStream(utf).writeUTF(value);
+		byte[] encoded = utf.toByteArray();
+		
+		output.writeInt(encoded.length - 2);
+		output.write(encoded, 2, encoded.length - 2);
+	}
+
+}
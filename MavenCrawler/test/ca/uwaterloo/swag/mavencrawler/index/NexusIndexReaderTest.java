@@ -0,0 +1,160 @@
+package ca.uwaterloo.swag.mavencrawler.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+
+import org.junit.Test;
+
+public class NexusIndexReaderTest {
+
+	private static final long TIMESTAMP = 1528000000000L;
+
+	@Test
+	public void testReadHeader() throws IOException {
+
+		// Given
+		byte[] index = new IndexFileBuilder(TIMESTAMP).toGzip();
+
+		// When
+		try (NexusIndexReader reader = new NexusIndexReader(new ByteArrayInputStream(index))) {
+
+			// Then
+			assertEquals(1, reader.getVersion());
+			assertEquals(new Date(TIMESTAMP), reader.getTimestamp());
+			assertNull(reader.readArtifact());
+		}
+	}
+
+	@Test
+	public void testReadArtifacts() throws IOException {
+
+		// Given
+		byte[] index = new IndexFileBuilder(TIMESTAMP)
+				.addDocument("DESCRIPTOR", "NexusIndex", "IDXINFO", "1.0|central")
+				.addDocument("allGroups", "allGroups", "allGroupsList", "log4j|junit")
+				.addArtifact("log4j", "log4j", "1.2.16", null, "bundle", "Apache Log4j", "Apache Log4j 1.2")
+				.addArtifact("log4j", "log4j", "1.2.16", "sources", "bundle", "Apache Log4j", "Apache Log4j 1.2")
+				.addDocument("del", "junit|junit|3.7|NA", "m", "1262304000000")
+				.addArtifact("junit", "junit", "4.12", null, "jar", "JUnit", "")
+				.toGzip();
+
+		// When
+		try (NexusIndexReader reader = new NexusIndexReader(new ByteArrayInputStream(index))) {
+
+			IndexArtifact log4j = reader.readArtifact();
+			IndexArtifact log4jSources = reader.readArtifact();
+			IndexArtifact junit = reader.readArtifact();
+
+			// Then
+			assertEquals("log4j", log4j.getGroupId());
+			assertEquals("log4j", log4j.getArtifactId());
+			assertEquals("1.2.16", log4j.getVersion());
+			assertNull(log4j.getClassifier());
+			assertTrue(log4j.isMainArtifact());
+			assertEquals("jar", log4j.getExtension());
+			assertEquals("bundle", log4j.getPackaging());
+			assertEquals(new Date(1262304000000L), log4j.getLastModified());
+			assertEquals(1024, log4j.getSize());
+			assertEquals("Apache Log4j", log4j.getName());
+			assertEquals("Apache Log4j 1.2", log4j.getDescription());
+
+			assertEquals("sources", log4jSources.getClassifier());
+			assertEquals("jar", log4jSources.getExtension());
+
+			assertEquals("junit", junit.getGroupId());
+			assertEquals("4.12", junit.getVersion());
+
+			assertNull(reader.readArtifact());
+			assertEquals(6, reader.getDocumentsRead());
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testUnsupportedVersion() throws IOException {
+		byte[] index = new byte[] {2, 0, 0, 0, 0, 0, 0, 0, 0};
+		new NexusIndexReader(new ByteArrayInputStream(index), false).close();
+	}
+
+	@Test
+	public void testParseUinfo() {
+
+		IndexArtifact artifact = NexusIndexReader.parseUinfo("org.apache|commons-lang3|3.7|tests|jar");
+		assertEquals("org.apache", artifact.getGroupId());
+		assertEquals("commons-lang3", artifact.getArtifactId());
+		assertEquals("3.7", artifact.getVersion());
+		assertEquals("tests", artifact.getClassifier());
+		assertEquals("jar", artifact.getExtension());
+
+		artifact = NexusIndexReader.parseUinfo("org.apache|commons-lang3|3.7|NA");
+		assertNull(artifact.getClassifier());
+		assertNull(artifact.getExtension());
+
+		assertNull(NexusIndexReader.parseUinfo("org.apache|commons-lang3"));
+		assertNull(NexusIndexReader.parseUinfo("org.apache||3.7|NA"));
+	}
+
+	@Test
+	public void testParseInfo() {
+
+		// Given
+		IndexArtifact artifact = NexusIndexReader.parseUinfo("org.apache|commons-lang3|3.7|NA");
+
+		// When
+		NexusIndexReader.parseInfo("NA|abc|NA|0|0|0|pom", artifact);
+
+		// Then
+		assertNull(artifact.getPackaging());
+		assertNull(artifact.getLastModified());
+		assertEquals(-1, artifact.getSize());
+		assertEquals("pom", artifact.getExtension());
+	}
+
+	@Test
+	public void testDecodeModifiedUtf8() throws IOException {
+
+		// Given
+		String value = "Caf\u00e9 \u4e2d\u0000 ok";
+		byte[] index = new IndexFileBuilder(TIMESTAMP)
+				.addArtifact("g", "a", "1", null, "jar", value, "")
+				.toByteArray();
+
+		// When
+		try (NexusIndexReader reader = new NexusIndexReader(new ByteArrayInputStream(index), false)) {
+
+			// Then
+			assertEquals(value, reader.readArtifact().getName());
+		}
+
+		byte[] ascii = "plain".getBytes(StandardCharsets.US_ASCII);
+		assertEquals("plain", NexusIndexReader.decodeModifiedUtf8(ascii, ascii.length));
+	}
+
+	@Test
+	public void testLongValues() throws IOException {
+
+		// Given
+		StringBuilder description = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			description.append("description ");
+		}
+		byte[] index = new IndexFileBuilder(TIMESTAMP)
+				.addArtifact("g", "a", "1", null, "jar", "name", description.toString())
+				.addArtifact("g", "a", "2", null, "jar", "name", "short")
+				.toGzip();
+
+		// When
+		try (NexusIndexReader reader = new NexusIndexReader(new ByteArrayInputStream(index))) {
+
+			// Then
+			assertEquals(description.toString(), reader.readArtifact().getDescription());
+			assertEquals("short", reader.readArtifact().getDescription());
+		}
+	}
+
+}
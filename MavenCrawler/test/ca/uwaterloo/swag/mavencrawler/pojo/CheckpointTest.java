@@ -0,0 +1,115 @@
+package ca.uwaterloo.swag.mavencrawler.pojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.logging.Logger;
+
+import org.bson.BsonObjectId;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+public class CheckpointTest {
+
+	/**
+	 * please store Starter or RuntimeConfig in a static final field
+	 * if you want to use artifact store caching (or else disable caching)
+	 */
+	private static final MongodStarter starter = MongodStarter.getDefaultInstance();
+	private static MongodExecutable _mongodExe;
+	private static MongodProcess _mongod;
+	private static MongoDBHandler handler;
+
+	private MongoDatabase db;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		_mongodExe = starter.prepare(new MongodConfigBuilder()
+				.version(Version.Main.PRODUCTION)
+				.net(new Net("localhost", 12345, Network.localhostIsIPv6()))
+				.build());
+		_mongod = _mongodExe.start();
+
+		handler = MongoDBHandler.newInstance(Logger.getLogger(CheckpointTest.class.getName()));
+		handler.setHost("localhost");
+		handler.setPort(12345);
+		handler.setAuthEnabled(false);
+		handler.setDatabaseName("TestDatabase");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		_mongod.stop();
+		_mongodExe.stop();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		db = handler.getMongoDatabase();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.drop();
+		db = null;
+	}
+
+	@Test
+	public void testFindByNameNotFound() {
+
+		// When
+		Checkpoint checkpoint = Checkpoint.findByName("checkpoint", db);
+
+		// Then
+		assertNull(checkpoint);
+	}
+
+	@Test
+	public void testUpsertShouldReplaceLastId() {
+
+		// Given
+		BsonObjectId lastId1 = new BsonObjectId(new ObjectId());
+		BsonObjectId lastId2 = new BsonObjectId(new ObjectId());
+		Checkpoint.upsertInMongo("checkpoint", lastId1, db);
+
+		// When
+		Checkpoint.upsertInMongo("checkpoint", lastId2, db);
+
+		// Then
+		assertEquals(1, db.getCollection(Checkpoint.CHECKPOINT_COLLECTION).count());
+		Checkpoint found = Checkpoint.findByName("checkpoint", db);
+		assertNotNull(found);
+		assertEquals(lastId2, found.getLastId());
+		assertNotNull(found.getLastUpdated());
+	}
+
+	@Test
+	public void testDelete() {
+
+		// Given
+		Checkpoint.upsertInMongo("checkpoint", new BsonObjectId(new ObjectId()), db);
+
+		// When
+		Checkpoint.deleteFromMongo("checkpoint", db);
+
+		// Then
+		assertNull(Checkpoint.findByName("checkpoint", db));
+	}
+
+}
@@ -0,0 +1,148 @@
+package ca.uwaterloo.swag.mavencrawler.pojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.bson.Document;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+
+import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+public class CrawledPageTest {
+
+	/**
+	 * please store Starter or RuntimeConfig in a static final field
+	 * if you want to use artifact store caching (or else disable caching)
+	 */
+	private static final MongodStarter starter = MongodStarter.getDefaultInstance();
+	private static MongodExecutable _mongodExe;
+	private static MongodProcess _mongod;
+	private static MongoDBHandler handler;
+
+	private MongoDatabase db;
+
+	@BeforeClass
+	public static void setUpBeforeClass() throws Exception {
+		_mongodExe = starter.prepare(new MongodConfigBuilder()
+				.version(Version.Main.PRODUCTION)
+				.net(new Net("localhost", 12345, Network.localhostIsIPv6()))
+				.build());
+		_mongod = _mongodExe.start();
+
+		handler = MongoDBHandler.newInstance(Logger.getLogger(CrawledPageTest.class.getName()));
+		handler.setHost("localhost");
+		handler.setPort(12345);
+		handler.setAuthEnabled(false);
+		handler.setDatabaseName("TestDatabase");
+	}
+
+	@AfterClass
+	public static void tearDownAfterClass() throws Exception {
+		_mongod.stop();
+		_mongodExe.stop();
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		db = handler.getMongoDatabase();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		db.drop();
+		db = null;
+	}
+
+	@Test
+	public void testIndexesCreation() throws UnknownHostException, IOException {
+
+		// Given
+		MongoCollection<CrawledPage> collection = db.getCollection(CrawledPage.CRAWLEDPAGE_COLLECTION, CrawledPage.class);
+
+		// When
+		CrawledPage.checkIndexesInCollection(collection);
+
+		// Then
+		List<Document> indexes = collection.listIndexes().into(new ArrayList<Document>());
+		assertEquals(2, indexes.size());
+		Document indexKey = (Document) indexes.get(1).get("key");
+		assertNotNull(indexKey);
+		assertNotNull(indexKey.get("url"));
+	}
+
+	@Test
+	public void testFindByURLNotFound() {
+
+		// When
+		CrawledPage crawledPage = CrawledPage.findByURL("http://repo.com/group/", db);
+
+		// Then
+		assertNull(crawledPage);
+	}
+
+	@Test
+	public void testFindByURLs() {
+
+		// Given
+		Date date = new Date();
+		CrawledPage.upsertInMongo(Arrays.asList(
+				new CrawledPage("http://repo.com/group/a/", "\"a\"", null, date),
+				new CrawledPage("http://repo.com/group/b/", "\"b\"", null, date),
+				new CrawledPage("http://repo.com/other/", "\"other\"", null, date)), db);
+
+		// When
+		Map<String, CrawledPage> crawledPages = CrawledPage.findByURLs(Arrays.asList(
+				"http://repo.com/group/a/", "http://repo.com/group/b/", "http://repo.com/group/c/"), db);
+
+		// Then
+		assertEquals(2, crawledPages.size());
+		assertEquals("\"a\"", crawledPages.get("http://repo.com/group/a/").getEtag());
+		assertEquals("\"b\"", crawledPages.get("http://repo.com/group/b/").getEtag());
+	}
+
+	@Test
+	public void testUpsertShouldReplaceValidators() {
+
+		// Given
+		String url = "http://repo.com/group/";
+		Date date = new Date();
+		CrawledPage.upsertInMongo(new CrawledPage(url, "\"etag1\"", null, date), db);
+		assertEquals(1, db.getCollection(CrawledPage.CRAWLEDPAGE_COLLECTION).count());
+
+		// When
+		CrawledPage.upsertInMongo(new CrawledPage(url, "\"etag2\"", "Tue, 15 Nov 1994 12:45:26 GMT", date), db);
+
+		// Then
+		assertEquals(1, db.getCollection(CrawledPage.CRAWLEDPAGE_COLLECTION).count());
+		CrawledPage found = CrawledPage.findByURL(url, db);
+		assertNotNull(found);
+		assertEquals("\"etag2\"", found.getEtag());
+		assertEquals("Tue, 15 Nov 1994 12:45:26 GMT", found.getLastModified());
+		assertEquals(date, found.getLastChecked());
+	}
+
+}
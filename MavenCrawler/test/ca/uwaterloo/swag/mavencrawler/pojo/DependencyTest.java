@@ -0,0 +1,42 @@
+package ca.uwaterloo.swag.mavencrawler.pojo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class DependencyTest {
+
+	@Test
+	public void testScopeOrDefault() {
+
+		// Given
+		Dependency dependency = new Dependency("g", "a", "1");
+
+		// When, Then
+		assertEquals("compile", dependency.scopeOrDefault());
+		dependency.setScope("test");
+		assertEquals("test", dependency.scopeOrDefault());
+	}
+
+	@Test
+	public void testTransitive() {
+
+		// Given
+		Dependency dependency = new Dependency("g", "a", "1");
+
+		// When, Then
+		assertTrue(dependency.transitive());
+		dependency.setScope("runtime");
+		assertTrue(dependency.transitive());
+		dependency.setOptional(true);
+		assertFalse(dependency.transitive());
+		dependency.setOptional(null);
+		for (String scope : new String[] {"test", "provided", "system", "import"}) {
+			dependency.setScope(scope);
+			assertFalse(dependency.transitive());
+		}
+	}
+
+}
@@ -3,14 +3,19 @@ package ca.uwaterloo.swag.mavencrawler.pojo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.bson.Document;
@@ -81,14 +86,14 @@ public class DownloadedTest {
 	public void testIndexesCreation() throws UnknownHostException, IOException {
 		
 		// Given
-		MongoCollection<Metadata> collection = db.getCollection(Downloaded.DOWNLOADED_COLLECTION, Metadata.class);
+		MongoCollection<Downloaded> collection = db.getCollection(Downloaded.DOWNLOADED_COLLECTION, Downloaded.class);
 		
 		// When
 		Downloaded.checkIndexesInCollection(collection);
 
 		// Then
 		List<Document> indexes = collection.listIndexes().into(new ArrayList<Document>());
-		assertEquals(2, indexes.size());
+		assertEquals(3, indexes.size());
 		Document idKey = (Document) indexes.get(0).get("key");
 		assertNotNull(idKey);
 		assertNotNull(idKey.get("_id"));
@@ -98,6 +103,9 @@ public class DownloadedTest {
 		assertNotNull(indexKey.get("artifactId"));
 		assertNotNull(indexKey.get("repository"));
 		assertNotNull(indexKey.get("version"));
+		Document expiryKey = (Document) indexes.get(2).get("key");
+		assertNotNull(expiryKey.get("expiresAt"));
+		assertEquals(0L, ((Number) indexes.get(2).get("expireAfterSeconds")).longValue());
 	}
 
 	@Test
@@ -159,6 +167,54 @@ public class DownloadedTest {
 		assertEquals(cal2.getTime(), documents.get(1).get("downloadDate"));
 	}
 
+	@Test
+	public void testUpsertWithoutDigestsShouldKeepDigests() {
+
+		// Given
+		Downloaded downloaded1 = new Downloaded("groupId", "artifactId", "repo", "1", new Date(), "path1");
+		downloaded1.setSha1("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+		downloaded1.setSha256("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855");
+		Downloaded downloaded2 = new Downloaded("groupId", "artifactId", "repo", "1", new Date(), "path1");
+
+		MongoCollection<Document> collection = db.getCollection(Downloaded.DOWNLOADED_COLLECTION);
+		Downloaded.upsertInMongo(downloaded1, db, null);
+
+		// When
+		Downloaded.upsertInMongo(downloaded2, db, null);
+
+		// Then
+		assertEquals(1, collection.count());
+		Document document = collection.find().first();
+		assertEquals(downloaded1.getSha1(), document.get("sha1"));
+		assertEquals(downloaded1.getSha256(), document.get("sha256"));
+	}
+
+	@Test
+	public void testFindInOtherRepositories() {
+
+		// Given
+		Downloaded central = new Downloaded("groupId", "artifactId", "central", "1", new Date(), "path1");
+		central.setSha1("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+		Downloaded withoutDigest = new Downloaded("groupId", "artifactId", "google", "1", new Date(), "path2");
+		Downloaded otherVersion = new Downloaded("groupId", "artifactId", "google", "2", new Date(), "path3");
+		otherVersion.setSha1("0b2dbe11b251d595b35eb42fe85b3a3e15767aa0");
+		Downloaded sameRepository = new Downloaded("groupId", "artifactId", "jcenter", "1", new Date(), "path4");
+		sameRepository.setSha1("da39a3ee5e6b4b0d3255bfef95601890afd80709");
+
+		Downloaded.upsertInMongo(central, db, null);
+		Downloaded.upsertInMongo(withoutDigest, db, null);
+		Downloaded.upsertInMongo(otherVersion, db, null);
+		Downloaded.upsertInMongo(sameRepository, db, null);
+
+		// When
+		List<Downloaded> found = Downloaded.findInOtherRepositories("groupId", "artifactId", "jcenter", "1", db);
+
+		// Then
+		assertEquals(1, found.size());
+		assertEquals("central", found.get(0).getRepository());
+		assertEquals(central.getSha1(), found.get(0).getSha1());
+	}
+
 	@Test
 	public void testUpsertDownloadedShouldUpdate() {
 
@@ -220,4 +276,67 @@ public class DownloadedTest {
 		assertFalse(Downloaded.exists(downloaded2, db));
 	}
 
+	@Test
+	public void testFindDownloadedVersions() {
+
+		// Given
+		Downloaded.upsertInMongo(new Downloaded("groupId", "artifactId", "repo", "1", new Date(), "path1"), db, null);
+		Downloaded.upsertInMongo(new Downloaded("groupId", "artifactId", "repo", "3", new Date(), "path3"), db, null);
+		Downloaded.upsertInMongo(new Downloaded("groupId", "artifactId", "otherRepo", "2", new Date(), "path2"), db, null);
+		Downloaded.upsertInMongo(new Downloaded("groupId", "otherArtifact", "repo", "2", new Date(), "path2"), db, null);
+		
+		// When
+		Set<String> downloadedVersions = Downloaded.findDownloadedVersions(
+				"groupId", "artifactId", "repo", Arrays.asList("1", "2", "3", "4"), db);
+		
+		// Then
+		assertEquals(new HashSet<>(Arrays.asList("1", "3")), downloadedVersions);
+		assertTrue(Downloaded.findDownloadedVersions("groupId", "artifactId", "repo", new ArrayList<>(), db).isEmpty());
+	}
+
+	@Test
+	public void testFindByVersions() {
+
+		// Given
+		Downloaded verified = new Downloaded("groupId", "artifactId", "repo", "1", new Date(), "path1");
+		verified.setSha1("sha1");
+		Downloaded.upsertInMongo(verified, db, null);
+		Downloaded missing = new Downloaded("groupId", "artifactId", "repo", "2", new Date(), null);
+		missing.setExpiresAt(new Date(System.currentTimeMillis() + 60000));
+		Downloaded.upsertInMongo(missing, db, null);
+		Downloaded otherRepo = new Downloaded("groupId", "artifactId", "otherRepo", "3", new Date(), "path3");
+		otherRepo.setSha1("sha1");
+		Downloaded.upsertInMongo(otherRepo, db, null);
+		
+		// When
+		Map<String, Downloaded> found = Downloaded.findByVersions(
+				"groupId", "artifactId", "repo", Arrays.asList("1", "2", "3"), db);
+		
+		// Then
+		assertEquals(2, found.size());
+		assertEquals("path1", found.get("1").getDownloadPath());
+		assertEquals("sha1", found.get("1").getSha1());
+		assertNull(found.get("1").getExpiresAt());
+		assertNull(found.get("2").getDownloadPath());
+		assertEquals(missing.getExpiresAt(), found.get("2").getExpiresAt());
+		assertTrue(Downloaded.findByVersions("groupId", "artifactId", "repo", new ArrayList<>(), db).isEmpty());
+	}
+
+	@Test
+	public void testUpsertWithoutExpiryShouldClearIt() {
+
+		// Given
+		Downloaded missing = new Downloaded("groupId", "artifactId", "repo", "1", new Date(), null);
+		missing.setExpiresAt(new Date(System.currentTimeMillis() + 60000));
+		Downloaded.upsertInMongo(missing, db, null);
+		
+		// When
+		Downloaded.upsertInMongo(new Downloaded("groupId", "artifactId", "repo", "1", new Date(), "path1"), db, null);
+		
+		// Then
+		Document document = db.getCollection(Downloaded.DOWNLOADED_COLLECTION).find().first();
+		assertEquals("path1", document.get("downloadPath"));
+		assertFalse(document.containsKey("expiresAt"));
+	}
+
 }
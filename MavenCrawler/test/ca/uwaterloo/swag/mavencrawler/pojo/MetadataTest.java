@@ -3,6 +3,7 @@ package ca.uwaterloo.swag.mavencrawler.pojo;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
@@ -11,6 +12,7 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Date;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.logging.Logger;
@@ -72,6 +74,9 @@ public class MetadataTest {
 	@Before
 	public void setUp() throws Exception {
 		db = handler.getMongoDatabase();
+		
+		// Same unique index created by MongoDBHandler on connection
+		Metadata.checkIndexesInCollection(db.getCollection(Metadata.METADATA_COLLECTION, Metadata.class));
 	}
 
 	@After
@@ -178,9 +183,11 @@ public class MetadataTest {
 		assertEquals(1, collection.count());
 		
 		// When
+		cal = Calendar.getInstance();
+		cal.set(2017, 1, 1, 0, 0, 0);
 		metadata2.setLastUpdated(cal.getTime());
 		Metadata.upsertInMongo(metadata2, db, null);
-		
+
 		// Then
 		ArrayList<Document> documents = collection.find().into(new ArrayList<Document>());
 		assertNotNull(documents);
@@ -189,7 +196,7 @@ public class MetadataTest {
 		
 		// When
 		cal = Calendar.getInstance();
-		cal.set(2017, 1, 1, 0, 0, 0);
+		cal.set(2017, 1, 1, 0, 0, 2);
 		metadata2.setLastUpdated(cal.getTime());
 		Metadata.upsertInMongo(metadata2, db, null);
 
@@ -197,21 +204,107 @@ public class MetadataTest {
 		documents = collection.find().into(new ArrayList<Document>());
 		assertNotNull(documents);
 		assertEquals(1, documents.size());
-		assertEquals(Arrays.asList("1", "2"), documents.get(0).get("versions"));
+		assertEquals(Arrays.asList("1", "2", "3"), documents.get(0).get("versions"));
+	}
+
+	@Test
+	public void testMetadataWithSameDateShouldAddVersions() {
+
+		// Given
+		Metadata metadata1 = new Metadata();
+		Metadata metadata2 = new Metadata();
+		metadata1.setGroupId("group");
+		metadata2.setGroupId("group");
+		metadata1.setArtifactId("artifact");
+		metadata2.setArtifactId("artifact");
+		metadata1.setVersions(Arrays.asList("1", "2"));
+		metadata2.setVersions(Arrays.asList("2", "3"));
+		Date lastUpdated = new Date();
+		metadata1.setLastUpdated(lastUpdated);
+		metadata2.setLastUpdated(lastUpdated);
+
+		MongoCollection<Document> collection = db.getCollection(Metadata.METADATA_COLLECTION);
+		Metadata.upsertInMongo(metadata1, db, null);
 		
 		// When
-		cal = Calendar.getInstance();
-		cal.set(2017, 1, 1, 0, 0, 2);
-		metadata2.setLastUpdated(cal.getTime());
 		Metadata.upsertInMongo(metadata2, db, null);
-
+		
 		// Then
-		documents = collection.find().into(new ArrayList<Document>());
-		assertNotNull(documents);
+		ArrayList<Document> documents = collection.find().into(new ArrayList<Document>());
 		assertEquals(1, documents.size());
 		assertEquals(Arrays.asList("1", "2", "3"), documents.get(0).get("versions"));
 	}
 
+	@Test
+	public void testMetadataWithoutDateShouldNotUpdateDatedMetadata() {
+
+		// Given
+		Metadata metadata1 = new Metadata();
+		Metadata metadata2 = new Metadata();
+		metadata1.setGroupId("group");
+		metadata2.setGroupId("group");
+		metadata1.setArtifactId("artifact");
+		metadata2.setArtifactId("artifact");
+		metadata1.setVersions(Arrays.asList("1", "2"));
+		metadata2.setVersions(Arrays.asList("2", "3"));
+		metadata1.setLastUpdated(new Date());
+
+		MongoCollection<Document> collection = db.getCollection(Metadata.METADATA_COLLECTION);
+		Metadata.upsertInMongo(metadata1, db, null);
+		
+		// When
+		Metadata.upsertInMongo(metadata2, db, null);
+		
+		// Then
+		ArrayList<Document> documents = collection.find().into(new ArrayList<Document>());
+		assertEquals(1, documents.size());
+		assertEquals(Arrays.asList("1", "2"), documents.get(0).get("versions"));
+	}
+
+	@Test
+	public void testUpsertMetadataList() {
+
+		// Given
+		Calendar cal = Calendar.getInstance();
+		cal.set(2017, 1, 1, 0, 0, 1);
+		
+		Metadata saved = new Metadata();
+		saved.setGroupId("group");
+		saved.setArtifactId("artifact1");
+		saved.setVersions(Arrays.asList("1"));
+		saved.setLastUpdated(cal.getTime());
+		Metadata.upsertInMongo(saved, db, null);
+
+		Metadata newer = new Metadata();
+		newer.setGroupId("group");
+		newer.setArtifactId("artifact1");
+		newer.setVersions(Arrays.asList("2"));
+		cal.set(2017, 1, 1, 0, 0, 2);
+		newer.setLastUpdated(cal.getTime());
+
+		Metadata older = new Metadata();
+		older.setGroupId("group");
+		older.setArtifactId("artifact1");
+		older.setVersions(Arrays.asList("0"));
+		cal.set(2017, 1, 1, 0, 0, 0);
+		older.setLastUpdated(cal.getTime());
+
+		Metadata other = new Metadata();
+		other.setGroupId("group");
+		other.setArtifactId("artifact2");
+		other.setVersions(Arrays.asList("3"));
+		
+		// When
+		Metadata.upsertInMongo(Arrays.asList(newer, older, other), db, null);
+		
+		// Then
+		MongoCollection<Document> collection = db.getCollection(Metadata.METADATA_COLLECTION);
+		ArrayList<Document> documents = collection.find().into(new ArrayList<Document>());
+		assertEquals(2, documents.size());
+		assertEquals(Arrays.asList("1", "2"), documents.get(0).get("versions"));
+		assertEquals(Arrays.asList("3"), documents.get(1).get("versions"));
+	}
+
 	@Test
 	public void testLibrariesURLs() throws MalformedURLException {
 		
@@ -260,6 +353,24 @@ public class MetadataTest {
 		// Then
 		assertEquals(expected, metadata.findURLForVersion("1.4.4"));
 	}
+
+	@Test
+	public void testFindPomURLForVersion() throws MalformedURLException {
+
+		// Given
+		Metadata metadata = new Metadata();
+		metadata.setGroupId("log4j");
+		metadata.setArtifactId("log4j");
+		metadata.setRepository("http://central.maven.org/maven2");
+		metadata.setVersions(Arrays.asList("1.2.16"));
+		
+		// When
+		URL pomURL = metadata.findPomURLForVersion("1.2.16");
+		
+		// Then
+		assertEquals(new URL("http://central.maven.org/maven2/log4j/log4j/1.2.16/log4j-1.2.16.pom"), pomURL);
+		assertNull(metadata.findPomURLForVersion("1.2.17"));
+	}
 	
 	@Test
 	public void testBuildJARFileNameForVersion() {
@@ -1,12 +1,15 @@
 package ca.uwaterloo.swag.mavencrawler.pojo;
 
+import static com.mongodb.client.model.Filters.eq;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.bson.Document;
@@ -20,6 +23,7 @@ import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
 
 import ca.uwaterloo.swag.mavencrawler.db.MongoDBHandler;
+import ca.uwaterloo.swag.mavencrawler.helpers.MavenVersion;
 import de.flapdoodle.embed.mongo.MongodExecutable;
 import de.flapdoodle.embed.mongo.MongodProcess;
 import de.flapdoodle.embed.mongo.MongodStarter;
@@ -84,7 +88,7 @@ public class VersionPomTest {
 
 		// Then
 		List<Document> indexes = collection.listIndexes().into(new ArrayList<Document>());
-		assertEquals(2, indexes.size());
+		assertEquals(4, indexes.size());
 		Document idKey = (Document) indexes.get(0).get("key");
 		assertNotNull(idKey);
 		assertNotNull(idKey.get("_id"));
@@ -94,6 +98,10 @@ public class VersionPomTest {
 		assertNotNull(indexKey.get("artifactId"));
 		assertNotNull(indexKey.get("version"));
 		assertNotNull(indexKey.get("repository"));
+		Document versionKeyIndexKey = (Document) indexes.get(2).get("key");
+		assertEquals(Arrays.asList("groupId", "artifactId", "versionKey"), new ArrayList<>(versionKeyIndexKey.keySet()));
+		Document indexOnlyIndexKey = (Document) indexes.get(3).get("key");
+		assertEquals(Arrays.asList("repository", "_id"), new ArrayList<>(indexOnlyIndexKey.keySet()));
 	}
 
 	@Test
@@ -179,4 +187,133 @@ public class VersionPomTest {
 		assertEquals(2, versionPoms.size());
 	}
 
+	@Test
+	public void testSaveDependencies() {
+
+		// Given
+		Dependency dependency1 = new Dependency("junit", "junit", "4.12");
+		Dependency dependency2 = new Dependency("org.ow2.asm", "asm", "6.0");
+		dependency1.setScope("test");
+		dependency2.setOptional(true);
+
+		VersionPom versionPom = new VersionPom();
+		versionPom.setGroupId("cglib");
+		versionPom.setArtifactId("cglib");
+		versionPom.setVersion("3.2.2");
+		versionPom.setParentGroupId("cglib");
+		versionPom.setParentArtifactId("cglib-parent");
+		versionPom.setParentVersion("3.2.2");
+		versionPom.setDependencies(Arrays.asList(dependency1, dependency2));
+
+		// When
+		VersionPom.upsertInMongo(Arrays.asList(versionPom), db, null);
+
+		// Then
+		List<VersionPom> versionPoms = VersionPom.findAllFromMongo(db);
+		assertEquals(1, versionPoms.size());
+		assertEquals("cglib-parent", versionPoms.get(0).getParentArtifactId());
+		assertEquals(Arrays.asList(dependency1, dependency2), versionPoms.get(0).getDependencies());
+		assertNull(versionPoms.get(0).getImportedDependencies());
+
+		// Default values are not saved
+		Document saved = (Document) db.getCollection("VersionPoms").find().first().get("dependencies", List.class).get(1);
+		assertEquals(new HashSet<>(Arrays.asList("groupId", "artifactId", "version", "optional")), saved.keySet());
+	}
+
+	private void saveVersions(String... versions) {
+		List<VersionPom> versionPoms = new ArrayList<>();
+		for (String version : versions) {
+			VersionPom versionPom = new VersionPom();
+			versionPom.setGroupId("group");
+			versionPom.setArtifactId("artifact");
+			versionPom.setVersion(version);
+			versionPoms.add(versionPom);
+		}
+		VersionPom.upsertInMongo(versionPoms, db, null);
+	}
+
+	@Test
+	public void testFindNewestVersions() {
+		
+		// Given
+		saveVersions("1.9", "1.10", "1.10.1-SNAPSHOT", "2.0-beta", "1.1", "2.0-alpha");
+		VersionPom.checkIndexesInCollection(db.getCollection("VersionPoms", VersionPom.class));
+		
+		// When
+		List<String> versions = VersionPom.findNewestVersions("group", "artifact", 3, db);
+		
+		// Then
+		assertEquals(Arrays.asList("2.0-beta", "2.0-alpha", "1.10.1-SNAPSHOT"), versions);
+		assertEquals(new ArrayList<>(), VersionPom.findNewestVersions("group", "other", 3, db));
+	}
+	
+	@Test
+	public void testFindVersionsInRange() {
+		
+		// Given
+		saveVersions("1.9", "1.10", "1.10.1-SNAPSHOT", "2.0-beta", "1.1", "2.0", "2.0.1");
+		
+		// When
+		List<String> versions = VersionPom.findVersionsInRange("group", "artifact", "1.9", "2.0", db);
+		
+		// Then
+		assertEquals(Arrays.asList("1.9", "1.10", "1.10.1-SNAPSHOT", "2.0-beta"), versions);
+		assertEquals(Arrays.asList("1.1", "1.9"), VersionPom.findVersionsInRange("group", "artifact", null, "1.10", db));
+		assertEquals(Arrays.asList("2.0", "2.0.1"), VersionPom.findVersionsInRange("group", "artifact", "2.0.0", null, db));
+	}
+	
+	@Test
+	public void testAddVersionKeys() {
+		
+		// Given
+		MongoCollection<Document> collection = db.getCollection("VersionPoms");
+		collection.insertOne(new Document("groupId", "group").append("artifactId", "artifact").append("version", "1.10"));
+		collection.insertOne(new Document("groupId", "group").append("artifactId", "artifact"));
+		saveVersions("1.9");
+		
+		// When
+		long updated = VersionPom.addVersionKeysInMongo(db, null);
+		
+		// Then
+		assertEquals(1, updated);
+		assertEquals(MavenVersion.sortKey("1.10"), collection.find(eq("version", "1.10")).first().getString("versionKey"));
+		assertEquals(Arrays.asList("1.10", "1.9"), VersionPom.findNewestVersions("group", "artifact", 10, db));
+	}
+
+	@Test
+	public void testFindPackagings() {
+		
+		// Given
+		VersionPom versionPom1 = new VersionPom();
+		VersionPom versionPom2 = new VersionPom();
+		versionPom1.setGroupId("group");
+		versionPom2.setGroupId("group");
+		versionPom1.setArtifactId("artifact");
+		versionPom2.setArtifactId("artifact");
+		versionPom1.setVersion("1");
+		versionPom2.setVersion("2");
+		versionPom1.setPackaging("aar");
+
+		VersionPom.upsertInMongo(Arrays.asList(versionPom1, versionPom2), db, null);
+		
+		// When
+		Map<String, String> packagings = VersionPom.findPackagings("group", "artifact", Arrays.asList("1", "2", "3"), db);
+		
+		// Then
+		assertEquals(2, packagings.size());
+		assertEquals("aar", packagings.get("1"));
+		assertEquals("jar", packagings.get("2"));
+	}
+	
+	@Test
+	public void testExtensionForPackaging() {
+		assertEquals("jar", VersionPom.extensionForPackaging(null));
+		assertEquals("jar", VersionPom.extensionForPackaging("jar"));
+		assertEquals("jar", VersionPom.extensionForPackaging("bundle"));
+		assertEquals("jar", VersionPom.extensionForPackaging("maven-plugin"));
+		assertEquals("aar", VersionPom.extensionForPackaging("aar"));
+		assertEquals("war", VersionPom.extensionForPackaging(" WAR "));
+		assertNull(VersionPom.extensionForPackaging("pom"));
+	}
+
 }
@@ -3,8 +3,10 @@ package ca.uwaterloo.swag.mavencrawler.xml;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -66,4 +68,23 @@ public class ArchetypeCatalogHandlerTest {
 		assertNull(archetype.getDescription());
 	}
 
+	@Test
+	public void testParsingDescriptionWithEntities() throws ParserConfigurationException, SAXException, IOException {
+		
+		// Given
+		String xml = "<archetype-catalog><archetypes><archetype><groupId>g</groupId><artifactId>a</artifactId>"
+				+ "<version>1.0</version><description>Spring &amp; Hibernate</description></archetype></archetypes>"
+				+ "</archetype-catalog>";
+		SAXParser parser = SAXParserFactory.newInstance().newSAXParser();
+		ArchetypeCatalogHandler handler = new ArchetypeCatalogHandler();
+		
+		// When
+		parser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), handler);
+		
+		// Then
+		assertEquals(1, handler.getArchetypes().size());
+		assertEquals("Spring & Hibernate", handler.getArchetypes().get(0).getDescription());
+		assertEquals("1.0", handler.getArchetypes().get(0).getVersion());
+	}
+
 }
@@ -0,0 +1,52 @@
+package ca.uwaterloo.swag.mavencrawler.xml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+public class ElementLookupTest {
+
+	private enum Element {
+		PROJECT,
+		GROUPID,
+		ARTIFACTID,
+		VERSION,
+		NONE
+	}
+
+	private ElementLookup<Element> lookup = new ElementLookup<>(EnumSet.range(Element.PROJECT, Element.VERSION), Element.NONE);
+
+	@Test
+	public void testKnownNames() {
+
+		// When, Then
+		assertEquals(Element.PROJECT, lookup.get("project"));
+		assertEquals(Element.GROUPID, lookup.get("groupId"));
+		assertEquals(Element.ARTIFACTID, lookup.get("ARTIFACTID"));
+		assertEquals(Element.VERSION, lookup.get("Version"));
+	}
+
+	@Test
+	public void testUnknownNames() {
+
+		// When, Then
+		assertEquals(Element.NONE, lookup.get("dependency"));
+		assertEquals(Element.NONE, lookup.get(""));
+		assertEquals(Element.NONE, lookup.get("versions"));
+		assertEquals(Element.NONE, lookup.get("groupI"));
+		assertEquals(Element.NONE, lookup.get("none"));
+	}
+
+	@Test
+	public void testEmptySet() {
+
+		// Given
+		ElementLookup<Element> empty = new ElementLookup<>(EnumSet.noneOf(Element.class), Element.NONE);
+
+		// When, Then
+		assertEquals(Element.NONE, empty.get("project"));
+	}
+
+}
@@ -3,8 +3,10 @@ package ca.uwaterloo.swag.mavencrawler.xml;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Calendar;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -17,6 +19,7 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
 
 import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
 import ca.uwaterloo.swag.mavencrawler.xml.MavenMetadataHandler;
@@ -97,4 +100,42 @@ public class MavenMetadataHandlerTest {
 		assertNull(metadata.getLastUpdated());
 	}
 
+	@Test
+	public void testVersionSplitInChunks() throws SAXException {
+		
+		// Given
+		AttributesImpl attributes = new AttributesImpl();
+		handler.startElement("", "", "versions", attributes);
+		handler.startElement("", "", "version", attributes);
+		
+		// When
+		handler.characters("1.2".toCharArray(), 0, 3);
+		handler.characters(".17".toCharArray(), 0, 3);
+		handler.endElement("", "", "version");
+		handler.characters("\n  ".toCharArray(), 0, 3);
+		handler.endElement("", "", "versions");
+		
+		// Then
+		assertEquals(1, handler.getMetadata().getVersions().size());
+		assertEquals("1.2.17", handler.getMetadata().getVersions().get(0));
+	}
+	
+	@Test
+	public void testUnknownAndEmptyElementsAreIgnored() throws SAXException, IOException {
+		
+		// Given
+		String xml = "<metadata><groupId>g</groupId><unknown>u</unknown><ARTIFACTID>a</ARTIFACTID>"
+				+ "<versioning><latest/><versions><version>1.0</version></versions></versioning></metadata>";
+		
+		// When
+		parser.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), handler);
+		
+		// Then
+		Metadata metadata = handler.getMetadata();
+		assertEquals("g", metadata.getGroupId());
+		assertEquals("a", metadata.getArtifactId());
+		assertNull(metadata.getLatest());
+		assertEquals(1, metadata.getVersions().size());
+	}
+
 }
@@ -0,0 +1,73 @@
+package ca.uwaterloo.swag.mavencrawler.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import ca.uwaterloo.swag.mavencrawler.pojo.Metadata;
+
+/**
+ * Per-document overhead of creating a new SAX parser versus reusing the pooled one.
+ * New parsers come from a factory configured as the pool's, so only reuse is measured.
+ * Run with the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SAXParserPoolBenchmark {
+
+	private byte[] metadata;
+
+	@Setup
+	public void setUp() throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InputStream stream = SAXParserPoolBenchmark.class.getResourceAsStream("../maven-metadata-example-multiple.xml");
+		byte[] buffer = new byte[8192];
+		int read;
+
+		while ((read = stream.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		stream.close();
+
+		metadata = out.toByteArray();
+	}
+
+	@Benchmark
+	public Metadata newParserPerDocument() throws Exception {
+		MavenMetadataHandler handler = new MavenMetadataHandler();
+		SAXParserPool.newFactory().newSAXParser().parse(new ByteArrayInputStream(metadata), handler);
+		return handler.getMetadata();
+	}
+
+	@Benchmark
+	public Metadata pooledParser() throws Exception {
+		MavenMetadataHandler handler = new MavenMetadataHandler();
+		SAXParserPool.parse(new ByteArrayInputStream(metadata), handler);
+		return handler.getMetadata();
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(SAXParserPoolBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
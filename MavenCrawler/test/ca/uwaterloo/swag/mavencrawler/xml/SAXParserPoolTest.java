@@ -0,0 +1,111 @@
+package ca.uwaterloo.swag.mavencrawler.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class SAXParserPoolTest {
+
+	@Test
+	public void testParserIsReusedInSameThread() throws ParserConfigurationException, SAXException, IOException {
+
+		// Given
+		SAXParser parser = SAXParserPool.getParser();
+
+		// When
+		MavenMetadataHandler handler1 = new MavenMetadataHandler();
+		MavenMetadataHandler handler2 = new MavenMetadataHandler();
+		SAXParserPool.parse(this.getClass().getResourceAsStream("../maven-metadata-example-single.xml"), handler1);
+		SAXParserPool.parse(this.getClass().getResourceAsStream("../maven-metadata-example-multiple.xml"), handler2);
+
+		// Then
+		assertSame(parser, SAXParserPool.getParser());
+		assertEquals(1, handler1.getMetadata().getVersions().size());
+		assertEquals(14, handler2.getMetadata().getVersions().size());
+	}
+
+	@Test
+	public void testParserIsNotSharedBetweenThreads() throws Exception {
+
+		// Given
+		SAXParser parser = SAXParserPool.getParser();
+		AtomicReference<SAXParser> otherParser = new AtomicReference<>();
+
+		// When
+		Thread thread = new Thread(() -> {
+			try {
+				otherParser.set(SAXParserPool.getParser());
+			} catch (ParserConfigurationException | SAXException e) {
+				// Leave reference empty
+			}
+		});
+		thread.start();
+		thread.join();
+
+		// Then
+		assertNotSame(parser, otherParser.get());
+	}
+
+	@Test
+	public void testParserIsResetAfterError() throws ParserConfigurationException, SAXException, IOException {
+
+		// Given
+		String malformed = "<metadata><groupId>group</metadata>";
+		try {
+			SAXParserPool.parse(new ByteArrayInputStream(malformed.getBytes(StandardCharsets.UTF_8)), new DefaultHandler());
+		} catch (SAXException e) {
+			// Expected
+		}
+
+		// When
+		MavenMetadataHandler handler = new MavenMetadataHandler();
+		SAXParserPool.parse(this.getClass().getResourceAsStream("../maven-metadata-example-single.xml"), handler);
+
+		// Then
+		assertEquals("log4j-group", handler.getMetadata().getGroupId());
+	}
+
+	@Test(expected = SAXException.class)
+	public void testDoctypeIsRejected() throws ParserConfigurationException, SAXException, IOException {
+
+		// Given
+		String xml = "<?xml version=\"1.0\"?>"
+				+ "<!DOCTYPE metadata SYSTEM \"http://unknown.invalid/metadata.dtd\" ["
+				+ "<!ENTITY external SYSTEM \"file:///etc/hostname\">]>"
+				+ "<metadata><groupId>group&external;</groupId></metadata>";
+		MavenMetadataHandler handler = new MavenMetadataHandler();
+
+		// When
+		SAXParserPool.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), handler);
+	}
+
+	@Test
+	public void testParserIsReusableAfterRejectedDoctype() throws ParserConfigurationException, SAXException, IOException {
+
+		// Given
+		String doctype = "<?xml version=\"1.0\"?><!DOCTYPE metadata><metadata><groupId>other</groupId></metadata>";
+		try {
+			SAXParserPool.parse(new ByteArrayInputStream(doctype.getBytes(StandardCharsets.UTF_8)), new MavenMetadataHandler());
+		} catch (SAXException e) {}
+		MavenMetadataHandler handler = new MavenMetadataHandler();
+
+		// When
+		SAXParserPool.parse(new ByteArrayInputStream("<metadata><groupId>group</groupId></metadata>".getBytes(StandardCharsets.UTF_8)), handler);
+
+		// Then
+		assertEquals("group", handler.getMetadata().getGroupId());
+	}
+
+}
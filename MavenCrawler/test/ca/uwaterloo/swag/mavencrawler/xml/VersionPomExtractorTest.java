@@ -0,0 +1,306 @@
+package ca.uwaterloo.swag.mavencrawler.xml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Test;
+
+import ca.uwaterloo.swag.mavencrawler.pojo.Dependency;
+import ca.uwaterloo.swag.mavencrawler.pojo.VersionPom;
+import ca.uwaterloo.swag.mavencrawler.xml.VersionPomExtractor.Field;
+
+public class VersionPomExtractorTest {
+
+	private static final String SCM_AFTER_DEPENDENCIES = "<project><groupId>g</groupId><artifactId>a</artifactId>"
+			+ "<version>1.0</version><dependencies><dependency><groupId>d</groupId><artifactId>d</artifactId>"
+			+ "<version>2.0</version></dependency></dependencies>"
+			+ "<scm><connection>scm:git:g/a</connection><url>http://g/a</url></scm></project>";
+
+	private static InputStream stream(String xml) {
+		return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testExtractingStandardVersionPom() throws XMLStreamException {
+
+		// Given, the POM is malformed in its build section
+		InputStream stream = this.getClass().getResourceAsStream("../log4j-1.2.16.pom");
+
+		// When
+		VersionPom versionPom = new VersionPomExtractor(VersionPomExtractor.PROJECT_FIELDS, true).extract(stream);
+
+		// Then
+		assertEquals("log4j-group", versionPom.getGroupId());
+		assertEquals("log4j-artifact", versionPom.getArtifactId());
+		assertEquals("Apache Log4j", versionPom.getName());
+		assertEquals("1.2.16", versionPom.getVersion());
+		assertEquals("Apache Log4j 1.2", versionPom.getDescription());
+		assertEquals("http://logging.apache.org/log4j/1.2/", versionPom.getProjectUrl());
+		assertEquals("scm:svn:http://svn.apache.org/repos/asf/logging/log4j/tags/v1_2_16", versionPom.getScmConnection());
+		assertEquals("http://svn.apache.org/viewvc/logging/log4j/tags/v1_2_16", versionPom.getScmUrl());
+		assertEquals("bundle", versionPom.getPackaging());
+	}
+
+	@Test
+	public void testExtractingVersionPomWithParent() throws XMLStreamException {
+
+		// Given
+		InputStream stream = this.getClass().getResourceAsStream("../cglib-3.2.2.pom");
+
+		// When
+		VersionPom versionPom = new VersionPomExtractor().extract(stream);
+
+		// Then
+		assertEquals("cglib", versionPom.getGroupId());
+		assertEquals("cglib", versionPom.getArtifactId());
+		assertEquals("3.2.2", versionPom.getVersion());
+		assertEquals("jar", versionPom.getPackaging());
+	}
+
+	@Test
+	public void testProjectValuesOverrideParent() throws XMLStreamException {
+
+		// Given
+		String pom = "<project><groupId> own </groupId><parent><groupId>parent</groupId><artifactId>parent-a</artifactId>"
+				+ "<version>2.0</version></parent><artifactId>a</artifactId></project>";
+
+		// When
+		VersionPom versionPom = new VersionPomExtractor().extract(stream(pom));
+
+		// Then
+		assertEquals("own", versionPom.getGroupId());
+		assertEquals("a", versionPom.getArtifactId());
+		assertEquals("2.0", versionPom.getVersion());
+	}
+
+	@Test
+	public void testExtractingSomeFields() throws XMLStreamException {
+
+		// Given
+		VersionPomExtractor extractor = new VersionPomExtractor(EnumSet.of(Field.GROUP_ID, Field.SCM_URL), false);
+
+		// When
+		VersionPom versionPom = extractor.extract(stream(SCM_AFTER_DEPENDENCIES));
+
+		// Then
+		assertEquals("g", versionPom.getGroupId());
+		assertEquals("http://g/a", versionPom.getScmUrl());
+		assertNull(versionPom.getArtifactId());
+		assertNull(versionPom.getVersion());
+		assertNull(versionPom.getScmConnection());
+	}
+
+	@Test
+	public void testStoppingAtBody() throws XMLStreamException {
+
+		// When
+		VersionPom stopped = new VersionPomExtractor(VersionPomExtractor.PROJECT_FIELDS, true).extract(stream(SCM_AFTER_DEPENDENCIES));
+		VersionPom complete = new VersionPomExtractor(VersionPomExtractor.PROJECT_FIELDS, false).extract(stream(SCM_AFTER_DEPENDENCIES));
+
+		// Then
+		assertEquals("1.0", stopped.getVersion());
+		assertNull(stopped.getScmConnection());
+		assertEquals("1.0", complete.getVersion());
+		assertEquals("scm:git:g/a", complete.getScmConnection());
+	}
+
+	@Test
+	public void testStoppingOnceAllFieldsAreRead() throws XMLStreamException {
+
+		// Given
+		String pom = "<project><groupId>g</groupId><artifactId>a</artifactId><broken></project>";
+		VersionPomExtractor extractor = new VersionPomExtractor(EnumSet.of(Field.GROUP_ID, Field.ARTIFACT_ID), false);
+
+		// When
+		VersionPom versionPom = extractor.extract(stream(pom));
+
+		// Then
+		assertEquals("g", versionPom.getGroupId());
+		assertEquals("a", versionPom.getArtifactId());
+	}
+
+	@Test
+	public void testValuesReadBeforeErrorAreKept() {
+
+		// Given
+		String pom = "<project><groupId>g</groupId><artifactId>a</artifactId><broken></project>";
+		VersionPom versionPom = new VersionPom();
+
+		// When
+		try {
+			new VersionPomExtractor().extract(stream(pom), versionPom);
+		} catch (XMLStreamException e) {}
+
+		// Then
+		assertEquals("g", versionPom.getGroupId());
+		assertEquals("a", versionPom.getArtifactId());
+	}
+
+	@Test
+	public void testTextWithEntitiesAndCData() throws XMLStreamException {
+
+		// Given
+		String pom = "<project><description>Tom &amp; Jerry <![CDATA[<3]]></description><name/>"
+				+ "<url>\n  http://g/a\n</url></project>";
+
+		// When
+		VersionPom versionPom = new VersionPomExtractor().extract(stream(pom));
+
+		// Then
+		assertEquals("Tom & Jerry <3", versionPom.getDescription());
+		assertEquals("http://g/a", versionPom.getProjectUrl());
+		assertNull(versionPom.getName());
+	}
+
+	@Test
+	public void testOtherRootIsIgnored() throws XMLStreamException {
+
+		// When
+		VersionPom versionPom = new VersionPomExtractor().extract(stream("<metadata><groupId>g</groupId></metadata>"));
+
+		// Then
+		assertNull(versionPom.getGroupId());
+	}
+
+	@Test
+	public void testNewInstanceWithDefaults() {
+
+		// When
+		VersionPomExtractor extractor = VersionPomExtractor.newInstance(null, new Properties());
+
+		// Then
+		assertEquals(VersionPomExtractor.ALL_FIELDS, extractor.getFields());
+		assertEquals(VersionPomExtractor.DEFAULT_STOP_AT_BODY, extractor.isStopAtBody());
+	}
+
+	@Test
+	public void testNewInstanceWithProperties() {
+
+		// Given
+		Properties properties = new Properties();
+		properties.setProperty("POM_FIELDS", "group_id, VERSION,unknown");
+		properties.setProperty("POM_STOP_AT_BODY", "false");
+
+		// When
+		VersionPomExtractor extractor = VersionPomExtractor.newInstance(null, properties);
+
+		// Then
+		assertEquals(EnumSet.of(Field.GROUP_ID, Field.VERSION), extractor.getFields());
+		assertFalse(extractor.isStopAtBody());
+		assertTrue(new VersionPomExtractor(EnumSet.noneOf(Field.class), true).getFields().isEmpty());
+	}
+
+	@Test
+	public void testExtractingDependencies() throws XMLStreamException {
+
+		// Given
+		InputStream stream = this.getClass().getResourceAsStream("../cglib-3.2.2.pom");
+
+		// When
+		VersionPom versionPom = new VersionPomExtractor().extract(stream);
+
+		// Then
+		assertEquals("cglib", versionPom.getParentGroupId());
+		assertEquals("cglib-parent", versionPom.getParentArtifactId());
+		assertEquals("3.2.2", versionPom.getParentVersion());
+		assertNull(versionPom.getImportedDependencies());
+
+		// Versions are managed by the parent
+		List<Dependency> dependencies = versionPom.getDependencies();
+		assertEquals(3, dependencies.size());
+		assertEquals(new Dependency("org.ow2.asm", "asm", null), dependencies.get(0));
+		assertEquals(new Dependency("org.apache.ant", "ant", null), dependencies.get(1));
+		assertEquals(new Dependency("junit", "junit", null), dependencies.get(2));
+	}
+
+	@Test
+	public void testResolvingDependencies() throws XMLStreamException {
+
+		// Given
+		String pom = "<project><parent><groupId>p</groupId><artifactId>parent</artifactId><version>3.0</version></parent>"
+				+ "<artifactId>a</artifactId><version>1.0</version>"
+				+ "<properties><junit.version>4.12</junit.version><spring>${spring.base}.RELEASE</spring>"
+				+ "<spring.base>5.0</spring.base></properties>"
+				+ "<dependencyManagement><dependencies>"
+				+ "<dependency><groupId>org.slf4j</groupId><artifactId>slf4j-api</artifactId><version>1.7.25</version>"
+				+ "<scope>runtime</scope></dependency>"
+				+ "<dependency><groupId>org.springframework</groupId><artifactId>spring-bom</artifactId>"
+				+ "<version>${spring}</version><type>pom</type><scope>import</scope></dependency>"
+				+ "</dependencies></dependencyManagement>"
+				+ "<build><plugins><plugin><artifactId>x</artifactId></plugin></plugins></build>"
+				+ "<dependencies>"
+				+ "<dependency><groupId>${project.groupId}</groupId><artifactId>b</artifactId><version>${project.version}</version></dependency>"
+				+ "<dependency><groupId>junit</groupId><artifactId>junit</artifactId><version>${junit.version}</version>"
+				+ "<scope>test</scope></dependency>"
+				+ "<dependency><groupId>org.slf4j</groupId><artifactId>slf4j-api</artifactId></dependency>"
+				+ "<dependency><groupId>x</groupId><artifactId>y</artifactId><version>[1.0,2.0)</version>"
+				+ "<scope>compile</scope><type>jar</type><optional>true</optional><classifier>jdk8</classifier></dependency>"
+				+ "<dependency><groupId>x</groupId><artifactId>z</artifactId><version>${unknown}</version></dependency>"
+				+ "</dependencies></project>";
+
+		// When
+		VersionPom versionPom = new VersionPomExtractor().extract(stream(pom));
+
+		// Then
+		Dependency sibling = new Dependency("p", "b", "1.0");
+		Dependency junit = new Dependency("junit", "junit", "4.12");
+		junit.setScope("test");
+		Dependency slf4j = new Dependency("org.slf4j", "slf4j-api", "1.7.25");
+		slf4j.setScope("runtime");
+		Dependency range = new Dependency("x", "y", "[1.0,2.0)");
+		range.setOptional(true);
+		range.setClassifier("jdk8");
+		Dependency unresolved = new Dependency("x", "z", "${unknown}");
+		assertEquals(Arrays.asList(sibling, junit, slf4j, range, unresolved), versionPom.getDependencies());
+
+		Dependency bom = new Dependency("org.springframework", "spring-bom", "5.0.RELEASE");
+		bom.setType("pom");
+		bom.setScope("import");
+		assertEquals(Arrays.asList(bom), versionPom.getImportedDependencies());
+	}
+
+	@Test
+	public void testNoDependencies() throws XMLStreamException {
+
+		// When
+		VersionPom versionPom = new VersionPomExtractor().extract(stream("<project><groupId>g</groupId></project>"));
+		VersionPom notExtracted = new VersionPomExtractor(VersionPomExtractor.PROJECT_FIELDS, true)
+				.extract(stream(SCM_AFTER_DEPENDENCIES));
+
+		// Then
+		assertTrue(versionPom.getDependencies().isEmpty());
+		assertNull(versionPom.getParentGroupId());
+		assertNull(notExtracted.getDependencies());
+	}
+
+	@Test
+	public void testInterpolate() {
+
+		// Given
+		Map<String, String> properties = new HashMap<>();
+		properties.put("a", "${b}-1");
+		properties.put("b", "2");
+		properties.put("loop", "${loop}");
+
+		// When, Then
+		assertEquals("x2-1y", VersionPomExtractor.interpolate("x${a}y", properties));
+		assertEquals("${c}.2", VersionPomExtractor.interpolate("${c}.${b}", properties));
+		assertEquals("${loop}", VersionPomExtractor.interpolate("${loop}", properties));
+		assertNull(VersionPomExtractor.interpolate(null, properties));
+	}
+
+}
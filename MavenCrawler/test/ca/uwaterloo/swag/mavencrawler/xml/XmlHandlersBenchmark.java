@@ -0,0 +1,151 @@
+package ca.uwaterloo.swag.mavencrawler.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Parses the test POMs with the VersionPomExtractor, and the metadata and catalog with the
+ * xml handlers and the pooled parser. The extractor is also run on a generated POM the size
+ * of an enterprise build, with hundreds of dependencies, plugins and profiles after its scm
+ * section, stopping at its body or reading it to the end.
+ * Run with the main method from the test classpath, with "-prof gc" to see allocations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class XmlHandlersBenchmark {
+
+	private static final String[] POMS = {"../log4j-1.2.16.pom", "../cglib-3.2.2.pom"};
+
+	private static final VersionPomExtractor extractor = new VersionPomExtractor();
+	// The log4j POM is malformed in its build section, so dependencies are not read
+	private static final VersionPomExtractor projectExtractor =
+			new VersionPomExtractor(VersionPomExtractor.PROJECT_FIELDS, true);
+	private static final VersionPomExtractor extractorToEnd =
+			new VersionPomExtractor(VersionPomExtractor.ALL_FIELDS, false);
+
+	private byte[][] poms;
+	private byte[] largePom;
+	private byte[] metadata;
+	private byte[] catalog;
+
+	@Setup
+	public void setUp() throws IOException {
+
+		poms = new byte[POMS.length][];
+		for (int i = 0; i < POMS.length; i++) {
+			poms[i] = read(POMS[i]);
+		}
+		metadata = read("../maven-metadata-example-multiple.xml");
+		catalog = read("../archetype-catalog-example.xml");
+		largePom = largePom(400).getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String largePom(int sections) {
+
+		StringBuilder pom = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+				.append("<project xmlns=\"http://maven.apache.org/POM/4.0.0\">\n")
+				.append("  <modelVersion>4.0.0</modelVersion>\n")
+				.append("  <parent><groupId>com.example</groupId><artifactId>parent</artifactId><version>1.0</version></parent>\n")
+				.append("  <artifactId>service</artifactId>\n  <packaging>war</packaging>\n")
+				.append("  <name>Service</name>\n  <description>Enterprise service</description>\n")
+				.append("  <url>http://example.com/service</url>\n")
+				.append("  <scm>\n    <connection>scm:git:http://example.com/service.git</connection>\n")
+				.append("    <url>http://example.com/service</url>\n  </scm>\n");
+
+		pom.append("  <dependencies>\n");
+		for (int i = 0; i < sections; i++) {
+			pom.append("    <dependency>\n      <groupId>com.example.lib").append(i).append("</groupId>\n")
+					.append("      <artifactId>lib").append(i).append("</artifactId>\n")
+					.append("      <version>${lib.version}</version>\n      <exclusions><exclusion>")
+					.append("<groupId>commons-logging</groupId><artifactId>commons-logging</artifactId>")
+					.append("</exclusion></exclusions>\n    </dependency>\n");
+		}
+		pom.append("  </dependencies>\n  <build>\n    <plugins>\n");
+		for (int i = 0; i < sections / 4; i++) {
+			pom.append("      <plugin><artifactId>plugin").append(i).append("</artifactId><configuration>")
+					.append("<argLine>-Xmx1g -Dfile.encoding=UTF-8</argLine><skip>false</skip>")
+					.append("</configuration></plugin>\n");
+		}
+		pom.append("    </plugins>\n  </build>\n  <profiles>\n");
+		for (int i = 0; i < sections / 8; i++) {
+			pom.append("    <profile><id>profile").append(i).append("</id><properties>")
+					.append("<env>env").append(i).append("</env></properties></profile>\n");
+		}
+		pom.append("  </profiles>\n</project>\n");
+
+		return pom.toString();
+	}
+
+	private static byte[] read(String resource) throws IOException {
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InputStream stream = XmlHandlersBenchmark.class.getResourceAsStream(resource);
+		byte[] buffer = new byte[8192];
+		int read;
+
+		while ((read = stream.read(buffer)) != -1) {
+			out.write(buffer, 0, read);
+		}
+		stream.close();
+
+		return out.toByteArray();
+	}
+
+	@Benchmark
+	public void versionPomExtractor(Blackhole blackhole) throws Exception {
+		for (byte[] pom : poms) {
+			blackhole.consume(projectExtractor.extract(new ByteArrayInputStream(pom)));
+		}
+	}
+
+	@Benchmark
+	public Object largePomExtractor() throws Exception {
+		return extractor.extract(new ByteArrayInputStream(largePom));
+	}
+
+	@Benchmark
+	public Object largePomExtractorToEnd() throws Exception {
+		return extractorToEnd.extract(new ByteArrayInputStream(largePom));
+	}
+
+	@Benchmark
+	public Object mavenMetadataHandler() throws Exception {
+		MavenMetadataHandler handler = new MavenMetadataHandler();
+		SAXParserPool.parse(new ByteArrayInputStream(metadata), handler);
+		return handler.getMetadata();
+	}
+
+	@Benchmark
+	public Object archetypeCatalogHandler() throws Exception {
+		ArchetypeCatalogHandler handler = new ArchetypeCatalogHandler();
+		SAXParserPool.parse(new ByteArrayInputStream(catalog), handler);
+		return handler.getArchetypes();
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder().include(XmlHandlersBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}